@@ -0,0 +1,283 @@
+package collections.immutable.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import collections.immutable.ConcurrentImmMap;
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmSortedMap;
+
+/**
+ * Reads of a {@link ConcurrentImmMap} while a writer updates it, against a {@link ConcurrentSkipListMap}
+ * under the same writer, and against reads of a plain {@link ImmSortedMap}, which nothing can write.
+ * <p>Each concurrent group runs three reading threads and one writing thread.   The iterations of a
+ * {@link ConcurrentImmMap} see one consistent version, those of a {@link ConcurrentSkipListMap} do not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentImmMapBenchmark {
+    private static final Integer VALUE = -1;
+
+    /**
+     * The probes of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+        /**
+         * The size of the maps.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        Probes probes;
+
+        /**
+         * Draws the probes.
+         */
+        @Setup
+        public void setup() {
+            probes = new Probes(size * 2, Thread.currentThread().getId());
+        }
+    }
+
+    /**
+     * A plain {@link ImmSortedMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Plain {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        ImmSortedMap<Integer, Integer> map;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = ImmCollections.asSortedMap(Integer::compare, ImmMapBenchmark.contents(size));
+        }
+    }
+
+    /**
+     * A {@link ConcurrentImmMap} of the even numbers.
+     */
+    @State(Scope.Group)
+    public static class Imm {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        ConcurrentImmMap<Integer, Integer> map;
+        // The middle half of the map, in descending order.
+        ConcurrentNavigableMap<Integer, Integer> view;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = ConcurrentImmMap.of(ImmCollections.asSortedMap(Integer::compare, ImmMapBenchmark.contents(size)));
+            view = map.subMap(size / 2, size * 3 / 2).descendingMap();
+        }
+    }
+
+    /**
+     * A {@link ConcurrentSkipListMap} of the even numbers.
+     */
+    @State(Scope.Group)
+    public static class SkipList {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        ConcurrentSkipListMap<Integer, Integer> map;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = new ConcurrentSkipListMap<>(ImmMapBenchmark.contents(size));
+        }
+    }
+
+    private static long sum(final Iterable<Map.Entry<Integer, Integer>> entries) {
+        long sum = 0;
+        for(Map.Entry<Integer, Integer> e: entries) {
+            sum += e.getValue();
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedMap#ceilingEntry(Object)}.
+     * @param s The map
+     * @param r The reader
+     * @return the entry found
+     */
+    @Benchmark
+    public Object ceilingPlain(final Plain s, final Reader r) {
+        return s.map.ceilingEntry(r.probes.next());
+    }
+
+    /**
+     * Benchmarks iterating an {@link ImmSortedMap}.
+     * @param s The map
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iteratePlain(final Plain s) {
+        return sum(s.map);
+    }
+
+    /**
+     * Benchmarks {@link ConcurrentImmMap#ceilingEntry(Object)} while a writer puts.
+     * @param s The map
+     * @param r The reader
+     * @return the entry found
+     */
+    @Benchmark
+    @Group("ceilingImm")
+    @GroupThreads(3)
+    public Object ceilingImm(final Imm s, final Reader r) {
+        return s.map.ceilingEntry(r.probes.next());
+    }
+
+    /**
+     * The writer of {@link #ceilingImm(Imm, Reader)}.
+     * @param s The map
+     * @param r The writer
+     * @return the previous value
+     */
+    @Benchmark
+    @Group("ceilingImm")
+    @GroupThreads(1)
+    public Integer ceilingImmWriter(final Imm s, final Reader r) {
+        return s.map.put(r.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks {@link ConcurrentImmMap#ceilingEntry(Object)} of a descending sub map while a writer puts.
+     * @param s The map
+     * @param r The reader
+     * @return the entry found
+     */
+    @Benchmark
+    @Group("ceilingImmView")
+    @GroupThreads(3)
+    public Object ceilingImmView(final Imm s, final Reader r) {
+        return s.view.ceilingEntry(r.probes.next());
+    }
+
+    /**
+     * The writer of {@link #ceilingImmView(Imm, Reader)}.
+     * @param s The map
+     * @param r The writer
+     * @return the previous value
+     */
+    @Benchmark
+    @Group("ceilingImmView")
+    @GroupThreads(1)
+    public Integer ceilingImmViewWriter(final Imm s, final Reader r) {
+        return s.map.put(r.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks iterating a {@link ConcurrentImmMap} while a writer puts.
+     * @param s The map
+     * @return the sum of the values
+     */
+    @Benchmark
+    @Group("iterateImm")
+    @GroupThreads(3)
+    public long iterateImm(final Imm s) {
+        return sum(s.map.entrySet());
+    }
+
+    /**
+     * The writer of {@link #iterateImm(Imm)}.
+     * @param s The map
+     * @param r The writer
+     * @return the previous value
+     */
+    @Benchmark
+    @Group("iterateImm")
+    @GroupThreads(1)
+    public Integer iterateImmWriter(final Imm s, final Reader r) {
+        return s.map.put(r.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks {@link ConcurrentSkipListMap#ceilingEntry(Object)} while a writer puts.
+     * @param s The map
+     * @param r The reader
+     * @return the entry found
+     */
+    @Benchmark
+    @Group("ceilingSkipList")
+    @GroupThreads(3)
+    public Object ceilingSkipList(final SkipList s, final Reader r) {
+        return s.map.ceilingEntry(r.probes.next());
+    }
+
+    /**
+     * The writer of {@link #ceilingSkipList(SkipList, Reader)}.
+     * @param s The map
+     * @param r The writer
+     * @return the previous value
+     */
+    @Benchmark
+    @Group("ceilingSkipList")
+    @GroupThreads(1)
+    public Integer ceilingSkipListWriter(final SkipList s, final Reader r) {
+        return s.map.put(r.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks iterating a {@link ConcurrentSkipListMap} while a writer puts.
+     * @param s The map
+     * @return the sum of the values
+     */
+    @Benchmark
+    @Group("iterateSkipList")
+    @GroupThreads(3)
+    public long iterateSkipList(final SkipList s) {
+        return sum(s.map.entrySet());
+    }
+
+    /**
+     * The writer of {@link #iterateSkipList(SkipList)}.
+     * @param s The map
+     * @param r The writer
+     * @return the previous value
+     */
+    @Benchmark
+    @Group("iterateSkipList")
+    @GroupThreads(1)
+    public Integer iterateSkipListWriter(final SkipList s, final Reader r) {
+        return s.map.put(r.probes.next(), VALUE);
+    }
+}
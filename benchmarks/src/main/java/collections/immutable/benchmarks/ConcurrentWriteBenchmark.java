@@ -0,0 +1,205 @@
+package collections.immutable.benchmarks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import collections.immutable.AtomicImmMap;
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmMap;
+
+/**
+ * Puts from many writer threads into one shared map: an {@link AtomicImmMap} updated by compare and set,
+ * and one whose updates are combined, against a {@link ConcurrentHashMap} and a {@link ConcurrentSkipListMap}.
+ * <p>JMH runs a benchmark at one thread count, so the sweep from 1 to 64 writers is one run per count:
+ * <pre>{@code
+ *     for t in 1 2 4 8 16 32 64; do
+ *         java -jar benchmarks/target/benchmarks.jar ConcurrentWriteBenchmark -t $t -rff target/writers-$t.json
+ *     done
+ * }</pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ConcurrentWriteBenchmark {
+    private static final Integer VALUE = -1;
+
+    /**
+     * The keys one writer puts, different for every writer.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        /**
+         * The size of the maps.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        Probes probes;
+
+        /**
+         * Draws the keys.
+         */
+        @Setup
+        public void setup() {
+            probes = new Probes(size * 2, Thread.currentThread().getId());
+        }
+    }
+
+    /**
+     * An {@link AtomicImmMap} of the even numbers, hashed or sorted, updated by compare and set.
+     */
+    @State(Scope.Benchmark)
+    public static class Cas {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        /**
+         * Whether the map is sorted.
+         */
+        @Param({"false", "true"})
+        public boolean sorted;
+        AtomicImmMap<Integer, Integer> map;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = AtomicImmMap.of(contents(size, sorted));
+        }
+    }
+
+    /**
+     * An {@link AtomicImmMap} of the even numbers, hashed or sorted, whose updates are combined.
+     */
+    @State(Scope.Benchmark)
+    public static class Combining {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        /**
+         * Whether the map is sorted.
+         */
+        @Param({"false", "true"})
+        public boolean sorted;
+        AtomicImmMap<Integer, Integer> map;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = AtomicImmMap.combining(contents(size, sorted));
+        }
+    }
+
+    /**
+     * A {@link ConcurrentHashMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Hash {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        ConcurrentHashMap<Integer, Integer> map;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = new ConcurrentHashMap<>(ImmMapBenchmark.contents(size));
+        }
+    }
+
+    /**
+     * A {@link ConcurrentSkipListMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class SkipList {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        ConcurrentSkipListMap<Integer, Integer> map;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = new ConcurrentSkipListMap<>(ImmMapBenchmark.contents(size));
+        }
+    }
+
+    private static ImmMap<Integer, Integer> contents(final int size, final boolean sorted) {
+        return sorted ? ImmCollections.asSortedMap(Integer::compare, ImmMapBenchmark.contents(size)) : ImmCollections.asMap(ImmMapBenchmark.contents(size));
+    }
+
+    /**
+     * Benchmarks {@link AtomicImmMap#put(Object, Object)} by compare and set.
+     * @param s The map
+     * @param w The writer
+     * @return the new version of the map
+     */
+    @Benchmark
+    public Object putCas(final Cas s, final Writer w) {
+        return s.map.put(w.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks {@link AtomicImmMap#put(Object, Object)} with combining.
+     * @param s The map
+     * @param w The writer
+     * @return the new version of the map
+     */
+    @Benchmark
+    public Object putCombining(final Combining s, final Writer w) {
+        return s.map.put(w.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks {@link ConcurrentHashMap#put(Object, Object)}.
+     * @param s The map
+     * @param w The writer
+     * @return the previous value
+     */
+    @Benchmark
+    public Integer putConcurrentHashMap(final Hash s, final Writer w) {
+        return s.map.put(w.probes.next(), VALUE);
+    }
+
+    /**
+     * Benchmarks {@link ConcurrentSkipListMap#put(Object, Object)}.
+     * @param s The map
+     * @param w The writer
+     * @return the previous value
+     */
+    @Benchmark
+    public Integer putConcurrentSkipListMap(final SkipList s, final Writer w) {
+        return s.map.put(w.probes.next(), VALUE);
+    }
+}
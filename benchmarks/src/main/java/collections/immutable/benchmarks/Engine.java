@@ -0,0 +1,138 @@
+package collections.immutable.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.pcollections.HashTreePMap;
+import org.pcollections.PMap;
+import org.pcollections.TreePMap;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmMap;
+
+//
+// A map implementation the workload drives. Each write makes a new version and leaves the old one intact,
+// so that any number of versions can stay live at once.
+//
+abstract class Engine<M> {
+    final String name;
+
+    Engine(final String name) {
+        this.name = name;
+    }
+
+    abstract M load(Map<Integer, Integer> contents);
+
+    abstract Integer get(M map, Integer key);
+
+    abstract M putAll(M map, Map<Integer, Integer> batch);
+
+    static Engine<?> named(final String name) {
+        switch(name) {
+            case "imm": return new Engine<ImmMap<Integer, Integer>>(name) {
+                @Override
+                ImmMap<Integer, Integer> load(final Map<Integer, Integer> contents) {
+                    return ImmCollections.asMap(contents);
+                }
+
+                @Override
+                Integer get(final ImmMap<Integer, Integer> map, final Integer key) {
+                    return map.get(key);
+                }
+
+                @Override
+                ImmMap<Integer, Integer> putAll(final ImmMap<Integer, Integer> map, final Map<Integer, Integer> batch) {
+                    return map.addAll(batch);
+                }
+            };
+            case "imm-sorted": return new Engine<ImmMap<Integer, Integer>>(name) {
+                @Override
+                ImmMap<Integer, Integer> load(final Map<Integer, Integer> contents) {
+                    return ImmCollections.asSortedMap(Integer::compare, contents);
+                }
+
+                @Override
+                Integer get(final ImmMap<Integer, Integer> map, final Integer key) {
+                    return map.get(key);
+                }
+
+                @Override
+                ImmMap<Integer, Integer> putAll(final ImmMap<Integer, Integer> map, final Map<Integer, Integer> batch) {
+                    return map.addAll(batch);
+                }
+            };
+            case "pcollections": return new Engine<PMap<Integer, Integer>>(name) {
+                @Override
+                PMap<Integer, Integer> load(final Map<Integer, Integer> contents) {
+                    return HashTreePMap.from(contents);
+                }
+
+                @Override
+                Integer get(final PMap<Integer, Integer> map, final Integer key) {
+                    return map.get(key);
+                }
+
+                @Override
+                PMap<Integer, Integer> putAll(final PMap<Integer, Integer> map, final Map<Integer, Integer> batch) {
+                    return map.plusAll(batch);
+                }
+            };
+            case "pcollections-sorted": return new Engine<PMap<Integer, Integer>>(name) {
+                @Override
+                PMap<Integer, Integer> load(final Map<Integer, Integer> contents) {
+                    return TreePMap.from(contents);
+                }
+
+                @Override
+                Integer get(final PMap<Integer, Integer> map, final Integer key) {
+                    return map.get(key);
+                }
+
+                @Override
+                PMap<Integer, Integer> putAll(final PMap<Integer, Integer> map, final Map<Integer, Integer> batch) {
+                    return map.plusAll(batch);
+                }
+            };
+            // Copy-on-write java.util maps, the baseline the persistent maps replace.
+            case "cow": return new Engine<Map<Integer, Integer>>(name) {
+                @Override
+                Map<Integer, Integer> load(final Map<Integer, Integer> contents) {
+                    return new HashMap<>(contents);
+                }
+
+                @Override
+                Integer get(final Map<Integer, Integer> map, final Integer key) {
+                    return map.get(key);
+                }
+
+                @Override
+                Map<Integer, Integer> putAll(final Map<Integer, Integer> map, final Map<Integer, Integer> batch) {
+                    final Map<Integer, Integer> copy = new HashMap<>(map);
+                    copy.putAll(batch);
+                    return copy;
+                }
+            };
+            case "cow-sorted": return new Engine<Map<Integer, Integer>>(name) {
+                @Override
+                Map<Integer, Integer> load(final Map<Integer, Integer> contents) {
+                    return new TreeMap<>(contents);
+                }
+
+                @Override
+                Integer get(final Map<Integer, Integer> map, final Integer key) {
+                    return map.get(key);
+                }
+
+                @Override
+                Map<Integer, Integer> putAll(final Map<Integer, Integer> map, final Map<Integer, Integer> batch) {
+                    final Map<Integer, Integer> copy = new TreeMap<>(map);
+                    copy.putAll(batch);
+                    return copy;
+                }
+            };
+            default: throw new IllegalArgumentException("unknown engine: " + name
+                    + ", expected imm, imm-sorted, pcollections, pcollections-sorted, cow or cow-sorted");
+        }
+    }
+}
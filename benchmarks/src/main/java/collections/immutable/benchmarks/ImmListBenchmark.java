@@ -0,0 +1,381 @@
+package collections.immutable.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pcollections.PVector;
+import org.pcollections.TreePVector;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmList;
+
+/**
+ * {@link ImmList} operations, against a copy-on-write {@link ArrayList} and a {@link TreePVector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImmListBenchmark {
+    private static final Integer ELEMENT = -1;
+
+    /**
+     * An {@link ImmList} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Imm {
+        /**
+         * The size of the list.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        ImmList<Integer> list;
+        Probes probes;
+
+        /**
+         * Builds the list.
+         */
+        @Setup
+        public void setup() {
+            list = ImmCollections.asList(Probes.evens(size));
+            probes = new Probes(size, 1);
+        }
+    }
+
+    /**
+     * An {@link ArrayList} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class JavaUtil {
+        /**
+         * The size of the list.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        ArrayList<Integer> list;
+        Probes probes;
+
+        /**
+         * Builds the list.
+         */
+        @Setup
+        public void setup() {
+            list = new ArrayList<>(Probes.evens(size));
+            probes = new Probes(size, 1);
+        }
+    }
+
+    /**
+     * A {@link TreePVector} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class PCollections {
+        /**
+         * The size of the list.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        PVector<Integer> list;
+        Probes probes;
+
+        /**
+         * Builds the list.
+         */
+        @Setup
+        public void setup() {
+            list = TreePVector.from(Probes.evens(size));
+            probes = new Probes(size, 1);
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmList#getAt(int)}.
+     * @param s The state
+     * @return the element
+     */
+    @Benchmark
+    public Integer getAtImm(final Imm s) {
+        return s.list.getAt(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ArrayList#get(int)}.
+     * @param s The state
+     * @return the element
+     */
+    @Benchmark
+    public Integer getAtJavaUtil(final JavaUtil s) {
+        return s.list.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PVector#get(int)}.
+     * @param s The state
+     * @return the element
+     */
+    @Benchmark
+    public Integer getAtPCollections(final PCollections s) {
+        return s.list.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmList#setAt(int, Object)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object setAtImm(final Imm s) {
+        return s.list.setAt(s.probes.next(), ELEMENT);
+    }
+
+    /**
+     * Benchmarks copying an {@link ArrayList} and setting an element.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object setAtJavaUtil(final JavaUtil s) {
+        final List<Integer> copy = new ArrayList<>(s.list);
+        copy.set(s.probes.next(), ELEMENT);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PVector#with(int, Object)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object setAtPCollections(final PCollections s) {
+        return s.list.with(s.probes.next(), ELEMENT);
+    }
+
+    /**
+     * Benchmarks {@link ImmList#insertAt(int, Object)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object insertAtImm(final Imm s) {
+        return s.list.insertAt(s.probes.next(), ELEMENT);
+    }
+
+    /**
+     * Benchmarks copying an {@link ArrayList} and inserting an element.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object insertAtJavaUtil(final JavaUtil s) {
+        final List<Integer> copy = new ArrayList<>(s.list.size() + 1);
+        copy.addAll(s.list);
+        copy.add(s.probes.next(), ELEMENT);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PVector#plus(int, Object)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object insertAtPCollections(final PCollections s) {
+        return s.list.plus(s.probes.next(), ELEMENT);
+    }
+
+    /**
+     * Benchmarks {@link ImmList#removeAt(int)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object removeAtImm(final Imm s) {
+        return s.list.removeAt(s.probes.next());
+    }
+
+    /**
+     * Benchmarks copying an {@link ArrayList} and removing an element.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object removeAtJavaUtil(final JavaUtil s) {
+        final List<Integer> copy = new ArrayList<>(s.list);
+        copy.remove(s.probes.next());
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PVector#minus(int)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object removeAtPCollections(final PCollections s) {
+        return s.list.minus(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmList#add(Object)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object addImm(final Imm s) {
+        return s.list.add(ELEMENT);
+    }
+
+    /**
+     * Benchmarks copying an {@link ArrayList} and appending an element.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object addJavaUtil(final JavaUtil s) {
+        final List<Integer> copy = new ArrayList<>(s.list.size() + 1);
+        copy.addAll(s.list);
+        copy.add(ELEMENT);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PVector#plus(Object)}.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object addPCollections(final PCollections s) {
+        return s.list.plus(ELEMENT);
+    }
+
+    /**
+     * Benchmarks {@link ImmList#getRange(int, int)}.
+     * @param s The state
+     * @return the sub list
+     */
+    @Benchmark
+    public Object getRangeImm(final Imm s) {
+        final int low = s.probes.next();
+        return s.list.getRange(low, low + (s.size - low) / 2);
+    }
+
+    /**
+     * Benchmarks copying a sub list of an {@link ArrayList}.
+     * @param s The state
+     * @return the sub list
+     */
+    @Benchmark
+    public Object getRangeJavaUtil(final JavaUtil s) {
+        final int low = s.probes.next();
+        return new ArrayList<>(s.list.subList(low, low + (s.size - low) / 2));
+    }
+
+    /**
+     * Benchmarks {@link PVector#subList(int, int)}.
+     * @param s The state
+     * @return the sub list
+     */
+    @Benchmark
+    public Object getRangePCollections(final PCollections s) {
+        final int low = s.probes.next();
+        return s.list.subList(low, low + (s.size - low) / 2);
+    }
+
+    /**
+     * Benchmarks {@link ImmList#appendList(ImmList)}, appending the list to itself.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object appendListImm(final Imm s) {
+        return s.list.appendList(s.list);
+    }
+
+    /**
+     * Benchmarks copying an {@link ArrayList} twice into a new one.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object appendListJavaUtil(final JavaUtil s) {
+        final List<Integer> copy = new ArrayList<>(s.list.size() * 2);
+        copy.addAll(s.list);
+        copy.addAll(s.list);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PVector#plusAll(java.util.Collection)}, appending the list to itself.
+     * @param s The state
+     * @return the new list
+     */
+    @Benchmark
+    public Object appendListPCollections(final PCollections s) {
+        return s.list.plusAll(s.list);
+    }
+
+    /**
+     * Benchmarks iterating an {@link ImmList}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iterateImm(final Imm s) {
+        long sum = 0;
+        for(Integer e: s.list) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating an {@link ArrayList}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iterateJavaUtil(final JavaUtil s) {
+        long sum = 0;
+        for(Integer e: s.list) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link PVector}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iteratePCollections(final PCollections s) {
+        long sum = 0;
+        for(Integer e: s.list) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks {@link ImmList#reversed()} followed by a lookup, which has no counterpart in the baselines.
+     * @param s The state
+     * @return the element
+     */
+    @Benchmark
+    public Integer reversedGetAtImm(final Imm s) {
+        return s.list.reversed().getAt(s.probes.next());
+    }
+}
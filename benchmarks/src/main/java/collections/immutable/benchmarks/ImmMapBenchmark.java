@@ -0,0 +1,310 @@
+package collections.immutable.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pcollections.HashTreePMap;
+import org.pcollections.PMap;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmMap;
+
+/**
+ * {@link ImmMap} operations, against a copy-on-write {@link HashMap} and a {@link HashTreePMap}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImmMapBenchmark {
+    private static final Integer VALUE = -1;
+    private static final int BATCH = 100;
+
+    // Maps each even number to its half.
+    static Map<Integer, Integer> contents(final int size) {
+        final Map<Integer, Integer> map = new HashMap<>();
+        for(Integer k: Probes.evens(size)) {
+            map.put(k, k / 2);
+        }
+        return map;
+    }
+
+    // A batch of keys to look up, half of them present.
+    static List<Integer> batch(final Probes probes) {
+        final List<Integer> keys = new ArrayList<>(BATCH);
+        for(int i = 0; i < BATCH; i++) {
+            keys.add(probes.next());
+        }
+        return keys;
+    }
+
+    /**
+     * An {@link ImmMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Imm {
+        /**
+         * The size of the map.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        ImmMap<Integer, Integer> map;
+        Probes probes;
+        List<Integer> batch;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = ImmCollections.asMap(contents(size));
+            probes = new Probes(size * 2, 4);
+            batch = batch(probes);
+        }
+    }
+
+    /**
+     * A {@link HashMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class JavaUtil {
+        /**
+         * The size of the map.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        HashMap<Integer, Integer> map;
+        Probes probes;
+        List<Integer> batch;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = new HashMap<>(contents(size));
+            probes = new Probes(size * 2, 4);
+            batch = batch(probes);
+        }
+    }
+
+    /**
+     * A {@link HashTreePMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class PCollections {
+        /**
+         * The size of the map.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        PMap<Integer, Integer> map;
+        Probes probes;
+        List<Integer> batch;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = HashTreePMap.from(contents(size));
+            probes = new Probes(size * 2, 4);
+            batch = batch(probes);
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmMap#get(Object)}, half hits and half misses.
+     * @param s The state
+     * @return the value found
+     */
+    @Benchmark
+    public Integer getImm(final Imm s) {
+        return s.map.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link HashMap#get(Object)}, half hits and half misses.
+     * @param s The state
+     * @return the value found
+     */
+    @Benchmark
+    public Integer getJavaUtil(final JavaUtil s) {
+        return s.map.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PMap#get(Object)}, half hits and half misses.
+     * @param s The state
+     * @return the value found
+     */
+    @Benchmark
+    public Integer getPCollections(final PCollections s) {
+        return s.map.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmMap#getAll(Iterable)} of a batch of keys.
+     * @param s The state
+     * @return the entries found
+     */
+    @Benchmark
+    public Object getAllImm(final Imm s) {
+        return s.map.getAll(s.batch);
+    }
+
+    /**
+     * Benchmarks looking up a batch of keys in a {@link HashMap}.
+     * @param s The state
+     * @return the entries found
+     */
+    @Benchmark
+    public Object getAllJavaUtil(final JavaUtil s) {
+        final Map<Integer, Integer> found = new HashMap<>();
+        for(Integer k: s.batch) {
+            final Integer v = s.map.get(k);
+            if (v != null) {
+                found.put(k, v);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Benchmarks looking up a batch of keys in a {@link PMap}.
+     * @param s The state
+     * @return the entries found
+     */
+    @Benchmark
+    public Object getAllPCollections(final PCollections s) {
+        PMap<Integer, Integer> found = HashTreePMap.empty();
+        for(Integer k: s.batch) {
+            final Integer v = s.map.get(k);
+            if (v != null) {
+                found = found.plus(k, v);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Benchmarks {@link ImmMap#put(Object, Object)} of a key that is not present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object putImm(final Imm s) {
+        return s.map.put(s.probes.next() | 1, VALUE);
+    }
+
+    /**
+     * Benchmarks copying a {@link HashMap} and putting a key that is not present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object putJavaUtil(final JavaUtil s) {
+        final Map<Integer, Integer> copy = new HashMap<>(s.map);
+        copy.put(s.probes.next() | 1, VALUE);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PMap#plus(Object, Object)} of a key that is not present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object putPCollections(final PCollections s) {
+        return s.map.plus(s.probes.next() | 1, VALUE);
+    }
+
+    /**
+     * Benchmarks {@link ImmMap#removeKey(Object)} of a key that is present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object removeKeyImm(final Imm s) {
+        return s.map.removeKey(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks copying a {@link HashMap} and removing a key that is present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object removeKeyJavaUtil(final JavaUtil s) {
+        final Map<Integer, Integer> copy = new HashMap<>(s.map);
+        copy.remove(s.probes.next() & ~1);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PMap#minus(Object)} of a key that is present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object removeKeyPCollections(final PCollections s) {
+        return s.map.minus(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks iterating an {@link ImmMap}.
+     * @param s The state
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iterateImm(final Imm s) {
+        long sum = 0;
+        for(Map.Entry<Integer, Integer> e: s.map) {
+            sum += e.getValue();
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link HashMap}.
+     * @param s The state
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iterateJavaUtil(final JavaUtil s) {
+        long sum = 0;
+        for(Map.Entry<Integer, Integer> e: s.map.entrySet()) {
+            sum += e.getValue();
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link PMap}.
+     * @param s The state
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iteratePCollections(final PCollections s) {
+        long sum = 0;
+        for(Map.Entry<Integer, Integer> e: s.map.entrySet()) {
+            sum += e.getValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,237 @@
+package collections.immutable.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pcollections.HashTreePSet;
+import org.pcollections.PSet;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmSet;
+
+/**
+ * {@link ImmSet} operations, against a copy-on-write {@link HashSet} and a {@link HashTreePSet}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImmSetBenchmark {
+    /**
+     * An {@link ImmSet} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Imm {
+        /**
+         * The size of the set.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        ImmSet<Integer> set;
+        Probes probes;
+
+        /**
+         * Builds the set.
+         */
+        @Setup
+        public void setup() {
+            set = ImmCollections.asSet(Probes.evens(size));
+            probes = new Probes(size * 2, 2);
+        }
+    }
+
+    /**
+     * A {@link HashSet} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class JavaUtil {
+        /**
+         * The size of the set.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        HashSet<Integer> set;
+        Probes probes;
+
+        /**
+         * Builds the set.
+         */
+        @Setup
+        public void setup() {
+            set = new HashSet<>(Probes.evens(size));
+            probes = new Probes(size * 2, 2);
+        }
+    }
+
+    /**
+     * A {@link HashTreePSet} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class PCollections {
+        /**
+         * The size of the set.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        PSet<Integer> set;
+        Probes probes;
+
+        /**
+         * Builds the set.
+         */
+        @Setup
+        public void setup() {
+            set = HashTreePSet.from(Probes.evens(size));
+            probes = new Probes(size * 2, 2);
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmSet#contains(Object)}, half hits and half misses.
+     * @param s The state
+     * @return whether the element was found
+     */
+    @Benchmark
+    public boolean containsImm(final Imm s) {
+        return s.set.contains(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link HashSet#contains(Object)}, half hits and half misses.
+     * @param s The state
+     * @return whether the element was found
+     */
+    @Benchmark
+    public boolean containsJavaUtil(final JavaUtil s) {
+        return s.set.contains(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PSet#contains(Object)}, half hits and half misses.
+     * @param s The state
+     * @return whether the element was found
+     */
+    @Benchmark
+    public boolean containsPCollections(final PCollections s) {
+        return s.set.contains(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmSet#add(Object)} of an element that is not present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object addImm(final Imm s) {
+        return s.set.add(s.probes.next() | 1);
+    }
+
+    /**
+     * Benchmarks copying a {@link HashSet} and adding an element that is not present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object addJavaUtil(final JavaUtil s) {
+        final Set<Integer> copy = new HashSet<>(s.set);
+        copy.add(s.probes.next() | 1);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PSet#plus(Object)} of an element that is not present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object addPCollections(final PCollections s) {
+        return s.set.plus(s.probes.next() | 1);
+    }
+
+    /**
+     * Benchmarks {@link ImmSet#remove(Object)} of an element that is present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object removeImm(final Imm s) {
+        return s.set.remove(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks copying a {@link HashSet} and removing an element that is present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object removeJavaUtil(final JavaUtil s) {
+        final Set<Integer> copy = new HashSet<>(s.set);
+        copy.remove(s.probes.next() & ~1);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PSet#minus(Object)} of an element that is present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object removePCollections(final PCollections s) {
+        return s.set.minus(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks iterating an {@link ImmSet}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iterateImm(final Imm s) {
+        long sum = 0;
+        for(Integer e: s.set) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link HashSet}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iterateJavaUtil(final JavaUtil s) {
+        long sum = 0;
+        for(Integer e: s.set) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link PSet}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iteratePCollections(final PCollections s) {
+        long sum = 0;
+        for(Integer e: s.set) {
+            sum += e;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,322 @@
+package collections.immutable.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pcollections.PSortedMap;
+import org.pcollections.TreePMap;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmSortedMap;
+
+/**
+ * {@link ImmSortedMap} operations, against a copy-on-write {@link TreeMap} and a {@link TreePMap}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImmSortedMapBenchmark {
+    private static final Integer VALUE = -1;
+
+    /**
+     * An {@link ImmSortedMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Imm {
+        /**
+         * The size of the map.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        ImmSortedMap<Integer, Integer> map;
+        Probes probes;
+        List<Integer> batch;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = ImmCollections.asSortedMap(ImmMapBenchmark.contents(size).entrySet());
+            probes = new Probes(size * 2, 5);
+            batch = ImmMapBenchmark.batch(probes);
+        }
+    }
+
+    /**
+     * A {@link TreeMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class JavaUtil {
+        /**
+         * The size of the map.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        TreeMap<Integer, Integer> map;
+        Probes probes;
+        List<Integer> batch;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = new TreeMap<>(ImmMapBenchmark.contents(size));
+            probes = new Probes(size * 2, 5);
+            batch = ImmMapBenchmark.batch(probes);
+        }
+    }
+
+    /**
+     * A {@link TreePMap} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class PCollections {
+        /**
+         * The size of the map.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        PSortedMap<Integer, Integer> map;
+        Probes probes;
+        List<Integer> batch;
+
+        /**
+         * Builds the map.
+         */
+        @Setup
+        public void setup() {
+            map = TreePMap.from(ImmMapBenchmark.contents(size));
+            probes = new Probes(size * 2, 5);
+            batch = ImmMapBenchmark.batch(probes);
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedMap#get(Object)}, half hits and half misses.
+     * @param s The state
+     * @return the value found
+     */
+    @Benchmark
+    public Integer getImm(final Imm s) {
+        return s.map.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link TreeMap#get(Object)}, half hits and half misses.
+     * @param s The state
+     * @return the value found
+     */
+    @Benchmark
+    public Integer getJavaUtil(final JavaUtil s) {
+        return s.map.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PSortedMap#get(Object)}, half hits and half misses.
+     * @param s The state
+     * @return the value found
+     */
+    @Benchmark
+    public Integer getPCollections(final PCollections s) {
+        return s.map.get(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedMap#getAll(Iterable)} of a batch of keys.
+     * @param s The state
+     * @return the entries found
+     */
+    @Benchmark
+    public Object getAllImm(final Imm s) {
+        return s.map.getAll(s.batch);
+    }
+
+    /**
+     * Benchmarks looking up a batch of keys in a {@link TreeMap}.
+     * @param s The state
+     * @return the entries found
+     */
+    @Benchmark
+    public Object getAllJavaUtil(final JavaUtil s) {
+        final NavigableMap<Integer, Integer> found = new TreeMap<>();
+        for(Integer k: s.batch) {
+            final Integer v = s.map.get(k);
+            if (v != null) {
+                found.put(k, v);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Benchmarks looking up a batch of keys in a {@link PSortedMap}.
+     * @param s The state
+     * @return the entries found
+     */
+    @Benchmark
+    public Object getAllPCollections(final PCollections s) {
+        PSortedMap<Integer, Integer> found = TreePMap.empty();
+        for(Integer k: s.batch) {
+            final Integer v = s.map.get(k);
+            if (v != null) {
+                found = found.plus(k, v);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedMap#put(Object, Object)} of a key that is not present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object putImm(final Imm s) {
+        return s.map.put(s.probes.next() | 1, VALUE);
+    }
+
+    /**
+     * Benchmarks copying a {@link TreeMap} and putting a key that is not present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object putJavaUtil(final JavaUtil s) {
+        final Map<Integer, Integer> copy = new TreeMap<>(s.map);
+        copy.put(s.probes.next() | 1, VALUE);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PSortedMap#plus(Object, Object)} of a key that is not present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object putPCollections(final PCollections s) {
+        return s.map.plus(s.probes.next() | 1, VALUE);
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedMap#removeKey(Object)} of a key that is present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object removeKeyImm(final Imm s) {
+        return s.map.removeKey(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks copying a {@link TreeMap} and removing a key that is present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object removeKeyJavaUtil(final JavaUtil s) {
+        final Map<Integer, Integer> copy = new TreeMap<>(s.map);
+        copy.remove(s.probes.next() & ~1);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PSortedMap#minus(Object)} of a key that is present.
+     * @param s The state
+     * @return the new map
+     */
+    @Benchmark
+    public Object removeKeyPCollections(final PCollections s) {
+        return s.map.minus(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedMap#ceilingEntry(Object)}.
+     * @param s The state
+     * @return the entry found
+     */
+    @Benchmark
+    public Object ceilingEntryImm(final Imm s) {
+        return s.map.ceilingEntry(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link TreeMap#ceilingEntry(Object)}.
+     * @param s The state
+     * @return the entry found
+     */
+    @Benchmark
+    public Object ceilingEntryJavaUtil(final JavaUtil s) {
+        return s.map.ceilingEntry(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PSortedMap#ceilingEntry(Object)}.
+     * @param s The state
+     * @return the entry found
+     */
+    @Benchmark
+    public Object ceilingEntryPCollections(final PCollections s) {
+        return s.map.ceilingEntry(s.probes.next());
+    }
+
+    /**
+     * Benchmarks iterating the first hundred entries of a range of an {@link ImmSortedMap}, through its lazy view.
+     * @param s The state
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iterateRangeImm(final Imm s) {
+        return sum(s.map.asMap().tailMap(s.probes.next(), true));
+    }
+
+    /**
+     * Benchmarks iterating the first hundred entries of a range of a {@link TreeMap}.
+     * @param s The state
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iterateRangeJavaUtil(final JavaUtil s) {
+        return sum(s.map.tailMap(s.probes.next(), true));
+    }
+
+    /**
+     * Benchmarks iterating the first hundred entries of a range of a {@link PSortedMap}.
+     * @param s The state
+     * @return the sum of the values
+     */
+    @Benchmark
+    public long iterateRangePCollections(final PCollections s) {
+        return sum(s.map.tailMap(s.probes.next(), true));
+    }
+
+    // Sums the values of the first hundred entries.
+    private static long sum(final Map<Integer, Integer> map) {
+        long sum = 0;
+        int n = 0;
+        for(Map.Entry<Integer, Integer> e: map.entrySet()) {
+            if (n++ == 100) {
+                break;
+            }
+            sum += e.getValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,333 @@
+package collections.immutable.benchmarks;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pcollections.PSortedSet;
+import org.pcollections.TreePSet;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmSortedSet;
+
+/**
+ * {@link ImmSortedSet} operations, against a copy-on-write {@link TreeSet} and a {@link TreePSet}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImmSortedSetBenchmark {
+    /**
+     * An {@link ImmSortedSet} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Imm {
+        /**
+         * The size of the set.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        ImmSortedSet<Integer> set;
+        Probes probes;
+
+        /**
+         * Builds the set.
+         */
+        @Setup
+        public void setup() {
+            set = ImmCollections.asSortedSet(Probes.evens(size));
+            probes = new Probes(size * 2, 3);
+        }
+    }
+
+    /**
+     * A {@link TreeSet} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class JavaUtil {
+        /**
+         * The size of the set.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        TreeSet<Integer> set;
+        Probes probes;
+
+        /**
+         * Builds the set.
+         */
+        @Setup
+        public void setup() {
+            set = new TreeSet<>(Probes.evens(size));
+            probes = new Probes(size * 2, 3);
+        }
+    }
+
+    /**
+     * A {@link TreePSet} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class PCollections {
+        /**
+         * The size of the set.
+         */
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+        PSortedSet<Integer> set;
+        Probes probes;
+
+        /**
+         * Builds the set.
+         */
+        @Setup
+        public void setup() {
+            set = TreePSet.from(Probes.evens(size));
+            probes = new Probes(size * 2, 3);
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedSet#contains(Object)}, half hits and half misses.
+     * @param s The state
+     * @return whether the element was found
+     */
+    @Benchmark
+    public boolean containsImm(final Imm s) {
+        return s.set.contains(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link TreeSet#contains(Object)}, half hits and half misses.
+     * @param s The state
+     * @return whether the element was found
+     */
+    @Benchmark
+    public boolean containsJavaUtil(final JavaUtil s) {
+        return s.set.contains(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PSortedSet#contains(Object)}, half hits and half misses.
+     * @param s The state
+     * @return whether the element was found
+     */
+    @Benchmark
+    public boolean containsPCollections(final PCollections s) {
+        return s.set.contains(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedSet#add(Object)} of an element that is not present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object addImm(final Imm s) {
+        return s.set.add(s.probes.next() | 1);
+    }
+
+    /**
+     * Benchmarks copying a {@link TreeSet} and adding an element that is not present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object addJavaUtil(final JavaUtil s) {
+        final NavigableSet<Integer> copy = new TreeSet<>(s.set);
+        copy.add(s.probes.next() | 1);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PSortedSet#plus(Object)} of an element that is not present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object addPCollections(final PCollections s) {
+        return s.set.plus(s.probes.next() | 1);
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedSet#remove(Object)} of an element that is present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object removeImm(final Imm s) {
+        return s.set.remove(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks copying a {@link TreeSet} and removing an element that is present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object removeJavaUtil(final JavaUtil s) {
+        final NavigableSet<Integer> copy = new TreeSet<>(s.set);
+        copy.remove(s.probes.next() & ~1);
+        return copy;
+    }
+
+    /**
+     * Benchmarks {@link PSortedSet#minus(Object)} of an element that is present.
+     * @param s The state
+     * @return the new set
+     */
+    @Benchmark
+    public Object removePCollections(final PCollections s) {
+        return s.set.minus(s.probes.next() & ~1);
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedSet#ceiling(Object)}.
+     * @param s The state
+     * @return the element found
+     */
+    @Benchmark
+    public Integer ceilingImm(final Imm s) {
+        return s.set.ceiling(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link TreeSet#ceiling(Object)}.
+     * @param s The state
+     * @return the element found
+     */
+    @Benchmark
+    public Integer ceilingJavaUtil(final JavaUtil s) {
+        return s.set.ceiling(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link PSortedSet#ceiling(Object)}.
+     * @param s The state
+     * @return the element found
+     */
+    @Benchmark
+    public Integer ceilingPCollections(final PCollections s) {
+        return s.set.ceiling(s.probes.next());
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedSet#subSet(Object, Object)}, which builds a new tree.
+     * @param s The state
+     * @return the sub set
+     */
+    @Benchmark
+    public Object subSetImm(final Imm s) {
+        final int low = s.probes.next();
+        return s.set.subSet(low, low + s.size / 2);
+    }
+
+    /**
+     * Benchmarks copying a sub set of a {@link TreeSet}.
+     * @param s The state
+     * @return the sub set
+     */
+    @Benchmark
+    public Object subSetJavaUtil(final JavaUtil s) {
+        final int low = s.probes.next();
+        return new TreeSet<>(s.set.subSet(low, low + s.size / 2));
+    }
+
+    /**
+     * Benchmarks {@link PSortedSet#subSet(Object, Object)}.
+     * @param s The state
+     * @return the sub set
+     */
+    @Benchmark
+    public Object subSetPCollections(final PCollections s) {
+        final int low = s.probes.next();
+        return s.set.subSet(low, low + s.size / 2);
+    }
+
+    /**
+     * Benchmarks {@link ImmSortedSet#countRange(Object, Object)}.
+     * @param s The state
+     * @return the number of elements in the range
+     */
+    @Benchmark
+    public int countRangeImm(final Imm s) {
+        final int low = s.probes.next();
+        return s.set.countRange(low, low + s.size / 2);
+    }
+
+    /**
+     * Benchmarks counting a sub set of a {@link TreeSet}, which walks it.
+     * @param s The state
+     * @return the number of elements in the range
+     */
+    @Benchmark
+    public int countRangeJavaUtil(final JavaUtil s) {
+        final int low = s.probes.next();
+        return s.set.subSet(low, low + s.size / 2).size();
+    }
+
+    /**
+     * Benchmarks counting a sub set of a {@link PSortedSet}.
+     * @param s The state
+     * @return the number of elements in the range
+     */
+    @Benchmark
+    public int countRangePCollections(final PCollections s) {
+        final int low = s.probes.next();
+        return s.set.subSet(low, low + s.size / 2).size();
+    }
+
+    /**
+     * Benchmarks iterating an {@link ImmSortedSet}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iterateImm(final Imm s) {
+        long sum = 0;
+        for(Integer e: s.set) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link TreeSet}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iterateJavaUtil(final JavaUtil s) {
+        long sum = 0;
+        for(Integer e: s.set) {
+            sum += e;
+        }
+        return sum;
+    }
+
+    /**
+     * Benchmarks iterating a {@link PSortedSet}.
+     * @param s The state
+     * @return the sum of the elements
+     */
+    @Benchmark
+    public long iteratePCollections(final PCollections s) {
+        long sum = 0;
+        for(Integer e: s.set) {
+            sum += e;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,69 @@
+package collections.immutable.benchmarks;
+
+//
+// Counts latencies in nanoseconds in log-linear buckets, 16 to each power of two, so a percentile
+// is within about 6% of the true value. Recording allocates nothing, so it does not disturb the
+// allocation rate being measured.
+//
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+    private long total;
+    private long max;
+
+    void record(final long nanos) {
+        final long v = Math.max(0, nanos);
+        counts[index(v)]++;
+        total++;
+        max = Math.max(max, v);
+    }
+
+    void add(final LatencyHistogram other) {
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    // The least recorded value, to bucket precision, that is at least the given fraction of all values.
+    long percentile(final double fraction) {
+        final long rank = (long)Math.ceil(fraction * total);
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(max, value(i));
+            }
+        }
+        return max;
+    }
+
+    private static int index(final long v) {
+        if (v < SUB) {
+            return (int)v;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(v);
+        final int sub = (int)(v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    // The upper bound of the bucket.
+    private static long value(final int index) {
+        if (index < SUB) {
+            return index;
+        }
+        final int exp = index / SUB + SUB_BITS - 1;
+        final long sub = index % SUB;
+        return ((SUB + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+}
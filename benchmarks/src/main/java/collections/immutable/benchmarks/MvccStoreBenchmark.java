@@ -0,0 +1,182 @@
+package collections.immutable.benchmarks;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmMvccStore;
+
+/**
+ * Read-heavy transactions against an {@link ImmMvccStore}, and against a {@link TreeMap} behind a read write lock,
+ * the lock-based store it replaces.
+ * <p>A transaction reads {@value #READS} keys, and one in <code>writeEvery</code> transactions then increments one of them.
+ * An optimistic transaction that conflicts is retried until it commits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class MvccStoreBenchmark {
+    private static final int READS = 4;
+
+    /**
+     * The keys and the mix of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        /**
+         * The number of keys.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        /**
+         * One in this many transactions writes.
+         */
+        @Param({"10", "100"})
+        public int writeEvery;
+        Probes probes;
+        final Integer[] keys = new Integer[READS];
+        int transactions;
+
+        /**
+         * Draws the keys.
+         */
+        @Setup
+        public void setup() {
+            probes = new Probes(size * 2, Thread.currentThread().getId());
+        }
+
+        // Draws the keys of the next transaction, and whether it writes.
+        boolean next() {
+            for(int i = 0; i < READS; i++) {
+                keys[i] = probes.next();
+            }
+            return ++transactions % writeEvery == 0;
+        }
+    }
+
+    /**
+     * An {@link ImmMvccStore} of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Mvcc {
+        /**
+         * The number of keys.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        ImmMvccStore<Integer, Integer> store;
+
+        /**
+         * Builds the store.
+         */
+        @Setup
+        public void setup() {
+            store = ImmMvccStore.of(ImmCollections.asSortedMap(Integer::compare, ImmMapBenchmark.contents(size)));
+        }
+    }
+
+    /**
+     * A {@link TreeMap} of the even numbers behind a read write lock.
+     */
+    @State(Scope.Benchmark)
+    public static class Locked {
+        /**
+         * The number of keys.
+         */
+        @Param({"1000", "100000"})
+        public int size;
+        TreeMap<Integer, Integer> map;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * Builds the store.
+         */
+        @Setup
+        public void setup() {
+            map = new TreeMap<>(ImmMapBenchmark.contents(size));
+        }
+    }
+
+    private static int increment(final Integer value) {
+        return value == null ? 1 : value + 1;
+    }
+
+    /**
+     * Benchmarks a transaction of an {@link ImmMvccStore}.
+     * @param s The store
+     * @param c The client
+     * @return the sum of the values read
+     */
+    @Benchmark
+    public long transactionMvcc(final Mvcc s, final Client c) {
+        final boolean writes = c.next();
+        while(true) {
+            try (ImmMvccStore.Transaction<Integer, Integer> tx = s.store.begin()) {
+                long sum = 0;
+                for(Integer key: c.keys) {
+                    final Integer value = tx.get(key);
+                    sum += value == null ? 0 : value;
+                }
+                if (!writes) {
+                    return sum;
+                }
+                tx.put(c.keys[0], increment(tx.get(c.keys[0])));
+                if (tx.commit()) {
+                    return sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Benchmarks a transaction of a {@link TreeMap} behind a read write lock.
+     * @param s The store
+     * @param c The client
+     * @return the sum of the values read
+     */
+    @Benchmark
+    public long transactionLocked(final Locked s, final Client c) {
+        final boolean writes = c.next();
+        final ReentrantReadWriteLock.ReadLock readLock = s.lock.readLock();
+        final ReentrantReadWriteLock.WriteLock writeLock = s.lock.writeLock();
+        if (writes) {
+            writeLock.lock();
+        } else {
+            readLock.lock();
+        }
+        try {
+            long sum = 0;
+            for(Integer key: c.keys) {
+                final Integer value = s.map.get(key);
+                sum += value == null ? 0 : value;
+            }
+            if (writes) {
+                s.map.put(c.keys[0], increment(s.map.get(c.keys[0])));
+            }
+            return sum;
+        } finally {
+            if (writes) {
+                writeLock.unlock();
+            } else {
+                readLock.unlock();
+            }
+        }
+    }
+}
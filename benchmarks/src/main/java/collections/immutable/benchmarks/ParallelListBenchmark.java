@@ -0,0 +1,116 @@
+package collections.immutable.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmCollectors;
+import collections.immutable.ImmList;
+
+/**
+ * The parallel filter, map and reduce of an {@link ImmList}, against the sequential ones.
+ * <p>The speedup is the ratio of the two times; the parallelism is that of the common pool,
+ * set with <code>-Djava.util.concurrent.ForkJoinPool.common.parallelism</code>.
+ * Sizes of 50 million elements need a large heap:
+ * <pre>{@code
+ *     java -Xmx16g -jar benchmarks/target/benchmarks.jar ParallelListBenchmark -p size=50000000
+ * }</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelListBenchmark {
+    /**
+     * A list of the even numbers.
+     */
+    @State(Scope.Benchmark)
+    public static class Imm {
+        /**
+         * The size of the list.
+         */
+        @Param({"100000", "10000000"})
+        public int size;
+        ImmList<Integer> list;
+
+        /**
+         * Builds the list.
+         */
+        @Setup
+        public void setup() {
+            list = ImmCollections.asList(Probes.evens(size));
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmList#filter}, keeping one element in four.
+     * @param s The state
+     * @return the filtered list
+     */
+    @Benchmark
+    public ImmList<Integer> filter(final Imm s) {
+        return s.list.filter(i -> (i & 6) == 0);
+    }
+
+    /**
+     * Benchmarks {@link ImmList#parallelFilter}, keeping one element in four.
+     * @param s The state
+     * @return the filtered list
+     */
+    @Benchmark
+    public ImmList<Integer> parallelFilter(final Imm s) {
+        return s.list.parallelFilter(i -> (i & 6) == 0);
+    }
+
+    /**
+     * Benchmarks mapping every element into a new list, sequentially.
+     * @param s The state
+     * @return the mapped list
+     */
+    @Benchmark
+    public ImmList<Integer> map(final Imm s) {
+        return s.list.stream().map(i -> i + 1).collect(ImmCollectors.toImmList());
+    }
+
+    /**
+     * Benchmarks {@link ImmList#parallelMap}.
+     * @param s The state
+     * @return the mapped list
+     */
+    @Benchmark
+    public ImmList<Integer> parallelMap(final Imm s) {
+        return s.list.parallelMap(i -> i + 1);
+    }
+
+    /**
+     * Benchmarks summing the elements, sequentially.
+     * @param s The state
+     * @return the sum
+     */
+    @Benchmark
+    public Integer reduce(final Imm s) {
+        return s.list.stream().reduce(0, Integer::sum);
+    }
+
+    /**
+     * Benchmarks {@link ImmList#parallelReduce}, summing the elements.
+     * @param s The state
+     * @return the sum
+     */
+    @Benchmark
+    public Integer parallelReduce(final Imm s) {
+        return s.list.parallelReduce(0, Integer::sum);
+    }
+}
@@ -0,0 +1,36 @@
+package collections.immutable.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//
+// Random values in [0, bound), replayed in a cycle so that each invocation of a benchmark
+// probes a different place without paying for a random number generator.
+//
+final class Probes {
+    private static final int COUNT = 1024;
+    private final int[] values = new int[COUNT];
+    private int next;
+
+    Probes(final int bound, final long seed) {
+        final Random random = new Random(seed);
+        for(int i = 0; i < COUNT; i++) {
+            values[i] = random.nextInt(bound);
+        }
+    }
+
+    int next() {
+        return values[next++ & (COUNT - 1)];
+    }
+
+    // The contents of a collection of the given size, the even numbers in order.
+    // Odd numbers are never present, so they make misses and new keys.
+    static List<Integer> evens(final int size) {
+        final List<Integer> elements = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            elements.add(i * 2);
+        }
+        return elements;
+    }
+}
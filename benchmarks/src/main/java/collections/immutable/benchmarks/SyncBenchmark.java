@@ -0,0 +1,173 @@
+package collections.immutable.benchmarks;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import collections.immutable.ImmCodec;
+import collections.immutable.ImmCollections;
+import collections.immutable.ImmSortedMap;
+import collections.immutable.ImmSync;
+
+/**
+ * The bytes {@link ImmSync} exchanges to bring a replica of a sorted map up to date, against the size of the map.
+ * <p>The source and the replica differ in a given number of values, spread over the key space, and each sync
+ * runs the source in another thread, connected to the replica by a pair of pipes.
+ * Besides the time of a sync, the run reports the <code>bytes</code> and <code>syncs</code> counters;
+ * their ratio is the bytes one sync exchanges, which should grow with the log of the size, not with the size:
+ * <pre>{@code
+ *     java -jar benchmarks/target/benchmarks.jar SyncBenchmark -p size=1000,1000000 -p differences=1
+ * }</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncBenchmark {
+    private static final ImmCodec<Integer> INTS = ImmCodec.ofInteger();
+
+    /**
+     * A source map of the even numbers, and a replica of it with some values changed, both with their digests bound.
+     */
+    @State(Scope.Benchmark)
+    public static class Maps {
+        /**
+         * The size of the map.
+         */
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+        /**
+         * The number of values that differ between the source and the replica.
+         */
+        @Param({"1", "100"})
+        public int differences;
+        ImmSortedMap<Integer, Integer> source;
+        ImmSortedMap<Integer, Integer> replica;
+        ExecutorService server;
+
+        /**
+         * Builds the maps, and starts the thread serving the source.
+         */
+        @Setup
+        public void setup() {
+            source = ImmSync.withDigests(ImmCollections.asSortedMap(ImmMapBenchmark.contents(size).entrySet()), INTS, INTS);
+            ImmSortedMap<Integer, Integer> r = source;
+            for(int i = 0; i < differences; i++) {
+                final int key = (int)((long)i * size / differences) * 2;
+                r = r.put(key, -1);
+            }
+            replica = r;
+            server = Executors.newSingleThreadExecutor();
+        }
+
+        /**
+         * Stops the thread serving the source.
+         */
+        @TearDown
+        public void tearDown() {
+            server.shutdownNow();
+        }
+    }
+
+    /**
+     * The bytes exchanged, in both directions, and the number of syncs that exchanged them.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Exchanged {
+        /**
+         * The bytes exchanged.
+         */
+        public long bytes;
+        /**
+         * The number of syncs.
+         */
+        public long syncs;
+
+        /**
+         * Clears the counters.
+         */
+        @Setup(Level.Iteration)
+        public void clear() {
+            bytes = 0;
+            syncs = 0;
+        }
+    }
+
+    // Counts the bytes written through it.
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            count++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            count += len;
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Benchmarks {@link ImmSync#pull(ImmSortedMap, ImmCodec, ImmCodec, java.io.InputStream, OutputStream)}
+     * against {@link ImmSync#serve(ImmSortedMap, ImmCodec, ImmCodec, java.io.InputStream, OutputStream)}.
+     * @param s The maps
+     * @param exchanged The counters of the bytes exchanged
+     * @return the replica brought up to date
+     * @throws IOException if the exchange fails
+     * @throws InterruptedException if interrupted while waiting for the source
+     * @throws ExecutionException if the source fails
+     */
+    @Benchmark
+    public ImmSortedMap<Integer, Integer> sync(final Maps s, final Exchanged exchanged) throws IOException, InterruptedException, ExecutionException {
+        final PipedInputStream serverIn = new PipedInputStream(1 << 16);
+        final PipedInputStream clientIn = new PipedInputStream(1 << 16);
+        final CountingOutputStream clientOut = new CountingOutputStream(new PipedOutputStream(serverIn));
+        final CountingOutputStream serverOut = new CountingOutputStream(new PipedOutputStream(clientIn));
+        final Future<?> served = s.server.submit(() -> {
+            try {
+                ImmSync.serve(s.source, INTS, INTS, serverIn, serverOut);
+                serverOut.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        final ImmSortedMap<Integer, Integer> result = ImmSync.pull(s.replica, INTS, INTS, clientIn, clientOut);
+        clientOut.close();
+        served.get();
+        exchanged.bytes += clientOut.count + serverOut.count;
+        exchanged.syncs++;
+        return result;
+    }
+}
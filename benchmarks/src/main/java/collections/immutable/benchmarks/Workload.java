@@ -0,0 +1,65 @@
+package collections.immutable.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+
+//
+// The shape of a replayed workload, parsed from --name=value arguments.
+// Every field has a default, so an empty command line runs a read-mostly, skewed mix.
+//
+final class Workload {
+    // The engines to compare, run one after the other.
+    List<String> engines = Arrays.asList("imm");
+    // The number of distinct keys, all of them loaded before the run.
+    int keys = 1000000;
+    // The fraction of operations that are reads; the rest are writes.
+    double reads = 0.9;
+    // The Zipf exponent of the key popularity, 0 for uniform.
+    double skew = 0.99;
+    // The number of keys written by one write.
+    int batch = 1;
+    // The number of old versions kept live besides the current one; reads pick one of them at random.
+    int retain = 16;
+    // The number of threads issuing operations.
+    int threads = 4;
+    // The seconds run before measuring, and the seconds measured.
+    int warmup = 10;
+    int duration = 30;
+    long seed = 42;
+
+    static Workload parse(final String[] args) {
+        final Workload w = new Workload();
+        for(String arg: args) {
+            final int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value: " + arg);
+            }
+            final String name = arg.substring(2, eq);
+            final String value = arg.substring(eq + 1);
+            switch(name) {
+                case "engines": w.engines = Arrays.asList(value.split(",")); break;
+                case "keys": w.keys = Integer.parseInt(value); break;
+                case "reads": w.reads = Double.parseDouble(value); break;
+                case "skew": w.skew = Double.parseDouble(value); break;
+                case "batch": w.batch = Integer.parseInt(value); break;
+                case "retain": w.retain = Integer.parseInt(value); break;
+                case "threads": w.threads = Integer.parseInt(value); break;
+                case "warmup": w.warmup = Integer.parseInt(value); break;
+                case "duration": w.duration = Integer.parseInt(value); break;
+                case "seed": w.seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("unknown option: " + name);
+            }
+        }
+        if (w.keys < 1 || w.batch < 1 || w.retain < 0 || w.threads < 1 || w.reads < 0 || w.reads > 1 || w.skew < 0) {
+            throw new IllegalArgumentException("invalid workload: " + w);
+        }
+        return w;
+    }
+
+    @Override
+    public String toString() {
+        return "engines=" + String.join(",", engines) + " keys=" + keys + " reads=" + reads + " skew=" + skew
+                + " batch=" + batch + " retain=" + retain + " threads=" + threads
+                + " warmup=" + warmup + "s duration=" + duration + "s seed=" + seed;
+    }
+}
@@ -0,0 +1,269 @@
+package collections.immutable.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Replays a production-shaped workload against one or more map engines, with many versions live at once.
+ * <p>Unlike the JMH suites, which time one operation on one version, a replay runs a mix of reads and writes
+ * from several threads for a fixed time, keeping a number of old versions reachable the way long-lived
+ * readers do, so that the garbage collector and the caches see the heap a service would.
+ * For each engine it reports the throughput, the read and write latency percentiles, the allocation rate,
+ * the garbage collections, and the heap retained by the live versions.
+ * <p>Options, all of them optional, are given as {@code --name=value}:
+ * <ul>
+ * <li>{@code engines}: a comma separated list of {@code imm}, {@code imm-sorted}, {@code pcollections},
+ * {@code pcollections-sorted}, {@code cow} and {@code cow-sorted}, the last two being copy-on-write java.util maps
+ * <li>{@code keys}: the number of distinct keys, all loaded before the run
+ * <li>{@code reads}: the fraction of operations that are reads
+ * <li>{@code skew}: the Zipf exponent of the key popularity, 0 for uniform
+ * <li>{@code batch}: the number of keys written by one write
+ * <li>{@code retain}: the number of old versions kept live, which reads pick from at random
+ * <li>{@code threads}, {@code warmup} and {@code duration}: the threads issuing operations, and the seconds run before and while measuring
+ * <li>{@code seed}: the seed of the random choices
+ * </ul>
+ * <pre>{@code
+ *     java -cp benchmarks/target/benchmarks.jar collections.immutable.benchmarks.WorkloadMain \
+ *         --engines=imm,pcollections --keys=1000000 --reads=0.95 --skew=1.1 --batch=10 --retain=64 --threads=8
+ * }</pre>
+ */
+public final class WorkloadMain {
+    private WorkloadMain() {
+    }
+
+    /**
+     * Replays the workload against each engine in turn, printing a report for each.
+     * @param args The options
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final Workload workload = Workload.parse(args);
+        System.out.println(workload);
+        for(String name: workload.engines) {
+            new Replay<>(Engine.named(name), workload).run();
+        }
+    }
+
+    // The state shared by the threads of one replay: the current version, and the old versions kept live.
+    private static final class Replay<M> {
+        private final Engine<M> engine;
+        private final Workload workload;
+        private final Zipf zipf;
+        // The keys in popularity order, shuffled so that the popular ones are spread over the key space.
+        private final Integer[] keys;
+        private final AtomicReference<M> current;
+        private final AtomicReferenceArray<M> retained;
+        private long versions;
+
+        Replay(final Engine<M> engine, final Workload workload) {
+            this.engine = engine;
+            this.workload = workload;
+            this.zipf = new Zipf(workload.keys, workload.skew);
+            this.keys = new Integer[workload.keys];
+            final SplittableRandom random = new SplittableRandom(workload.seed);
+            final Map<Integer, Integer> contents = new HashMap<>();
+            for(int i = 0; i < keys.length; i++) {
+                final int j = random.nextInt(i + 1);
+                keys[i] = keys[j];
+                keys[j] = i;
+                contents.put(i, i);
+            }
+            this.current = new AtomicReference<>(engine.load(contents));
+            this.retained = new AtomicReferenceArray<>(workload.retain);
+        }
+
+        void run() throws InterruptedException {
+            System.out.println();
+            System.out.println("engine " + engine.name);
+            phase(workload.warmup);
+            final List<GarbageCollectorMXBean> gcs = ManagementFactory.getGarbageCollectorMXBeans();
+            final long gcCount = gcCount(gcs);
+            final long gcTime = gcTime(gcs);
+            final List<Worker> workers = phase(workload.duration);
+            final long collections = gcCount(gcs) - gcCount;
+            final long collectionTime = gcTime(gcs) - gcTime;
+
+            final LatencyHistogram reads = new LatencyHistogram();
+            final LatencyHistogram writes = new LatencyHistogram();
+            long allocated = 0;
+            for(Worker w: workers) {
+                reads.add(w.reads);
+                writes.add(w.writes);
+                allocated = w.allocated < 0 || allocated < 0 ? -1 : allocated + w.allocated;
+            }
+            final long ops = reads.count() + writes.count();
+            final double seconds = workload.duration;
+            System.out.printf("  throughput     %.0f ops/s (%.0f reads/s, %.0f writes/s)%n", ops / seconds, reads.count() / seconds, writes.count() / seconds);
+            System.out.println("  read latency   " + percentiles(reads));
+            System.out.println("  write latency  " + percentiles(writes));
+            if (allocated >= 0) {
+                System.out.printf("  allocation     %.1f MB/s, %d bytes/op%n", allocated / seconds / 1e6, ops == 0 ? 0 : allocated / ops);
+            } else {
+                System.out.println("  allocation     not measurable on this JVM");
+            }
+            System.out.printf("  gc             %d collections, %d ms%n", collections, collectionTime);
+
+            final int live = live();
+            final long withVersions = usedHeapAfterGc();
+            current.set(null);
+            for(int i = 0; i < retained.length(); i++) {
+                retained.set(i, null);
+            }
+            final long withoutVersions = usedHeapAfterGc();
+            System.out.printf("  retained heap  %.1f MB by %d live versions%n", (withVersions - withoutVersions) / 1e6, live);
+        }
+
+        // Runs the threads for the given number of seconds.
+        private List<Worker> phase(final int seconds) throws InterruptedException {
+            final List<Worker> workers = new ArrayList<>();
+            for(int i = 0; i < workload.threads; i++) {
+                workers.add(new Worker(this, new SplittableRandom(workload.seed + versions + i)));
+            }
+            for(Worker w: workers) {
+                w.start();
+            }
+            Thread.sleep(seconds * 1000L);
+            for(Worker w: workers) {
+                w.stopping = true;
+            }
+            for(Worker w: workers) {
+                w.join();
+            }
+            return workers;
+        }
+
+        Integer key(final SplittableRandom random) {
+            return keys[zipf.next(random) - 1];
+        }
+
+        // The current version, or one of the old versions kept live.
+        M version(final SplittableRandom random) {
+            final int slot = random.nextInt(workload.retain + 1);
+            final M m = slot == workload.retain ? null : retained.get(slot);
+            return m == null ? current.get() : m;
+        }
+
+        void write(final Map<Integer, Integer> batch) {
+            while(true) {
+                final M m = current.get();
+                final M next = engine.putAll(m, batch);
+                if (current.compareAndSet(m, next)) {
+                    if (workload.retain > 0) {
+                        synchronized(this) {
+                            retained.set((int)(versions++ % workload.retain), m);
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+
+        private int live() {
+            int live = 1;
+            for(int i = 0; i < retained.length(); i++) {
+                live += retained.get(i) == null ? 0 : 1;
+            }
+            return live;
+        }
+    }
+
+    // A thread issuing the mix of operations, timing each one.
+    private static final class Worker extends Thread {
+        private final Replay<?> replay;
+        private final SplittableRandom random;
+        final LatencyHistogram reads = new LatencyHistogram();
+        final LatencyHistogram writes = new LatencyHistogram();
+        volatile boolean stopping;
+        // The bytes this thread allocated, or -1 if the JVM cannot tell.
+        long allocated = -1;
+        // Keeps the results of reads live, so they are not optimized away.
+        int found;
+
+        Worker(final Replay<?> replay, final SplittableRandom random) {
+            this.replay = replay;
+            this.random = random;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            final long before = allocatedBytes();
+            replay(replay);
+            final long after = allocatedBytes();
+            allocated = before < 0 || after < 0 ? -1 : after - before;
+        }
+
+        private <M> void replay(final Replay<M> r) {
+            final Map<Integer, Integer> batch = new HashMap<>();
+            final double readRatio = r.workload.reads;
+            while(!stopping) {
+                if (random.nextDouble() < readRatio) {
+                    final M m = r.version(random);
+                    final Integer key = r.key(random);
+                    final long start = System.nanoTime();
+                    found += r.engine.get(m, key) == null ? 0 : 1;
+                    reads.record(System.nanoTime() - start);
+                } else {
+                    batch.clear();
+                    for(int i = 0; i < r.workload.batch; i++) {
+                        batch.put(r.key(random), r.key(random));
+                    }
+                    final long start = System.nanoTime();
+                    r.write(batch);
+                    writes.record(System.nanoTime() - start);
+                }
+            }
+        }
+
+        private static long allocatedBytes() {
+            if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+            if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+                return -1;
+            }
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    private static String percentiles(final LatencyHistogram h) {
+        if (h.count() == 0) {
+            return "none";
+        }
+        return String.format("p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+                h.percentile(0.5), h.percentile(0.9), h.percentile(0.99), h.percentile(0.999), h.max());
+    }
+
+    private static long gcCount(final List<GarbageCollectorMXBean> gcs) {
+        long count = 0;
+        for(GarbageCollectorMXBean gc: gcs) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime(final List<GarbageCollectorMXBean> gcs) {
+        long time = 0;
+        for(GarbageCollectorMXBean gc: gcs) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    // The heap in use once the garbage is collected, as far as System.gc() can be relied on.
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
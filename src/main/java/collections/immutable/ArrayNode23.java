@@ -0,0 +1,316 @@
+package collections.immutable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//The root of a small tree, 2 to MAX elements, kept in a flat array rather than as leaves and branches.
+//Lists, sets and maps that small are searched by linear scans and edited by copying the array.
+//TreeList23 flattens every tree that small it is given, and a tree that grows past MAX becomes a tree again.
+//
+//Algorithms that walk the branches of a node see the tree built from the array by TreeList23.build,
+//which getBranch builds anew on each call.   Those that walk a tree several times expand it once first.
+final class ArrayNode23<E> implements Node23<E> {
+    // The most elements held in an array.
+    static final int MAX = 8;
+
+    private final E[] elements;
+
+    private ArrayNode23(final E[] elements) {
+        assert elements.length >= 2 && elements.length <= MAX;
+        this.elements = elements;
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.NODE_ALLOCATIONS);
+        }
+    }
+
+    // The elements of a tree of 2 to MAX elements, in an array.
+    static <E> ArrayNode23<E> of(final Node23<E> node) {
+        assert node.size() >= 2 && node.size() <= MAX;
+        final E[] elements = newArray(node.size());
+        collect(node, elements, 0);
+        return new ArrayNode23<>(elements);
+    }
+
+    // The node holding a copy of elements[low, high), which is null, a leaf or an array.
+    static <E> Node23<E> of(final E[] elements, final int low, final int high) {
+        final int n = high - low;
+        return n == 0 ? null : n == 1 ? new Leaf<>(elements[low]) : new ArrayNode23<>(Arrays.copyOfRange(elements, low, high));
+    }
+
+    private static <E> int collect(final Node23<E> node, final E[] elements, int pos) {
+        if (node.isLeaf()) {
+            elements[pos++] = node.leafValue();
+        } else if (node instanceof ArrayNode23) {
+            final E[] other = ((ArrayNode23<E>)node).elements;
+            System.arraycopy(other, 0, elements, pos, other.length);
+            pos += other.length;
+        } else {
+            for(int i = 0; i < node.numBranches(); i++) {
+                pos = collect(node.getBranch(i), elements, pos);
+            }
+        }
+        return pos;
+    }
+
+    private static <E> E[] newArray(final int n) {
+        @SuppressWarnings("unchecked")
+        final E[] elements = (E[])new Object[n];
+        return elements;
+    }
+
+    // Whether a node can be joined with an array by copying: none, a leaf or an array.
+    static boolean isFlat(final Node23<?> node) {
+        return node == null || node instanceof Leaf || node instanceof ArrayNode23;
+    }
+
+    // The tree of an array or a frozen array, for algorithms that walk branches, or node itself.
+    static <E> Node23<E> expand(final Node23<E> node) {
+        return node instanceof ArrayNode23 ? ((ArrayNode23<E>)node).tree() :
+            node instanceof FrozenNode23 ? ((FrozenNode23<E>)node).tree() :
+            node;
+    }
+
+    // The elements of flat nodes lhs[0, low) + other + lhs[high, ...), which must come to at most MAX.
+    static <E> Node23<E> splice(final Node23<E> lhs, final int low, final int high, final Node23<E> other) {
+        assert isFlat(lhs) && isFlat(other);
+        final int n = size(lhs) - (high - low) + size(other);
+        assert n <= MAX;
+        final E[] elements = newArray(n);
+        for(int i = 0; i < low; i++) {
+            elements[i] = lhs.get(i);
+        }
+        if (other != null) {
+            collect(other, elements, low);
+        }
+        for(int i = high, j = low + size(other); i < size(lhs); i++, j++) {
+            elements[j] = lhs.get(i);
+        }
+        return of(elements, 0, n);
+    }
+
+    private static int size(final Node23<?> node) {
+        return node == null ? 0 : node.size();
+    }
+
+    private Node23<E> tree() {
+        @SuppressWarnings("rawtypes")
+        final Node23[] n = new Node23[elements.length];
+        @SuppressWarnings("unchecked")
+        final Node23<E>[] leaves = n;
+        for(int i = 0; i < elements.length; i++) {
+            leaves[i] = new Leaf<>(elements[i]);
+        }
+        return TreeList23.build(leaves);
+    }
+
+    // A copy with elements[index] replaced.
+    ArrayNode23<E> set(final int index, final E element) {
+        final E[] copy = elements.clone();
+        copy[index] = element;
+        return new ArrayNode23<>(copy);
+    }
+
+    // Index of the first element whose key is >= key, or > key when strict, or size() if there is none.
+    <K> int position(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        int i = 0;
+        while(i < elements.length && before(TreeList23.compare(comparator, keyOf.apply(elements[i]), key), strict)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Index of the element whose key equals key, or -1 if there is none.
+    <K> int indexOf(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key) {
+        for(int i = 0; i < elements.length; i++) {
+            final int cmp = TreeList23.compare(comparator, keyOf.apply(elements[i]), key);
+            if (cmp >= 0) {
+                return cmp == 0 ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    // The least element whose key is >= key, or > key when strict, or null if there is none.
+    <K> E ceiling(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        final int i = position(keyOf, comparator, key, strict);
+        return i < elements.length ? elements[i] : null;
+    }
+
+    // The greatest element whose key is <= key, or < key when strict, or null if there is none.
+    <K> E floor(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        final int i = position(keyOf, comparator, key, !strict);
+        return i > 0 ? elements[i - 1] : null;
+    }
+
+    // Passes each element whose key is among the sorted keys to found, in order, scanning on from the last one found.
+    <K> void findAll(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final List<? extends K> keys, final Consumer<? super E> found) {
+        int i = 0;
+        for(K key: keys) {
+            int cmp = -1;
+            while(i < elements.length && (cmp = TreeList23.compare(comparator, keyOf.apply(elements[i]), key)) < 0) {
+                i++;
+            }
+            if (i == elements.length) {
+                return;
+            }
+            if (cmp == 0) {
+                found.accept(elements[i++]);
+            }
+        }
+    }
+
+    private static boolean before(final int cmp, final boolean strict) {
+        return strict ? cmp <= 0 : cmp < 0;
+    }
+
+    // Iterates the elements in [low, high).
+    SeekableIterator<E> iterator(final int low, final int high) {
+        return new ArrayRangeIterator<>(elements, low, high);
+    }
+
+    // The hash and equality of the elements, by which ImmInterner shares arrays.
+    int elementsHash() {
+        return Arrays.hashCode(elements);
+    }
+
+    boolean sameElements(final ArrayNode23<?> other) {
+        return Arrays.equals(elements, other.elements);
+    }
+
+    @Override
+    public E leafValue() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return false;
+    }
+
+    @Override
+    public Node23<E> getBranch(final int which) {
+        return tree().getBranch(which);
+    }
+
+    @Override
+    public Node23<E> reverse() {
+        final E[] reversed = newArray(elements.length);
+        for(int i = 0; i < elements.length; i++) {
+            reversed[i] = elements[elements.length - 1 - i];
+        }
+        return new ArrayNode23<>(reversed);
+    }
+
+    // The shape of the tree TreeList23.build makes of 2 to 8 leaves.
+    @Override
+    public int numBranches() {
+        return elements.length <= 3 ? elements.length : elements.length <= 6 ? 2 : 3;
+    }
+
+    @Override
+    public int getDepth() {
+        return elements.length <= 3 ? 2 : 3;
+    }
+
+    @Override
+    public E get(final int index) {
+        return elements[index];
+    }
+
+    @Override
+    public boolean isValid(final int depth) {
+        return depth == getDepth() && elements.length >= 2 && elements.length <= MAX && tree().numBranches() == numBranches();
+    }
+
+    @Override
+    public E last() {
+        return elements[elements.length - 1];
+    }
+
+    @Override
+    public E first() {
+        return elements[0];
+    }
+
+    @Override
+    public <F> Node23<F> map(final Function<E, F> f) {
+        return new MappedNode23<E, F>(this, f);
+    }
+
+    @Override
+    public Node23<E> head(final int index) {
+        return index >= elements.length ? this : of(elements, 0, Math.max(0, index));
+    }
+
+    @Override
+    public Node23<E> tail(final int index) {
+        return index <= 0 ? this : of(elements, Math.min(index, elements.length), elements.length);
+    }
+
+    @Override
+    public <T> T binarySearch(final Function<? super E, Integer> comparator, final BiFunction<E, Integer, T> leafVisitor) {
+        int i = 0;
+        while(i < elements.length - 1 && comparator.apply(elements[i]) > 0) {
+            i++;
+        }
+        return leafVisitor.apply(elements[i], i);
+    }
+
+    @Override
+    public <S> S summary(final ImmMonoid<? super E, S> monoid) {
+        return summary(0, elements.length, monoid);
+    }
+
+    @Override
+    public <S> S summary(final int low, final int high, final ImmMonoid<? super E, S> monoid) {
+        final int l = Math.max(0, low);
+        S result = monoid.of(elements[l]);
+        for(int i = l + 1; i < Math.min(high, elements.length); i++) {
+            result = monoid.combine(result, monoid.of(elements[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public SeekableIterator<E> iterator() {
+        return new ArrayRangeIterator<>(elements, 0, elements.length);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), 0);
+    }
+
+    @Override
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return hc();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return eq(obj);
+    }
+}
@@ -0,0 +1,78 @@
+package collections.immutable;
+
+import java.util.NoSuchElementException;
+
+//Iterates elements[low, high) of an array, allocating nothing more.
+//The iterator of the flat nodes ArrayNode23 and FrozenNode23.
+final class ArrayRangeIterator<E> implements SeekableIterator<E> {
+    private final E[] elements;
+    private final int low;
+    private final int high;
+    private int cursor;
+
+    ArrayRangeIterator(final E[] elements, final int low, final int high) {
+        this.elements = elements;
+        this.low = low;
+        this.high = high;
+        this.cursor = low;
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.ITERATORS);
+        }
+    }
+
+    @Override
+    public void toEnd() {
+        cursor = high;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < high;
+    }
+
+    @Override
+    public E next() {
+        if (cursor >= high) {
+            throw new NoSuchElementException();
+        }
+        return elements[cursor++];
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return cursor > low;
+    }
+
+    @Override
+    public E previous() {
+        if (cursor <= low) {
+            throw new NoSuchElementException();
+        }
+        return elements[--cursor];
+    }
+
+    @Override
+    public int nextIndex() {
+        return cursor - low;
+    }
+
+    @Override
+    public int previousIndex() {
+        return cursor - low - 1;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void set(final E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(final E e) {
+        throw new UnsupportedOperationException();
+    }
+}
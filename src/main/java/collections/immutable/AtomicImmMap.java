@@ -0,0 +1,169 @@
+package collections.immutable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * A thread safe, mutable holder of an {@link ImmMap}, updated atomically through an {@link ImmRef}.
+ * <p>Readers take a {@link #snapshot()}, which is never affected by later updates.
+ * <p>Example:
+ * <pre>{@code
+ *     AtomicImmMap<String, Integer> counts = AtomicImmMap.combining(ImmCollections.emptySortedMap());
+ *     counts.compute("a", (k, v) -> v == null ? 1 : v + 1);
+ *     assert counts.get("a") == 1;
+ * }</pre>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public final class AtomicImmMap<K, V> {
+    private final ImmRef<ImmMap<K, V>> ref;
+
+    private AtomicImmMap(final ImmRef<ImmMap<K, V>> ref) {
+        this.ref = ref;
+    }
+
+    /**
+     * Returns a holder updated by compare and set with backoff, best when contention is light.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param initial The initial map
+     * @return a holder of <code>initial</code>
+     */
+    public static <K, V> AtomicImmMap<K, V> of(final ImmMap<K, V> initial) {
+        return new AtomicImmMap<>(ImmRef.of(Requirements.require(initial, Requirements.notNull(), () -> "initial")));
+    }
+
+    /**
+     * Returns a holder whose updates are combined by a single thread, best when contention is heavy.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param initial The initial map
+     * @return a holder of <code>initial</code>
+     */
+    public static <K, V> AtomicImmMap<K, V> combining(final ImmMap<K, V> initial) {
+        return new AtomicImmMap<>(ImmRef.combining(Requirements.require(initial, Requirements.notNull(), () -> "initial")));
+    }
+
+    /**
+     * Returns the current version of the map.
+     * <p>This operation is O(1).
+     * @return the current version of the map
+     */
+    public ImmMap<K, V> snapshot() {
+        return ref.get();
+    }
+
+    /**
+     * Returns the value associated with <code>key</code> in the current version, or null.
+     * <p>This operation is O(log n).
+     * @param key The key
+     * @return the value associated with <code>key</code>
+     */
+    public V get(final K key) {
+        return ref.get().get(key);
+    }
+
+    /**
+     * Atomically replaces the map with the result of applying <code>update</code> to it.
+     * @param update The update, which must not have side effects
+     * @return the new version of the map
+     */
+    public ImmMap<K, V> update(final UnaryOperator<ImmMap<K, V>> update) {
+        return ref.update(update);
+    }
+
+    /**
+     * Atomically associates <code>value</code> with <code>key</code>.
+     * <p>This operation is O(log n).   A combining holder applies a run of puts by one
+     * {@link ImmMap#addAll(Iterable)}, and returns the version after the whole run.
+     * @param key The key
+     * @param value The value
+     * @return the new version of the map
+     */
+    public ImmMap<K, V> put(final K key, final V value) {
+        return ref.update(new Put<>(key, value));
+    }
+
+    /**
+     * Atomically removes <code>key</code>.
+     * <p>This operation is O(log n).   A combining holder applies a run of removals by one
+     * {@link ImmMap#removeAllKeysIn(Iterable)}, and returns the version after the whole run.
+     * @param key The key
+     * @return the new version of the map
+     */
+    public ImmMap<K, V> removeKey(final K key) {
+        return ref.update(new Remove<>(key));
+    }
+
+    /**
+     * Atomically replaces the value associated with <code>key</code> with the result of
+     * <code>remapping</code>, removing the key if the result is null.
+     * <p>This operation is O(log n).
+     * @param key The key
+     * @param remapping The function of the key and the current value, or null, which must not have side effects
+     * @return the new value associated with <code>key</code>
+     */
+    public V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Requirements.require(remapping, Requirements.notNull(), () -> "remapping");
+        return ref.update(m -> {
+            final V value = remapping.apply(key, m.get(key));
+            return value == null ? m.removeKey(key) : m.put(key, value);
+        }).get(key);
+    }
+
+    // A put, combined with the puts queued after it into one addAll.
+    private static final class Put<K, V> implements ImmRef.Bulk<ImmMap<K, V>> {
+        final K key;
+        final V value;
+
+        Put(final K key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public ImmMap<K, V> apply(final ImmMap<K, V> m) {
+            return m.put(key, value);
+        }
+
+        @Override
+        public ImmMap<K, V> applyAll(final ImmMap<K, V> m, final List<UnaryOperator<ImmMap<K, V>>> run) {
+            final List<Entry<K, V>> entries = new ArrayList<>(run.size());
+            for(UnaryOperator<ImmMap<K, V>> u: run) {
+                final Put<K, V> put = (Put<K, V>)u;
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(put.key, put.value));
+            }
+            return m.addAll(entries);
+        }
+    }
+
+    // A removal, combined with the removals queued after it into one removeAllKeysIn.
+    private static final class Remove<K, V> implements ImmRef.Bulk<ImmMap<K, V>> {
+        final K key;
+
+        Remove(final K key) {
+            this.key = key;
+        }
+
+        @Override
+        public ImmMap<K, V> apply(final ImmMap<K, V> m) {
+            return m.removeKey(key);
+        }
+
+        @Override
+        public ImmMap<K, V> applyAll(final ImmMap<K, V> m, final List<UnaryOperator<ImmMap<K, V>>> run) {
+            final List<K> keys = new ArrayList<>(run.size());
+            for(UnaryOperator<ImmMap<K, V>> u: run) {
+                keys.add(((Remove<K, V>)u).key);
+            }
+            return m.removeAllKeysIn(keys);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package collections.immutable;
 
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -9,11 +10,18 @@ import java.util.stream.StreamSupport;
 //Represents a semi-balanced branch in a 2-3 tree.
 //Each branch has either 2 or 3 nodes.
 final class Branch<E> implements Node23<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Branch, Summary> SUMMARY = AtomicReferenceFieldUpdater.newUpdater(Branch.class, Summary.class, "summary");
 	private final int size;
 	private final Node23<E>[] nodes;
+	// The summary of the monoid bound to the lists this branch belongs to, set once, by the first list to bind one.
+	private volatile Summary summary;
 	Branch(Node23<E> b0, Node23<E> b1) {
 		super();
 		this.size = b0.size() + b1.size();	
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.NODE_ALLOCATIONS);
+        }
 		@SuppressWarnings("rawtypes")
         final Node23[] n = new Node23[] {b0, b1};
 		@SuppressWarnings("unchecked")
@@ -23,6 +31,9 @@ final class Branch<E> implements Node23<E> {
     Branch(Node23<E> b0, Node23<E> b1, Node23<E> b2) {
         super();
         this.size = b0.size() + b1.size() + b2.size();  
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.NODE_ALLOCATIONS);
+        }
         @SuppressWarnings("rawtypes")
         final Node23[] n = new Node23[] {b0, b1, b2};
         @SuppressWarnings("unchecked")
@@ -82,10 +93,38 @@ final class Branch<E> implements Node23<E> {
         return true;
     }
     
+    // The kept summary when monoid is bound to this branch, O(1), otherwise the combined summaries of the branches.
+    @Override
+    public <S> S summary(final ImmMonoid<? super E, S> monoid) {
+        final Summary s = summary;
+        if (s != null && s.monoid == monoid) {
+            @SuppressWarnings("unchecked")
+            final S value = (S)s.value;
+            return value;
+        }
+        return Node23.super.summary(monoid);
+    }
+
+    // Whether this branch keeps the summary of monoid.
+    boolean isBound(final ImmMonoid<?, ?> monoid) {
+        final Summary s = summary;
+        return s != null && s.monoid == monoid;
+    }
+
+    // Binds monoid to this branch with the summary of its elements, unless another monoid was bound to it first.
+    boolean bind(final ImmMonoid<?, ?> monoid, final Object value) {
+        return SUMMARY.compareAndSet(this, null, new Summary(monoid, value)) || isBound(monoid);
+    }
+
     @Override
     public E last() {
         return nodes[nodes.length - 1].last();
     }
+
+    // Whether a summary is kept, for estimating the memory of the branch.
+    boolean hasSummary() {
+        return summary != null;
+    }
     
     @Override
     public E first() {
@@ -165,4 +204,15 @@ final class Branch<E> implements Node23<E> {
     public boolean equals(Object otherObject) {
         return eq(otherObject);
     }
+
+    // The summary of a branch for the monoid bound to it.
+    private static final class Summary {
+        final Object monoid;
+        final Object value;
+
+        Summary(final Object monoid, final Object value) {
+            this.monoid = monoid;
+            this.value = value;
+        }
+    }
 }
@@ -13,6 +13,9 @@ final class BranchIterator<E> implements SeekableIterator<E>{
     BranchIterator(Node23<E> n) {
         super();
         this.root = n;
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.ITERATORS);
+        }
         this.which = 0;
         this.curr = n.getBranch(0).iterator();
         this.index = 0;
@@ -0,0 +1,54 @@
+package collections.immutable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+//
+// The codecs returned by ImmCodec, one instance each, so that the digests ImmSync binds for a codec are found again.
+//
+final class Codecs {
+    static final ImmCodec<Integer> INTEGER = new ImmCodec<Integer>() {
+        @Override
+        public void write(final DataOutput out, final Integer element) throws IOException {
+            out.writeInt(element);
+        }
+
+        @Override
+        public Integer read(final DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    static final ImmCodec<Long> LONG = new ImmCodec<Long>() {
+        @Override
+        public void write(final DataOutput out, final Long element) throws IOException {
+            out.writeLong(element);
+        }
+
+        @Override
+        public Long read(final DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    static final ImmCodec<String> STRING = new ImmCodec<String>() {
+        @Override
+        public void write(final DataOutput out, final String element) throws IOException {
+            final byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(final DataInput in) throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private Codecs() {
+    }
+}
@@ -0,0 +1,47 @@
+package collections.immutable;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+//Reports expensive bulk operations to Java Flight Recorder.
+//This is the Java 8 version, which reports nothing.   On Java 11 and later the multi-release jar
+//supplies the version in src/main/java11, which emits a collections.immutable.Operation event
+//for each operation whose inputs or output reach ImmMetrics.getEventThreshold() elements.
+//
+//An operation is reported by:
+//    final Object event = CollectionEvents.begin("TreeList23.union");
+//    comparator = CollectionEvents.counting(event, comparator);
+//    ... the work ...
+//    CollectionEvents.end(event, lhsSize, rhsSize, resultSize);
+final class CollectionEvents {
+    private CollectionEvents() {
+    }
+
+    // Starts timing an operation, returning the event to end, or null if it is not being recorded.
+    static Object begin(final String operation) {
+        return null;
+    }
+
+    // Returns a comparator that counts its calls into the event, or comparator itself if there is no event.
+    static <E> Comparator<E> counting(final Object event, final Comparator<E> comparator) {
+        return comparator;
+    }
+
+    // Ends an operation, recording it if any size reaches the threshold.   A size of -1 is unknown or not applicable.
+    static void end(final Object event, final long inputSize, final long otherInputSize, final long outputSize) {
+    }
+
+    // The size of an iterable, if it can be had without iterating it, or -1.
+    static long sizeOf(final Iterable<?> elements) {
+        if (elements instanceof Collection) {
+            return ((Collection<?>)elements).size();
+        }
+        if (elements instanceof ImmCollection) {
+            return ((ImmCollection<?>)elements).size();
+        }
+        if (elements instanceof ImmMap) {
+            return ((ImmMap<?, ?>)elements).size();
+        }
+        return -1;
+    }
+}
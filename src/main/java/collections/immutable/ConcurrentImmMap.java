@@ -0,0 +1,675 @@
+package collections.immutable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * A thread safe, mutable {@link ConcurrentNavigableMap} whose state is an immutable sorted map behind an atomic reference.
+ * <p>Reads never lock and never wait, they simply read the current version of the map.
+ * Writes build a new version and publish it with a compare and set, retrying if another write got there first.
+ * <p>{@link #snapshot()} returns the current version as an {@link ImmSortedMap}, in O(1).
+ * Sub maps and descending maps navigate the tree of the whole map within their bounds, so their
+ * sizes and navigation methods are O(log n), like those of the whole map.
+ * Iterators, and the views returned by methods such as {@link #subMap(Object, Object)},
+ * iterate a snapshot taken when the iterator is created, so they are consistent,
+ * never throw {@link java.util.ConcurrentModificationException}, and never hold up writers.
+ * <p>Null keys and values are not allowed.
+ * <p>Example:
+ * <pre>{@code
+ *     ConcurrentImmMap<Integer, String> map = ConcurrentImmMap.create();
+ *     map.put(1, "one");
+ *     ImmSortedMap<Integer, String> snapshot = map.snapshot();
+ *     map.put(2, "two");
+ *     assert snapshot.size() == 1;
+ * }</pre>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public final class ConcurrentImmMap<K, V> extends AbstractMap<K, V> implements ConcurrentNavigableMap<K, V> {
+    private final AtomicReference<TreeMap23<K, V>> root;
+    // Bounds of this view, in the order of the underlying map.
+    private final boolean hasLo;
+    private final K lo;
+    private final boolean loInclusive;
+    private final boolean hasHi;
+    private final K hi;
+    private final boolean hiInclusive;
+    private final boolean descending;
+
+    private ConcurrentImmMap(final AtomicReference<TreeMap23<K, V>> root,
+            final boolean hasLo, final K lo, final boolean loInclusive,
+            final boolean hasHi, final K hi, final boolean hiInclusive, final boolean descending) {
+        this.root = root;
+        this.hasLo = hasLo;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hasHi = hasHi;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Returns an empty map ordered by the natural ordering of its keys.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @return an empty map
+     */
+    public static <K, V> ConcurrentImmMap<K, V> create() {
+        return of(TreeMap23.empty());
+    }
+
+    /**
+     * Returns an empty map ordered by <code>keyComparator</code>.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyComparator The comparator of the keys
+     * @return an empty map
+     */
+    public static <K, V> ConcurrentImmMap<K, V> create(final Comparator<? super K> keyComparator) {
+        return of(TreeMap23.empty(Requirements.require(keyComparator, Requirements.notNull(), () -> "keyComparator")));
+    }
+
+    /**
+     * Returns a map whose initial contents are <code>map</code>.
+     * <p>This operation is O(1) if <code>map</code> is a tree.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The initial contents
+     * @return a map with the contents of <code>map</code>
+     */
+    public static <K, V> ConcurrentImmMap<K, V> of(final ImmSortedMap<K, V> map) {
+        final TreeMap23<K, V> m = ImmSync.treeMap(Requirements.require(map, Requirements.notNull(), () -> "map"));
+        return new ConcurrentImmMap<>(new AtomicReference<>(m), false, null, false, false, null, false, false);
+    }
+
+    /**
+     * Returns the current contents of this map, which later writes do not affect.
+     * <p>This operation is O(1), or O(log n) for a sub map.
+     * @return the current contents of this map
+     */
+    public ImmSortedMap<K, V> snapshot() {
+        return view(root.get());
+    }
+
+    // The part of base within the bounds of this view, in the order of this view, for snapshots and iterators.
+    private TreeMap23<K, V> view(final TreeMap23<K, V> base) {
+        final TreeMap23<K, V> m = hasLo || hasHi ? base.range(hasLo, lo, loInclusive, hasHi, hi, hiInclusive) : base;
+        return descending ? m.reversed() : m;
+    }
+
+    // Index in base of the first entry of this view, in the order of base.
+    private int low(final TreeMap23<K, V> base) {
+        return hasLo ? base.position(lo, !loInclusive) : 0;
+    }
+
+    // Index in base after the last entry of this view, in the order of base.
+    private int high(final TreeMap23<K, V> base) {
+        return hasHi ? base.position(hi, hiInclusive) : base.size();
+    }
+
+    // The first entry of this view in the order of base whose key is >= key, or > key when strict,
+    // or the first entry if there is no key.
+    private Entry<K, V> ceiling(final TreeMap23<K, V> base, final boolean hasKey, final K key, final boolean strict) {
+        final int i = Math.max(low(base), hasKey ? base.position(key, strict) : 0);
+        return i < high(base) ? base.select(i) : null;
+    }
+
+    // The last entry of this view in the order of base whose key is <= key, or < key when strict,
+    // or the last entry if there is no key.
+    private Entry<K, V> floor(final TreeMap23<K, V> base, final boolean hasKey, final K key, final boolean strict) {
+        final int i = Math.min(high(base), hasKey ? base.position(key, !strict) : base.size()) - 1;
+        return i >= low(base) ? base.select(i) : null;
+    }
+
+    private Entry<K, V> first(final TreeMap23<K, V> base) {
+        return descending ? floor(base, false, null, false) : ceiling(base, false, null, false);
+    }
+
+    private Entry<K, V> last(final TreeMap23<K, V> base) {
+        return descending ? ceiling(base, false, null, false) : floor(base, false, null, false);
+    }
+
+    private int compare(final K a, final K b) {
+        return root.get().keyComparator.compare(a, b);
+    }
+
+    private boolean inRange(final K key) {
+        if (hasLo) {
+            final int c = compare(key, lo);
+            if (c < 0 || (c == 0 && !loInclusive)) {
+                return false;
+            }
+        }
+        if (hasHi) {
+            final int c = compare(key, hi);
+            if (c > 0 || (c == 0 && !hiInclusive)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private K checkKey(final K key) {
+        Requirements.require(key, Requirements.notNull(), () -> "key");
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("key out of range");
+        }
+        return key;
+    }
+
+    // Atomically replaces the value of key with the result of update, removing key if the result is null.
+    // Returns the previous value.
+    private V update(final K key, final UnaryOperator<V> update) {
+        while(true) {
+            final TreeMap23<K, V> current = root.get();
+            final V previous = current.get(key);
+            final V value = update.apply(previous);
+            if (value == previous) {
+                return previous;
+            }
+            if (root.compareAndSet(current, value == null ? current.removeKey(key) : current.put(key, value))) {
+                return previous;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        final TreeMap23<K, V> base = root.get();
+        return Math.max(0, high(base) - low(base));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        @SuppressWarnings("unchecked")
+        final K k = (K)Requirements.require(key, Requirements.notNull(), () -> "key");
+        return inRange(k) && root.get().containsKey(k);
+    }
+
+    @Override
+    public V get(final Object key) {
+        @SuppressWarnings("unchecked")
+        final K k = (K)Requirements.require(key, Requirements.notNull(), () -> "key");
+        return inRange(k) ? root.get().get(k) : null;
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        Requirements.require(value, Requirements.notNull(), () -> "value");
+        return update(checkKey(key), v -> value);
+    }
+
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+        Requirements.require(value, Requirements.notNull(), () -> "value");
+        return update(checkKey(key), v -> v == null ? value : v);
+    }
+
+    @Override
+    public V remove(final Object key) {
+        @SuppressWarnings("unchecked")
+        final K k = (K)Requirements.require(key, Requirements.notNull(), () -> "key");
+        return inRange(k) ? update(k, v -> null) : null;
+    }
+
+    @Override
+    public boolean remove(final Object key, final Object value) {
+        @SuppressWarnings("unchecked")
+        final K k = (K)Requirements.require(key, Requirements.notNull(), () -> "key");
+        return value != null && inRange(k) && value.equals(update(k, v -> value.equals(v) ? null : v));
+    }
+
+    @Override
+    public boolean replace(final K key, final V oldValue, final V newValue) {
+        Requirements.require(oldValue, Requirements.notNull(), () -> "oldValue");
+        Requirements.require(newValue, Requirements.notNull(), () -> "newValue");
+        return oldValue.equals(update(checkKey(key), v -> oldValue.equals(v) ? newValue : v));
+    }
+
+    @Override
+    public V replace(final K key, final V value) {
+        Requirements.require(value, Requirements.notNull(), () -> "value");
+        return update(checkKey(key), v -> v == null ? null : value);
+    }
+
+    @Override
+    public void clear() {
+        while(true) {
+            final TreeMap23<K, V> current = root.get();
+            final TreeMap23<K, V> view = view(current);
+            if (view.size() == 0 || root.compareAndSet(current, view.size() == current.size() ?
+                    TreeMap23.empty(current.keyComparator) :
+                    current.removeAllKeysIn(view.keys()))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        final Comparator<? super K> keyComparator = root.get().keyComparator;
+        return descending ? keyComparator.reversed() : keyComparator;
+    }
+
+    private static <K> K key(final Entry<K, ?> e) {
+        return e == null ? null : e.getKey();
+    }
+
+    private static <K> K keyOrThrow(final Entry<K, ?> e) {
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e.getKey();
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return first(root.get());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return last(root.get());
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(firstEntry());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(lastEntry());
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(final K key) {
+        Requirements.require(key, Requirements.notNull(), () -> "key");
+        final TreeMap23<K, V> base = root.get();
+        return descending ? floor(base, true, key, false) : ceiling(base, true, key, false);
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(final K key) {
+        Requirements.require(key, Requirements.notNull(), () -> "key");
+        final TreeMap23<K, V> base = root.get();
+        return descending ? floor(base, true, key, true) : ceiling(base, true, key, true);
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(final K key) {
+        Requirements.require(key, Requirements.notNull(), () -> "key");
+        final TreeMap23<K, V> base = root.get();
+        return descending ? ceiling(base, true, key, true) : floor(base, true, key, true);
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(final K key) {
+        Requirements.require(key, Requirements.notNull(), () -> "key");
+        final TreeMap23<K, V> base = root.get();
+        return descending ? ceiling(base, true, key, false) : floor(base, true, key, false);
+    }
+
+    @Override
+    public K ceilingKey(final K key) {
+        return key(ceilingEntry(key));
+    }
+
+    @Override
+    public K higherKey(final K key) {
+        return key(higherEntry(key));
+    }
+
+    @Override
+    public K lowerKey(final K key) {
+        return key(lowerEntry(key));
+    }
+
+    @Override
+    public K floorKey(final K key) {
+        return key(floorEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        return poll(true);
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        return poll(false);
+    }
+
+    private Entry<K, V> poll(final boolean first) {
+        while(true) {
+            final TreeMap23<K, V> current = root.get();
+            final Entry<K, V> e = first ? first(current) : last(current);
+            if (e == null || root.compareAndSet(current, current.removeKey(e.getKey()))) {
+                return e;
+            }
+        }
+    }
+
+    // Returns a view of the keys from "from" to "to", in the order of this view, flipping the order if asked.
+    private ConcurrentImmMap<K, V> view(final boolean hasFrom, final K from, final boolean fromInclusive,
+            final boolean hasTo, final K to, final boolean toInclusive, final boolean flip) {
+        boolean hasL = descending ? hasTo : hasFrom;
+        K l = descending ? to : from;
+        boolean lInclusive = descending ? toInclusive : fromInclusive;
+        boolean hasH = descending ? hasFrom : hasTo;
+        K h = descending ? from : to;
+        boolean hInclusive = descending ? fromInclusive : toInclusive;
+        if (!hasL) {
+            hasL = hasLo;
+            l = lo;
+            lInclusive = loInclusive;
+        } else if (hasLo) {
+            final int c = compare(l, lo);
+            if (c < 0 || (c == 0 && !loInclusive && lInclusive)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+        }
+        if (!hasH) {
+            hasH = hasHi;
+            h = hi;
+            hInclusive = hiInclusive;
+        } else if (hasHi) {
+            final int c = compare(h, hi);
+            if (c > 0 || (c == 0 && !hiInclusive && hInclusive)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+        }
+        if (hasL && hasH && compare(l, h) > 0) {
+            throw new IllegalArgumentException("inconsistent range");
+        }
+        return new ConcurrentImmMap<>(root, hasL, l, lInclusive, hasH, h, hInclusive, descending ^ flip);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> subMap(final K fromKey, final boolean fromInclusive, final K toKey, final boolean toInclusive) {
+        Requirements.require(fromKey, Requirements.notNull(), () -> "fromKey");
+        Requirements.require(toKey, Requirements.notNull(), () -> "toKey");
+        return view(true, fromKey, fromInclusive, true, toKey, toInclusive, false);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> headMap(final K toKey, final boolean inclusive) {
+        Requirements.require(toKey, Requirements.notNull(), () -> "toKey");
+        return view(false, null, false, true, toKey, inclusive, false);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> tailMap(final K fromKey, final boolean inclusive) {
+        Requirements.require(fromKey, Requirements.notNull(), () -> "fromKey");
+        return view(true, fromKey, inclusive, false, null, false, false);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> subMap(final K fromKey, final K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> headMap(final K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> tailMap(final K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public ConcurrentImmMap<K, V> descendingMap() {
+        return view(false, null, false, false, null, false, true);
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new SnapshotIterator<>(ConcurrentImmMap.this, e -> e);
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentImmMap.this.size();
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                final Entry<?, ?> e = (Entry<?, ?>)o;
+                final V value = e.getKey() == null ? null : get(e.getKey());
+                return value != null && value.equals(e.getValue());
+            }
+
+            @Override
+            public boolean remove(final Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                final Entry<?, ?> e = (Entry<?, ?>)o;
+                return e.getKey() != null && ConcurrentImmMap.this.remove(e.getKey(), e.getValue());
+            }
+
+            @Override
+            public void clear() {
+                ConcurrentImmMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SnapshotIterator<>(ConcurrentImmMap.this, Entry::getValue);
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentImmMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                ConcurrentImmMap.this.clear();
+            }
+        };
+    }
+
+    // Iterates the snapshot taken when it was created.  Removal goes through to the map.
+    private static final class SnapshotIterator<K, V, T> implements Iterator<T> {
+        private final ConcurrentImmMap<K, V> map;
+        private final Iterator<Entry<K, V>> entries;
+        private final Function<Entry<K, V>, T> f;
+        private Entry<K, V> last;
+
+        SnapshotIterator(final ConcurrentImmMap<K, V> map, final Function<Entry<K, V>, T> f) {
+            this.map = map;
+            this.entries = map.view(map.root.get()).iterator();
+            this.f = f;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public T next() {
+            last = entries.next();
+            return f.apply(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            map.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    // The keys of a map, as a set backed by the map.
+    private static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+        private final ConcurrentImmMap<K, ?> map;
+
+        KeySet(final ConcurrentImmMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new SnapshotIterator<>(map, Entry::getKey);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            return map.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K lower(final K e) {
+            return map.lowerKey(e);
+        }
+
+        @Override
+        public K floor(final K e) {
+            return map.floorKey(e);
+        }
+
+        @Override
+        public K ceiling(final K e) {
+            return map.ceilingKey(e);
+        }
+
+        @Override
+        public K higher(final K e) {
+            return map.higherKey(e);
+        }
+
+        @Override
+        public K pollFirst() {
+            return key(map.pollFirstEntry());
+        }
+
+        @Override
+        public K pollLast() {
+            return key(map.pollLastEntry());
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(final K fromElement, final boolean fromInclusive, final K toElement, final boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(final K toElement, final boolean inclusive) {
+            return new KeySet<>(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(final K fromElement, final boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(final K fromElement, final K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(final K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(final K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
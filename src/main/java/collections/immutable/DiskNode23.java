@@ -0,0 +1,249 @@
+package collections.immutable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//Represents a branch in a 2-3 tree that lives in a memory mapped file.
+//Nothing is loaded up front, each node is decoded from the file when it is visited.
+//The file holds the nodes in postorder, so every node is written after its children.
+//A leaf is a tag followed by its element.
+//A branch is a tag holding the number of nodes, its depth, its size, the offsets of its first and last leaves,
+//and then the offset and size of each of its nodes.
+final class DiskNode23<E> implements Node23<E> {
+    private static final int LEAF = 1;
+    private static final int HEADER = 1 + 1 + Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int CHILD = Long.BYTES + Integer.BYTES;
+
+    private final MappedFile file;
+    private final long offset;
+    private final ImmCodec<E> codec;
+    private final int numBranches;
+    private final int depth;
+    private final int size;
+
+    DiskNode23(final MappedFile file, final long offset, final ImmCodec<E> codec) {
+        this.file = file;
+        this.offset = offset;
+        this.codec = codec;
+        this.numBranches = file.get(offset);
+        this.depth = file.get(offset + 1);
+        this.size = file.getInt(offset + 2);
+        assert numBranches == 2 || numBranches == 3;
+    }
+
+    // Decodes the node at offset.
+    static <E> Node23<E> read(final MappedFile file, final long offset, final ImmCodec<E> codec) {
+        return file.get(offset) == LEAF ? new Leaf<>(element(file, offset, codec)) : new DiskNode23<>(file, offset, codec);
+    }
+
+    // Decodes the element of the leaf at offset.
+    static <E> E element(final MappedFile file, final long offset, final ImmCodec<E> codec) {
+        try {
+            return codec.read(new DataInputStream(file.input(offset + 1)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Node23<E> getBranch(int which) {
+        return read(file, file.getLong(offset + HEADER + which * CHILD), codec);
+    }
+
+    private int branchSize(int which) {
+        return file.getInt(offset + HEADER + which * CHILD + Long.BYTES);
+    }
+
+    @Override
+    public int numBranches() {
+        return numBranches;
+    }
+
+    @Override
+    public E get(final int index) {
+        assert index < size;
+        int pos = 0;
+        int j = 0;
+        while(j < numBranches - 1 && index >= pos + branchSize(j)) {
+            pos += branchSize(j++);
+        }
+        return getBranch(j).get(index - pos);
+    }
+
+    // The file was checked when it was written.
+    @Override
+    public boolean isValid(final int depth) {
+        return depth == this.depth;
+    }
+
+    @Override
+    public E last() {
+        return element(file, file.getLong(offset + 2 + Integer.BYTES + Long.BYTES), codec);
+    }
+
+    @Override
+    public E first() {
+        return element(file, file.getLong(offset + 2 + Integer.BYTES), codec);
+    }
+
+    @Override
+    public Node23<E> reverse() {
+        return new ReversedNode23<>(this);
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return false;
+    }
+
+    @Override
+    public E leafValue() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <F> Node23<F> map(Function<E, F> f) {
+        return new MappedNode23<E, F>(this, f);
+    }
+
+    // Untouched nodes stay on disk, only the nodes along the cut are rebuilt on the heap.
+    @Override
+    public Node23<E> tail(int index) {
+        final Node23<E> b0 = getBranch(0);
+        final int b1Index = index - b0.size();
+        if (b1Index < 0) {
+            return TreeList23.concat(b0.tail(index), numBranches == 3 ?
+                    new Branch<>(getBranch(1), getBranch(2)) :
+                    getBranch(1));
+        }
+        final Node23<E> b1 = getBranch(1);
+        if (numBranches == 2) {
+            return b1.tail(b1Index);
+        }
+        final int b2Index = b1Index - b1.size();
+        if (b2Index < 0) {
+            return TreeList23.concat(b1.tail(b1Index), getBranch(2));
+        }
+        return getBranch(2).tail(b2Index);
+    }
+
+    @Override
+    public Node23<E> head(int index) {
+        final Node23<E> b0 = getBranch(0);
+        final int b1Index = index - b0.size();
+        if (b1Index < 0) {
+            return b0.head(index);
+        }
+        final Node23<E> b1 = getBranch(1);
+        final Node23<E> lhs;
+        final Node23<E> rhs;
+        final int b2Index = b1Index - b1.size();
+        if (b2Index < 0 || numBranches == 2) {
+            lhs = b0;
+            rhs = b1.head(b1Index);
+        } else {
+            lhs = new Branch<>(b0, b1);
+            rhs = getBranch(2).head(b2Index);
+        }
+        return rhs == null ? lhs : TreeList23.concat(lhs, rhs);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), 0);
+    }
+    @Override
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    @Override
+    public int hashCode() {
+        return hc();
+    }
+    @Override
+    public boolean equals(Object otherObject) {
+        return eq(otherObject);
+    }
+
+    // Writes trees in postorder, keeping track of the offset of every node.
+    static final class Writer<E> extends FilterOutputStream {
+        private final DataOutputStream data;
+        private final ImmCodec<E> codec;
+        private long position;
+        // Offsets of the first and last leaves of the node written last.
+        private long first;
+        private long last;
+
+        Writer(final OutputStream out, final ImmCodec<E> codec) {
+            super(out);
+            this.data = new DataOutputStream(this);
+            this.codec = codec;
+        }
+
+        DataOutputStream data() {
+            return data;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+
+        // Writes node and all of its descendants, returning the offset of node.
+        long writeNode(final Node23<E> node) throws IOException {
+            if (node.isLeaf()) {
+                first = last = position;
+                data.writeByte(LEAF);
+                codec.write(data, node.leafValue());
+                return first;
+            }
+            final int n = node.numBranches();
+            final long[] offsets = new long[n];
+            long f = 0;
+            for(int i = 0; i < n; i++) {
+                offsets[i] = writeNode(node.getBranch(i));
+                if (i == 0) {
+                    f = first;
+                }
+            }
+            first = f;
+            final long start = position;
+            data.writeByte(n);
+            data.writeByte(node.getDepth());
+            data.writeInt(node.size());
+            data.writeLong(first);
+            data.writeLong(last);
+            for(int i = 0; i < n; i++) {
+                data.writeLong(offsets[i]);
+                data.writeInt(node.getBranch(i).size());
+            }
+            return start;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package collections.immutable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//The root of a frozen list, every element in one flat array, for O(1) get and binary searches over contiguous memory.
+//Only ever a root, of more than ArrayNode23.MAX elements; smaller lists are already flat.
+//
+//Algorithms that walk branches, such as an edit, see a tree built from the array by TreeList23.build
+//each time, which is never kept, so every edit of a frozen version is O(n).   The edited versions are
+//trees of their own, edited in O(log n).   Splits copy their part of the array, and summaries fold the array,
+//so neither builds the tree.
+final class FrozenNode23<E> implements Node23<E> {
+    private final E[] elements;
+    private final int depth;
+    private final int numBranches;
+
+    private FrozenNode23(final E[] elements) {
+        assert elements.length > ArrayNode23.MAX;
+        this.elements = elements;
+        // The shape of the tree TreeList23.build makes, each level a third of the one below, rounded up.
+        int count = elements.length;
+        int d = 1;
+        int n = count;
+        while(count > 1) {
+            n = count;
+            count = (count + 2) / 3;
+            d++;
+        }
+        this.depth = d;
+        this.numBranches = n;
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.NODE_ALLOCATIONS);
+        }
+    }
+
+    // The elements of a tree of more than ArrayNode23.MAX elements, in an array.
+    static <E> FrozenNode23<E> of(final Node23<E> node) {
+        @SuppressWarnings("unchecked")
+        final E[] elements = (E[])new Object[node.size()];
+        int i = 0;
+        for(E e: node) {
+            elements[i++] = e;
+        }
+        return new FrozenNode23<>(elements);
+    }
+
+    // The tree of the elements, for algorithms that walk branches, built anew on each call.
+    // Those that walk it several times expand it once first.
+    Node23<E> tree() {
+        @SuppressWarnings("rawtypes")
+        final Node23[] n = new Node23[elements.length];
+        @SuppressWarnings("unchecked")
+        final Node23<E>[] leaves = n;
+        for(int i = 0; i < elements.length; i++) {
+            leaves[i] = new Leaf<>(elements[i]);
+        }
+        return TreeList23.build(leaves);
+    }
+
+    // The node holding elements[low, high): this, null, a leaf, an array, or a frozen copy of the range.
+    Node23<E> range(final int low, final int high) {
+        return low == 0 && high == elements.length ? this :
+            high - low > ArrayNode23.MAX ? new FrozenNode23<>(Arrays.copyOfRange(elements, low, high)) :
+            ArrayNode23.of(elements, low, high);
+    }
+
+    // Index of the first element whose key is >= key, or > key when strict, or size() if there is none.
+    <K> int position(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        return position(keyOf, comparator, key, strict, 0);
+    }
+
+    private <K> int position(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict, int low) {
+        int high = elements.length;
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = TreeList23.compare(comparator, keyOf.apply(elements[mid]), key);
+            if (strict ? cmp <= 0 : cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the element whose key equals key, or -1 if there is none.
+    <K> int indexOf(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key) {
+        final int i = position(keyOf, comparator, key, false);
+        return i < elements.length && TreeList23.compare(comparator, keyOf.apply(elements[i]), key) == 0 ? i : -1;
+    }
+
+    // The least element whose key is >= key, or > key when strict, or null if there is none.
+    <K> E ceiling(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        final int i = position(keyOf, comparator, key, strict);
+        return i < elements.length ? elements[i] : null;
+    }
+
+    // The greatest element whose key is <= key, or < key when strict, or null if there is none.
+    <K> E floor(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        final int i = position(keyOf, comparator, key, !strict);
+        return i > 0 ? elements[i - 1] : null;
+    }
+
+    // Passes each element whose key is among the sorted keys to found, in order, searching after the last one found.
+    <K> void findAll(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final List<? extends K> keys, final Consumer<? super E> found) {
+        int low = 0;
+        for(K key: keys) {
+            final int i = position(keyOf, comparator, key, false, low);
+            if (i < elements.length && TreeList23.compare(comparator, keyOf.apply(elements[i]), key) == 0) {
+                found.accept(elements[i]);
+                low = i + 1;
+            } else {
+                low = i;
+            }
+        }
+    }
+
+    // Iterates the elements in [low, high).
+    SeekableIterator<E> iterator(final int low, final int high) {
+        return new ArrayRangeIterator<>(elements, low, high);
+    }
+
+    @Override
+    public E leafValue() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return false;
+    }
+
+    @Override
+    public Node23<E> getBranch(final int which) {
+        return tree().getBranch(which);
+    }
+
+    @Override
+    public Node23<E> reverse() {
+        return new ReversedNode23<>(this);
+    }
+
+    @Override
+    public int numBranches() {
+        return numBranches;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public E get(final int index) {
+        return elements[index];
+    }
+
+    @Override
+    public boolean isValid(final int depth) {
+        return depth == this.depth && elements.length > ArrayNode23.MAX;
+    }
+
+    @Override
+    public E last() {
+        return elements[elements.length - 1];
+    }
+
+    @Override
+    public E first() {
+        return elements[0];
+    }
+
+    @Override
+    public <F> Node23<F> map(final Function<E, F> f) {
+        return new MappedNode23<E, F>(this, f);
+    }
+
+    @Override
+    public Node23<E> head(final int index) {
+        return range(0, Math.max(0, Math.min(index, elements.length)));
+    }
+
+    @Override
+    public Node23<E> tail(final int index) {
+        return range(Math.max(0, Math.min(index, elements.length)), elements.length);
+    }
+
+    // The first element for which comparator is <= 0, or the last, like the descent of a tree.
+    @Override
+    public <T> T binarySearch(final Function<? super E, Integer> comparator, final BiFunction<E, Integer, T> leafVisitor) {
+        int low = 0;
+        int high = elements.length - 1;
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if (comparator.apply(elements[mid]) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return leafVisitor.apply(elements[low], low);
+    }
+
+    @Override
+    public <S> S summary(final ImmMonoid<? super E, S> monoid) {
+        return summary(0, elements.length, monoid);
+    }
+
+    @Override
+    public <S> S summary(final int low, final int high, final ImmMonoid<? super E, S> monoid) {
+        final int l = Math.max(0, low);
+        S result = monoid.of(elements[l]);
+        for(int i = l + 1; i < Math.min(high, elements.length); i++) {
+            result = monoid.combine(result, monoid.of(elements[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public SeekableIterator<E> iterator() {
+        return new ArrayRangeIterator<>(elements, 0, elements.length);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(elements, 0, elements.length, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return hc();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return eq(obj);
+    }
+}
@@ -1,7 +1,11 @@
 package collections.immutable;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Spliterator;
@@ -21,6 +25,8 @@ import org.granitesoft.requirement.Requirements;
 // keys for which a comparator is not trivial.
 //
 final class HashMap23<K, V> implements ImmMap<K, V> {
+    private static final HashMap23<?, ?> EMPTY = new HashMap23<>(TreeList23.empty());
+
 	final TreeList23<Entry<K, V>> entries;
 
 	HashMap23(final TreeList23<Entry<K, V>> entries) {
@@ -29,7 +35,9 @@ final class HashMap23<K, V> implements ImmMap<K, V> {
 	}
 
 	static <K,V> HashMap23<K,V> empty() {
-        return new HashMap23<>(TreeList23.empty());
+        @SuppressWarnings("unchecked")
+        final HashMap23<K, V> empty = (HashMap23<K, V>)EMPTY;
+        return empty;
     }
    
     static <K,V> HashMap23<K,V> singleton(final K key, final V value) {
@@ -52,11 +60,14 @@ final class HashMap23<K, V> implements ImmMap<K, V> {
     @Override
     public HashMap23<K, V> addAll(final Iterable<? extends Entry<K ,V>> entries) {
         Requirements.require(entries, Requirements.notNull(), () -> "entries");
-        HashMap23<K, V> m = this;
+        final List<Entry<K, V>> batch = new ArrayList<>();
         for(Entry<K,V> e: entries) {
-            m = m.put(e.getKey(), e.getValue());
+            batch.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
         }
-        return m;
+        // ofSortedUnique keeps the first of equal keys, so reverse the batch to keep the last.
+        Collections.reverse(batch);
+        final Comparator<Entry<K, V>> comparator = (a, b) -> HashSet23.compare(a.getKey(), b.getKey());
+        return new HashMap23<>(TreeList23.union(comparator, (a, b) -> b, this.entries, TreeList23.ofSortedUnique(comparator, batch)));
     }
 
     @Override
@@ -65,21 +76,26 @@ final class HashMap23<K, V> implements ImmMap<K, V> {
         return addAll(map.entrySet());
     }
 
+    @Override
+    public HashMap23<K, V> compact() {
+        return new HashMap23<>(entries.compact());
+    }
+
     @Override
 	public HashMap23<K, V> put(final K key, final V value) {
         final HashMap23<K, V> m = removeKey(key);
-        final int index = m.keys().elements.naturalPosition(e -> HashSet23.compare(key, e));
+        final int index = m.entries.position(Entry::getKey, HashSet23::compare, key, false);
         return new HashMap23<>(m.entries.insertAt(index, new AbstractMap.SimpleImmutableEntry<>(key, value)));
 	}
 	
     @Override
     public boolean containsKey(final K key) {
-        return keys().contains(key);
+        return indexOfKey(key) >= 0;
     }
 
     @Override
 	public HashMap23<K, V> removeKey(final K key) {
-        final int index = keys().elements.getIndexOf(e -> HashSet23.compare(key, e));
+        final int index = indexOfKey(key);
         return index < 0 ? this : new HashMap23<K, V>(entries.removeAt(index));
 	}
 	
@@ -105,18 +121,35 @@ final class HashMap23<K, V> implements ImmMap<K, V> {
         return m;
     }
 	
+    @Override
+    public HashMap23<K, V> getAll(final Iterable<? extends K> keys) {
+        Requirements.require(keys, Requirements.notNull(), () -> "keys");
+        final List<K> probes = new ArrayList<>();
+        keys.forEach(probes::add);
+        probes.sort(HashSet23::compare);
+        final TreeBuilder<Entry<K, V>> found = new TreeBuilder<>();
+        entries.findAll(Entry::getKey, HashSet23::compare, probes, found::add);
+        return new HashMap23<>(found.build());
+    }
+
     @Override
     public V get(final K key) {
-        return getOrDefault(key, () -> null);
+        final int index = indexOfKey(key);
+        return index < 0 ? null : entries.getAt(index).getValue();
     }
 
     @Override
     public V getOrDefault(final K key, final Supplier<V> defaultSupplier) {
         Requirements.require(defaultSupplier, Requirements.notNull(), () -> "defaultSupplier");
-        final int index = keys().elements.getIndexOf(e -> HashSet23.compare(key, e));
+        final int index = indexOfKey(key);
         return index < 0 ? defaultSupplier.get() : entries.getAt(index).getValue();
     }
     
+    // The index of the entry for key, or -1 if there is none; a single descent that allocates nothing.
+    private int indexOfKey(final K key) {
+        return entries.indexOf(Entry::getKey, HashSet23::compare, key);
+    }
+
     @Override
 	public Map<K, V> asMap() {
 		return new Map23Map<>(this);
@@ -149,6 +182,9 @@ final class HashMap23<K, V> implements ImmMap<K, V> {
 			return false;
 		}
 		final ImmMap<?, ?> other = (ImmMap<?, ?>)otherObject;
+		if (other instanceof HashMap23 && (Object)entries.root == ((HashMap23<?, ?>)other).entries.root) {
+			return true;
+		}
 		return asMap().equals(other.asMap());
 	}
 	
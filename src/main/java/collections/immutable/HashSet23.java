@@ -4,6 +4,7 @@ import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -17,6 +18,8 @@ import org.granitesoft.requirement.Requirements;
 //elements for which a comparator is not trivial.
 //
 final class HashSet23<E> implements ImmSet<E> {
+    private static final HashSet23<?> EMPTY = new HashSet23<>(TreeList23.empty());
+
 	final TreeList23<E> elements;
 
 	HashSet23(final TreeList23<E> elements) {
@@ -29,7 +32,9 @@ final class HashSet23<E> implements ImmSet<E> {
     }
 
     static <E> HashSet23<E> empty() {
-        return new HashSet23<E>(TreeList23.empty());
+        @SuppressWarnings("unchecked")
+        final HashSet23<E> empty = (HashSet23<E>)EMPTY;
+        return empty;
     }
 
     static <E> HashSet23<E> of(final Iterable<? extends E> elements) {
@@ -43,27 +48,34 @@ final class HashSet23<E> implements ImmSet<E> {
 	
     @Override
 	public boolean contains(final E element) {
-	    return elements.getIndexOf(e -> compare(element, e)) >= 0;
+	    return elements.indexOf(Function.identity(), HashSet23::compare, element) >= 0;
 	}
 
+    @Override
+    public HashSet23<E> compact() {
+        return new HashSet23<>(elements.compact());
+    }
+
     @Override
 	public HashSet23<E> add(final E element) {
-	    return contains(element) ? this : new HashSet23<>(elements.insertAt(elements.naturalPosition(e -> compare(element, e)), element));
+	    return contains(element) ? this : new HashSet23<>(elements.insertAt(elements.position(Function.identity(), HashSet23::compare, element, false), element));
 	}
 	
     @Override
 	public HashSet23<E> union(final ImmSet<E> other) {
         Requirements.require(other, Requirements.notNull(), () -> "other");
+        final Object event = CollectionEvents.begin("HashSet23.union");
 	    HashSet23<E> s = this;
 	    for(E e: other) {
 	        s = s.add(e);
 	    }
+	    CollectionEvents.end(event, size(), other.size(), s.size());
 	    return s;
 	}
 
     @Override
 	public HashSet23<E> remove(final E element) {
-        final int index = elements.getIndexOf(e -> compare(element, e));
+        final int index = elements.indexOf(Function.identity(), HashSet23::compare, element);
 	    return index < 0 ? this : new HashSet23<>(elements.removeAt(index));
 	}
 	
@@ -75,17 +87,22 @@ final class HashSet23<E> implements ImmSet<E> {
 	
     @Override
     public HashSet23<E> retain(final Iterable<? extends E> other) {
+        final Object event = CollectionEvents.begin("HashSet23.retain");
         final HashSet23<E> hs = HashSet23.of(Requirements.require(other, Requirements.notNull(), () -> "other"));
-        return filter(hs::contains);
+        final HashSet23<E> result = new HashSet23<>(elements.filtered(hs::contains));
+        CollectionEvents.end(event, size(), hs.size(), result.size());
+        return result;
     }
 
     @Override
     public HashSet23<E> removeAllIn(final Iterable<? extends E> other) {
         Requirements.require(other, Requirements.notNull(), () -> "other");
+        final Object event = CollectionEvents.begin("HashSet23.removeAllIn");
         HashSet23<E> m = this;
         for(E e: other) {
             m = m.remove(e);
         }
+        CollectionEvents.end(event, size(), CollectionEvents.sizeOf(other), m.size());
         return m;
     }
   
@@ -105,6 +122,9 @@ final class HashSet23<E> implements ImmSet<E> {
 			return false;
 		}
 		final ImmSet<?> other = (ImmSet<?>)otherObject;
+		if (other instanceof HashSet23 && elements.root == ((HashSet23<?>)other).elements.root) {
+			return true;
+		}
 		return asCollection().equals(other.asCollection());
 	}
 
@@ -128,14 +148,35 @@ final class HashSet23<E> implements ImmSet<E> {
         return StreamSupport.stream(spliterator(), false);
     }
 
+    // Orders by hash, and unequal elements of the same hash by their class, then their natural order
+    // if they are comparable, so that the order does not depend on which instances are in the set.
+    // Only unequal, incomparable elements of the same class and hash fall back to their identity.
     static <E> int compare(final E a, final E b) {
-        int cmp = Integer.compare(Objects.hash(a), Objects.hash(b));
+        // The same values as Objects.hash(a), without its varargs array.
+        int cmp = Integer.compare(31 + Objects.hashCode(a), 31 + Objects.hashCode(b));
         if (cmp != 0) {
             return cmp;
         }
         if (Objects.equals(a, b)) {
             return 0;
         }
+        if (a != null && b != null) {
+            if (a.getClass() != b.getClass()) {
+                cmp = a.getClass().getName().compareTo(b.getClass().getName());
+            } else if (a instanceof Comparable) {
+                @SuppressWarnings("unchecked")
+                final Comparable<Object> c = (Comparable<Object>)a;
+                cmp = c.compareTo(b);
+            }
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
         return Integer.compare(System.identityHashCode(a), System.identityHashCode(b));
     }
+
+    // Whether an element's place among elements of the same hash does not depend on its instance.
+    static boolean isOrderedByValue(final Object element) {
+        return element == null || element instanceof Comparable;
+    }
 }
@@ -0,0 +1,110 @@
+package collections.immutable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map.Entry;
+
+/**
+ * Reads and writes single elements of an immutable collection.
+ * <p>Codecs are used wherever the contents of a collection leave the JVM,
+ * for example when synchronizing two replicas with {@link ImmSync}, or when
+ * saving a collection with {@link ImmIO}.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmCodec<Integer> codec = ImmCodec.ofInteger();
+ *     codec.write(out, 5);
+ *     assert codec.read(in) == 5;
+ * }</pre>
+ *
+ * @param <E> The type of the elements.
+ */
+public interface ImmCodec<E> {
+    /**
+     * Writes <code>element</code> to <code>out</code>.
+     * @param out The output
+     * @param element The element to write
+     * @throws IOException if the element could not be written
+     */
+    void write(DataOutput out, E element) throws IOException;
+
+    /**
+     * Reads an element from <code>in</code>.
+     * @param in The input
+     * @return The element read
+     * @throws IOException if the element could not be read
+     */
+    E read(DataInput in) throws IOException;
+
+    /**
+     * Returns a codec of integers, the same instance on every call.
+     * @return a codec of integers
+     */
+    static ImmCodec<Integer> ofInteger() {
+        return Codecs.INTEGER;
+    }
+
+    /**
+     * Returns a codec of longs, the same instance on every call.
+     * @return a codec of longs
+     */
+    static ImmCodec<Long> ofLong() {
+        return Codecs.LONG;
+    }
+
+    /**
+     * Returns a codec of strings, encoded as UTF-8, the same instance on every call.
+     * @return a codec of strings
+     */
+    static ImmCodec<String> ofString() {
+        return Codecs.STRING;
+    }
+
+    /**
+     * Returns a codec of map entries, the key followed by the value.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return a codec of map entries
+     */
+    static <K, V> ImmCodec<Entry<K, V>> ofEntry(final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) {
+        return new ImmCodec<Entry<K, V>>() {
+            @Override
+            public void write(final DataOutput out, final Entry<K, V> element) throws IOException {
+                keyCodec.write(out, element.getKey());
+                valueCodec.write(out, element.getValue());
+            }
+
+            @Override
+            public Entry<K, V> read(final DataInput in) throws IOException {
+                final K key = keyCodec.read(in);
+                return new AbstractMap.SimpleImmutableEntry<>(key, valueCodec.read(in));
+            }
+        };
+    }
+
+    /**
+     * Returns a codec that also accepts null, preceding each element with a presence flag.
+     * @param <E> The element type
+     * @param codec The codec of the non null elements
+     * @return a codec that also accepts null
+     */
+    static <E> ImmCodec<E> nullable(final ImmCodec<E> codec) {
+        return new ImmCodec<E>() {
+            @Override
+            public void write(final DataOutput out, final E element) throws IOException {
+                out.writeBoolean(element != null);
+                if (element != null) {
+                    codec.write(out, element);
+                }
+            }
+
+            @Override
+            public E read(final DataInput in) throws IOException {
+                return in.readBoolean() ? codec.read(in) : null;
+            }
+        };
+    }
+}
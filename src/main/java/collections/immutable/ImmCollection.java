@@ -56,6 +56,15 @@ public interface ImmCollection<E> extends Iterable<E> {
      * @return A collection with the given element removed
      */
     ImmCollection<E> removeAllIn(Iterable<? extends E> other);
+
+    /**
+     * Returns an equal collection whose tree is rebuilt as shallow and full as possible.
+     * Editing leaves a tree sparser and deeper than it needs to be; see {@link ImmCompaction}.
+     * <p>This operation is O(n), where n = |this|.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original collection is left unchanged.
+     * @return An equal, compacted collection
+     */
+    ImmCollection<E> compact();
   
     /**
      * Returns the read-only {@link Collection} view of this collection.
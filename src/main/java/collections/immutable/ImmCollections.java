@@ -763,4 +763,17 @@ public final class ImmCollections {
         return TreeMap23.of(Requirements.require(keyComparator, Requirements.notNull(), () -> "keyComparator"),
                 Requirements.require(map, Requirements.notNull(), () -> "map"));
     }
+
+    /**
+     * Returns the shared {@link ImmInterner interning pool}, which makes equal subtrees of the collections interned in it the same objects.
+     * <p>Example:
+     * <pre>{@code
+     *    ImmSortedSet<String> a = ImmCollections.interned().intern(ImmCollections.asSortedSet("read", "write"));
+     *    ImmSortedSet<String> b = ImmCollections.interned().intern(ImmCollections.asSortedSet("write", "read"));
+     * }</pre>
+     * @return The shared {@link ImmInterner interning pool}
+     */
+    public static ImmInterner interned() {
+        return ImmInterner.shared();
+    }
 }
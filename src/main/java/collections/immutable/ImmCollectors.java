@@ -0,0 +1,261 @@
+package collections.immutable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * {@link Collector Collectors} that build immutable collections directly from a stream.
+ * <p>Each thread of a parallel stream builds its part of the result as a tree, and the parts
+ * are joined without copying.   Lists are concatenated in O(log n), sorted sets and maps are
+ * merged by splitting one around the middle of the other, which is O(log n) when the parts
+ * don't overlap, as they don't when collecting an ordered stream of increasing keys.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmList<Integer> squares = IntStream.range(0, 1000).parallel().map(i -> i * i).boxed().collect(ImmCollectors.toImmList());
+ *     ImmSortedMap<Integer, ImmList<String>> byLength = words.parallelStream().collect(ImmCollectors.groupingBy(String::length));
+ * }</pre>
+ */
+public final class ImmCollectors {
+    private ImmCollectors() {
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmList}, in encounter order.
+     * <p>Each element is added in amortized O(1), and the parts of a parallel stream are joined in O(log n).
+     * @param <E> The element type
+     * @return a collector of the elements into an {@link ImmList}
+     */
+    public static <E> Collector<E, ?, ImmList<E>> toImmList() {
+        return Collector.<E, TreeBuilder<E>, ImmList<E>>of(TreeBuilder::new, TreeBuilder::add, TreeBuilder::addAll, TreeBuilder::build);
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmSet}.
+     * <p>The first of any equal elements is kept.
+     * @param <E> The element type
+     * @return a collector of the elements into an {@link ImmSet}
+     */
+    public static <E> Collector<E, ?, ImmSet<E>> toImmSet() {
+        return Collector.<E, SortedBuilder<E>, ImmSet<E>>of(
+                () -> new SortedBuilder<E>(HashSet23::compare, (a, b) -> a),
+                SortedBuilder::add, SortedBuilder::addAll, b -> new HashSet23<>(b.build()));
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmSortedSet} ordered by the natural ordering of its elements.
+     * <p>The first of any equal elements is kept.
+     * @param <E> The element type
+     * @return a collector of the elements into an {@link ImmSortedSet}
+     */
+    public static <E> Collector<E, ?, ImmSortedSet<E>> toImmSortedSet() {
+        return toImmSortedSet(TreeList23.naturalOrder());
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmSortedSet} ordered by <code>comparator</code>.
+     * <p>The first of any equal elements is kept.
+     * @param <E> The element type
+     * @param comparator The comparator
+     * @return a collector of the elements into an {@link ImmSortedSet}
+     */
+    public static <E> Collector<E, ?, ImmSortedSet<E>> toImmSortedSet(final Comparator<? super E> comparator) {
+        Requirements.require(comparator, Requirements.notNull(), () -> "comparator");
+        return Collector.<E, SortedBuilder<E>, ImmSortedSet<E>>of(
+                () -> new SortedBuilder<E>(comparator, (a, b) -> a),
+                SortedBuilder::add, SortedBuilder::addAll, b -> new TreeSet23<>(comparator, b.build()));
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmMap}.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyMapper Maps an element to its key
+     * @param valueMapper Maps an element to its value
+     * @return a collector of the elements into an {@link ImmMap}
+     * @throws IllegalStateException if two elements have the same key
+     */
+    public static <E, K, V> Collector<E, ?, ImmMap<K, V>> toImmMap(final Function<? super E, ? extends K> keyMapper, final Function<? super E, ? extends V> valueMapper) {
+        return toImmMap(keyMapper, valueMapper, ImmCollectors.throwingMerger());
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmMap}, combining the values of equal keys with <code>merge</code>.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyMapper Maps an element to its key
+     * @param valueMapper Maps an element to its value
+     * @param merge Combines the values of two elements with the same key, in encounter order
+     * @return a collector of the elements into an {@link ImmMap}
+     */
+    public static <E, K, V> Collector<E, ?, ImmMap<K, V>> toImmMap(final Function<? super E, ? extends K> keyMapper, final Function<? super E, ? extends V> valueMapper,
+            final BinaryOperator<V> merge) {
+        return ImmCollectors.<E, K, V, ImmMap<K, V>>entries(HashSet23::compare, keyMapper, valueMapper, merge, HashMap23::new);
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmSortedMap} ordered by the natural ordering of its keys.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyMapper Maps an element to its key
+     * @param valueMapper Maps an element to its value
+     * @return a collector of the elements into an {@link ImmSortedMap}
+     * @throws IllegalStateException if two elements have the same key
+     */
+    public static <E, K, V> Collector<E, ?, ImmSortedMap<K, V>> toImmSortedMap(final Function<? super E, ? extends K> keyMapper, final Function<? super E, ? extends V> valueMapper) {
+        return toImmSortedMap(TreeList23.naturalOrder(), keyMapper, valueMapper, ImmCollectors.throwingMerger());
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmSortedMap} ordered by the natural ordering of its keys,
+     * combining the values of equal keys with <code>merge</code>.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyMapper Maps an element to its key
+     * @param valueMapper Maps an element to its value
+     * @param merge Combines the values of two elements with the same key, in encounter order
+     * @return a collector of the elements into an {@link ImmSortedMap}
+     */
+    public static <E, K, V> Collector<E, ?, ImmSortedMap<K, V>> toImmSortedMap(final Function<? super E, ? extends K> keyMapper, final Function<? super E, ? extends V> valueMapper,
+            final BinaryOperator<V> merge) {
+        return toImmSortedMap(TreeList23.naturalOrder(), keyMapper, valueMapper, merge);
+    }
+
+    /**
+     * Returns a collector of the elements into an {@link ImmSortedMap} ordered by <code>keyComparator</code>,
+     * combining the values of equal keys with <code>merge</code>.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param keyComparator The key comparator
+     * @param keyMapper Maps an element to its key
+     * @param valueMapper Maps an element to its value
+     * @param merge Combines the values of two elements with the same key, in encounter order
+     * @return a collector of the elements into an {@link ImmSortedMap}
+     */
+    public static <E, K, V> Collector<E, ?, ImmSortedMap<K, V>> toImmSortedMap(final Comparator<? super K> keyComparator,
+            final Function<? super E, ? extends K> keyMapper, final Function<? super E, ? extends V> valueMapper, final BinaryOperator<V> merge) {
+        Requirements.require(keyComparator, Requirements.notNull(), () -> "keyComparator");
+        return ImmCollectors.<E, K, V, ImmSortedMap<K, V>>entries(keyComparator, keyMapper, valueMapper, merge, entries -> new TreeMap23<>(keyComparator, entries));
+    }
+
+    /**
+     * Returns a collector grouping the elements by <code>classifier</code> into lists, in encounter order,
+     * ordered by the natural ordering of the keys.
+     * <p>Groups are joined in O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     ImmSortedMap<Integer, ImmList<String>> byLength = Stream.of("a", "bb", "c").collect(ImmCollectors.groupingBy(String::length));
+     *     assert byLength.get(1).equals(ImmCollections.asList("a", "c"));
+     * }</pre>
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param classifier Maps an element to its key
+     * @return a collector grouping the elements by <code>classifier</code>
+     */
+    public static <E, K> Collector<E, ?, ImmSortedMap<K, ImmList<E>>> groupingBy(final Function<? super E, ? extends K> classifier) {
+        return groupingBy(TreeList23.naturalOrder(), classifier);
+    }
+
+    /**
+     * Returns a collector grouping the elements by <code>classifier</code> into lists, in encounter order,
+     * ordered by <code>keyComparator</code>.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param keyComparator The key comparator
+     * @param classifier Maps an element to its key
+     * @return a collector grouping the elements by <code>classifier</code>
+     */
+    public static <E, K> Collector<E, ?, ImmSortedMap<K, ImmList<E>>> groupingBy(final Comparator<? super K> keyComparator, final Function<? super E, ? extends K> classifier) {
+        return toImmSortedMap(keyComparator, classifier, TreeList23::singleton, ImmList::appendList);
+    }
+
+    /**
+     * Returns a collector grouping the elements by <code>classifier</code> into sets, ordered by the natural ordering of the keys.
+     * @param <E> The element type
+     * @param <K> The key type
+     * @param classifier Maps an element to its key
+     * @return a collector grouping the elements by <code>classifier</code>
+     */
+    public static <E, K> Collector<E, ?, ImmSortedMap<K, ImmSet<E>>> groupingByToSet(final Function<? super E, ? extends K> classifier) {
+        return toImmSortedMap(TreeList23.naturalOrder(), classifier, HashSet23::singleton, ImmSet::union);
+    }
+
+    private static <E, K, V, M> Collector<E, ?, M> entries(final Comparator<? super K> keyComparator,
+            final Function<? super E, ? extends K> keyMapper, final Function<? super E, ? extends V> valueMapper, final BinaryOperator<V> merge,
+            final Function<TreeList23<Entry<K, V>>, M> finisher) {
+        Requirements.require(keyMapper, Requirements.notNull(), () -> "keyMapper");
+        Requirements.require(valueMapper, Requirements.notNull(), () -> "valueMapper");
+        Requirements.require(merge, Requirements.notNull(), () -> "merge");
+        final Comparator<Entry<K, V>> entryComparator = (a, b) -> keyComparator.compare(a.getKey(), b.getKey());
+        final BinaryOperator<Entry<K, V>> entryMerge = (a, b) -> new AbstractMap.SimpleImmutableEntry<>(a.getKey(), merge.apply(a.getValue(), b.getValue()));
+        return Collector.<E, SortedBuilder<Entry<K, V>>, M>of(
+                () -> new SortedBuilder<>(entryComparator, entryMerge),
+                (b, e) -> b.add(new AbstractMap.SimpleImmutableEntry<>(keyMapper.apply(e), valueMapper.apply(e))),
+                SortedBuilder::addAll, b -> finisher.apply(b.build()));
+    }
+
+    private static <V> BinaryOperator<V> throwingMerger() {
+        return (a, b) -> {
+            throw new IllegalStateException("Duplicate key, values " + a + " and " + b);
+        };
+    }
+
+    //
+    // Collects the elements of one thread unsorted, sorting them only when parts are joined or the result is built.
+    // Equal elements are merged in encounter order.
+    //
+    private static final class SortedBuilder<E> {
+        private final Comparator<? super E> comparator;
+        private final BinaryOperator<E> merge;
+        private final List<E> pending = new ArrayList<>();
+        private TreeList23<E> sorted = TreeList23.empty();
+
+        SortedBuilder(final Comparator<? super E> comparator, final BinaryOperator<E> merge) {
+            this.comparator = comparator;
+            this.merge = merge;
+        }
+
+        void add(final E element) {
+            pending.add(element);
+        }
+
+        SortedBuilder<E> addAll(final SortedBuilder<E> other) {
+            sorted = TreeList23.union(comparator, merge, build(), other.build());
+            return this;
+        }
+
+        TreeList23<E> build() {
+            if (!pending.isEmpty()) {
+                // The sort is stable, so equal elements are merged in encounter order.
+                pending.sort(comparator);
+                final TreeBuilder<E> builder = new TreeBuilder<>();
+                E run = pending.get(0);
+                for(int i = 1; i < pending.size(); i++) {
+                    final E e = pending.get(i);
+                    if (comparator.compare(run, e) == 0) {
+                        run = merge.apply(run, e);
+                    } else {
+                        builder.add(run);
+                        run = e;
+                    }
+                }
+                builder.add(run);
+                pending.clear();
+                sorted = TreeList23.union(comparator, merge, sorted, builder.build());
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package collections.immutable;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * The policy that compacts trees left sparse by editing.
+ * <p>A 2-3 tree stays balanced under any edit, but its branches drift toward 2 branches each:
+ * inserts split full branches in two, and concatenations and splits leave uneven edges.   Such a tree
+ * is deeper and has half again as many branches as one whose branches have 3 branches each.
+ * {@link ImmList#compact()} and the <code>compact()</code> of every other collection rebuild the tree
+ * as full as possible in O(n).
+ * <p>With a threshold above 0, an edit of a list, set or map that adds, inserts, removes, sets or replaces elements
+ * estimates the fill of the new tree, and compacts it when the fill is below the threshold.   The fill is the mean
+ * number of branches of the lowest branches on the paths to three elements, divided by 3, so it is O(log n) to estimate,
+ * 2/3 for a tree of 2-branch nodes and 1 for a compact one, and trees edited at random settle at about 0.8.   Only edits count: head, tail and range reads, and the
+ * splits a union is made of, are never compacted.   A tree is only compacted once it has been edited at least
+ * {@code size / }{@link #EDITS_PER_COMPACTION} times since it was built, split off or last compacted, so that a version
+ * and the versions edited from it pay the O(n) of compacting at most once per a number of edits in proportion to n.   Trees built from a
+ * collection are as full as compacted ones, and trees smaller than {@link #MIN_SIZE} are never
+ * compacted automatically.
+ * <p>The threshold is 0, off, unless set by {@link #setThreshold(double)} or the system property
+ * {@code collections.immutable.compaction.threshold}.   Automatic compactions are counted by
+ * {@link ImmMetrics.Counter#COMPACTIONS}.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmCompaction.setThreshold(0.75);
+ *     ImmList<Integer> l = ImmCollections.asList(elements).add(1);
+ *     assert ImmCompaction.fillOf(l) > 0.75;
+ * }</pre>
+ */
+public final class ImmCompaction {
+    /**
+     * The size below which trees are not compacted automatically.
+     */
+    public static final int MIN_SIZE = 64;
+
+    /**
+     * A tree is compacted automatically only once it has been edited {@code size / EDITS_PER_COMPACTION} times
+     * since it was built, split off or last compacted.
+     */
+    public static final int EDITS_PER_COMPACTION = 8;
+
+    // Read on every edit.
+    private static volatile double threshold = threshold(System.getProperty("collections.immutable.compaction.threshold"));
+
+    private ImmCompaction() {
+    }
+
+    private static double threshold(final String property) {
+        try {
+            return property == null ? 0 : Math.max(0, Math.min(1, Double.parseDouble(property)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the fill below which an edited tree is compacted, 0 if trees are never compacted automatically.
+     * @return the compaction threshold
+     */
+    public static double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the fill below which an edited tree is compacted, once it has been edited enough.
+     * @param threshold The threshold, between 0, never, and 1
+     */
+    public static void setThreshold(final double threshold) {
+        ImmCompaction.threshold = Requirements.require(threshold, Requirements.and(Requirements.ge(0.0), Requirements.le(1.0)), () -> "threshold");
+    }
+
+    /**
+     * Returns the estimated fill of the tree of a list or set, from 2/3 when its branches have 2 branches to 1 when they have 3.
+     * <p>This operation is O(log n).
+     * @param collection A list or set made by {@link ImmCollections}
+     * @return the estimated fill of its tree, 1 if it has no branches
+     * @throws IllegalArgumentException if the collection is not backed by a tree
+     */
+    public static double fillOf(final ImmCollection<?> collection) {
+        return TreeList23.estimateFill(ImmMetrics.rootOf(Requirements.require(collection, Requirements.notNull(), () -> "collection")));
+    }
+
+    /**
+     * Returns the estimated fill of the tree of a map, from 2/3 when its branches have 2 branches to 1 when they have 3.
+     * <p>This operation is O(log n).
+     * @param map A map made by {@link ImmCollections}
+     * @return the estimated fill of its tree, 1 if it has no branches
+     * @throws IllegalArgumentException if the map is not backed by a tree
+     */
+    public static double fillOf(final ImmMap<?, ?> map) {
+        return TreeList23.estimateFill(ImmMetrics.rootOf(Requirements.require(map, Requirements.notNull(), () -> "map")));
+    }
+
+    // Whether root, edited the given number of times, is large, edited and sparse enough to compact.
+    // Counts the compaction when it is.
+    static boolean isDue(final Node23<?> root, final int edits) {
+        final double t = threshold;
+        if (t <= 0 || root.size() < MIN_SIZE || edits < root.size() / EDITS_PER_COMPACTION || TreeList23.estimateFill(root) >= t) {
+            return false;
+        }
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.COMPACTIONS);
+        }
+        return true;
+    }
+}
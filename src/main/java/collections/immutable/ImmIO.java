@@ -0,0 +1,473 @@
+package collections.immutable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * Reads and writes immutable collections in a compact, versioned binary format.
+ * <p>Elements are written in order by streaming the leaves of the tree, and are read back
+ * with an O(n) bulk build.   The size of the collection and the identity of its comparator
+ * are recorded, so a sorted collection read with the same comparator is trusted, and
+ * is never sorted again.
+ * <p>Comparators are identified by name.   The natural ordering and its reverse are
+ * always known, other comparators can be named with {@link #namedComparator(String, Comparator)}.
+ * Collections ordered by an unnamed comparator are checked as they are read,
+ * and sorted if they turn out not to be in order.
+ * <p>Use a {@link java.io.DataOutputStream} and {@link java.io.DataInputStream} to write to and
+ * read from streams, or {@link java.nio.channels.Channels} to read from channels.
+ * <p>Sorted maps larger than the heap can be written with {@link #writeMapped(Path, ImmSortedMap, ImmCodec, ImmCodec)}
+ * and memory mapped with {@link #mapSortedMap(Path, Comparator, ImmCodec, ImmCodec)}.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmIO.write(out, ImmCollections.asSortedSet(1, 2, 3), ImmCodec.ofInteger());
+ *     ImmSortedSet<Integer> s = ImmIO.readSortedSet(in, ImmCodec.ofInteger());
+ * }</pre>
+ */
+public final class ImmIO {
+    private static final int MAGIC = 0x32334330;
+    private static final int VERSION = 1;
+
+    private static final int LIST = 1;
+    private static final int SET = 2;
+    private static final int SORTED_SET = 3;
+    private static final int MAP = 4;
+    private static final int SORTED_MAP = 5;
+    private static final int MAPPED_SORTED_MAP = 6;
+
+    private static final String[] KINDS = {"", "list", "set", "sorted set", "map", "sorted map", "mapped sorted map"};
+
+    // Offset of the root, followed by the magic number.
+    private static final int TRAILER = Long.BYTES + Integer.BYTES;
+    // The most elements room is made for before they are read, since the size comes from the stream.
+    private static final int PREALLOCATED = 1 << 16;
+
+    private ImmIO() {
+    }
+
+    /**
+     * Returns a comparator that behaves as <code>comparator</code>, and that is identified by <code>name</code>
+     * when a sorted collection is written.
+     * <p>Use the same name for the same ordering when writing and reading.
+     * @param <E> The element type
+     * @param name The name of the ordering, must not be empty.
+     * @param comparator The comparator
+     * @return a comparator identified by <code>name</code>
+     */
+    public static <E> Comparator<E> namedComparator(final String name, final Comparator<E> comparator) {
+        Requirements.require(name, Requirements.notNull(), () -> "name");
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("name must not be empty");
+        }
+        return new NamedComparator<>(name, Requirements.require(comparator, Requirements.notNull(), () -> "comparator"));
+    }
+
+    /**
+     * Writes a list, set or sorted set.
+     * <p>This operation is O(n).
+     * @param <E> The element type
+     * @param out The output
+     * @param collection The collection to write
+     * @param codec The codec of the elements
+     * @throws IOException if the collection could not be written
+     */
+    public static <E> void write(final DataOutput out, final ImmCollection<E> collection, final ImmCodec<E> codec) throws IOException {
+        Requirements.require(out, Requirements.notNull(), () -> "out");
+        Requirements.require(collection, Requirements.notNull(), () -> "collection");
+        Requirements.require(codec, Requirements.notNull(), () -> "codec");
+        if (collection instanceof ImmList) {
+            writeHeader(out, LIST, collection.size());
+        } else if (collection instanceof ImmSortedSet) {
+            writeHeader(out, SORTED_SET, collection.size());
+            out.writeUTF(NamedComparator.nameOf(((ImmSortedSet<E>)collection).getComparator()));
+        } else if (collection instanceof ImmSet) {
+            writeHeader(out, SET, collection.size());
+        } else {
+            throw new IllegalArgumentException("unsupported collection: " + collection.getClass().getName());
+        }
+        for(E e: collection) {
+            codec.write(out, e);
+        }
+    }
+
+    /**
+     * Writes a list, set or sorted set.
+     * <p>This operation is O(n).
+     * @param <E> The element type
+     * @param out The output, the channel is not closed
+     * @param collection The collection to write
+     * @param codec The codec of the elements
+     * @throws IOException if the collection could not be written
+     */
+    public static <E> void write(final WritableByteChannel out, final ImmCollection<E> collection, final ImmCodec<E> codec) throws IOException {
+        final DataOutputStream dout = dataOutput(out);
+        write((DataOutput)dout, collection, codec);
+        dout.flush();
+    }
+
+    /**
+     * Writes a map or sorted map.
+     * <p>This operation is O(n).
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param out The output
+     * @param map The map to write
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @throws IOException if the map could not be written
+     */
+    public static <K, V> void write(final DataOutput out, final ImmMap<K, V> map, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        Requirements.require(out, Requirements.notNull(), () -> "out");
+        Requirements.require(map, Requirements.notNull(), () -> "map");
+        Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec");
+        Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec");
+        if (map instanceof ImmSortedMap) {
+            writeHeader(out, SORTED_MAP, map.size());
+            out.writeUTF(NamedComparator.nameOf(((ImmSortedMap<K, V>)map).getKeyComparator()));
+        } else {
+            writeHeader(out, MAP, map.size());
+        }
+        for(Entry<K, V> e: map) {
+            keyCodec.write(out, e.getKey());
+            valueCodec.write(out, e.getValue());
+        }
+    }
+
+    /**
+     * Writes a map or sorted map.
+     * <p>This operation is O(n).
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param out The output, the channel is not closed
+     * @param map The map to write
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @throws IOException if the map could not be written
+     */
+    public static <K, V> void write(final WritableByteChannel out, final ImmMap<K, V> map, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        final DataOutputStream dout = dataOutput(out);
+        write((DataOutput)dout, map, keyCodec, valueCodec);
+        dout.flush();
+    }
+
+    /**
+     * Reads a list.
+     * <p>This operation is O(n).
+     * @param <E> The element type
+     * @param in The input
+     * @param codec The codec of the elements
+     * @return The list read
+     * @throws IOException if a list could not be read
+     */
+    public static <E> ImmList<E> readList(final DataInput in, final ImmCodec<E> codec) throws IOException {
+        final int size = readHeader(Requirements.require(in, Requirements.notNull(), () -> "in"), LIST);
+        return readTrusted(in, size, Requirements.require(codec, Requirements.notNull(), () -> "codec"));
+    }
+
+    /**
+     * Reads a set.
+     * <p>This operation is O(n), unless the elements hash differently than when they were written.
+     * @param <E> The element type
+     * @param in The input
+     * @param codec The codec of the elements
+     * @return The set read
+     * @throws IOException if a set could not be read
+     */
+    public static <E> ImmSet<E> readSet(final DataInput in, final ImmCodec<E> codec) throws IOException {
+        final int size = readHeader(Requirements.require(in, Requirements.notNull(), () -> "in"), SET);
+        return new HashSet23<>(readChecked(in, size, Requirements.require(codec, Requirements.notNull(), () -> "codec"), HashSet23::compare));
+    }
+
+    /**
+     * Reads a sorted set ordered by the natural ordering of its elements.
+     * <p>This operation is O(n).
+     * @param <E> The element type
+     * @param in The input
+     * @param codec The codec of the elements
+     * @return The sorted set read
+     * @throws IOException if a sorted set could not be read, or it was not ordered naturally
+     */
+    public static <E> ImmSortedSet<E> readSortedSet(final DataInput in, final ImmCodec<E> codec) throws IOException {
+        return readSortedSet(in, TreeList23.naturalOrder(), codec);
+    }
+
+    /**
+     * Reads a sorted set ordered by <code>comparator</code>.
+     * <p>This operation is O(n) if the set was written with the same comparator.
+     * @param <E> The element type
+     * @param in The input
+     * @param comparator The comparator of the elements
+     * @param codec The codec of the elements
+     * @return The sorted set read
+     * @throws IOException if a sorted set could not be read, or it was written with a different comparator
+     */
+    public static <E> ImmSortedSet<E> readSortedSet(final DataInput in, final Comparator<? super E> comparator, final ImmCodec<E> codec) throws IOException {
+        final int size = readHeader(Requirements.require(in, Requirements.notNull(), () -> "in"), SORTED_SET);
+        Requirements.require(comparator, Requirements.notNull(), () -> "comparator");
+        Requirements.require(codec, Requirements.notNull(), () -> "codec");
+        return new TreeSet23<>(comparator, trusted(in.readUTF(), comparator) ?
+                readTrusted(in, size, codec) :
+                readChecked(in, size, codec, comparator));
+    }
+
+    /**
+     * Reads a map.
+     * <p>This operation is O(n), unless the keys hash differently than when they were written.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param in The input
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return The map read
+     * @throws IOException if a map could not be read
+     */
+    public static <K, V> ImmMap<K, V> readMap(final DataInput in, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        final int size = readHeader(Requirements.require(in, Requirements.notNull(), () -> "in"), MAP);
+        return new HashMap23<>(readChecked(in, size, entryCodec(keyCodec, valueCodec),
+                (a, b) -> HashSet23.compare(a.getKey(), b.getKey())));
+    }
+
+    /**
+     * Reads a sorted map ordered by the natural ordering of its keys.
+     * <p>This operation is O(n).
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param in The input
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return The sorted map read
+     * @throws IOException if a sorted map could not be read, or it was not ordered naturally
+     */
+    public static <K, V> ImmSortedMap<K, V> readSortedMap(final DataInput in, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        return readSortedMap(in, TreeList23.naturalOrder(), keyCodec, valueCodec);
+    }
+
+    /**
+     * Reads a sorted map ordered by <code>keyComparator</code>.
+     * <p>This operation is O(n) if the map was written with the same comparator.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param in The input
+     * @param keyComparator The comparator of the keys
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return The sorted map read
+     * @throws IOException if a sorted map could not be read, or it was written with a different comparator
+     */
+    public static <K, V> ImmSortedMap<K, V> readSortedMap(final DataInput in, final Comparator<? super K> keyComparator,
+            final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        final int size = readHeader(Requirements.require(in, Requirements.notNull(), () -> "in"), SORTED_MAP);
+        Requirements.require(keyComparator, Requirements.notNull(), () -> "keyComparator");
+        final ImmCodec<Entry<K, V>> codec = entryCodec(keyCodec, valueCodec);
+        return new TreeMap23<>(keyComparator, trusted(in.readUTF(), keyComparator) ?
+                readTrusted(in, size, codec) :
+                readChecked(in, size, codec, (a, b) -> keyComparator.compare(a.getKey(), b.getKey())));
+    }
+
+    /**
+     * Writes a sorted map to <code>path</code> in a form that can be memory mapped with
+     * {@link #mapSortedMap(Path, Comparator, ImmCodec, ImmCodec)}.
+     * <p>This operation is O(n).
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param path The file to write, replaced if it exists
+     * @param map The map to write
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @throws IOException if the map could not be written
+     */
+    public static <K, V> void writeMapped(final Path path, final ImmSortedMap<K, V> map,
+            final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        Requirements.require(path, Requirements.notNull(), () -> "path");
+        final TreeMap23<K, V> m = ImmSync.treeMap(Requirements.require(map, Requirements.notNull(), () -> "map"));
+        final ImmCodec<Entry<K, V>> codec = entryCodec(keyCodec, valueCodec);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final DiskNode23.Writer<Entry<K, V>> writer = new DiskNode23.Writer<>(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), codec);
+            final DataOutputStream out = writer.data();
+            writeHeader(out, MAPPED_SORTED_MAP, m.size());
+            out.writeUTF(NamedComparator.nameOf(m.keyComparator));
+            out.writeLong(m.entries.root == null ? -1 : writer.writeNode(ArrayNode23.expand(m.entries.root)));
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps a sorted map written by {@link #writeMapped(Path, ImmSortedMap, ImmCodec, ImmCodec)}, ordered by the
+     * natural ordering of its keys.
+     * <p>This operation is O(1).
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param path The file to map
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return The sorted map in the file
+     * @throws IOException if the file could not be mapped, or it was not ordered naturally
+     */
+    public static <K, V> ImmSortedMap<K, V> mapSortedMap(final Path path, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        return mapSortedMap(path, TreeList23.naturalOrder(), keyCodec, valueCodec);
+    }
+
+    /**
+     * Maps a sorted map written by {@link #writeMapped(Path, ImmSortedMap, ImmCodec, ImmCodec)}, ordered by
+     * <code>keyComparator</code>.
+     * <p>Nothing is loaded up front, the nodes of the tree are decoded from the file as they are visited,
+     * so looking up a key decodes O(log n) nodes.   The file is shared through the page cache with every
+     * other process that maps it.
+     * <p>The returned map can be updated like any other, the updated map is built on the heap
+     * and shares every untouched subtree with the file.
+     * <p>The keys are never checked, so the map must have been written with <code>keyComparator</code>,
+     * which must be the natural ordering, its reverse, or named with {@link #namedComparator(String, Comparator)}.
+     * <p>This operation is O(1).
+     * <p>Example:
+     * <pre>{@code
+     *     ImmIO.writeMapped(path, ImmCollections.asSortedMap(map), ImmCodec.ofInteger(), ImmCodec.ofString());
+     *     ImmSortedMap<Integer, String> m = ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString());
+     * }</pre>
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param path The file to map
+     * @param keyComparator The comparator of the keys
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return The sorted map in the file
+     * @throws IOException if the file could not be mapped, or either comparator is unnamed, or it was written with a different comparator
+     */
+    public static <K, V> ImmSortedMap<K, V> mapSortedMap(final Path path, final Comparator<? super K> keyComparator,
+            final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        Requirements.require(keyComparator, Requirements.notNull(), () -> "keyComparator");
+        final ImmCodec<Entry<K, V>> codec = entryCodec(keyCodec, valueCodec);
+        final MappedFile file = MappedFile.map(Requirements.require(path, Requirements.notNull(), () -> "path"));
+        final DataInputStream in = new DataInputStream(file.input(0));
+        final int size = readHeader(in, MAPPED_SORTED_MAP);
+        if (!trusted(in.readUTF(), keyComparator)) {
+            throw new IOException("the order of the keys of a mapped map cannot be checked, name the comparator with ImmIO.namedComparator");
+        }
+        if (file.size() < TRAILER || file.getInt(file.size() - Integer.BYTES) != MAGIC) {
+            throw new IOException("truncated file: " + path);
+        }
+        final long root = file.getLong(file.size() - TRAILER);
+        final TreeList23<Entry<K, V>> entries = root < 0 ? TreeList23.empty() : new TreeList23<>(DiskNode23.read(file, root, codec));
+        if (entries.size() != size) {
+            throw new IOException("corrupt file: " + path);
+        }
+        return new TreeMap23<>(keyComparator, entries);
+    }
+
+    private static <K, V> ImmCodec<Entry<K, V>> entryCodec(final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) {
+        return ImmCodec.ofEntry(Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec"),
+                Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec"));
+    }
+
+    private static DataOutputStream dataOutput(final WritableByteChannel out) {
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(Requirements.require(out, Requirements.notNull(), () -> "out")), 1 << 16));
+    }
+
+    private static void writeHeader(final DataOutput out, final int kind, final int size) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        VarInts.write(out, size);
+    }
+
+    // Reads the header, returning the size of the collection.
+    private static int readHeader(final DataInput in, final int kind) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not an immutable collection");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported version: " + version);
+        }
+        final int k = in.readUnsignedByte();
+        if (k != kind) {
+            throw new IOException("expected a " + KINDS[kind] + " but found a " + (k < KINDS.length ? KINDS[k] : String.valueOf(k)));
+        }
+        return VarInts.readSize(in);
+    }
+
+    // Returns true if the elements were written in the order of the comparator.
+    private static boolean trusted(final String written, final Comparator<?> comparator) throws IOException {
+        final String name = NamedComparator.nameOf(comparator);
+        if (written.isEmpty() || name.isEmpty()) {
+            return false;
+        }
+        if (!written.equals(name)) {
+            throw new IOException("written with comparator " + written + " but read with " + name);
+        }
+        return true;
+    }
+
+    // Reads elements known to be in order straight into a tree.
+    private static <E> TreeList23<E> readTrusted(final DataInput in, final int size, final ImmCodec<E> codec) throws IOException {
+        try {
+            return TreeList23.quickConstruct(new LeafReader<>(in, size, codec));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Reads elements that should be in order, sorting them if they are not.
+    private static <E> TreeList23<E> readChecked(final DataInput in, final int size, final ImmCodec<E> codec,
+            final Comparator<? super E> comparator) throws IOException {
+        final List<Leaf<E>> leaves = new ArrayList<>(Math.min(size, PREALLOCATED));
+        boolean sorted = true;
+        for(int i = 0; i < size; i++) {
+            final Leaf<E> leaf = new Leaf<>(codec.read(in));
+            sorted = sorted && (i == 0 || comparator.compare(leaves.get(i - 1).leafValue(), leaf.leafValue()) < 0);
+            leaves.add(leaf);
+        }
+        return TreeList23.quickConstruct(sorted ?
+                leaves.iterator() :
+                new RemoveDupsIterator<>(TreeList23.sortLeaves(comparator, leaves.iterator()), comparator));
+    }
+
+    // Reads a known number of elements as leaves.
+    private static final class LeafReader<E> implements Iterator<Leaf<E>> {
+        final DataInput in;
+        final ImmCodec<E> codec;
+        int remaining;
+
+        LeafReader(final DataInput in, final int size, final ImmCodec<E> codec) {
+            this.in = in;
+            this.codec = codec;
+            this.remaining = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Leaf<E> next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            try {
+                return new Leaf<>(codec.read(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package collections.immutable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * A pool that makes equal subtrees of immutable collections physically shared.
+ * <p>Collections built independently from overlapping data, such as one set of permissions
+ * per tenant, store their equal parts again and again.   Interning a collection replaces every
+ * leaf and branch with the equal one already in the pool, adding those that are new, so equal
+ * subtrees of every interned collection are the same objects.   Collections built the same way from
+ * equal data get the very same tree, and comparing them is a single reference comparison.
+ * <p>Leaves, and the arrays that hold the elements of small collections, are equal when their elements are equal,
+ * and branches when their branches are the same objects.
+ * Equal elements therefore become one instance, which is the point for values, but not for mutable objects.
+ * The elements of hash sets and keys of hash maps that are not {@link Comparable} are left as they are,
+ * since where they are kept among elements of the same hash depends on their instance.
+ * <p>The pool holds its nodes weakly, so a node stays in the pool only as long as some collection uses it.
+ * A collection that is already interned costs O(1) to intern again, and a version made from one
+ * by a single update costs O(log n), since everything else is found in the pool.
+ * Nodes below a {@link ImmList#map(java.util.function.Function) mapped} or
+ * {@link ImmList#reversed() reversed} view, {@link ImmList#freeze() frozen} or read from a file, are left as they are.
+ * <p>A pool is thread safe.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmInterner pool = ImmCollections.interned();
+ *     ImmSortedSet<String> a = pool.intern(ImmCollections.asSortedSet(permissions));
+ *     ImmSortedSet<String> b = pool.intern(ImmCollections.asSortedSet(new ArrayList<>(permissions)));
+ *     assert a.equals(b);
+ * }</pre>
+ */
+public final class ImmInterner {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ImmInterner SHARED = new ImmInterner();
+
+    private final ReferenceQueue<Node23<?>> queue = new ReferenceQueue<>();
+    private Ref[] table = new Ref[INITIAL_CAPACITY];
+    private int count;
+
+    private ImmInterner() {
+    }
+
+    /**
+     * Returns a new, empty pool, whose nodes are shared only by the collections interned in it.
+     * @return a new pool
+     */
+    public static ImmInterner create() {
+        return new ImmInterner();
+    }
+
+    // The pool returned by ImmCollections.interned().
+    static ImmInterner shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a list equal to <code>list</code> made of the nodes in this pool.
+     * <p>This operation is O(n) for a list with nothing in the pool, O(1) for an interned list.
+     * @param <E> The element type
+     * @param list The list
+     * @return an equal list sharing its nodes with every list interned in this pool
+     */
+    public <E> ImmList<E> intern(final ImmList<E> list) {
+        Requirements.require(list, Requirements.notNull(), () -> "list");
+        if (!(list instanceof TreeList23)) {
+            return list;
+        }
+        return internList((TreeList23<E>)list, false);
+    }
+
+    /**
+     * Returns a set equal to <code>set</code> made of the nodes in this pool.
+     * <p>This operation is O(n) for a set with nothing in the pool, O(1) for an interned set.
+     * @param <E> The element type
+     * @param set The set
+     * @return an equal set sharing its nodes with every set interned in this pool
+     */
+    public <E> ImmSet<E> intern(final ImmSet<E> set) {
+        Requirements.require(set, Requirements.notNull(), () -> "set");
+        if (set instanceof TreeSet23) {
+            return intern((ImmSortedSet<E>)set);
+        }
+        if (!(set instanceof HashSet23)) {
+            return set;
+        }
+        final HashSet23<E> s = (HashSet23<E>)set;
+        final TreeList23<E> elements = internList(s.elements, true);
+        return elements == s.elements ? s : new HashSet23<>(elements);
+    }
+
+    /**
+     * Returns a sorted set equal to <code>set</code>, with the same comparator, made of the nodes in this pool.
+     * <p>This operation is O(n) for a set with nothing in the pool, O(1) for an interned set.
+     * @param <E> The element type
+     * @param set The set
+     * @return an equal set sharing its nodes with every set interned in this pool
+     */
+    public <E> ImmSortedSet<E> intern(final ImmSortedSet<E> set) {
+        Requirements.require(set, Requirements.notNull(), () -> "set");
+        if (!(set instanceof TreeSet23)) {
+            return set;
+        }
+        final TreeSet23<E> s = (TreeSet23<E>)set;
+        final TreeList23<E> elements = internList(s.elements, false);
+        return elements == s.elements ? s : new TreeSet23<>(s.comparator, elements);
+    }
+
+    /**
+     * Returns a map equal to <code>map</code> made of the nodes in this pool.
+     * Its entries are shared too.
+     * <p>This operation is O(n) for a map with nothing in the pool, O(1) for an interned map.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The map
+     * @return an equal map sharing its nodes with every map interned in this pool
+     */
+    public <K, V> ImmMap<K, V> intern(final ImmMap<K, V> map) {
+        Requirements.require(map, Requirements.notNull(), () -> "map");
+        if (map instanceof TreeMap23) {
+            return intern((ImmSortedMap<K, V>)map);
+        }
+        if (!(map instanceof HashMap23)) {
+            return map;
+        }
+        final HashMap23<K, V> m = (HashMap23<K, V>)map;
+        final TreeList23<Entry<K, V>> entries = internList(m.entries, true);
+        return entries == m.entries ? m : new HashMap23<>(entries);
+    }
+
+    /**
+     * Returns a sorted map equal to <code>map</code>, with the same comparator, made of the nodes in this pool.
+     * Its entries are shared too.
+     * <p>This operation is O(n) for a map with nothing in the pool, O(1) for an interned map.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The map
+     * @return an equal map sharing its nodes with every map interned in this pool
+     */
+    public <K, V> ImmSortedMap<K, V> intern(final ImmSortedMap<K, V> map) {
+        Requirements.require(map, Requirements.notNull(), () -> "map");
+        if (!(map instanceof TreeMap23)) {
+            return map;
+        }
+        final TreeMap23<K, V> m = (TreeMap23<K, V>)map;
+        final TreeList23<Entry<K, V>> entries = internList(m.entries, false);
+        return entries == m.entries ? m : new TreeMap23<>(m.keyComparator, entries);
+    }
+
+    /**
+     * Returns the number of nodes in this pool that are still in use.
+     * @return the number of nodes in this pool
+     */
+    public synchronized int size() {
+        expunge();
+        return count;
+    }
+
+    // A hashed list is ordered by HashSet23.compare, whose order may depend on the instances of its elements.
+    private <E> TreeList23<E> internList(final TreeList23<E> list, final boolean hashed) {
+        final Node23<E> root;
+        synchronized (this) {
+            expunge();
+            root = internNode(list.root, hashed);
+        }
+        return root == list.root ? list : new TreeList23<>(root);
+    }
+
+    // The node of the pool equal to node, which is added if there is none.
+    // In a hashed list, elements whose place depends on their instance are kept, since an equal instance could belong elsewhere.
+    private <E> Node23<E> internNode(final Node23<E> node, final boolean hashed) {
+        if (node instanceof Leaf) {
+            return hashed && !isOrderedByValue(node.leafValue()) ? node : canonical(node, Objects.hashCode(node.leafValue()));
+        }
+        if (node instanceof ArrayNode23) {
+            for(int i = 0; hashed && i < node.size(); i++) {
+                if (!isOrderedByValue(node.get(i))) {
+                    return node;
+                }
+            }
+            return canonical(node, ((ArrayNode23<E>)node).elementsHash());
+        }
+        if (!(node instanceof Branch)) {
+            return node;
+        }
+        // A node of the pool has branches of the pool, so it is found without visiting them.
+        if (contains(node, branchHash(node))) {
+            return node;
+        }
+        final int n = node.numBranches();
+        final Node23<E> b0 = internNode(node.getBranch(0), hashed);
+        final Node23<E> b1 = internNode(node.getBranch(1), hashed);
+        final Node23<E> b2 = n == 3 ? internNode(node.getBranch(2), hashed) : null;
+        final Node23<E> branch;
+        if (b0 == node.getBranch(0) && b1 == node.getBranch(1) && (n == 2 || b2 == node.getBranch(2))) {
+            branch = node;
+        } else {
+            branch = n == 2 ? new Branch<>(b0, b1) : new Branch<>(b0, b1, b2);
+        }
+        return canonical(branch, branchHash(branch));
+    }
+
+    // Whether an element of a hash set, or the key of an entry of a hash map, is placed by its value alone.
+    private static boolean isOrderedByValue(final Object element) {
+        return HashSet23.isOrderedByValue(element instanceof Entry ? ((Entry<?, ?>)element).getKey() : element);
+    }
+
+    private static int branchHash(final Node23<?> branch) {
+        int h = 1;
+        for(int i = 0; i < branch.numBranches(); i++) {
+            h = h * 31 + System.identityHashCode(branch.getBranch(i));
+        }
+        return h;
+    }
+
+    private boolean contains(final Node23<?> node, final int hash) {
+        for(Ref r = table[indexOf(hash)]; r != null; r = r.next) {
+            if (r.get() == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <E> Node23<E> canonical(final Node23<E> node, final int hash) {
+        final int i = indexOf(hash);
+        for(Ref r = table[i]; r != null; r = r.next) {
+            final Node23<?> other = r.get();
+            if (r.hash == hash && other != null && same(node, other)) {
+                @SuppressWarnings("unchecked")
+                final Node23<E> found = (Node23<E>)other;
+                return found;
+            }
+        }
+        table[i] = new Ref(node, hash, table[i], queue);
+        if (++count > table.length * 3 / 4) {
+            resize();
+        }
+        return node;
+    }
+
+    // Whether two nodes are interchangeable: equal leaves or arrays, or branches of the very same branches.
+    private static boolean same(final Node23<?> a, final Node23<?> b) {
+        if (a instanceof ArrayNode23 || b instanceof ArrayNode23) {
+            return a instanceof ArrayNode23 && b instanceof ArrayNode23 && ((ArrayNode23<?>)a).sameElements((ArrayNode23<?>)b);
+        }
+        if (a.isLeaf() || b.isLeaf()) {
+            return a.isLeaf() && b.isLeaf() && Objects.equals(a.leafValue(), b.leafValue());
+        }
+        if (a.numBranches() != b.numBranches()) {
+            return false;
+        }
+        for(int i = 0; i < a.numBranches(); i++) {
+            if (a.getBranch(i) != b.getBranch(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(final int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private void resize() {
+        final Ref[] old = table;
+        table = new Ref[old.length * 2];
+        for(Ref r: old) {
+            while (r != null) {
+                final Ref next = r.next;
+                final int i = indexOf(r.hash);
+                r.next = table[i];
+                table[i] = r;
+                r = next;
+            }
+        }
+    }
+
+    // Removes the nodes that are no longer used.
+    private void expunge() {
+        for(Object o = queue.poll(); o != null; o = queue.poll()) {
+            final Ref ref = (Ref)o;
+            final int i = indexOf(ref.hash);
+            Ref prev = null;
+            for(Ref r = table[i]; r != null; prev = r, r = r.next) {
+                if (r == ref) {
+                    if (prev == null) {
+                        table[i] = r.next;
+                    } else {
+                        prev.next = r.next;
+                    }
+                    count--;
+                    break;
+                }
+            }
+        }
+    }
+
+    // An entry of the pool's hash table, holding its node weakly.
+    private static final class Ref extends WeakReference<Node23<?>> {
+        final int hash;
+        Ref next;
+
+        Ref(final Node23<?> node, final int hash, final Ref next, final ReferenceQueue<Node23<?>> queue) {
+            super(node, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package collections.immutable;
 
 import java.util.List;
 import java.util.ListIterator;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -68,6 +69,50 @@ public interface ImmList<E> extends ImmCollection<E> {
     @Override
     ImmList<E> filter(Predicate<E> filter);
 
+    /**
+     * Returns a list with only items that match <code>filter</code>, testing the elements in parallel.
+     * <p>The tree is split on its branches into fork join tasks, and the results are joined by concatenation.
+     * Any part of the list whose elements all match is kept as it is, without copying.
+     * <p>This operation is O(n * k / p + log n) where n = |this|, k = O(filter.test), and p = the parallelism of the common pool.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original list is left unchanged.
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asList(6, 1, 6, 8).parallelFilter(e -> e != 6 ).asCollection().equals(Arrays.asList(1, 8));
+     * }</pre>
+     * @param filter The filter to apply, which must be thread safe
+     * @return A list with <code>filter</code> applied
+     */
+    ImmList<E> parallelFilter(Predicate<E> filter);
+
+    /**
+     * Returns a new list with <code>function</code> applied to all elements of this list, applying it in parallel.
+     * <p>Unlike {@link #map(Function)}, the function is applied once per element, up front.
+     * <p>This operation is O(n * k / p) where n = |this|, k = O(function.apply), and p = the parallelism of the common pool.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original list is left unchanged.
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asList(3, 4, 5).parallelMap(a -> a + 1).asCollection().equals(Arrays.asList(4,5,6));
+     * }</pre>
+     * @param <F> The new type of the elements.
+     * @param function The mapping function, which must be thread safe
+     * @return A new list of the mapped elements
+     */
+    <F> ImmList<F> parallelMap(Function<E, F> function);
+
+    /**
+     * Combines the elements of this list with <code>op</code>, in parallel.
+     * <p>Equivalent to <code>stream().reduce(identity, op)</code>.
+     * <p>This operation is O(n * k / p) where n = |this|, k = O(op.apply), and p = the parallelism of the common pool.
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asList(3, 4, 5).parallelReduce(0, Integer::sum) == 12;
+     * }</pre>
+     * @param identity The identity of <code>op</code>
+     * @param op The combining function, which must be associative and thread safe
+     * @return the elements combined with <code>op</code>, or <code>identity</code> if the list is empty
+     */
+    E parallelReduce(E identity, BinaryOperator<E> op);
+
    /**
      * Returns a list whose items also appear <code>other</code>.
      * <p>This operation is O(n log n) where n = |this| + |other|.
@@ -110,6 +155,40 @@ public interface ImmList<E> extends ImmCollection<E> {
 	 */
     @Override
 	ImmList<E> add(E element);
+
+    /**
+     * Returns an equal list whose tree is rebuilt as shallow and full as possible.
+     * Editing leaves a tree sparser and deeper than it needs to be; see {@link ImmCompaction}.
+     * A {@link #map(Function) mapped} or {@link #reversed() reversed} list is copied into a list of its own.
+     * <p>This operation is O(n) where n = |this|.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original list is left unchanged.
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asList(6, 1, 6, 8).insertAt(1, 3).compact().asCollection().equals(Arrays.asList(6, 3, 1, 6, 8));
+     * }</pre>
+     * @return An equal, compacted list
+     */
+    @Override
+    ImmList<E> compact();
+
+    /**
+     * Returns an equal list whose elements are held in one contiguous array, for data that is read far more than it is written.
+     * {@link #getAt(int)} of a frozen list is O(1), and the searches of a frozen sorted set or map are binary searches of the array.
+     * Every edit of a frozen list builds a tree of its elements, O(n), which the frozen list does not keep.
+     * The edited versions are not frozen, and edits of them are O(log n) as usual.
+     * The ranges split off a frozen list, by {@link #headAt(int)}, {@link #tailAt(int)} or {@link #getRange(int, int)},
+     * copy their part of the array and are frozen too, O(k) where k is the size of the range.
+     * Lists of at most 8 elements are already held in an array, and are returned as they are.
+     * <p>This operation is O(n) where n = |this|.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original list is left unchanged.
+     * <p>Example:
+     * <pre>{@code
+     *     ImmList<Integer> l = ImmCollections.asList(rows).freeze();
+     *     assert l.getAt(5).equals(rows.get(5));
+     * }</pre>
+     * @return An equal, frozen list
+     */
+    ImmList<E> freeze();
 	
     /**
 	 * Returns a new list with <code>list[index] == element</code>.
@@ -265,6 +344,46 @@ public interface ImmList<E> extends ImmCollection<E> {
      * @throws IndexOutOfBoundsException if low &lt; 0 or low &gt; high or high &gt; size
 	 */
 	ImmList<E> getRange(int low, int high);
+
+    /**
+     * Returns the summary of the elements in range <code>[low, high - 1]</code>, according to <code>monoid</code>.
+     * <p>This operation is O(log n) where n = |this| when <code>monoid</code> is bound to the list by {@link #augment(ImmMonoid)},
+     * or is {@link ImmMonoid#count()}.   Otherwise the summaries of the elements in the range are combined, O(high - low).
+     * <p>Example:
+     * <pre>{@code
+     *     static final ImmMonoid<Integer, Long> SUM = ImmMonoid.sum(i -> i);
+     *     assert ImmCollections.asList(6, 1, 6, 8).augment(SUM).aggregate(1, 3, SUM) == 7L;
+     * }</pre>
+     * @param <S> The summary type
+     * @param low The low index (inclusive).   Must be in range <code>[0, high]</code>
+     * @param high The high index (exclusive).   Must be in range <code>[0, size]</code>
+     * @param monoid The monoid summarizing the elements
+     * @return the summary of the elements in the range, or the identity of <code>monoid</code> if it is empty
+     * @throws IndexOutOfBoundsException if low &lt; 0 or low &gt; high or high &gt; size
+     */
+    <S> S aggregate(int low, int high, ImmMonoid<? super E, S> monoid);
+	
+    /**
+     * Returns an equal list with <code>monoid</code> bound to it, whose {@link #aggregate(int, int, ImmMonoid) aggregates}
+     * with <code>monoid</code> are O(log n).   Every branch of its tree keeps the summary of its elements, and every list
+     * made from it by adding, inserting, setting, removing, replacing, appending, filtering, splitting or compacting
+     * keeps <code>monoid</code> bound, updating the summaries along the paths an edit changes in O(log n).
+     * <p>One monoid is bound to a list at a time: binding another replaces it, and to keep several summaries,
+     * bind a monoid whose summary holds them all.   The lists returned by {@link #map(java.util.function.Function)},
+     * {@link #reversed()} and {@link #freeze()} have no monoid bound, and their aggregates are O(high - low).
+     * <p>This operation is O(n), or O(1) if <code>monoid</code> is already bound.   Branches shared with other lists keep
+     * the summary of the first monoid bound to them, and are copied for any other.
+     * <p>Example:
+     * <pre>{@code
+     *     static final ImmMonoid<Integer, Long> SUM = ImmMonoid.sum(i -> i);
+     *     ImmList<Integer> l = ImmCollections.asList(elements).augment(SUM);
+     *     l = l.insertAt(5, 100).removeAt(0);
+     *     long total = l.aggregate(0, l.size(), SUM);
+     * }</pre>
+     * @param monoid The monoid summarizing the elements, which must be the same instance for every aggregate, such as a constant
+     * @return an equal list with <code>monoid</code> bound to it
+     */
+    ImmList<E> augment(ImmMonoid<? super E, ?> monoid);
 	
 	/**
 	 * Returns a list that is the original list reversed.
@@ -34,7 +34,9 @@ public interface ImmMap<K,V> extends Iterable<Entry<K,V>> {
 
     /**
      * Returns a new map23 with <code>entries</code> added.
-     * <p>This operation is O(n log n), where n = |this|.
+     * <p>When <code>entries</code> has more than one entry for a key, the last one wins.
+     * <p>The entries are sorted once and merged into the tree as a batch, so this operation is
+     * O(m log m + m log(n/m + 1)), where n = |this| and m = |entries|.
      * <p>*THIS OPERATION IS IMMUTABLE, THE PREVIOUS Map23 IS UNCHANGED!*.
      * <p>Example:
      * <pre>{@code
@@ -47,7 +49,7 @@ public interface ImmMap<K,V> extends Iterable<Entry<K,V>> {
 
     /**
      * Returns a new map23 with the contents of <code>map</code> added.
-     * <p>This operation is O(m * log n), where n = |this| and m = |other|.
+     * <p>This operation is O(m log m + m log(n/m + 1)), where n = |this| and m = |map|.
      * <p>*THIS OPERATION IS IMMUTABLE, THE PREVIOUS Map23 IS UNCHANGED!*.
      * <p>Example:
      * <pre>{@code
@@ -74,6 +76,15 @@ public interface ImmMap<K,V> extends Iterable<Entry<K,V>> {
      * @return a new map23 with <code>key</code> associated with <code>value</code>
      */
     ImmMap<K, V> put(K key, V value);
+
+    /**
+     * Returns an equal map whose tree is rebuilt as shallow and full as possible.
+     * Editing leaves a tree sparser and deeper than it needs to be; see {@link ImmCompaction}.
+     * <p>This operation is O(n), where n = |this|.
+     * <p>*THIS OPERATION IS IMMUTABLE, THE PREVIOUS Map23 IS UNCHANGED!*.
+     * @return An equal, compacted map
+     */
+    ImmMap<K, V> compact();
     
     /**
      * Returns true if this map contains <code>key</code>.
@@ -148,6 +159,19 @@ public interface ImmMap<K,V> extends Iterable<Entry<K,V>> {
      */
     V get(K key);
 
+    /**
+     * Returns the map of the entries whose keys are among <code>keys</code>, leaving out the keys that are not found.
+     * <p>The keys are sorted once and looked up together, with the descents sharing the upper levels of the tree,
+     * so this operation is O(k log k + k log(n/k + 1)), where n = |this| and k = |keys|, rather than O(k log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asMap(1,2,  3,4,  5,6).getAll(Arrays.asList(5, 1, 7)).equals(ImmCollections.asMap(1,2,  5,6));
+     * }</pre>
+     * @param keys The keys to lookup
+     * @return the map of the entries whose keys are among <code>keys</code>
+     */
+    ImmMap<K, V> getAll(Iterable<? extends K> keys);
+
     /**
      * Returns the value associated with <code>key</code>, using a default if not found.
      * <p>This operation is O(log n), where n = |this|.
@@ -0,0 +1,444 @@
+package collections.immutable;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * Opt-in counters of the work done by the collections, and statistics of the shape of their trees.
+ * <p>Counting is off unless enabled, by {@link #enable()} or by starting the JVM with
+ * {@code -Dcollections.immutable.metrics=true}.   While it is off, each counted operation costs
+ * one read of a static field.   While it is on, each costs an uncontended {@link LongAdder} increment,
+ * and the counts are global, across every collection and thread.
+ * Enabling or disabling is not synchronized with other threads, which see the change promptly but not necessarily at once.
+ * <p>The counts can be pulled with {@link #get(Counter)} and {@link #snapshot()}, or read over JMX
+ * once {@link #registerMBean()} has been called.
+ * <p>On Java 11 and later, bulk operations such as unions, filters and sorted construction whose inputs or output
+ * reach the {@link #getEventThreshold() event threshold} are also reported to Java Flight Recorder,
+ * as {@code collections.immutable.Operation} events with the operation, the sizes, the comparator calls and the
+ * elapsed time.   These events are recorded whenever a recording enables them, whether or not counting is on.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmMetrics.enable();
+ *     ImmMetrics.reset();
+ *     ImmSortedSet<Integer> s = ImmCollections.asSortedSet(1, 2, 3).add(4);
+ *     long comparisons = ImmMetrics.get(ImmMetrics.Counter.COMPARISONS);
+ *     ImmMetrics.Shape shape = ImmMetrics.shapeOf(s);
+ *     assert shape.getSize() == 4;
+ * }</pre>
+ */
+public final class ImmMetrics {
+    /**
+     * The name of the MBean registered by {@link #registerMBean()}.
+     */
+    public static final String MBEAN_NAME = "collections.immutable:type=ImmMetrics";
+
+    /**
+     * The kinds of work counted.
+     */
+    public enum Counter {
+        /**
+         * Comparator calls made by tree searches, merges and sorts.
+         */
+        COMPARISONS,
+        /**
+         * Tree nodes allocated, branches and leaves.
+         */
+        NODE_ALLOCATIONS,
+        /**
+         * Concatenations of two trees.
+         */
+        CONCATS,
+        /**
+         * Splits of a tree at an index, into a head or a tail.
+         */
+        SPLITS,
+        /**
+         * Iterators created over trees, including the iterators of branches that some walks create per node.
+         */
+        ITERATORS,
+        /**
+         * Trees rebuilt by {@link ImmCompaction the compaction policy} after an edit left them too sparse.
+         */
+        COMPACTIONS
+    }
+
+    // Read on every counted operation, so not volatile.
+    static boolean enabled = Boolean.getBoolean("collections.immutable.metrics");
+    private static volatile long eventThreshold = Long.getLong("collections.immutable.events.threshold", 10000);
+    private static final LongAdder[] COUNTS = new LongAdder[Counter.values().length];
+    static {
+        for(int i = 0; i < COUNTS.length; i++) {
+            COUNTS[i] = new LongAdder();
+        }
+    }
+
+    private ImmMetrics() {
+    }
+
+    // Counts one unit of work; callers test enabled first, so that nothing is done while counting is off.
+    static void count(final Counter counter) {
+        COUNTS[counter.ordinal()].increment();
+    }
+
+    /**
+     * Starts counting.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Stops counting, leaving the counts as they are.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Returns whether counting is on.
+     * @return whether counting is on
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets every count to zero.
+     * <p>Work counted by other threads while resetting may or may not be kept.
+     */
+    public static void reset() {
+        for(LongAdder a: COUNTS) {
+            a.reset();
+        }
+    }
+
+    /**
+     * Returns a count.
+     * @param counter The kind of work
+     * @return the work of that kind counted since the last reset
+     */
+    public static long get(final Counter counter) {
+        return COUNTS[Requirements.require(counter, Requirements.notNull(), () -> "counter").ordinal()].sum();
+    }
+
+    /**
+     * Returns every count.
+     * <p>Example:
+     * <pre>{@code
+     *     Map<ImmMetrics.Counter, Long> before = ImmMetrics.snapshot();
+     *     map.put(key, value);
+     *     Map<ImmMetrics.Counter, Long> after = ImmMetrics.snapshot();
+     * }</pre>
+     * @return an unmodifiable map from each kind of work to its count
+     */
+    public static Map<Counter, Long> snapshot() {
+        final Map<Counter, Long> counts = new EnumMap<>(Counter.class);
+        for(Counter c: Counter.values()) {
+            counts.put(c, COUNTS[c.ordinal()].sum());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Returns the least size of input or output for which a bulk operation is reported to Java Flight Recorder.
+     * <p>It is 10000 unless set, or given by starting the JVM with {@code -Dcollections.immutable.events.threshold=n}.
+     * @return the event threshold, in elements
+     */
+    public static long getEventThreshold() {
+        return eventThreshold;
+    }
+
+    /**
+     * Sets the least size of input or output for which a bulk operation is reported to Java Flight Recorder.
+     * @param threshold The event threshold, in elements
+     * @throws IllegalArgumentException if threshold is negative
+     */
+    public static void setEventThreshold(final long threshold) {
+        eventThreshold = Requirements.require(threshold, Requirements.ge(0L), () -> "threshold");
+    }
+
+    /**
+     * Registers an {@link ImmMetricsMXBean} named {@link #MBEAN_NAME} with the platform MBean server,
+     * unless one is registered already.
+     * @throws IllegalStateException if it cannot be registered
+     */
+    public static void registerMBean() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(MBEAN_NAME);
+            synchronized(ImmMetrics.class) {
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new MXBean(), name);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register " + MBEAN_NAME, e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean named {@link #MBEAN_NAME}, if it is registered.
+     * @throws IllegalStateException if it cannot be unregistered
+     */
+    public static void unregisterMBean() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(MBEAN_NAME);
+            synchronized(ImmMetrics.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot unregister " + MBEAN_NAME, e);
+        }
+    }
+
+    /**
+     * Returns the shape of the tree of a collection.
+     * <p>This operation is O(n).
+     * @param collection A list or set made by {@link ImmCollections}
+     * @return the shape of its tree
+     * @throws IllegalArgumentException if the collection is not backed by a tree
+     */
+    public static Shape shapeOf(final ImmCollection<?> collection) {
+        return new Shape(rootOf(Requirements.require(collection, Requirements.notNull(), () -> "collection")), null);
+    }
+
+    /**
+     * Returns the shape of the tree of a collection, counting the nodes it shares with another version.
+     * <p>This operation is O(n + m), and takes O(m) space, where m is the size of the other version.
+     * <p>Example:
+     * <pre>{@code
+     *     ImmList<Integer> l1 = ImmCollections.asList(1, 2, 3, 4, 5, 6, 7, 8);
+     *     ImmList<Integer> l2 = l1.setAt(0, 0);
+     *     assert ImmMetrics.shapeOf(l2, l1).getSharedNodes() > 0;
+     * }</pre>
+     * @param collection A list or set made by {@link ImmCollections}
+     * @param other Another list or set made by {@link ImmCollections}, usually an earlier version
+     * @return the shape of the tree of collection
+     * @throws IllegalArgumentException if either collection is not backed by a tree
+     */
+    public static Shape shapeOf(final ImmCollection<?> collection, final ImmCollection<?> other) {
+        return new Shape(rootOf(Requirements.require(collection, Requirements.notNull(), () -> "collection")),
+                rootOf(Requirements.require(other, Requirements.notNull(), () -> "other")));
+    }
+
+    /**
+     * Returns the shape of the tree of a map.
+     * <p>This operation is O(n).
+     * @param map A map made by {@link ImmCollections}
+     * @return the shape of its tree
+     * @throws IllegalArgumentException if the map is not backed by a tree
+     */
+    public static Shape shapeOf(final ImmMap<?, ?> map) {
+        return new Shape(rootOf(Requirements.require(map, Requirements.notNull(), () -> "map")), null);
+    }
+
+    /**
+     * Returns the shape of the tree of a map, counting the nodes it shares with another version.
+     * <p>This operation is O(n + m), and takes O(m) space, where m is the size of the other version.
+     * @param map A map made by {@link ImmCollections}
+     * @param other Another map made by {@link ImmCollections}, usually an earlier version
+     * @return the shape of the tree of map
+     * @throws IllegalArgumentException if either map is not backed by a tree
+     */
+    public static Shape shapeOf(final ImmMap<?, ?> map, final ImmMap<?, ?> other) {
+        return new Shape(rootOf(Requirements.require(map, Requirements.notNull(), () -> "map")),
+                rootOf(Requirements.require(other, Requirements.notNull(), () -> "other")));
+    }
+
+    // The root of the tree backing a collection, null if it is empty.
+    static Node23<?> rootOf(final Object collection) {
+        if (collection instanceof TreeList23) {
+            return ((TreeList23<?>)collection).root;
+        }
+        if (collection instanceof TreeSet23) {
+            return ((TreeSet23<?>)collection).elements.root;
+        }
+        if (collection instanceof HashSet23) {
+            return ((HashSet23<?>)collection).elements.root;
+        }
+        if (collection instanceof TreeMap23) {
+            return ((TreeMap23<?, ?>)collection).entries.root;
+        }
+        if (collection instanceof HashMap23) {
+            return ((HashMap23<?, ?>)collection).entries.root;
+        }
+        throw new IllegalArgumentException("not backed by a tree: " + collection.getClass().getName());
+    }
+
+    /**
+     * The shape of a tree: its depth, how full its branches are, and how many of its nodes another version shares.
+     */
+    public static final class Shape {
+        private final int size;
+        private final int depth;
+        private long twoNodes;
+        private long threeNodes;
+        // The branches whose branches are leaves.
+        private long bottomBranches;
+        private long sharedNodes;
+
+        Shape(final Node23<?> root, final Node23<?> other) {
+            this.size = root == null ? 0 : root.size();
+            this.depth = root == null ? 0 : root.getDepth();
+            if (root != null) {
+                final Set<Node23<?>> others = Collections.newSetFromMap(new IdentityHashMap<>());
+                if (other != null) {
+                    collect(other, others);
+                }
+                walk(root, others, false);
+            }
+        }
+
+        private static void collect(final Node23<?> node, final Set<Node23<?>> nodes) {
+            nodes.add(node);
+            for(int i = 0; i < node.numBranches(); i++) {
+                collect(node.getBranch(i), nodes);
+            }
+        }
+
+        private void walk(final Node23<?> node, final Set<Node23<?>> others, final boolean sharedAbove) {
+            final boolean shared = sharedAbove || others.contains(node);
+            if (shared) {
+                sharedNodes++;
+            }
+            if (node.isLeaf()) {
+                return;
+            }
+            if (node.numBranches() == 2) {
+                twoNodes++;
+            } else {
+                threeNodes++;
+            }
+            if (node.getBranch(0).isLeaf()) {
+                bottomBranches++;
+            }
+            for(int i = 0; i < node.numBranches(); i++) {
+                walk(node.getBranch(i), others, shared);
+            }
+        }
+
+        /**
+         * Returns the number of elements.
+         * @return the number of elements
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of levels, 1 for a single leaf and 0 for an empty tree.
+         * @return the number of levels
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Returns the number of branches with 2 branches.
+         * @return the number of 2-nodes
+         */
+        public long getTwoNodes() {
+            return twoNodes;
+        }
+
+        /**
+         * Returns the number of branches with 3 branches.
+         * @return the number of 3-nodes
+         */
+        public long getThreeNodes() {
+            return threeNodes;
+        }
+
+        /**
+         * Returns how full the branches just above the leaves are, from 2/3 when each has 2 leaves to 1 when each has 3.
+         * A single leaf is full.
+         * @return the mean number of leaves per bottom branch, divided by 3
+         */
+        public double getLeafFill() {
+            return bottomBranches == 0 ? (size == 0 ? 0 : 1) : size / (3.0 * bottomBranches);
+        }
+
+        /**
+         * Returns the number of nodes, leaves included, that are also nodes of the other version.
+         * @return the number of shared nodes, 0 if there is no other version
+         */
+        public long getSharedNodes() {
+            return sharedNodes;
+        }
+
+        /**
+         * Returns the number of nodes, leaves included.
+         * @return the number of nodes
+         */
+        public long getNodes() {
+            return size + twoNodes + threeNodes;
+        }
+
+        @Override
+        public String toString() {
+            return "Shape[size=" + size + ", depth=" + depth + ", twoNodes=" + twoNodes + ", threeNodes=" + threeNodes
+                    + ", leafFill=" + getLeafFill() + ", sharedNodes=" + sharedNodes + "]";
+        }
+    }
+
+    private static final class MXBean implements ImmMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(final boolean on) {
+            enabled = on;
+        }
+
+        @Override
+        public long getComparisons() {
+            return get(Counter.COMPARISONS);
+        }
+
+        @Override
+        public long getNodeAllocations() {
+            return get(Counter.NODE_ALLOCATIONS);
+        }
+
+        @Override
+        public long getConcats() {
+            return get(Counter.CONCATS);
+        }
+
+        @Override
+        public long getSplits() {
+            return get(Counter.SPLITS);
+        }
+
+        @Override
+        public long getIterators() {
+            return get(Counter.ITERATORS);
+        }
+
+        @Override
+        public long getCompactions() {
+            return get(Counter.COMPACTIONS);
+        }
+
+        @Override
+        public void reset() {
+            ImmMetrics.reset();
+        }
+    }
+}
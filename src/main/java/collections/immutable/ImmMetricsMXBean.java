@@ -0,0 +1,59 @@
+package collections.immutable;
+
+/**
+ * The JMX view of {@link ImmMetrics}, registered by {@link ImmMetrics#registerMBean()}.
+ */
+public interface ImmMetricsMXBean {
+    /**
+     * Returns whether counting is on.
+     * @return whether counting is on
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns counting on or off.
+     * @param enabled Whether to count
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the count of {@link ImmMetrics.Counter#COMPARISONS}.
+     * @return the comparator calls counted
+     */
+    long getComparisons();
+
+    /**
+     * Returns the count of {@link ImmMetrics.Counter#NODE_ALLOCATIONS}.
+     * @return the nodes allocated
+     */
+    long getNodeAllocations();
+
+    /**
+     * Returns the count of {@link ImmMetrics.Counter#CONCATS}.
+     * @return the concatenations counted
+     */
+    long getConcats();
+
+    /**
+     * Returns the count of {@link ImmMetrics.Counter#SPLITS}.
+     * @return the splits counted
+     */
+    long getSplits();
+
+    /**
+     * Returns the count of {@link ImmMetrics.Counter#ITERATORS}.
+     * @return the iterators created
+     */
+    long getIterators();
+
+    /**
+     * Returns the count of {@link ImmMetrics.Counter#COMPACTIONS}.
+     * @return the automatic compactions
+     */
+    long getCompactions();
+
+    /**
+     * Sets every count to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,125 @@
+package collections.immutable;
+
+import java.util.Comparator;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * Summarizes a range of elements, such as their sum, count, minimum or maximum, for
+ * {@link ImmList#aggregate(int, int, ImmMonoid)} and {@link ImmSortedMap#aggregate(Object, Object, ImmMonoid)}.
+ * <p>The summary of a range is the {@link #combine(Object, Object) combination}, in order, of the summaries of its elements.
+ * <code>combine</code> must be associative, and the {@link #identity()} must be the summary of no elements.
+ * <p>A monoid is bound to a list or sorted map by {@link ImmList#augment(ImmMonoid)} or {@link ImmSortedMap#augment(ImmMonoid)}.
+ * Every branch of its tree then keeps its summary, every edit updates the summaries along the paths it changes,
+ * and aggregates with that monoid are O(log n).   Aggregates with a monoid that is not bound combine the summary
+ * of every element in the range.   Binding is by the monoid object, so keep monoids in constants rather than creating
+ * one per query: {@link #sum(ToLongFunction)}, {@link #min(Comparator)}, {@link #max(Comparator)} and
+ * {@link #of(Object, Function, BinaryOperator)} return a new monoid on every call.
+ * <p>Example:
+ * <pre>{@code
+ *     static final ImmMonoid<Integer, Long> SUM = ImmMonoid.sum(i -> i);
+ *     assert ImmCollections.asList(1, 2, 3, 4).augment(SUM).aggregate(1, 3, SUM) == 5L;
+ * }</pre>
+ *
+ * @param <E> The element type
+ * @param <S> The summary type
+ */
+public interface ImmMonoid<E, S> {
+    /**
+     * Returns the summary of no elements.
+     * @return the summary of no elements
+     */
+    S identity();
+
+    /**
+     * Returns the summary of a single element.
+     * @param element The element
+     * @return the summary of <code>element</code>
+     */
+    S of(E element);
+
+    /**
+     * Returns the summary of the elements summarized by <code>a</code> followed by those summarized by <code>b</code>.
+     * <p>Must be associative.
+     * @param a The summary of the first elements
+     * @param b The summary of the following elements
+     * @return the combined summary
+     */
+    S combine(S a, S b);
+
+    /**
+     * Returns a monoid from its parts.
+     * @param <E> The element type
+     * @param <S> The summary type
+     * @param identity The summary of no elements
+     * @param of Summarizes a single element
+     * @param combine Combines two summaries, must be associative
+     * @return a monoid from its parts
+     */
+    static <E, S> ImmMonoid<E, S> of(final S identity, final Function<? super E, ? extends S> of, final BinaryOperator<S> combine) {
+        Requirements.require(of, Requirements.notNull(), () -> "of");
+        Requirements.require(combine, Requirements.notNull(), () -> "combine");
+        return new ImmMonoid<E, S>() {
+            @Override
+            public S identity() {
+                return identity;
+            }
+
+            @Override
+            public S of(final E element) {
+                return of.apply(element);
+            }
+
+            @Override
+            public S combine(final S a, final S b) {
+                return combine.apply(a, b);
+            }
+        };
+    }
+
+    /**
+     * Returns the monoid counting the elements, the same instance on every call.
+     * Its aggregates are O(1) without binding it, since every branch knows its size.
+     * @param <E> The element type
+     * @return the monoid counting the elements
+     */
+    static <E> ImmMonoid<E, Long> count() {
+        return TreeList23.count();
+    }
+
+    /**
+     * Returns a monoid summing <code>value</code> over the elements.
+     * @param <E> The element type
+     * @param value The value of an element
+     * @return a monoid summing <code>value</code> over the elements
+     */
+    static <E> ImmMonoid<E, Long> sum(final ToLongFunction<? super E> value) {
+        Requirements.require(value, Requirements.notNull(), () -> "value");
+        return of(0L, value::applyAsLong, Long::sum);
+    }
+
+    /**
+     * Returns a monoid finding the least element according to <code>comparator</code>, or null if there are no elements.
+     * @param <E> The element type
+     * @param comparator The comparator
+     * @return a monoid finding the least element
+     */
+    static <E> ImmMonoid<E, E> min(final Comparator<? super E> comparator) {
+        Requirements.require(comparator, Requirements.notNull(), () -> "comparator");
+        return of(null, e -> e, (a, b) -> a == null ? b : b == null ? a : comparator.compare(b, a) < 0 ? b : a);
+    }
+
+    /**
+     * Returns a monoid finding the greatest element according to <code>comparator</code>, or null if there are no elements.
+     * @param <E> The element type
+     * @param comparator The comparator
+     * @return a monoid finding the greatest element
+     */
+    static <E> ImmMonoid<E, E> max(final Comparator<? super E> comparator) {
+        Requirements.require(comparator, Requirements.notNull(), () -> "comparator");
+        return of(null, e -> e, (a, b) -> a == null ? b : b == null ? a : comparator.compare(b, a) > 0 ? b : a);
+    }
+}
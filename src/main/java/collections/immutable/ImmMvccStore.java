@@ -0,0 +1,337 @@
+package collections.immutable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * An in memory key value store with multi-version concurrency control, built on a chain of {@link ImmSortedMap} versions.
+ * <p>Every commit produces a new, numbered version of the map.   A transaction reads the version that was
+ * current when it began, however many commits follow, so reads never lock and never see a partial commit.
+ * Taking a version is free, as versions share all of their unchanged structure.
+ * <p>Transactions commit optimistically.   Each commit records the keys it changed, and a transaction
+ * that read or wrote any key, or read any key range, that was changed by a commit made after it began,
+ * fails to commit and can simply be retried.   This makes transactions serializable.
+ * <p>Versions are reclaimed once no transaction holds them.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmMvccStore<String, Integer> store = ImmMvccStore.create();
+ *     do {
+ *         try (ImmMvccStore.Transaction<String, Integer> tx = store.begin()) {
+ *             Integer balance = tx.get("a");
+ *             tx.put("a", balance == null ? 1 : balance + 1);
+ *             if (tx.commit()) {
+ *                 break;
+ *             }
+ *         }
+ *     } while(true);
+ * }</pre>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public final class ImmMvccStore<K, V> {
+    private final Object commitLock = new Object();
+    private volatile Version<K, V> head;
+    // Guarded by commitLock.  The oldest version still retained.
+    private Version<K, V> oldest;
+
+    private ImmMvccStore(final TreeMap23<K, V> initial) {
+        this.head = new Version<>(0, initial, TreeSet23.empty(initial.keyComparator));
+        this.oldest = head;
+    }
+
+    /**
+     * Returns an empty store ordered by the natural ordering of its keys.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @return an empty store
+     */
+    public static <K, V> ImmMvccStore<K, V> create() {
+        return new ImmMvccStore<>(TreeMap23.empty());
+    }
+
+    /**
+     * Returns a store whose initial version is <code>map</code>.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The initial version
+     * @return a store whose initial version is <code>map</code>
+     */
+    public static <K, V> ImmMvccStore<K, V> of(final ImmSortedMap<K, V> map) {
+        return new ImmMvccStore<>(ImmSync.treeMap(Requirements.require(map, Requirements.notNull(), () -> "map")));
+    }
+
+    /**
+     * Returns the number of the latest version.
+     * @return the number of the latest version
+     */
+    public long version() {
+        return head.number;
+    }
+
+    /**
+     * Returns the latest version of the map.
+     * <p>This operation is O(1).
+     * @return the latest version of the map
+     */
+    public ImmSortedMap<K, V> get() {
+        return head.map;
+    }
+
+    /**
+     * Begins a transaction reading the latest version.
+     * <p>The transaction holds its version until it is committed or closed.
+     * @return a new transaction
+     */
+    public Transaction<K, V> begin() {
+        while(true) {
+            final Version<K, V> v = head;
+            if (v.pin()) {
+                return new Transaction<>(this, v);
+            }
+        }
+    }
+
+    // Number of versions retained, for testing.
+    int retainedVersions() {
+        synchronized(commitLock) {
+            int n = 0;
+            for(Version<K, V> v = oldest; v != null; v = v.next) {
+                n++;
+            }
+            return n;
+        }
+    }
+
+    private boolean commit(final Transaction<K, V> tx) {
+        synchronized(commitLock) {
+            final Version<K, V> latest = head;
+            for(Version<K, V> v = tx.base.next; v != null; v = v.next) {
+                if (tx.conflictsWith(v.writes)) {
+                    return false;
+                }
+            }
+            TreeMap23<K, V> map = latest.map;
+            for(K key: tx.writes) {
+                map = tx.working.containsKey(key) ? map.put(key, tx.working.get(key)) : map.removeKey(key);
+            }
+            final Version<K, V> v = new Version<>(latest.number + 1, map, tx.writes);
+            latest.next = v;
+            head = v;
+            return true;
+        }
+    }
+
+    // Drops the oldest versions that no transaction holds.
+    private void reclaim() {
+        synchronized(commitLock) {
+            while(oldest != head && oldest.reclaim()) {
+                oldest = oldest.next;
+            }
+        }
+    }
+
+    // A committed version of the map, along with the keys the commit changed.
+    private static final class Version<K, V> {
+        final long number;
+        final TreeMap23<K, V> map;
+        final TreeSet23<K> writes;
+        // Number of transactions holding this version, -1 once reclaimed.
+        final AtomicInteger readers = new AtomicInteger();
+        volatile Version<K, V> next;
+
+        Version(final long number, final TreeMap23<K, V> map, final TreeSet23<K> writes) {
+            this.number = number;
+            this.map = map;
+            this.writes = writes;
+        }
+
+        boolean pin() {
+            while(true) {
+                final int r = readers.get();
+                if (r < 0) {
+                    return false;
+                }
+                if (readers.compareAndSet(r, r + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void unpin() {
+            readers.decrementAndGet();
+        }
+
+        boolean reclaim() {
+            return readers.compareAndSet(0, -1);
+        }
+    }
+
+    // A range of keys read by a transaction, [low, high), or every key.
+    private static final class Range<K> {
+        final K low;
+        final K high;
+        final boolean all;
+
+        Range(final K low, final K high, final boolean all) {
+            this.low = low;
+            this.high = high;
+            this.all = all;
+        }
+    }
+
+    /**
+     * A transaction on an {@link ImmMvccStore}, reading a single version and buffering its writes until committed.
+     * <p>A transaction sees its own writes.   It is not thread safe.
+     *
+     * @param <K> The key type
+     * @param <V> The value type
+     */
+    public static final class Transaction<K, V> implements AutoCloseable {
+        private final ImmMvccStore<K, V> store;
+        private final Version<K, V> base;
+        private TreeMap23<K, V> working;
+        private TreeSet23<K> writes;
+        private TreeSet23<K> reads;
+        private final List<Range<K>> ranges = new ArrayList<>();
+        private boolean done;
+
+        Transaction(final ImmMvccStore<K, V> store, final Version<K, V> base) {
+            this.store = store;
+            this.base = base;
+            this.working = base.map;
+            this.writes = TreeSet23.empty(base.map.keyComparator);
+            this.reads = writes;
+        }
+
+        /**
+         * Returns the number of the version this transaction reads.
+         * @return the number of the version this transaction reads
+         */
+        public long version() {
+            return base.number;
+        }
+
+        /**
+         * Returns the value associated with <code>key</code>, or null.
+         * <p>This operation is O(log n).
+         * @param key The key
+         * @return the value associated with <code>key</code>
+         */
+        public V get(final K key) {
+            checkOpen();
+            reads = reads.add(key);
+            return working.get(key);
+        }
+
+        /**
+         * Returns the entries with keys in [<code>low</code>, <code>high</code>).
+         * <p>This operation is O(log n).
+         * @param low The lowest key, inclusive
+         * @param high The highest key, exclusive
+         * @return the entries with keys in [<code>low</code>, <code>high</code>)
+         */
+        public ImmSortedMap<K, V> subMap(final K low, final K high) {
+            checkOpen();
+            final ImmSortedMap<K, V> result = working.subSet(low, high);
+            ranges.add(new Range<>(low, high, false));
+            return result;
+        }
+
+        /**
+         * Returns every entry.
+         * <p>This operation is O(1).
+         * @return every entry
+         */
+        public ImmSortedMap<K, V> snapshot() {
+            checkOpen();
+            ranges.add(new Range<>(null, null, true));
+            return working;
+        }
+
+        /**
+         * Associates <code>value</code> with <code>key</code>, when committed.
+         * <p>This operation is O(log n).
+         * @param key The key
+         * @param value The value
+         */
+        public void put(final K key, final V value) {
+            checkOpen();
+            working = working.put(key, value);
+            writes = writes.add(key);
+        }
+
+        /**
+         * Removes <code>key</code>, when committed.
+         * <p>This operation is O(log n).
+         * @param key The key
+         */
+        public void removeKey(final K key) {
+            checkOpen();
+            working = working.removeKey(key);
+            writes = writes.add(key);
+        }
+
+        /**
+         * Commits the transaction, and closes it.
+         * <p>Fails if a commit made since this transaction began changed any key this
+         * transaction read or wrote.   A transaction that made no writes always commits.
+         * @return true if the transaction committed, false if it must be retried
+         */
+        public boolean commit() {
+            checkOpen();
+            try {
+                return writes.size() == 0 || store.commit(this);
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Abandons the transaction, if it was not committed, releasing its version.
+         */
+        @Override
+        public void close() {
+            if (!done) {
+                done = true;
+                base.unpin();
+                store.reclaim();
+            }
+        }
+
+        private void checkOpen() {
+            if (done) {
+                throw new IllegalStateException("transaction is closed");
+            }
+        }
+
+        boolean conflictsWith(final TreeSet23<K> committed) {
+            if (committed.size() == 0) {
+                return false;
+            }
+            if (intersects(writes, committed) || intersects(reads, committed)) {
+                return true;
+            }
+            for(Range<K> r: ranges) {
+                if (r.all || committed.countRange(r.low, r.high) > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static <K> boolean intersects(final TreeSet23<K> a, final TreeSet23<K> b) {
+            final TreeSet23<K> small = a.size() <= b.size() ? a : b;
+            final TreeSet23<K> large = small == a ? b : a;
+            for(K k: small) {
+                if (large.contains(k)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
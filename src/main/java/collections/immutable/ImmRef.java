@@ -0,0 +1,257 @@
+package collections.immutable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * An atomic, thread safe reference to an immutable value, such as an immutable collection.
+ * <p>Reads are a single volatile read, updates replace the value with a new version.
+ * <p>A plain reference updates by compare and set, backing off for a random, growing
+ * time whenever another thread wins the race, so that contending threads do not
+ * keep recomputing updates that are bound to fail.
+ * <p>A combining reference is meant for heavy contention.   Updating threads queue their
+ * updates, and whichever thread gets to combine applies every queued update in turn
+ * and publishes the result once, while the others wait.   Runs of puts or removals queued by
+ * an {@link AtomicImmMap} are applied by one bulk call each.   Unless the value is set directly,
+ * no update is ever computed twice.   An update that throws fails alone, and only its caller sees the exception.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmRef<ImmList<Integer>> ref = ImmRef.of(ImmCollections.emptyList());
+ *     ref.update(l -> l.add(1));
+ *     assert ref.get().equals(ImmCollections.asList(1));
+ * }</pre>
+ *
+ * @param <T> The type of the value.
+ */
+public final class ImmRef<T> {
+    // Backoff bounds, in nanoseconds.
+    private static final long MIN_BACKOFF = 1 << 7;
+    private static final long MAX_BACKOFF = 1 << 20;
+    // The most updates one thread applies before handing off combining.
+    private static final int MAX_COMBINE = 1 << 10;
+
+    private final AtomicReference<T> value;
+    // Null unless combining.
+    private final ConcurrentLinkedQueue<Update<T>> queue;
+    private final ReentrantLock combiner;
+
+    private ImmRef(final T initial, final boolean combining) {
+        this.value = new AtomicReference<>(initial);
+        this.queue = combining ? new ConcurrentLinkedQueue<>() : null;
+        this.combiner = combining ? new ReentrantLock() : null;
+    }
+
+    /**
+     * Returns a reference updated by compare and set with backoff.
+     * @param <T> The type of the value
+     * @param initial The initial value
+     * @return a reference to <code>initial</code>
+     */
+    public static <T> ImmRef<T> of(final T initial) {
+        return new ImmRef<>(initial, false);
+    }
+
+    /**
+     * Returns a reference whose updates are combined by a single thread.
+     * @param <T> The type of the value
+     * @param initial The initial value
+     * @return a reference to <code>initial</code>
+     */
+    public static <T> ImmRef<T> combining(final T initial) {
+        return new ImmRef<>(initial, true);
+    }
+
+    /**
+     * Returns the current value.
+     * <p>This operation is O(1).
+     * @return the current value
+     */
+    public T get() {
+        return value.get();
+    }
+
+    /**
+     * Replaces the value.
+     * @param newValue The new value
+     */
+    public void set(final T newValue) {
+        value.set(newValue);
+    }
+
+    /**
+     * Replaces the value if it is still <code>expected</code>.
+     * @param expected The expected value, compared by identity
+     * @param newValue The new value
+     * @return true if the value was replaced
+     */
+    public boolean compareAndSet(final T expected, final T newValue) {
+        return value.compareAndSet(expected, newValue);
+    }
+
+    /**
+     * Atomically replaces the value with the result of applying <code>update</code> to it.
+     * <p><code>update</code> must not have side effects, as a plain reference may apply it more than once.
+     * @param update The update
+     * @return the new value
+     */
+    public T update(final UnaryOperator<T> update) {
+        Requirements.require(update, Requirements.notNull(), () -> "update");
+        return queue == null ? casUpdate(update) : combiningUpdate(update);
+    }
+
+    private T casUpdate(final UnaryOperator<T> update) {
+        long backoff = MIN_BACKOFF;
+        while(true) {
+            final T current = value.get();
+            final T next = update.apply(current);
+            if (value.compareAndSet(current, next)) {
+                return next;
+            }
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(backoff));
+            backoff = Math.min(backoff << 1, MAX_BACKOFF);
+        }
+    }
+
+    private T combiningUpdate(final UnaryOperator<T> update) {
+        final Update<T> u = new Update<>(update);
+        queue.add(u);
+        long backoff = MIN_BACKOFF;
+        while(!u.done) {
+            if (combiner.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    combiner.unlock();
+                }
+            } else {
+                LockSupport.parkNanos(this, backoff);
+                backoff = Math.min(backoff << 1, MAX_BACKOFF);
+            }
+        }
+        if (u.failure != null) {
+            throw ImmRef.<RuntimeException>sneakyThrow(u.failure);
+        }
+        return u.result;
+    }
+
+    // Throws t, checked or not, as the update that threw it did.
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> RuntimeException sneakyThrow(final Throwable t) throws E {
+        throw (E)t;
+    }
+
+    // Applies the queued updates as one batch.  Must hold combiner.
+    private void combine() {
+        final List<Update<T>> batch = new ArrayList<>();
+        for(Update<T> u = queue.poll(); u != null; u = batch.size() < MAX_COMBINE ? queue.poll() : null) {
+            batch.add(u);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            while(true) {
+                final T current = value.get();
+                T next = current;
+                int i = 0;
+                while(i < batch.size()) {
+                    final int end = run(batch, i);
+                    if (end - i > 1) {
+                        try {
+                            next = bulk(batch, i, end, next);
+                            i = end;
+                            continue;
+                        } catch (Throwable e) {
+                            // Applied one at a time below, so that only the failing update fails.
+                        }
+                    }
+                    for(; i < end; i++) {
+                        next = apply(batch.get(i), next);
+                    }
+                }
+                // Only set and compareAndSet can race with the combiner.
+                if (value.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            // Nothing was published, so the whole batch fails.
+            for(Update<T> u: batch) {
+                u.failure = e;
+            }
+            throw e;
+        } finally {
+            for(Update<T> u: batch) {
+                u.done = true;
+                LockSupport.unpark(u.thread);
+            }
+        }
+    }
+
+    // The end of the run of updates starting at start that can be applied in one bulk call.
+    private static <T> int run(final List<Update<T>> batch, final int start) {
+        final UnaryOperator<T> first = batch.get(start).update;
+        int end = start + 1;
+        if (first instanceof Bulk) {
+            while(end < batch.size() && batch.get(end).update.getClass() == first.getClass()) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    // Applies the run of updates [start, end) to value in one bulk call; each of them returns the version after the run.
+    private static <T> T bulk(final List<Update<T>> batch, final int start, final int end, final T value) {
+        final List<UnaryOperator<T>> run = new ArrayList<>(end - start);
+        for(int i = start; i < end; i++) {
+            run.add(batch.get(i).update);
+        }
+        final T next = ((Bulk<T>)batch.get(start).update).applyAll(value, run);
+        for(int i = start; i < end; i++) {
+            batch.get(i).result = next;
+            batch.get(i).failure = null;
+        }
+        return next;
+    }
+
+    // Applies one update to value, recording its result or its failure.
+    private static <T> T apply(final Update<T> u, final T value) {
+        try {
+            final T next = u.update.apply(value);
+            u.result = next;
+            u.failure = null;
+            return next;
+        } catch (Throwable e) {
+            u.failure = e;
+            return value;
+        }
+    }
+
+    // An update that a combiner may apply in one bulk call with the run of updates of its class queued after it,
+    // such as a run of puts applied by one addAll.
+    interface Bulk<T> extends UnaryOperator<T> {
+        // Applies run, updates of the class of this one, to value, in order.
+        T applyAll(T value, List<UnaryOperator<T>> run);
+    }
+
+    // An update waiting to be combined.
+    private static final class Update<T> {
+        final UnaryOperator<T> update;
+        final Thread thread = Thread.currentThread();
+        T result;
+        Throwable failure;
+        volatile boolean done;
+
+        Update(final UnaryOperator<T> update) {
+            this.update = update;
+        }
+    }
+}
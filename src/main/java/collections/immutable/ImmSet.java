@@ -28,6 +28,16 @@ public interface ImmSet<E> extends ImmCollection<E> {
      * @return A set with the given element added
      */
     ImmSet<E> add(E element);
+
+    /**
+     * Returns an equal set whose tree is rebuilt as shallow and full as possible.
+     * Editing leaves a tree sparser and deeper than it needs to be; see {@link ImmCompaction}.
+     * <p>This operation is O(n), where n = |this|.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original set is left unchanged.
+     * @return An equal, compacted set
+     */
+    @Override
+    ImmSet<E> compact();
     
     /**
      * Returns true if the set contains <code>element</code>.
@@ -3,7 +3,7 @@ package collections.immutable;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedMap;
+import java.util.NavigableMap;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 
@@ -26,6 +26,26 @@ public interface ImmSortedMap<K, V> extends ImmMap<K, V> {
 
     @Override
 	ImmSortedMap<K, V> put(K key, V value);
+
+    @Override
+    ImmSortedMap<K, V> compact();
+
+    /**
+     * Returns an equal map whose entries are held in one contiguous array, for lookup tables that are read far more than they are written.
+     * Lookups in a frozen map are binary searches of the array, and {@link #select(int)} is O(1).
+     * Every edit builds a tree of the entries, O(n); see {@link ImmList#freeze()}.
+     * <p>This operation is O(n).
+     * <p>THIS OPERATION IS IMMUTABLE.  The original map is left unchanged.
+     * <p>Example:<pre>{@code
+     *     ImmSortedMap<String, Integer> rates = ImmCollections.asSortedMap(String::compareTo, latest).freeze();
+     *     assert rates.get("EUR").equals(latest.get("EUR"));
+     * }</pre>
+     * @return An equal, frozen map
+     */
+    ImmSortedMap<K, V> freeze();
+
+    @Override
+    ImmSortedMap<K, V> getAll(Iterable<? extends K> keys);
 	
     /**
      * Returns a sorted map with all entries &gt;= the given key. 
@@ -93,6 +113,44 @@ public interface ImmSortedMap<K, V> extends ImmMap<K, V> {
      */
     ImmSortedMap<K, V> subSet(K lowKey, K highKey);
 
+    /**
+     * Returns the summary of the entries with keys between lowKey and highKey, according to <code>monoid</code>.
+     * <p>This operation is O(log n) when <code>monoid</code> is bound to the map by {@link #augment(ImmMonoid)},
+     * or is {@link ImmMonoid#count()}.   Otherwise the summaries of the entries in the range are combined, O(log n + m)
+     * for m entries in the range.
+     * <p>Example:
+     * <pre>{@code
+     *     static final ImmMonoid<Map.Entry<Integer, Integer>, Long> SUM_VALUES = ImmMonoid.sum(Map.Entry::getValue);
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  3,3).augment(SUM_VALUES).aggregate(2, 4, SUM_VALUES) == 5L;
+     * }</pre>
+     * @param <S> The summary type
+     * @param lowKey The min key.  (inclusive)
+     * @param highKey The max key.  (exclusive)
+     * @param monoid The monoid summarizing the entries
+     * @return the summary of the entries in the range, or the identity of <code>monoid</code> if it is empty
+     */
+    <S> S aggregate(K lowKey, K highKey, ImmMonoid<? super Entry<K, V>, S> monoid);
+
+    /**
+     * Returns an equal map with <code>monoid</code> bound to it, whose {@link #aggregate(Object, Object, ImmMonoid) aggregates}
+     * with <code>monoid</code> are O(log n).   Every branch of its tree keeps the summary of its entries, and every map
+     * made from it by putting, removing, filtering, splitting, merging or compacting keeps <code>monoid</code> bound,
+     * updating the summaries along the paths an edit changes in O(log n).
+     * <p>One monoid is bound to a map at a time: binding another replaces it.   The maps returned by {@link #reversed()}
+     * and {@link #freeze()}, and the key and value views, have no monoid bound, and their aggregates combine every entry in the range.
+     * <p>This operation is O(n), or O(1) if <code>monoid</code> is already bound.   A map read from a file by {@link ImmIO} is copied into memory.
+     * <p>Example:
+     * <pre>{@code
+     *     static final ImmMonoid<Map.Entry<String, Integer>, Long> SUM_VALUES = ImmMonoid.sum(Map.Entry::getValue);
+     *     ImmSortedMap<String, Integer> stock = ImmCollections.asSortedMap(counts).augment(SUM_VALUES);
+     *     stock = stock.put("apples", 12);
+     *     long fruit = stock.aggregate("a", "g", SUM_VALUES);
+     * }</pre>
+     * @param monoid The monoid summarizing the entries, which must be the same instance for every aggregate, such as a constant
+     * @return an equal map with <code>monoid</code> bound to it
+     */
+    ImmSortedMap<K, V> augment(ImmMonoid<? super Entry<K, V>, ?> monoid);
+
 	/**
 	 * Returns a sorted map with all elements reversed.
      * <p>This operation is O(1).
@@ -131,8 +189,126 @@ public interface ImmSortedMap<K, V> extends ImmMap<K, V> {
     @Override
     ImmSortedMap<K, V> filterKeys(Predicate<K> filter);
 
+    /**
+     * Returns the entry with the least key, or null if the map is empty.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  3,3).firstEntry().getKey() == 2;
+     * }</pre>
+     * @return the entry with the least key, or null if the map is empty
+     */
+    Entry<K, V> firstEntry();
+
+    /**
+     * Returns the entry with the greatest key, or null if the map is empty.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  3,3).lastEntry().getKey() == 4;
+     * }</pre>
+     * @return the entry with the greatest key, or null if the map is empty
+     */
+    Entry<K, V> lastEntry();
+
+    /**
+     * Returns the entry with the greatest key &lt;= <code>key</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).floorEntry(7).getKey() == 4;
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).floorEntry(1) == null;
+     * }</pre>
+     * @param key The key to look for
+     * @return the entry with the greatest key &lt;= <code>key</code>, or null if there is none
+     */
+    Entry<K, V> floorEntry(K key);
+
+    /**
+     * Returns the entry with the least key &gt;= <code>key</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).ceilingEntry(5).getKey() == 8;
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).ceilingEntry(9) == null;
+     * }</pre>
+     * @param key The key to look for
+     * @return the entry with the least key &gt;= <code>key</code>, or null if there is none
+     */
+    Entry<K, V> ceilingEntry(K key);
+
+    /**
+     * Returns the entry with the greatest key &lt; <code>key</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).lowerEntry(4).getKey() == 2;
+     * }</pre>
+     * @param key The key to look for
+     * @return the entry with the greatest key &lt; <code>key</code>, or null if there is none
+     */
+    Entry<K, V> lowerEntry(K key);
+
+    /**
+     * Returns the entry with the least key &gt; <code>key</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).higherEntry(4).getKey() == 8;
+     * }</pre>
+     * @param key The key to look for
+     * @return the entry with the least key &gt; <code>key</code>, or null if there is none
+     */
+    Entry<K, V> higherEntry(K key);
+
+    /**
+     * Returns the number of keys between lowKey and highKey, without building the sub map.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  3,3).countRange(2, 4) == 2;
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  3,3).countRange(4, 2) == 0;
+     * }</pre>
+     * @param lowKey The min key.  (inclusive)
+     * @param highKey The max key.  (exclusive)
+     * @return the number of keys &gt;= lowKey and &lt; highKey
+     */
+    int countRange(K lowKey, K highKey);
+
+    /**
+     * Returns the rank of <code>key</code>, the number of keys &lt; <code>key</code>.
+     * <p>Unlike {@link #indexOfKey(Object)}, the key need not be in the map.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).rank(5) == 2;
+     * }</pre>
+     * @param key The key
+     * @return the number of keys &lt; <code>key</code>
+     */
+    int rank(K key);
+
+    /**
+     * Returns the entry of rank <code>rank</code>, the entry with exactly <code>rank</code> keys before it.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     assert ImmCollections.asSortedMap(4,1,  2,2,  8,3).select(1).getKey() == 4;
+     * }</pre>
+     * @param rank The rank. Must be in range <code>[0, size - 1]</code>.
+     * @return the entry of rank <code>rank</code>
+     * @throws IndexOutOfBoundsException if rank &lt; 0 or rank &gt;= size
+     */
+    Entry<K, V> select(int rank);
+
+    /**
+     * Returns the read-only {@link NavigableMap} view of this map.
+     * <p>Its sub, head and tail maps are views of the same tree, found in O(log n) without splitting it,
+     * so iterating or counting a range allocates almost nothing.
+     * @return the {@link NavigableMap} view of this map
+     */
     @Override
-	SortedMap<K, V> asMap();
+	NavigableMap<K, V> asMap();
 
     /**
      * Returns the {@link ImmList} view of this map.
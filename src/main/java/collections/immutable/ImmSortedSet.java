@@ -1,8 +1,9 @@
 package collections.immutable;
 
 import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.function.Predicate;
 
 /**
@@ -87,6 +88,22 @@ public interface ImmSortedSet<E> extends ImmSet<E> {
 	 */
     @Override
 	ImmSortedSet<E> add(E element);
+
+    @Override
+    ImmSortedSet<E> compact();
+
+    /**
+     * Returns an equal set whose elements are held in one contiguous array, for data that is read far more than it is written.
+     * Lookups in a frozen set are binary searches of the array, and {@link #select(int)} is O(1).
+     * Every edit builds a tree of the elements, O(n); see {@link ImmList#freeze()}.
+     * <p>This operation is O(n).
+     * <p>THIS OPERATION IS IMMUTABLE.  The original set is left unchanged.
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).freeze().contains(3);
+     * }</pre>
+     * @return An equal, frozen set
+     */
+    ImmSortedSet<E> freeze();
 	
     /**
      * Returns a set that is the union of this set with <code>other</code>.
@@ -166,13 +183,15 @@ public interface ImmSortedSet<E> extends ImmSet<E> {
   
 	/**
      * Returns the read-only {@link Set} view of this set.
+     * <p>Its sub, head and tail sets are views of the same tree, found in O(log n) without splitting it,
+     * so iterating or counting a range allocates almost nothing.
      * <p>Example:<pre>{@code
      *     assert ImmCollections.asSortedSet(4, 2, 3).asList().asCollection().equals(Arrays.asList(2, 3, 4));
      * }</pre>
-     * @return the {@link SortedSet} view of this set
+     * @return the {@link NavigableSet} view of this set
      */
     @Override
-	SortedSet<E> asCollection();
+	NavigableSet<E> asCollection();
     
     /**
      * Returns the index of <code>element</code> in the set.
@@ -196,6 +215,119 @@ public interface ImmSortedSet<E> extends ImmSet<E> {
      */
 	ImmList<E> asList();
 
+    /**
+     * Returns the least element, the first in the set.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).first() == 2;
+     * }</pre>
+     * @return the least element
+     * @throws NoSuchElementException if the set is empty
+     */
+    E first();
+
+    /**
+     * Returns the greatest element, the last in the set.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).last() == 4;
+     * }</pre>
+     * @return the greatest element
+     * @throws NoSuchElementException if the set is empty
+     */
+    E last();
+
+    /**
+     * Returns the greatest element &lt;= <code>element</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).floor(3) == 3;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).floor(7) == 4;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).floor(1) == null;
+     * }</pre>
+     * @param element The element to look for
+     * @return the greatest element &lt;= <code>element</code>, or null if there is none
+     */
+    E floor(E element);
+
+    /**
+     * Returns the least element &gt;= <code>element</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).ceiling(3) == 3;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).ceiling(5) == 8;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).ceiling(9) == null;
+     * }</pre>
+     * @param element The element to look for
+     * @return the least element &gt;= <code>element</code>, or null if there is none
+     */
+    E ceiling(E element);
+
+    /**
+     * Returns the greatest element &lt; <code>element</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).lower(3) == 2;
+     *     assert ImmCollections.asSortedSet(4, 2, 3).lower(2) == null;
+     * }</pre>
+     * @param element The element to look for
+     * @return the greatest element &lt; <code>element</code>, or null if there is none
+     */
+    E lower(E element);
+
+    /**
+     * Returns the least element &gt; <code>element</code>, or null if there is none.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).higher(3) == 4;
+     *     assert ImmCollections.asSortedSet(4, 2, 3).higher(4) == null;
+     * }</pre>
+     * @param element The element to look for
+     * @return the least element &gt; <code>element</code>, or null if there is none
+     */
+    E higher(E element);
+
+    /**
+     * Returns the number of elements in range <code>[low, high)</code>, without building the sub set.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 3).countRange(2, 4) == 2;
+     *     assert ImmCollections.asSortedSet(4, 2, 3).countRange(0, 5) == 3;
+     *     assert ImmCollections.asSortedSet(4, 2, 3).countRange(4, 2) == 0;
+     * }</pre>
+     * @param low The low element (inclusive)
+     * @param high The high element (exclusive)
+     * @return the number of elements &gt;= low and &lt; high
+     */
+    int countRange(E low, E high);
+
+    /**
+     * Returns the rank of <code>element</code>, the number of elements &lt; <code>element</code>.
+     * <p>Unlike {@link #indexOf(Object)}, the element need not be in the set.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 8).rank(2) == 0;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).rank(5) == 2;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).rank(9) == 3;
+     * }</pre>
+     * @param element The element
+     * @return the number of elements &lt; <code>element</code>
+     */
+    int rank(E element);
+
+    /**
+     * Returns the element of rank <code>rank</code>, the element with exactly <code>rank</code> elements before it.
+     * <p>This operation is O(log n).
+     * <p>Example:<pre>{@code
+     *     assert ImmCollections.asSortedSet(4, 2, 8).select(0) == 2;
+     *     assert ImmCollections.asSortedSet(4, 2, 8).select(2) == 8;
+     * }</pre>
+     * @param rank The rank. Must be in range <code>[0, size - 1]</code>.
+     * @return the element of rank <code>rank</code>
+     * @throws IndexOutOfBoundsException if rank &lt; 0 or rank &gt;= size
+     */
+    E select(int rank);
+
 	/**
 	 * Returns the {@link Comparator} associated with this set.
 	 * @return the {@link Comparator} associated with this set
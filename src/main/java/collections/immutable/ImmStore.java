@@ -0,0 +1,559 @@
+package collections.immutable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * A durable sorted map, kept in memory as an {@link ImmSortedMap} and persisted in a directory
+ * as an append only log and periodic snapshots.
+ * <p>Every update is appended to the log, and is durable when the call returns.
+ * {@link #get()} only ever returns a version whose updates are durable.
+ * Updates made by concurrent threads are flushed together, so one <code>fsync</code>
+ * makes a whole group of updates durable.
+ * <p>Once the log grows past a threshold, a new log is started and a snapshot of the
+ * map is written in the background.   The map is immutable, so writing the snapshot
+ * needs no locks and does not hold up updates.
+ * <p>On open, the latest snapshot is read and the logs written after it are replayed.
+ * A record torn by a crash at the end of the last log is discarded.
+ * <p>Example:
+ * <pre>{@code
+ *     try (ImmStore<Integer, String> store = ImmStore.open(dir, ImmCodec.ofInteger(), ImmCodec.ofString())) {
+ *         store.put(1, "one");
+ *         store.batch().put(2, "two").removeKey(1).commit();
+ *         assert store.get().equals(ImmCollections.asSortedMap(2, "two"));
+ *     }
+ * }</pre>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public final class ImmStore<K, V> implements Closeable {
+    /**
+     * The default size of the log that triggers a snapshot.
+     */
+    public static final long DEFAULT_SNAPSHOT_BYTES = 64L << 20;
+
+    private static final String LOG = "log-";
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String TMP = ".tmp";
+
+    private static final int PUT = 1;
+    private static final int REMOVE = 2;
+
+    // Length and checksum of each record.
+    private static final int RECORD_HEADER = Integer.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final Comparator<? super K> keyComparator;
+    private final ImmCodec<K> keyCodec;
+    private final ImmCodec<V> valueCodec;
+    private final long snapshotBytes;
+    private final ExecutorService snapshotter;
+    // Held while flushing the log, and while starting a new one.
+    private final Object syncLock = new Object();
+    // Held while writing a snapshot.
+    private final Object snapshotLock = new Object();
+
+    // Guarded by this.
+    // The map with every update appended, durable or not.
+    private ImmSortedMap<K, V> head;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended;
+    private long logBytes;
+    private boolean snapshotting;
+    private boolean closed;
+
+    // Guarded by syncLock.
+    // The map with the updates that are durable, published once they reach the disk.
+    private volatile ImmSortedMap<K, V> map;
+    private FileChannel log;
+    private long generation;
+    private long durable;
+    private volatile IOException failure;
+
+    private ImmStore(final Path directory, final Comparator<? super K> keyComparator, final ImmCodec<K> keyCodec,
+            final ImmCodec<V> valueCodec, final long snapshotBytes) {
+        this.directory = directory;
+        this.keyComparator = keyComparator;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.snapshotBytes = snapshotBytes;
+        this.snapshotter = Executors.newSingleThreadExecutor(r -> {
+            final Thread t = new Thread(r, "ImmStore snapshot " + directory);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Opens, or creates, a store ordered by the natural ordering of its keys.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param directory The directory holding the store
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return the store
+     * @throws IOException if the store could not be recovered
+     */
+    public static <K, V> ImmStore<K, V> open(final Path directory, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) throws IOException {
+        return open(directory, TreeList23.naturalOrder(), keyCodec, valueCodec, DEFAULT_SNAPSHOT_BYTES);
+    }
+
+    /**
+     * Opens, or creates, a store ordered by <code>keyComparator</code>.
+     * <p>Recovery is O(n + m), where m is the number of updates logged since the latest snapshot.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param directory The directory holding the store
+     * @param keyComparator The comparator of the keys
+     * @param keyCodec The codec of the keys
+     * @param valueCodec The codec of the values
+     * @param snapshotBytes The size the log may grow to before a snapshot is taken
+     * @return the store
+     * @throws IOException if the store could not be recovered
+     */
+    public static <K, V> ImmStore<K, V> open(final Path directory, final Comparator<? super K> keyComparator,
+            final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec, final long snapshotBytes) throws IOException {
+        Requirements.require(directory, Requirements.notNull(), () -> "directory");
+        Requirements.require(keyComparator, Requirements.notNull(), () -> "keyComparator");
+        Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec");
+        Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec");
+        if (snapshotBytes <= 0) {
+            throw new IllegalArgumentException("snapshotBytes must be positive");
+        }
+        Files.createDirectories(directory);
+        final ImmStore<K, V> store = new ImmStore<>(directory, keyComparator, keyCodec, valueCodec, snapshotBytes);
+        try {
+            store.recover();
+        } catch (IOException | RuntimeException e) {
+            store.snapshotter.shutdown();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Returns the current version of the map.
+     * <p>This operation is O(1).
+     * @return the current version of the map
+     */
+    public ImmSortedMap<K, V> get() {
+        return map;
+    }
+
+    /**
+     * Associates <code>value</code> with <code>key</code>, durably.
+     * <p>This operation is O(log n), plus a share of an <code>fsync</code>.
+     * @param key The key
+     * @param value The value
+     * @return the version of the map with the update
+     * @throws IOException if the update could not be logged
+     */
+    public ImmSortedMap<K, V> put(final K key, final V value) throws IOException {
+        return batch().put(key, value).commit();
+    }
+
+    /**
+     * Removes <code>key</code>, durably.
+     * <p>This operation is O(log n), plus a share of an <code>fsync</code>.
+     * @param key The key
+     * @return the version of the map with the update
+     * @throws IOException if the update could not be logged
+     */
+    public ImmSortedMap<K, V> removeKey(final K key) throws IOException {
+        return batch().removeKey(key).commit();
+    }
+
+    /**
+     * Returns a new batch of updates, applied and logged atomically when committed.
+     * @return a new batch of updates
+     */
+    public Batch<K, V> batch() {
+        return new Batch<>(this);
+    }
+
+    /**
+     * Starts a new log and writes a snapshot of the map, waiting for it to complete.
+     * <p>Logs and snapshots made obsolete by the snapshot are deleted.
+     * <p>This operation is O(n).
+     * @throws IOException if the snapshot could not be written
+     */
+    public void snapshot() throws IOException {
+        synchronized(snapshotLock) {
+            final ImmSortedMap<K, V> version;
+            final long gen;
+            synchronized(syncLock) {
+                if (!log.isOpen()) {
+                    throw new IllegalStateException("closed");
+                }
+                checkFailure();
+                final byte[] bytes;
+                final long upTo;
+                synchronized(this) {
+                    version = head;
+                    bytes = takePending();
+                    upTo = appended;
+                    logBytes = 0;
+                }
+                flush(bytes, upTo, version);
+                try {
+                    log.close();
+                    gen = generation + 1;
+                    log = openLog(gen);
+                    generation = gen;
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+            // The version is immutable, so no lock is needed to write it out.
+            final Path tmp = directory.resolve(SNAPSHOT + name(gen) + TMP);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ImmIO.write(channel, version, keyCodec, valueCodec);
+                channel.force(true);
+            }
+            Files.move(tmp, directory.resolve(SNAPSHOT + name(gen)), StandardCopyOption.ATOMIC_MOVE);
+            for(Path p: list(LOG)) {
+                if (generation(p, LOG) < gen) {
+                    Files.delete(p);
+                }
+            }
+            for(Path p: list(SNAPSHOT)) {
+                if (generation(p, SNAPSHOT) < gen) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for any snapshot in progress, flushes, and closes the log.
+     * @throws IOException if the log could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(syncLock) {
+            try {
+                if (failure == null) {
+                    final byte[] bytes;
+                    final long upTo;
+                    final ImmSortedMap<K, V> version;
+                    synchronized(this) {
+                        bytes = takePending();
+                        upTo = appended;
+                        version = head;
+                    }
+                    flush(bytes, upTo, version);
+                }
+            } finally {
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * A batch of updates, applied and logged atomically by {@link #commit()}.
+     * <p>A batch is not thread safe.
+     *
+     * @param <K> The key type
+     * @param <V> The value type
+     */
+    public static final class Batch<K, V> {
+        private final ImmStore<K, V> store;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final List<K> keys = new ArrayList<>();
+        // Null for removed keys.
+        private final List<V> values = new ArrayList<>();
+        private final List<Boolean> removes = new ArrayList<>();
+
+        Batch(final ImmStore<K, V> store) {
+            this.store = store;
+        }
+
+        /**
+         * Adds the association of <code>value</code> with <code>key</code> to the batch.
+         * @param key The key
+         * @param value The value
+         * @return this batch
+         * @throws IOException if the key or value could not be encoded
+         */
+        public Batch<K, V> put(final K key, final V value) throws IOException {
+            out.writeByte(PUT);
+            store.keyCodec.write(out, key);
+            store.valueCodec.write(out, value);
+            keys.add(key);
+            values.add(value);
+            removes.add(false);
+            return this;
+        }
+
+        /**
+         * Adds the removal of <code>key</code> to the batch.
+         * @param key The key
+         * @return this batch
+         * @throws IOException if the key could not be encoded
+         */
+        public Batch<K, V> removeKey(final K key) throws IOException {
+            out.writeByte(REMOVE);
+            store.keyCodec.write(out, key);
+            keys.add(key);
+            values.add(null);
+            removes.add(true);
+            return this;
+        }
+
+        /**
+         * Applies the batch, and waits for it to be durable.
+         * <p>This operation is O(k log n) for a batch of k updates, plus a share of an <code>fsync</code>.
+         * @return the version of the map with the updates
+         * @throws IOException if the batch could not be logged
+         */
+        public ImmSortedMap<K, V> commit() throws IOException {
+            return store.commit(this);
+        }
+
+        ImmSortedMap<K, V> apply(ImmSortedMap<K, V> map) {
+            for(int i = 0; i < keys.size(); i++) {
+                map = removes.get(i) ? map.removeKey(keys.get(i)) : map.put(keys.get(i), values.get(i));
+            }
+            return map;
+        }
+    }
+
+    private ImmSortedMap<K, V> commit(final Batch<K, V> batch) throws IOException {
+        if (batch.keys.isEmpty()) {
+            return map;
+        }
+        final byte[] payload = batch.bytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        final ImmSortedMap<K, V> version;
+        final long seq;
+        final boolean snapshot;
+        synchronized(this) {
+            if (closed) {
+                throw new IllegalStateException("closed");
+            }
+            checkFailure();
+            version = batch.apply(head);
+            final DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(payload.length);
+            out.writeInt((int)crc.getValue());
+            out.write(payload);
+            head = version;
+            seq = ++appended;
+            logBytes += RECORD_HEADER + payload.length;
+            snapshot = logBytes >= snapshotBytes && !snapshotting;
+            snapshotting |= snapshot;
+        }
+        sync(seq);
+        if (snapshot) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    // The log still holds every update, the next snapshot will try again.
+                } finally {
+                    synchronized(this) {
+                        snapshotting = false;
+                    }
+                }
+            });
+        }
+        return version;
+    }
+
+    // Flushes the log up to record seq, along with any records appended by other threads in the meantime.
+    private void sync(final long seq) throws IOException {
+        synchronized(syncLock) {
+            if (durable >= seq) {
+                return;
+            }
+            checkFailure();
+            final byte[] bytes;
+            final long upTo;
+            final ImmSortedMap<K, V> version;
+            synchronized(this) {
+                bytes = takePending();
+                upTo = appended;
+                version = head;
+            }
+            flush(bytes, upTo, version);
+        }
+    }
+
+    // Writes records to the log, waits for them to reach the disk, and publishes the version with them.  Must hold syncLock.
+    private void flush(final byte[] bytes, final long upTo, final ImmSortedMap<K, V> version) throws IOException {
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while(buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            // What reached the disk is unknown, so no further updates are accepted,
+            // and the version with the updates is never published.
+            failure = e;
+            throw e;
+        }
+        durable = upTo;
+        map = version;
+    }
+
+    // Must hold this.
+    private byte[] takePending() {
+        final byte[] bytes = pending.toByteArray();
+        pending = new ByteArrayOutputStream();
+        return bytes;
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("store failed", failure);
+        }
+    }
+
+    private void recover() throws IOException {
+        for(Path p: list(SNAPSHOT)) {
+            if (p.getFileName().toString().endsWith(TMP)) {
+                Files.delete(p);
+            }
+        }
+        long snapshot = -1;
+        for(Path p: list(SNAPSHOT)) {
+            snapshot = Math.max(snapshot, generation(p, SNAPSHOT));
+        }
+        ImmSortedMap<K, V> m = TreeMap23.empty(keyComparator);
+        if (snapshot >= 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(SNAPSHOT + name(snapshot))), 1 << 16))) {
+                m = ImmIO.readSortedMap(in, keyComparator, keyCodec, valueCodec);
+            }
+        }
+        final List<Long> logs = new ArrayList<>();
+        for(Path p: list(LOG)) {
+            if (generation(p, LOG) >= snapshot) {
+                logs.add(generation(p, LOG));
+            }
+        }
+        logs.sort(null);
+        for(int i = 0; i < logs.size(); i++) {
+            m = replay(directory.resolve(LOG + name(logs.get(i))), m, i == logs.size() - 1);
+        }
+        map = m;
+        head = m;
+        generation = Math.max(snapshot, logs.isEmpty() ? 0 : logs.get(logs.size() - 1)) + 1;
+        log = openLog(generation);
+    }
+
+    // Replays a log, truncating a torn record at the end of the last log.
+    private ImmSortedMap<K, V> replay(final Path path, ImmSortedMap<K, V> m, final boolean last) throws IOException {
+        final long size = Files.size(path);
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while(true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return m;
+                }
+                final int checksum = in.readInt();
+                // A length past the end of the file is torn, and is never allocated.
+                if (length < 0 || length > size - good - RECORD_HEADER) {
+                    throw new IOException("corrupt record");
+                }
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+                final CRC32 crc = new CRC32();
+                crc.update(payload, 0, length);
+                if ((int)crc.getValue() != checksum) {
+                    throw new IOException("corrupt record");
+                }
+                m = replay(payload, m);
+                good += RECORD_HEADER + length;
+            }
+        } catch (IOException e) {
+            if (!last) {
+                throw new IOException("corrupt log " + path, e);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(good);
+            channel.force(true);
+        }
+        return m;
+    }
+
+    private ImmSortedMap<K, V> replay(final byte[] payload, ImmSortedMap<K, V> m) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        while(in.available() > 0) {
+            final int op = in.readUnsignedByte();
+            final K key = keyCodec.read(in);
+            if (op == PUT) {
+                m = m.put(key, valueCodec.read(in));
+            } else if (op == REMOVE) {
+                m = m.removeKey(key);
+            } else {
+                throw new IOException("unknown update: " + op);
+            }
+        }
+        return m;
+    }
+
+    private FileChannel openLog(final long gen) throws IOException {
+        return FileChannel.open(directory.resolve(LOG + name(gen)), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> list(final String prefix) throws IOException {
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            stream.forEach(paths::add);
+        }
+        return paths;
+    }
+
+    // Generations are fixed width hex, so file names sort in the order they were written.
+    private static String name(final long gen) {
+        return String.format("%016x", gen);
+    }
+
+    private static long generation(final Path path, final String prefix) {
+        final String name = path.getFileName().toString();
+        return Long.parseUnsignedLong(name.substring(prefix.length(), prefix.length() + 16), 16);
+    }
+}
@@ -0,0 +1,480 @@
+package collections.immutable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * Synchronizes sorted sets and maps between two processes, sending only what differs.
+ * <p>The digest of an element is the first 64 bits of the SHA-256 hash of its bytes, as written by its codec,
+ * and the digest of a range is the sum of the digests of its elements.   The digests are bound to the set or map
+ * as a monoid (see {@link ImmList#augment(ImmMonoid)}), so that every branch of its 2-3 tree keeps
+ * the digest of its elements, and the digest of any range of elements is O(log n).   The replica sends the
+ * digest of a range, the source answers that the range is the same, sends the
+ * range in full if it is small, or splits it into sub-ranges along with their digests.
+ * The replica only recurses into the sub-ranges that differ.
+ * <p>Synchronizing two replicas that differ in d entries exchanges O(d log n) bytes.
+ * <p>Both sides must order their keys with the same comparator, and encode them with the same codecs.
+ * Digesting, serving or pulling a set or map without its digests bound digests every element, O(n), before the exchange.
+ * Bind them once with {@link #withDigests(ImmSortedMap, ImmCodec, ImmCodec)}, and keep the maps edited from it and
+ * returned by {@link #pull(ImmSortedMap, ImmCodec, ImmCodec, InputStream, OutputStream) pull}, which keep them bound.
+ * The digests are bound for the codec objects.   {@link ImmCodec#ofInteger()}, {@link ImmCodec#ofLong()} and {@link ImmCodec#ofString()}
+ * return the same codec on every call, but keep other codecs, such as those made by {@link ImmCodec#nullable(ImmCodec)},
+ * in constants rather than creating them for each exchange.
+ * <p>Example:
+ * <pre>{@code
+ *     // In the source process
+ *     map = ImmSync.withDigests(map, ImmCodec.ofInteger(), ImmCodec.ofString());
+ *     ImmSync.serve(map, ImmCodec.ofInteger(), ImmCodec.ofString(), socket.getInputStream(), socket.getOutputStream());
+ *     // In the replica process
+ *     replica = ImmSync.pull(replica, ImmCodec.ofInteger(), ImmCodec.ofString(), socket.getInputStream(), socket.getOutputStream());
+ * }</pre>
+ */
+public final class ImmSync {
+    private static final int MAGIC = 0x32335359;
+    private static final int VERSION = 2;
+
+    // Ranges with no more than this many elements are sent in full.
+    static final int LEAF_SIZE = 8;
+    // The number of sub-ranges a differing range is split into.
+    static final int FANOUT = 4;
+
+    private static final int RANGE = 1;
+    private static final int END = 2;
+    private static final int SAME = 3;
+    private static final int ITEMS = 4;
+    private static final int SPLIT = 5;
+
+    // Stands for the value codec of a set.
+    private static final Object NO_VALUES = new Object();
+    // The digests in use, by key or element codec, then by value codec.
+    private static final Map<ImmCodec<?>, Map<Object, WeakReference<Digest<?>>>> DIGESTS = new WeakHashMap<>();
+
+    private ImmSync() {
+    }
+
+    /**
+     * Returns an equal sorted map with the digests of its entries bound to it, which the maps edited from it keep up to date.
+     * <p>This operation is O(n), or O(1) if they are already bound for the same codecs.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The map
+     * @param keyCodec The codec for keys
+     * @param valueCodec The codec for values
+     * @return an equal map with the digests of its entries bound to it
+     */
+    public static <K, V> ImmSortedMap<K, V> withDigests(final ImmSortedMap<K, V> map, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) {
+        return treeMap(Requirements.require(map, Requirements.notNull(), () -> "map")).augment(digestOf(
+                Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec"),
+                Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec")));
+    }
+
+    /**
+     * Returns an equal sorted set with the digests of its elements bound to it, which the sets edited from it keep up to date.
+     * <p>This operation is O(n), or O(1) if they are already bound for the same codec.
+     * @param <E> The element type
+     * @param set The set
+     * @param codec The codec for elements
+     * @return an equal set with the digests of its elements bound to it
+     */
+    public static <E> ImmSortedSet<E> withDigests(final ImmSortedSet<E> set, final ImmCodec<E> codec) {
+        final TreeSet23<E> s = treeSet(Requirements.require(set, Requirements.notNull(), () -> "set"));
+        final TreeList23<E> elements = s.elements.augment(digestOf(Requirements.require(codec, Requirements.notNull(), () -> "codec")));
+        return elements == s.elements ? s : new TreeSet23<>(s.comparator, elements);
+    }
+
+    /**
+     * Returns the digest of a sorted map.   Maps with equal entries have equal digests,
+     * and maps whose entries are written differently by the codecs have different digests but for a chance of 2^-64.
+     * <p>This operation is O(1) when the digests are bound for the same codecs by {@link #withDigests(ImmSortedMap, ImmCodec, ImmCodec)},
+     * and O(n) otherwise.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The map
+     * @param keyCodec The codec for keys
+     * @param valueCodec The codec for values
+     * @return the digest of the map
+     */
+    public static <K, V> long digest(final ImmSortedMap<K, V> map, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) {
+        final TreeList23<Entry<K, V>> entries = treeMap(Requirements.require(map, Requirements.notNull(), () -> "map")).entries;
+        return digest(entries, 0, entries.size(), digestOf(
+                Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec"),
+                Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec")));
+    }
+
+    /**
+     * Returns the digest of a sorted set.   Sets with equal elements have equal digests,
+     * and sets whose elements are written differently by the codec have different digests but for a chance of 2^-64.
+     * <p>This operation is O(1) when the digests are bound for the same codec by {@link #withDigests(ImmSortedSet, ImmCodec)},
+     * and O(n) otherwise.
+     * @param <E> The element type
+     * @param set The set
+     * @param codec The codec for elements
+     * @return the digest of the set
+     */
+    public static <E> long digest(final ImmSortedSet<E> set, final ImmCodec<E> codec) {
+        final TreeList23<E> elements = treeSet(Requirements.require(set, Requirements.notNull(), () -> "set")).elements;
+        return digest(elements, 0, elements.size(), digestOf(Requirements.require(codec, Requirements.notNull(), () -> "codec")));
+    }
+
+    private static <E> long digest(final TreeList23<E> elements, final int low, final int high, final Digest<E> digest) {
+        return low >= high ? 0 : elements.augment(digest).aggregate(low, high, digest);
+    }
+
+    private static <E> Digest<E> digestOf(final ImmCodec<E> codec) {
+        return digestOf(codec, NO_VALUES, () -> codec);
+    }
+
+    private static <K, V> Digest<Entry<K, V>> digestOf(final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec) {
+        return digestOf(keyCodec, valueCodec, () -> ImmCodec.ofEntry(keyCodec, valueCodec));
+    }
+
+    // The digest for the codecs, the same object for as long as any tree is bound to it.
+    private static <E> Digest<E> digestOf(final ImmCodec<?> codec, final Object valueCodec, final Supplier<ImmCodec<E>> elementCodec) {
+        synchronized (DIGESTS) {
+            final Map<Object, WeakReference<Digest<?>>> byValue = DIGESTS.computeIfAbsent(codec, c -> new WeakHashMap<>());
+            final WeakReference<Digest<?>> ref = byValue.get(valueCodec);
+            @SuppressWarnings("unchecked")
+            Digest<E> digest = ref == null ? null : (Digest<E>)ref.get();
+            if (digest == null) {
+                digest = new Digest<>(elementCodec.get());
+                byValue.put(valueCodec, new WeakReference<>(digest));
+            }
+            return digest;
+        }
+    }
+
+    /**
+     * Serves <code>map</code> to a replica calling {@link #pull(ImmSortedMap, ImmCodec, ImmCodec, InputStream, OutputStream)}.
+     * Returns when the replica is done.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param map The source map
+     * @param keyCodec The codec for keys
+     * @param valueCodec The codec for values
+     * @param in The stream of requests from the replica
+     * @param out The stream of responses to the replica
+     * @throws IOException if the exchange fails
+     */
+    public static <K, V> void serve(final ImmSortedMap<K, V> map, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec,
+            final InputStream in, final OutputStream out) throws IOException {
+        final TreeMap23<K, V> m = treeMap(Requirements.require(map, Requirements.notNull(), () -> "map"));
+        new Replica<K, Entry<K, V>>(m.entries, m.keyComparator, Entry::getKey, keyCodec, digestOf(
+                Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec"),
+                Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec")))
+            .serve(in, out);
+    }
+
+    /**
+     * Brings <code>replica</code> up to date with a map served by {@link #serve(ImmSortedMap, ImmCodec, ImmCodec, InputStream, OutputStream)}.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original map is left unchanged, and
+     * the parts of it that have not changed are shared with the result.
+     * @param <K> The key type
+     * @param <V> The value type
+     * @param replica The local copy of the map
+     * @param keyCodec The codec for keys
+     * @param valueCodec The codec for values
+     * @param in The stream of responses from the source
+     * @param out The stream of requests to the source
+     * @return A map equal to the source map
+     * @throws IOException if the exchange fails
+     */
+    public static <K, V> ImmSortedMap<K, V> pull(final ImmSortedMap<K, V> replica, final ImmCodec<K> keyCodec, final ImmCodec<V> valueCodec,
+            final InputStream in, final OutputStream out) throws IOException {
+        final TreeMap23<K, V> m = treeMap(Requirements.require(replica, Requirements.notNull(), () -> "replica"));
+        final Replica<K, Entry<K, V>> r = new Replica<K, Entry<K, V>>(m.entries, m.keyComparator, Entry::getKey, keyCodec, digestOf(
+                Requirements.require(keyCodec, Requirements.notNull(), () -> "keyCodec"),
+                Requirements.require(valueCodec, Requirements.notNull(), () -> "valueCodec")));
+        final TreeList23<Entry<K, V>> bound = r.elements;
+        r.pull(in, out);
+        return r.elements == bound ? m : new TreeMap23<>(m.keyComparator, r.elements);
+    }
+
+    /**
+     * Serves <code>set</code> to a replica calling {@link #pull(ImmSortedSet, ImmCodec, InputStream, OutputStream)}.
+     * Returns when the replica is done.
+     * @param <E> The element type
+     * @param set The source set
+     * @param codec The codec for elements
+     * @param in The stream of requests from the replica
+     * @param out The stream of responses to the replica
+     * @throws IOException if the exchange fails
+     */
+    public static <E> void serve(final ImmSortedSet<E> set, final ImmCodec<E> codec,
+            final InputStream in, final OutputStream out) throws IOException {
+        final TreeSet23<E> s = treeSet(Requirements.require(set, Requirements.notNull(), () -> "set"));
+        Requirements.require(codec, Requirements.notNull(), () -> "codec");
+        new Replica<E, E>(s.elements, s.comparator, Function.identity(), codec, digestOf(codec)).serve(in, out);
+    }
+
+    /**
+     * Brings <code>replica</code> up to date with a set served by {@link #serve(ImmSortedSet, ImmCodec, InputStream, OutputStream)}.
+     * <p>THIS OPERATION IS IMMUTABLE.  The original set is left unchanged, and
+     * the parts of it that have not changed are shared with the result.
+     * @param <E> The element type
+     * @param replica The local copy of the set
+     * @param codec The codec for elements
+     * @param in The stream of responses from the source
+     * @param out The stream of requests to the source
+     * @return A set equal to the source set
+     * @throws IOException if the exchange fails
+     */
+    public static <E> ImmSortedSet<E> pull(final ImmSortedSet<E> replica, final ImmCodec<E> codec,
+            final InputStream in, final OutputStream out) throws IOException {
+        final TreeSet23<E> s = treeSet(Requirements.require(replica, Requirements.notNull(), () -> "replica"));
+        Requirements.require(codec, Requirements.notNull(), () -> "codec");
+        final Replica<E, E> r = new Replica<E, E>(s.elements, s.comparator, Function.identity(), codec, digestOf(codec));
+        final TreeList23<E> bound = r.elements;
+        r.pull(in, out);
+        return r.elements == bound ? s : new TreeSet23<>(s.comparator, r.elements);
+    }
+
+    static <K, V> TreeMap23<K, V> treeMap(final ImmSortedMap<K, V> map) {
+        if (map instanceof TreeMap23) {
+            return (TreeMap23<K, V>)map;
+        }
+        return TreeMap23.of(map.getKeyComparator(), map);
+    }
+
+    static <E> TreeSet23<E> treeSet(final ImmSortedSet<E> set) {
+        if (set instanceof TreeSet23) {
+            return (TreeSet23<E>)set;
+        }
+        return TreeSet23.of(set.getComparator(), set);
+    }
+
+    // One side of the exchange, a list of elements ordered by their keys.
+    private static final class Replica<K, E> {
+        TreeList23<E> elements;
+        final Comparator<? super K> comparator;
+        final Function<E, K> keyOf;
+        final ImmCodec<K> keyCodec;
+        final ImmCodec<E> codec;
+        final Digest<E> digest;
+
+        Replica(final TreeList23<E> elements, final Comparator<? super K> comparator, final Function<E, K> keyOf,
+                final ImmCodec<K> keyCodec, final Digest<E> digest) {
+            // Bound once, so that the digest of every range is O(log n), and kept bound by the edits of a pull.
+            this.elements = elements.augment(digest);
+            this.comparator = comparator;
+            this.keyOf = keyOf;
+            this.keyCodec = keyCodec;
+            this.codec = digest.codec;
+            this.digest = digest;
+        }
+
+        private long digest(final int low, final int high) {
+            return low >= high ? 0 : elements.aggregate(low, high, digest);
+        }
+
+        void serve(final InputStream in, final OutputStream out) throws IOException {
+            final DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+            final DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+            readHeader(din);
+            writeHeader(dout);
+            dout.flush();
+            for(;;) {
+                final int op = din.readUnsignedByte();
+                if (op == END) {
+                    return;
+                }
+                if (op != RANGE) {
+                    throw new IOException("unexpected request: " + op);
+                }
+                final int low = readBound(din, 0);
+                final int high = readBound(din, elements.size());
+                final int count = VarInts.readSize(din);
+                final long digest = din.readLong();
+                if (count == high - low && digest == digest(low, high)) {
+                    dout.writeByte(SAME);
+                } else if (high - low <= LEAF_SIZE) {
+                    dout.writeByte(ITEMS);
+                    VarInts.write(dout, high - low);
+                    for(int i = low; i < high; i++) {
+                        codec.write(dout, elements.getAt(i));
+                    }
+                } else {
+                    dout.writeByte(SPLIT);
+                    for(int i = 1; i < FANOUT; i++) {
+                        keyCodec.write(dout, keyOf.apply(elements.getAt(split(low, high, i))));
+                    }
+                    for(int i = 0; i < FANOUT; i++) {
+                        final int l = split(low, high, i);
+                        final int h = split(low, high, i + 1);
+                        VarInts.write(dout, h - l);
+                        dout.writeLong(digest(l, h));
+                    }
+                }
+                dout.flush();
+            }
+        }
+
+        void pull(final InputStream in, final OutputStream out) throws IOException {
+            final DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+            final DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+            writeHeader(dout);
+            dout.flush();
+            readHeader(din);
+            sync(din, dout, false, null, false, null);
+            dout.writeByte(END);
+            dout.flush();
+        }
+
+        // Makes the range [low, high) of keys equal to that of the source.
+        private void sync(final DataInputStream din, final DataOutputStream dout,
+                final boolean hasLow, final K lowKey, final boolean hasHigh, final K highKey) throws IOException {
+            final int low = hasLow ? position(lowKey) : 0;
+            final int high = hasHigh ? position(highKey) : elements.size();
+            dout.writeByte(RANGE);
+            writeBound(dout, hasLow, lowKey);
+            writeBound(dout, hasHigh, highKey);
+            VarInts.write(dout, high - low);
+            dout.writeLong(digest(low, high));
+            dout.flush();
+            final int response = din.readUnsignedByte();
+            switch(response) {
+            case SAME:
+                return;
+            case ITEMS: {
+                final int count = VarInts.readSize(din);
+                // The source sends the items of ranges of at most LEAF_SIZE, so no more are read or made room for.
+                if (count > LEAF_SIZE) {
+                    throw new IOException("too many items: " + count);
+                }
+                final List<Leaf<E>> leaves = new ArrayList<>(count);
+                for(int i = 0; i < count; i++) {
+                    leaves.add(new Leaf<>(codec.read(din)));
+                }
+                elements = elements.replaceRange(low, high, TreeList23.quickConstruct(leaves.iterator()));
+                return;
+            }
+            case SPLIT: {
+                final List<K> keys = new ArrayList<>(FANOUT - 1);
+                for(int i = 1; i < FANOUT; i++) {
+                    keys.add(keyCodec.read(din));
+                }
+                final int[] counts = new int[FANOUT];
+                final long[] digests = new long[FANOUT];
+                for(int i = 0; i < FANOUT; i++) {
+                    counts[i] = VarInts.readSize(din);
+                    digests[i] = din.readLong();
+                }
+                for(int i = 0; i < FANOUT; i++) {
+                    final boolean hasL = i > 0 || hasLow;
+                    final K l = i > 0 ? keys.get(i - 1) : lowKey;
+                    final boolean hasH = i < FANOUT - 1 || hasHigh;
+                    final K h = i < FANOUT - 1 ? keys.get(i) : highKey;
+                    final int lpos = hasL ? position(l) : 0;
+                    final int hpos = hasH ? position(h) : elements.size();
+                    if (hpos - lpos != counts[i] || digest(lpos, hpos) != digests[i]) {
+                        sync(din, dout, hasL, l, hasH, h);
+                    }
+                }
+                return;
+            }
+            default:
+                throw new IOException("unexpected response: " + response);
+            }
+        }
+
+        // The index of the first element whose key is >= key.
+        private int position(final K key) {
+            return elements.naturalPosition(e -> comparator.compare(key, keyOf.apply(e)));
+        }
+
+        private int readBound(final DataInput in, final int unbounded) throws IOException {
+            return in.readBoolean() ? position(keyCodec.read(in)) : unbounded;
+        }
+
+        private void writeBound(final DataOutput out, final boolean bounded, final K key) throws IOException {
+            out.writeBoolean(bounded);
+            if (bounded) {
+                keyCodec.write(out, key);
+            }
+        }
+
+        private static int split(final int low, final int high, final int part) {
+            return low + (int)((long)(high - low) * part / FANOUT);
+        }
+    }
+
+    // Digests an element as the first 64 bits of the SHA-256 hash of its bytes, summed over a range.
+    // The sum does not depend on the order or the shape of the tree, and is kept by every branch of a tree bound to it.
+    private static final class Digest<E> implements ImmMonoid<E, Long> {
+        private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        final ImmCodec<E> codec;
+
+        Digest(final ImmCodec<E> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public Long identity() {
+            return 0L;
+        }
+
+        @Override
+        public Long of(final E element) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                codec.write(new DataOutputStream(bytes), element);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final byte[] hash = SHA256.get().digest(bytes.toByteArray());
+            long result = 0;
+            for(int i = 0; i < Long.BYTES; i++) {
+                result = (result << 8) | (hash[i] & 0xFF);
+            }
+            return result;
+        }
+
+        @Override
+        public Long combine(final Long a, final Long b) {
+            return a + b;
+        }
+    }
+
+    private static void writeHeader(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    private static void readHeader(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a sync stream");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported version: " + version);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package collections.immutable;
+
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * An immutable list whose elements have weights, supporting weighted random sampling and prefix sum search in O(log n).
+ * <p>*ALL OPERATIONS ARE IMMUTABLE*.  The object is not modified in any way.
+ * <p>The sums of the weights are a monoid bound to the underlying 2-3 tree by {@link ImmList#augment(ImmMonoid)}:
+ * every branch keeps the sum of the weights beneath it, so finding the element where the cumulative weight
+ * crosses a value is a single descent.   Edits only sum the branches along the path they change,
+ * and {@link #compact() compaction}, whether asked for or done by the {@link ImmCompaction} policy, sums the branches it builds.
+ * The sums are not evicted or shared with other monoids: summarizing {@link #asList()} by another monoid
+ * gives a list of its own, leaving this one as it is.
+ * <p>The lists derived from {@link #asList()} by {@link ImmList#reversed()}, {@link ImmList#map(java.util.function.Function)} or
+ * {@link ImmList#freeze()} do not keep the sums, so their aggregates by the weights are O(n).
+ * <p>Example:
+ * <pre>{@code
+ *     ImmWeightedList<Server> servers = ImmWeightedList.of(Server::capacity, Arrays.asList(a, b, c));
+ *     Server next = servers.sample(random);
+ *     servers = servers.setAt(1, b.withCapacity(0));
+ * }</pre>
+ *
+ * @param <E> The element type
+ */
+public final class ImmWeightedList<E> {
+    private final ImmMonoid<E, Double> weights;
+    private final ToDoubleFunction<? super E> weight;
+    private final TreeList23<E> elements;
+
+    private ImmWeightedList(final ImmMonoid<E, Double> weights, final ToDoubleFunction<? super E> weight, final TreeList23<E> elements) {
+        this.weights = weights;
+        this.weight = weight;
+        this.elements = elements;
+    }
+
+    /**
+     * Returns an empty weighted list.
+     * @param <E> The element type
+     * @param weight The weight of an element, which must not be negative
+     * @return an empty weighted list
+     */
+    public static <E> ImmWeightedList<E> empty(final ToDoubleFunction<? super E> weight) {
+        return of(weight, TreeList23.empty());
+    }
+
+    /**
+     * Returns a weighted list of <code>elements</code>.
+     * <p>This operation is O(n).
+     * @param <E> The element type
+     * @param weight The weight of an element, which must not be negative
+     * @param elements The elements
+     * @return a weighted list of <code>elements</code>
+     * @throws IllegalArgumentException if the weight of an element is negative
+     */
+    public static <E> ImmWeightedList<E> of(final ToDoubleFunction<? super E> weight, final Iterable<? extends E> elements) {
+        Requirements.require(weight, Requirements.notNull(), () -> "weight");
+        final TreeList23<E> list = TreeList23.of(Requirements.require(elements, Requirements.notNull(), () -> "elements"));
+        for(E e: list) {
+            checkWeight(weight, e);
+        }
+        final ImmMonoid<E, Double> weights = ImmMonoid.of(0.0, weight::applyAsDouble, Double::sum);
+        return new ImmWeightedList<>(weights, weight, list.augment(weights));
+    }
+
+    /**
+     * Returns the number of elements.
+     * <p>This operation is O(1).
+     * @return the number of elements
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Returns <code>list[index]</code>.
+     * <p>This operation is O(log n).
+     * @param index The index. Must be in range <code>[0, size - 1]</code>.
+     * @return <code>list[index]</code>
+     * @throws IndexOutOfBoundsException if index &lt; 0 or index &gt;= size
+     */
+    public E getAt(final int index) {
+        return elements.getAt(index);
+    }
+
+    /**
+     * Returns the sum of the weights of all elements.
+     * <p>This operation is O(1).
+     * @return the sum of the weights of all elements
+     */
+    public double totalWeight() {
+        return elements.aggregate(0, size(), weights);
+    }
+
+    /**
+     * Returns the sum of the weights of the elements in range <code>[low, high - 1]</code>.
+     * <p>This operation is O(log n).
+     * @param low The low index (inclusive).   Must be in range <code>[0, high]</code>
+     * @param high The high index (exclusive).   Must be in range <code>[0, size]</code>
+     * @return the sum of the weights of the elements in the range
+     * @throws IndexOutOfBoundsException if low &lt; 0 or low &gt; high or high &gt; size
+     */
+    public double weight(final int low, final int high) {
+        return elements.aggregate(low, high, weights);
+    }
+
+    /**
+     * Returns the index of the element where the cumulative weight crosses <code>x</code>, the least index
+     * whose weight, added to the weights of all elements before it, exceeds <code>x</code>.
+     * <p>Elements with no weight are never found.
+     * <p>This operation is O(log n).
+     * <p>Example:
+     * <pre>{@code
+     *     ImmWeightedList<Integer> l = ImmWeightedList.of(i -> i, Arrays.asList(1, 0, 2));
+     *     assert l.indexOfCumulative(0.5) == 0;
+     *     assert l.indexOfCumulative(1.0) == 2;
+     * }</pre>
+     * @param x The cumulative weight. Must be in range <code>[0, totalWeight)</code>
+     * @return the index of the element where the cumulative weight crosses <code>x</code>
+     * @throws IllegalArgumentException if x &lt; 0 or x &gt;= totalWeight
+     */
+    public int indexOfCumulative(final double x) {
+        Requirements.require(x, Requirements.and(Requirements.ge(0.0), Requirements.lt(totalWeight())), () -> "x");
+        Node23<E> node = ArrayNode23.expand(elements.root);
+        double remaining = x;
+        int index = 0;
+        while(!node.isLeaf()) {
+            final int n = node.numBranches();
+            int i = 0;
+            Node23<E> branch = node.getBranch(0);
+            double w = branch.summary(weights);
+            // Rounding can leave a sliver past the last branch, which belongs to the last element with weight.
+            while(i < n - 1 && (remaining >= w || w == 0)) {
+                remaining -= w;
+                index += branch.size();
+                branch = node.getBranch(++i);
+                w = branch.summary(weights);
+            }
+            node = branch;
+        }
+        return index;
+    }
+
+    /**
+     * Returns an element chosen at random, with probability proportional to its weight.
+     * <p>This operation is O(log n).
+     * @param random The source of randomness
+     * @return an element chosen at random
+     * @throws IllegalStateException if the total weight is 0
+     */
+    public E sample(final Random random) {
+        Requirements.require(random, Requirements.notNull(), () -> "random");
+        final double total = totalWeight();
+        if (total <= 0) {
+            throw new IllegalStateException("no element has weight");
+        }
+        return elements.getAt(indexOfCumulative(Math.min(random.nextDouble() * total, Math.nextDown(total))));
+    }
+
+    /**
+     * Returns a list with <code>element</code> added at the end.
+     * <p>This operation is O(log n).
+     * @param element The element
+     * @return a list with <code>element</code> added at the end
+     * @throws IllegalArgumentException if the weight of the element is negative
+     */
+    public ImmWeightedList<E> add(final E element) {
+        checkWeight(weight, element);
+        return with(elements.add(element));
+    }
+
+    /**
+     * Returns a list with <code>element</code> inserted at <code>index</code>.
+     * <p>This operation is O(log n).
+     * @param index The index. Must be in range <code>[0, size]</code>.
+     * @param element The element
+     * @return a list with <code>element</code> inserted at <code>index</code>
+     * @throws IndexOutOfBoundsException if index &lt; 0 or index &gt; size
+     * @throws IllegalArgumentException if the weight of the element is negative
+     */
+    public ImmWeightedList<E> insertAt(final int index, final E element) {
+        checkWeight(weight, element);
+        return with(elements.insertAt(index, element));
+    }
+
+    /**
+     * Returns a list with <code>list[index]</code> replaced by <code>element</code>, which is how weights are updated.
+     * <p>This operation is O(log n).
+     * @param index The index. Must be in range <code>[0, size - 1]</code>.
+     * @param element The element
+     * @return a list with <code>list[index]</code> replaced by <code>element</code>
+     * @throws IndexOutOfBoundsException if index &lt; 0 or index &gt;= size
+     * @throws IllegalArgumentException if the weight of the element is negative
+     */
+    public ImmWeightedList<E> setAt(final int index, final E element) {
+        checkWeight(weight, element);
+        return with(elements.setAt(index, element));
+    }
+
+    /**
+     * Returns a list with <code>list[index]</code> removed.
+     * <p>This operation is O(log n).
+     * @param index The index. Must be in range <code>[0, size - 1]</code>.
+     * @return a list with <code>list[index]</code> removed
+     * @throws IndexOutOfBoundsException if index &lt; 0 or index &gt;= size
+     */
+    public ImmWeightedList<E> removeAt(final int index) {
+        return with(elements.removeAt(index));
+    }
+
+    /**
+     * Returns an equal weighted list whose tree is rebuilt as shallow and full as possible; see {@link ImmCompaction}.
+     * <p>This operation is O(n).
+     * @return an equal, compacted weighted list
+     */
+    public ImmWeightedList<E> compact() {
+        return with(elements.compact());
+    }
+
+    /**
+     * Returns the elements as an {@link ImmList}.
+     * <p>This operation is O(1).
+     * @return the elements as an {@link ImmList}
+     */
+    public ImmList<E> asList() {
+        return elements;
+    }
+
+    @Override
+    public int hashCode() {
+        return elements.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof ImmWeightedList && elements.equals(((ImmWeightedList<?>)obj).elements);
+    }
+
+    @Override
+    public String toString() {
+        return elements.toString();
+    }
+
+    private ImmWeightedList<E> with(final TreeList23<E> list) {
+        return new ImmWeightedList<>(weights, weight, list);
+    }
+
+    private static <E> void checkWeight(final ToDoubleFunction<? super E> weight, final E element) {
+        final double w = weight.applyAsDouble(element);
+        if (!(w >= 0)) {
+            throw new IllegalArgumentException("weight of " + element + " is " + w);
+        }
+    }
+}
@@ -12,6 +12,9 @@ final class Leaf<E> implements Node23<E> {
 	public Leaf(E leaf) {
 		super();
 		this.element = leaf;
+		if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.NODE_ALLOCATIONS);
+        }
 	}
 	@Override
 	public int numBranches() {
@@ -0,0 +1,97 @@
+package collections.immutable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//A read only file mapped into memory.
+//Large files are mapped as several 1GB segments, values that straddle two segments are read a byte at a time.
+//The mapping stays valid after the channel is closed, and is shared through the page cache with every other process mapping the file.
+final class MappedFile {
+    private static final int SEGMENT_BITS = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private MappedFile(final MappedByteBuffer[] segments, final long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    static MappedFile map(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final MappedByteBuffer[] segments = new MappedByteBuffer[(int)((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for(int i = 0; i < segments.length; i++) {
+                final long start = (long)i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+            return new MappedFile(segments, size);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(final long pos) {
+        return segments[(int)(pos >>> SEGMENT_BITS)].get((int)(pos & (SEGMENT_SIZE - 1)));
+    }
+
+    int getInt(final long pos) {
+        final int offset = (int)(pos & (SEGMENT_SIZE - 1));
+        if (offset <= SEGMENT_SIZE - Integer.BYTES) {
+            return segments[(int)(pos >>> SEGMENT_BITS)].getInt(offset);
+        }
+        int result = 0;
+        for(int i = 0; i < Integer.BYTES; i++) {
+            result = (result << 8) | (get(pos + i) & 0xFF);
+        }
+        return result;
+    }
+
+    long getLong(final long pos) {
+        final int offset = (int)(pos & (SEGMENT_SIZE - 1));
+        if (offset <= SEGMENT_SIZE - Long.BYTES) {
+            return segments[(int)(pos >>> SEGMENT_BITS)].getLong(offset);
+        }
+        long result = 0;
+        for(int i = 0; i < Long.BYTES; i++) {
+            result = (result << 8) | (get(pos + i) & 0xFF);
+        }
+        return result;
+    }
+
+    // Returns a stream of the bytes starting at pos.
+    InputStream input(final long pos) {
+        return new InputStream() {
+            long p = pos;
+
+            @Override
+            public int read() {
+                return p < size ? get(p++) & 0xFF : -1;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (p >= size) {
+                    return -1;
+                }
+                final ByteBuffer segment = segments[(int)(p >>> SEGMENT_BITS)].duplicate();
+                segment.position((int)(p & (SEGMENT_SIZE - 1)));
+                final int n = Math.min(len, segment.remaining());
+                segment.get(b, off, n);
+                p += n;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,269 @@
+package collections.immutable;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.granitesoft.requirement.Requirements;
+
+/**
+ * An estimate of the heap used by the structure of one or more immutable collections, counting what they share once.
+ * <p>Versions of a collection share most of their nodes, so the memory that N versions really cost is much less
+ * than N times the memory of one.   A footprint walks every root given, visiting each object once by identity,
+ * so a subtree shared by several versions is counted once, and reports the unique nodes and their estimated size,
+ * broken down into:
+ * <ul>
+ * <li>leaves, one per element</li>
+ * <li>branches, with their arrays of branches and the summaries of their bound monoids, and the arrays that hold
+ * the elements of lists, sets and maps of up to 8 elements or of frozen ones</li>
+ * <li>entry objects, the key value pairs held by the leaves of maps</li>
+ * <li>view wrappers, the collection objects themselves and the mapped, reversed and disk nodes that wrap other nodes</li>
+ * </ul>
+ * <p>The elements, keys and values are not counted, since they are the caller's objects and are usually shared with
+ * other data.   The nodes of a collection read from a file by {@link ImmIO} stay in the file, so only their wrappers are counted.
+ * Sizes are estimated from the field layout of each class on a 64 bit JVM, with compressed references when the JVM uses them.
+ * <p>Example:
+ * <pre>{@code
+ *     ImmMap<Integer, Integer> v1 = ImmCollections.asMap(map);
+ *     ImmMap<Integer, Integer> v2 = v1.put(1, 2);
+ *     MemoryFootprint both = MemoryFootprint.of(v1, v2);
+ *     assert both.getTotalBytes() < 2 * MemoryFootprint.of(v1).getTotalBytes();
+ * }</pre>
+ */
+public final class MemoryFootprint {
+    private static final boolean COMPRESSED = compressedOops();
+    private static final int HEADER = COMPRESSED ? 12 : 16;
+    private static final int ARRAY_HEADER = COMPRESSED ? 16 : 24;
+    private static final int REF = COMPRESSED ? 4 : 8;
+
+    private long leaves;
+    private long branches;
+    private long entries;
+    private long wrappers;
+    private long nodeWrappers;
+    private long leafBytes;
+    private long branchBytes;
+    private long entryBytes;
+    private long wrapperBytes;
+
+    private MemoryFootprint() {
+    }
+
+    /**
+     * Returns the footprint of some collections together.
+     * <p>This operation is O(n), and takes O(n) space, where n is the number of unique nodes.
+     * @param roots Lists, sets and maps made by {@link ImmCollections}
+     * @return the footprint of the roots, counting what they share once
+     * @throws IllegalArgumentException if a root is not an immutable collection or map backed by a tree
+     */
+    public static MemoryFootprint of(final Object... roots) {
+        Requirements.require(roots, Requirements.notNull(), () -> "roots");
+        return ofAll(ImmCollections.asList(roots));
+    }
+
+    /**
+     * Returns the footprint of some collections together, such as the versions of a map kept in a cache.
+     * <p>This operation is O(n), and takes O(n) space, where n is the number of unique nodes.
+     * @param roots Lists, sets and maps made by {@link ImmCollections}
+     * @return the footprint of the roots, counting what they share once
+     * @throws IllegalArgumentException if a root is not an immutable collection or map backed by a tree
+     */
+    public static MemoryFootprint ofAll(final Iterable<?> roots) {
+        Requirements.require(roots, Requirements.notNull(), () -> "roots");
+        final MemoryFootprint footprint = new MemoryFootprint();
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Object root: roots) {
+            footprint.addRoot(Requirements.require(root, Requirements.notNull(), () -> "root"), seen);
+        }
+        return footprint;
+    }
+
+    private void addRoot(final Object root, final Set<Object> seen) {
+        if (!seen.add(root)) {
+            return;
+        }
+        if (root instanceof TreeList23) {
+            wrapper(HEADER + 2 * REF + Integer.BYTES);
+            addNode(((TreeList23<?>)root).root, seen);
+        } else if (root instanceof TreeSet23) {
+            wrapper(HEADER + 2 * REF);
+            addRoot(((TreeSet23<?>)root).elements, seen);
+        } else if (root instanceof HashSet23) {
+            wrapper(HEADER + REF);
+            addRoot(((HashSet23<?>)root).elements, seen);
+        } else if (root instanceof TreeMap23) {
+            wrapper(HEADER + 2 * REF);
+            addRoot(((TreeMap23<?, ?>)root).entries, seen);
+        } else if (root instanceof HashMap23) {
+            wrapper(HEADER + REF);
+            addRoot(((HashMap23<?, ?>)root).entries, seen);
+        } else {
+            throw new IllegalArgumentException("not backed by a tree: " + root.getClass().getName());
+        }
+    }
+
+    // A node holding its elements in an array, counted as a branch.
+    private void addArray(final Node23<?> node, final long objectBytes, final Set<Object> seen) {
+        branches++;
+        branchBytes += objectBytes + align(ARRAY_HEADER + node.size() * REF);
+        for(int i = 0; i < node.size(); i++) {
+            final Object value = node.get(i);
+            if (value instanceof Map.Entry && seen.add(value)) {
+                entries++;
+                entryBytes += align(HEADER + 2 * REF);
+            }
+        }
+    }
+
+    private void addNode(final Node23<?> node, final Set<Object> seen) {
+        if (node == null || !seen.add(node)) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            leaves++;
+            leafBytes += align(HEADER + REF);
+            final Object value = node.leafValue();
+            if (value instanceof Map.Entry && seen.add(value)) {
+                // An AbstractMap.SimpleImmutableEntry, or the like: a key and a value.
+                entries++;
+                entryBytes += align(HEADER + 2 * REF);
+            }
+        } else if (node instanceof Branch) {
+            final Branch<?> b = (Branch<?>)node;
+            branches++;
+            // The size, the array of branches and the summary.
+            branchBytes += align(HEADER + Integer.BYTES + REF + REF);
+            branchBytes += align(ARRAY_HEADER + b.numBranches() * REF);
+            if (b.hasSummary()) {
+                branchBytes += align(HEADER + 2 * REF);
+            }
+            for(int i = 0; i < b.numBranches(); i++) {
+                addNode(b.getBranch(i), seen);
+            }
+        } else if (node instanceof ArrayNode23) {
+            addArray(node, align(HEADER + REF), seen);
+        } else if (node instanceof FrozenNode23) {
+            addArray(node, align(HEADER + REF + 2 * Integer.BYTES), seen);
+        } else if (node instanceof ReversedNode23) {
+            nodeWrappers++;
+            wrapper(HEADER + REF);
+            addNode(((ReversedNode23<?>)node).other, seen);
+        } else if (node instanceof MappedNode23) {
+            nodeWrappers++;
+            wrapper(HEADER + 2 * REF);
+            addNode(((MappedNode23<?, ?>)node).e, seen);
+        } else {
+            // A node in a file, whose branches are decoded when visited: the file, the codec, the offset and three ints.
+            nodeWrappers++;
+            wrapper(HEADER + 2 * REF + Long.BYTES + 3 * Integer.BYTES);
+        }
+    }
+
+    private void wrapper(final int bytes) {
+        wrappers++;
+        wrapperBytes += align(bytes);
+    }
+
+    private static long align(final long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    // Whether the JVM uses compressed references, assuming it does when it cannot tell.
+    private static boolean compressedOops() {
+        try {
+            final com.sun.management.HotSpotDiagnosticMXBean hotspot =
+                    ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+            return hotspot == null || Boolean.parseBoolean(hotspot.getVMOption("UseCompressedOops").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of unique nodes, leaves and branches and the nodes that wrap other nodes.
+     * @return the number of unique nodes
+     */
+    public long getNodes() {
+        return leaves + branches + nodeWrappers;
+    }
+
+    /**
+     * Returns the number of unique leaves.
+     * @return the number of unique leaves
+     */
+    public long getLeaves() {
+        return leaves;
+    }
+
+    /**
+     * Returns the number of unique branches.
+     * @return the number of unique branches
+     */
+    public long getBranches() {
+        return branches;
+    }
+
+    /**
+     * Returns the number of unique map entries held by leaves.
+     * @return the number of unique entries
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the number of unique view wrappers: collection objects, and mapped, reversed and disk nodes.
+     * @return the number of unique view wrappers
+     */
+    public long getWrappers() {
+        return wrappers;
+    }
+
+    /**
+     * Returns the estimated bytes of the unique leaves.
+     * @return the estimated bytes of the leaves
+     */
+    public long getLeafBytes() {
+        return leafBytes;
+    }
+
+    /**
+     * Returns the estimated bytes of the unique branches, with their arrays and the summaries of their bound monoids.
+     * @return the estimated bytes of the branches
+     */
+    public long getBranchBytes() {
+        return branchBytes;
+    }
+
+    /**
+     * Returns the estimated bytes of the unique map entries.
+     * @return the estimated bytes of the entries
+     */
+    public long getEntryBytes() {
+        return entryBytes;
+    }
+
+    /**
+     * Returns the estimated bytes of the unique view wrappers.
+     * @return the estimated bytes of the view wrappers
+     */
+    public long getWrapperBytes() {
+        return wrapperBytes;
+    }
+
+    /**
+     * Returns the estimated bytes of everything counted.
+     * @return the estimated total bytes
+     */
+    public long getTotalBytes() {
+        return leafBytes + branchBytes + entryBytes + wrapperBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryFootprint[nodes=" + getNodes() + ", leaves=" + leaves + "/" + leafBytes + "B, branches=" + branches + "/" + branchBytes
+                + "B, entries=" + entries + "/" + entryBytes + "B, wrappers=" + wrappers + "/" + wrapperBytes + "B, total=" + getTotalBytes() + "B]";
+    }
+}
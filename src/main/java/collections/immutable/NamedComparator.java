@@ -0,0 +1,61 @@
+package collections.immutable;
+
+import java.util.Comparator;
+
+//A comparator with a name that survives outside of the JVM.
+//Lets sorted collections that were written to disk be trusted when read back.
+final class NamedComparator<E> implements Comparator<E> {
+    static final String NATURAL = "natural";
+    static final String REVERSED = ".reversed";
+
+    final String name;
+    final Comparator<E> comparator;
+
+    NamedComparator(final String name, final Comparator<E> comparator) {
+        assert name != null;
+        assert comparator != null;
+        this.name = name;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public int compare(final E a, final E b) {
+        return comparator.compare(a, b);
+    }
+
+    @Override
+    public Comparator<E> reversed() {
+        return new NamedComparator<>(name.endsWith(REVERSED) ?
+                name.substring(0, name.length() - REVERSED.length()) :
+                name + REVERSED, comparator.reversed());
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof NamedComparator && ((NamedComparator<?>)obj).name.equals(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // Returns the name of the comparator, the empty string if it has none.
+    static String nameOf(final Comparator<?> comparator) {
+        if (comparator instanceof NamedComparator) {
+            return ((NamedComparator<?>)comparator).name;
+        }
+        if (comparator.equals(TreeList23.naturalOrder()) || comparator.equals(Comparator.naturalOrder())) {
+            return NATURAL;
+        }
+        if (comparator.equals(TreeList23.naturalOrder().reversed()) || comparator.equals(Comparator.reverseOrder())) {
+            return NATURAL + REVERSED;
+        }
+        return "";
+    }
+}
@@ -50,6 +50,9 @@ interface Node23<E> extends Iterable<E> {
     }
 
     default public boolean eq(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (!(obj instanceof Node23)) {
             return false;
         }
@@ -68,6 +71,40 @@ interface Node23<E> extends Iterable<E> {
         return true;
     }
     
+    // Summary of every element in this node, combined in order.
+    default <S> S summary(final ImmMonoid<? super E, S> monoid) {
+        if (isLeaf()) {
+            return monoid.of(leafValue());
+        }
+        S result = getBranch(0).summary(monoid);
+        for(int i = 1; i < numBranches(); i++) {
+            result = monoid.combine(result, getBranch(i).summary(monoid));
+        }
+        return result;
+    }
+
+    // Summary of the elements in range [low, high), which must not be empty.
+    // O(log n) when the monoid is bound to the branches.
+    default <S> S summary(final int low, final int high, final ImmMonoid<? super E, S> monoid) {
+        if (low <= 0 && high >= size()) {
+            return summary(monoid);
+        }
+        S result = null;
+        boolean first = true;
+        int pos = 0;
+        for(int i = 0; i < numBranches() && pos < high; i++) {
+            final Node23<E> branch = getBranch(i);
+            final int end = pos + branch.size();
+            if (end > low) {
+                final S s = branch.summary(low - pos, high - pos, monoid);
+                result = first ? s : monoid.combine(result, s);
+                first = false;
+            }
+            pos = end;
+        }
+        return result;
+    }
+
     default SeekableIterator<E> iterator() {
         if (isLeaf()) {
             return new SingletonIterator<>(leafValue());
@@ -0,0 +1,184 @@
+package collections.immutable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+//
+// Bulk operations over a 2-3 tree, running the children of large branches as fork join tasks.
+// Subtrees smaller than THRESHOLD are processed by the calling task.
+//
+final class ParallelNode23 {
+    static final int THRESHOLD = 4096;
+
+    private ParallelNode23() {
+    }
+
+    // Returns the elements of node that pass filter, or null if none do.
+    // Subtrees whose elements all pass are reused as they are.
+    static <E> Node23<E> filter(final Node23<E> node, final Predicate<E> filter) {
+        return new FilterTask<>(node, filter).invoke();
+    }
+
+    // Returns a node of the same shape whose elements are the result of function.
+    static <E, F> Node23<F> map(final Node23<E> node, final Function<E, F> function) {
+        return new MapTask<>(node, function).invoke();
+    }
+
+    // Returns the elements of node combined with op, which must be associative.
+    static <E> E reduce(final Node23<E> node, final E identity, final BinaryOperator<E> op) {
+        return new ReduceTask<>(node, identity, op).invoke();
+    }
+
+    private static <E> Node23<E> filterInline(final Node23<E> node, final Predicate<E> filter) {
+        if (node.isLeaf()) {
+            return filter.test(node.leafValue()) ? node : null;
+        }
+        final Node23<E>[] children = nodes(node.numBranches());
+        final Node23<E>[] results = nodes(children.length);
+        for(int i = 0; i < results.length; i++) {
+            children[i] = node.getBranch(i);
+            results[i] = filterInline(children[i], filter);
+        }
+        return joinFiltered(node, children, results);
+    }
+
+    // Joins the filtered children of node, or returns node when nothing was filtered out.
+    // Wrapped nodes return new children on every call, so the children that were filtered are passed in.
+    private static <E> Node23<E> joinFiltered(final Node23<E> node, final Node23<E>[] children, final Node23<E>[] results) {
+        boolean unchanged = true;
+        Node23<E> result = null;
+        for(int i = 0; i < results.length; i++) {
+            unchanged &= results[i] == children[i];
+            if (results[i] != null) {
+                result = result == null ? results[i] : TreeList23.concat(result, results[i]);
+            }
+        }
+        return unchanged ? node : result;
+    }
+
+    private static <E, F> Node23<F> mapInline(final Node23<E> node, final Function<E, F> function) {
+        if (node.isLeaf()) {
+            return new Leaf<>(function.apply(node.leafValue()));
+        }
+        final Node23<F>[] results = nodes(node.numBranches());
+        for(int i = 0; i < results.length; i++) {
+            results[i] = mapInline(node.getBranch(i), function);
+        }
+        return branch(results);
+    }
+
+    private static <E> Node23<E>[] nodes(final int n) {
+        @SuppressWarnings("rawtypes")
+        final Node23[] nodes = new Node23[n];
+        @SuppressWarnings("unchecked")
+        final Node23<E>[] nodes2 = nodes;
+        return nodes2;
+    }
+
+    private static <F> Node23<F> branch(final Node23<F>[] nodes) {
+        return nodes.length == 2 ? new Branch<>(nodes[0], nodes[1]) : new Branch<>(nodes[0], nodes[1], nodes[2]);
+    }
+
+    private static <E> E reduceInline(final Node23<E> node, final E identity, final BinaryOperator<E> op) {
+        E result = identity;
+        for(E e: node) {
+            result = op.apply(result, e);
+        }
+        return result;
+    }
+
+    private static final class FilterTask<E> extends RecursiveTask<Node23<E>> {
+        private static final long serialVersionUID = 1L;
+        private final transient Node23<E> node;
+        private final transient Predicate<E> filter;
+
+        FilterTask(final Node23<E> node, final Predicate<E> filter) {
+            this.node = node;
+            this.filter = filter;
+        }
+
+        @Override
+        protected Node23<E> compute() {
+            if (node.size() <= THRESHOLD) {
+                return filterInline(node, filter);
+            }
+            final int n = node.numBranches();
+            final List<FilterTask<E>> tasks = new ArrayList<>(n);
+            for(int i = 0; i < n; i++) {
+                tasks.add(new FilterTask<>(node.getBranch(i), filter));
+            }
+            invokeAll(tasks);
+            final Node23<E>[] children = nodes(n);
+            final Node23<E>[] results = nodes(n);
+            for(int i = 0; i < n; i++) {
+                children[i] = tasks.get(i).node;
+                results[i] = tasks.get(i).join();
+            }
+            return joinFiltered(node, children, results);
+        }
+    }
+
+    private static final class MapTask<E, F> extends RecursiveTask<Node23<F>> {
+        private static final long serialVersionUID = 1L;
+        private final transient Node23<E> node;
+        private final transient Function<E, F> function;
+
+        MapTask(final Node23<E> node, final Function<E, F> function) {
+            this.node = node;
+            this.function = function;
+        }
+
+        @Override
+        protected Node23<F> compute() {
+            if (node.size() <= THRESHOLD) {
+                return mapInline(node, function);
+            }
+            final int n = node.numBranches();
+            final List<MapTask<E, F>> tasks = new ArrayList<>(n);
+            for(int i = 0; i < n; i++) {
+                tasks.add(new MapTask<>(node.getBranch(i), function));
+            }
+            invokeAll(tasks);
+            final Node23<F>[] results = nodes(n);
+            for(int i = 0; i < n; i++) {
+                results[i] = tasks.get(i).join();
+            }
+            return branch(results);
+        }
+    }
+
+    private static final class ReduceTask<E> extends RecursiveTask<E> {
+        private static final long serialVersionUID = 1L;
+        private final transient Node23<E> node;
+        private final transient E identity;
+        private final transient BinaryOperator<E> op;
+
+        ReduceTask(final Node23<E> node, final E identity, final BinaryOperator<E> op) {
+            this.node = node;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        protected E compute() {
+            if (node.size() <= THRESHOLD) {
+                return reduceInline(node, identity, op);
+            }
+            final int n = node.numBranches();
+            final List<ReduceTask<E>> tasks = new ArrayList<>(n);
+            for(int i = 0; i < n; i++) {
+                tasks.add(new ReduceTask<>(node.getBranch(i), identity, op));
+            }
+            invokeAll(tasks);
+            E result = tasks.get(0).join();
+            for(int i = 1; i < n; i++) {
+                result = op.apply(result, tasks.get(i).join());
+            }
+            return result;
+        }
+    }
+}
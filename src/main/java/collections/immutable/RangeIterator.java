@@ -0,0 +1,149 @@
+package collections.immutable;
+
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+//Represents an iterator of the elements of a tree in an index range, positioned with a single descent.
+//It keeps the path to the current leaf, so moving to a neighbour allocates nothing.
+final class RangeIterator<E> implements ListIterator<E> {
+    // The branches on the path to the current leaf, and the branch taken from each.
+    private final Node23<E>[] path;
+    private final int[] which;
+    private final int low;
+    private final int high;
+    private Node23<E> leaf;
+    // The index of the current leaf, and of the element next() returns.
+    private int leafIndex;
+    private int cursor;
+
+    RangeIterator(final Node23<E> root, final int low, final int high) {
+        assert root != null;
+        assert low >= 0 && low <= high && high <= root.size();
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.ITERATORS);
+        }
+        @SuppressWarnings("rawtypes")
+        final Node23[] p = new Node23[root.getDepth() - 1];
+        @SuppressWarnings("unchecked")
+        final Node23<E>[] p2 = p;
+        this.path = p2;
+        this.which = new int[p2.length];
+        this.low = low;
+        this.high = high;
+        this.cursor = low;
+        this.leafIndex = Math.min(low, root.size() - 1);
+        Node23<E> node = root;
+        int index = leafIndex;
+        int depth = 0;
+        while(!node.isLeaf()) {
+            int i = 0;
+            Node23<E> branch = node.getBranch(0);
+            while(index >= branch.size()) {
+                index -= branch.size();
+                branch = node.getBranch(++i);
+            }
+            path[depth] = node;
+            which[depth] = i;
+            depth++;
+            node = branch;
+        }
+        this.leaf = node;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < high;
+    }
+
+    @Override
+    public E next() {
+        if (cursor >= high) {
+            throw new NoSuchElementException();
+        }
+        moveTo(cursor++);
+        return leaf.leafValue();
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return cursor > low;
+    }
+
+    @Override
+    public E previous() {
+        if (cursor <= low) {
+            throw new NoSuchElementException();
+        }
+        moveTo(--cursor);
+        return leaf.leafValue();
+    }
+
+    @Override
+    public int nextIndex() {
+        return cursor - low;
+    }
+
+    @Override
+    public int previousIndex() {
+        return cursor - low - 1;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void set(final E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(final E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Moves the path to the leaf at index, which is the current leaf or one of its neighbours.
+    private void moveTo(final int index) {
+        if (index > leafIndex) {
+            forward();
+        } else if (index < leafIndex) {
+            backward();
+        }
+        assert leafIndex == index;
+    }
+
+    // Moves to the next leaf, climbing to the nearest branch with a branch to the right.
+    private void forward() {
+        int depth = path.length - 1;
+        while(which[depth] == path[depth].numBranches() - 1) {
+            depth--;
+        }
+        Node23<E> node = path[depth].getBranch(++which[depth]);
+        while(!node.isLeaf()) {
+            depth++;
+            path[depth] = node;
+            which[depth] = 0;
+            node = node.getBranch(0);
+        }
+        leaf = node;
+        leafIndex++;
+    }
+
+    // Moves to the previous leaf, climbing to the nearest branch with a branch to the left.
+    private void backward() {
+        int depth = path.length - 1;
+        while(which[depth] == 0) {
+            depth--;
+        }
+        Node23<E> node = path[depth].getBranch(--which[depth]);
+        while(!node.isLeaf()) {
+            depth++;
+            path[depth] = node;
+            which[depth] = node.numBranches() - 1;
+            node = node.getBranch(which[depth]);
+        }
+        leaf = node;
+        leafIndex--;
+    }
+}
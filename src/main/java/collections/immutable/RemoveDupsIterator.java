@@ -19,7 +19,7 @@ final class RemoveDupsIterator<E> implements Iterator<Leaf<E>> {
     private static <E> Leaf<E> advance(Iterator<Leaf<E>> iterator, Leaf<E> prev, Comparator<? super E> comparator) {
         while(iterator.hasNext()) {
             Leaf<E> n = iterator.next();
-            if (comparator.compare(n.leafValue(), prev.leafValue()) != 0) {
+            if (TreeList23.compare(comparator, n.leafValue(), prev.leafValue()) != 0) {
                 return n;
             }
         }
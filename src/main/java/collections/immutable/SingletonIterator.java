@@ -14,6 +14,9 @@ final class SingletonIterator<E> implements SeekableIterator<E> {
     public SingletonIterator(E element) {
         super();
         this.element = element;
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.ITERATORS);
+        }
     }
 
     @Override
@@ -2,35 +2,55 @@ package collections.immutable;
 
 import java.util.AbstractMap;
 import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
 
-final class SortedMap23Map<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+// A view of the entries of a map with indexes in [low, high).
+// Narrowing the view finds two positions, so sub maps share the tree rather than splitting it.
+final class SortedMap23Map<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
 	final TreeMap23<K, V> map;
+	final int low;
+	final int high;
 
 	public SortedMap23Map(TreeMap23<K, V> set) {
+		this(set, 0, set.size());
+	}
+
+	SortedMap23Map(TreeMap23<K, V> map, int low, int high) {
 		super();
-		this.map = set;
+		assert low >= 0 && low <= high && high <= map.size();
+		this.map = map;
+		this.low = low;
+		this.high = high;
 	}
 
     @Override
     public Set<Entry<K, V>> entrySet() {
-        return map.asSet23().asCollection();
+        return new SortedSet23Set<>(map.asSet23(), low, high);
+    }
+
+    @Override
+    public int size() {
+        return high - low;
     }
-    
+
     @Override
     public boolean containsKey(Object key) {
         @SuppressWarnings("unchecked")
         K k = (K)key;
-        return map.containsKey(k);
+        final int index = map.indexOfKey(k);
+        return index >= low && index < high;
     }
-    
+
     @Override
     public V get(Object key) {
         @SuppressWarnings("unchecked")
         K k = (K)key;
-        return map.get(k);
+        final int index = map.indexOfKey(k);
+        return index >= low && index < high ? map.entries.getAt(index).getValue() : null;
     }
 
     @Override
@@ -40,32 +60,156 @@ final class SortedMap23Map<K, V> extends AbstractMap<K, V> implements SortedMap<
 
     @Override
     public SortedMap<K, V> subMap(K fromKey, K toKey) {
-        return map.subSet(fromKey, toKey).asMap();
+        return subMap(fromKey, true, toKey, false);
     }
 
     @Override
     public SortedMap<K, V> headMap(K toKey) {
-        return map.lt(toKey).asMap();
+        return headMap(toKey, false);
     }
 
     @Override
     public SortedMap<K, V> tailMap(K fromKey) {
-        return map.ge(fromKey).asMap();
+        return tailMap(fromKey, true);
     }
 
     @Override
-    public K firstKey() {
-        if (map.size() == 0) {
-            throw new NoSuchElementException();
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (map.getKeyComparator().compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("low must be <= high");
         }
-        return map.asList().getAt(0).getKey();
+        return narrow(Math.max(low, position(fromKey, !fromInclusive)), Math.min(high, position(toKey, toInclusive)));
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return narrow(low, Math.min(high, position(toKey, inclusive)));
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return narrow(Math.max(low, position(fromKey, !inclusive)), high);
+    }
+
+    @Override
+    public K firstKey() {
+        return key(firstEntry());
     }
 
     @Override
     public K lastKey() {
-        if (map.size() == 0) {
+        return key(lastEntry());
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return from(low);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return before(high);
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return before(position(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return before(position(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return from(position(key, false));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return from(position(key, true));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SortedMap23Map<>(map.reversed(), map.size() - high, map.size() - low);
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new SortedSet23Set<>(map.keys(), low, high);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    // Index of the first entry with a key >= key, or > key when strict.
+    private int position(K key, boolean strict) {
+        return map.entries.position(Entry::getKey, map.keyComparator, key, strict);
+    }
+
+    private SortedMap23Map<K, V> narrow(int l, int h) {
+        return new SortedMap23Map<>(map, l, Math.max(l, h));
+    }
+
+    // The last entry in the view before index, or null if there is none.
+    private Entry<K, V> before(int index) {
+        final int i = Math.min(index, high) - 1;
+        return i >= low ? map.entries.getAt(i) : null;
+    }
+
+    // The first entry in the view at or after index, or null if there is none.
+    private Entry<K, V> from(int index) {
+        final int i = Math.max(index, low);
+        return i < high ? map.entries.getAt(i) : null;
+    }
+
+    private static <K> K key(Entry<K, ?> entry) {
+        if (entry == null) {
             throw new NoSuchElementException();
         }
-        return map.asList().getAt(map.size() - 1).getKey();
+        return entry.getKey();
+    }
+
+    private static <K> K keyOrNull(Entry<K, ?> entry) {
+        return entry == null ? null : entry.getKey();
     }
-}
\ No newline at end of file
+}
@@ -1,34 +1,49 @@
 package collections.immutable;
 
 import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
+import java.util.function.Function;
 
-final class SortedSet23Set<E> extends AbstractSet<E> implements SortedSet<E> {
-	final ImmSortedSet<E> set;
+// A view of the elements of a set with indexes in [low, high).
+// Narrowing the view finds two positions, so sub sets share the tree rather than splitting it.
+final class SortedSet23Set<E> extends AbstractSet<E> implements NavigableSet<E> {
+	final TreeSet23<E> set;
+	final int low;
+	final int high;
 
-	public SortedSet23Set(ImmSortedSet<E> set) {
+	public SortedSet23Set(TreeSet23<E> set) {
+		this(set, 0, set.size());
+	}
+
+	SortedSet23Set(TreeSet23<E> set, int low, int high) {
 		super();
+		assert low >= 0 && low <= high && high <= set.size();
 		this.set = set;
+		this.low = low;
+		this.high = high;
 	}
 
 	@Override
 	public Iterator<E> iterator() {
-		return set.asList().iterator();
+		return low == high ? Collections.emptyIterator() : TreeList23.iterator(set.elements.root, low, high);
 	}
 
 	@Override
 	public int size() {
-		return set.asList().size();
+		return high - low;
 	}
 
 	@Override
 	public boolean contains(Object o) {
 	    @SuppressWarnings("unchecked")
 	    E element = (E)o;
-	    return set.contains(element);
+	    final int index = set.indexOf(element);
+	    return index >= low && index < high;
 	}
 
 	@Override
@@ -38,32 +53,111 @@ final class SortedSet23Set<E> extends AbstractSet<E> implements SortedSet<E> {
 
 	@Override
 	public SortedSet<E> subSet(E fromElement, E toElement) {
-		return set.subSet(fromElement, toElement).asCollection();
+		return subSet(fromElement, true, toElement, false);
 	}
 
 	@Override
 	public SortedSet<E> headSet(E toElement) {
-		return set.lt(toElement).asCollection();
+		return headSet(toElement, false);
 	}
 
 	@Override
 	public SortedSet<E> tailSet(E fromElement) {
-		return set.ge(fromElement).asCollection();
+		return tailSet(fromElement, true);
 	}
 
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (set.getComparator().compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("low must be <= high");
+        }
+        return narrow(Math.max(low, position(fromElement, !fromInclusive)), Math.min(high, position(toElement, toInclusive)));
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return narrow(low, Math.min(high, position(toElement, inclusive)));
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return narrow(Math.max(low, position(fromElement, !inclusive)), high);
+    }
+
 	@Override
 	public E first() {
-        if (set.size() == 0) {
-            throw new NoSuchElementException();
-        }
-		return set.asList().getAt(0);
+		if (low == high) {
+			throw new NoSuchElementException();
+		}
+		return set.select(low);
 	}
 
 	@Override
 	public E last() {
-        if (set.size() == 0) {
-            throw new NoSuchElementException();
-        }
-		return set.asList().getAt(set.asList().size() - 1);
+		if (low == high) {
+			throw new NoSuchElementException();
+		}
+		return set.select(high - 1);
 	}
-}
\ No newline at end of file
+
+    @Override
+    public E lower(E e) {
+        return before(position(e, false));
+    }
+
+    @Override
+    public E floor(E e) {
+        return before(position(e, true));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return from(position(e, false));
+    }
+
+    @Override
+    public E higher(E e) {
+        return from(position(e, true));
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new SortedSet23Set<>(set.reversed(), set.size() - high, set.size() - low);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    // Index of the first element >= e, or > e when strict.
+    private int position(E e, boolean strict) {
+        return set.elements.position(Function.identity(), set.comparator, e, strict);
+    }
+
+    private SortedSet23Set<E> narrow(int l, int h) {
+        return new SortedSet23Set<>(set, l, Math.max(l, h));
+    }
+
+    // The last element in the view before index, or null if there is none.
+    private E before(int index) {
+        final int i = Math.min(index, high) - 1;
+        return i >= low ? set.select(i) : null;
+    }
+
+    // The first element in the view at or after index, or null if there is none.
+    private E from(int index) {
+        final int i = Math.max(index, low);
+        return i < high ? set.select(i) : null;
+    }
+}
@@ -0,0 +1,49 @@
+package collections.immutable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Builds a TreeList23 one element at a time in amortized O(1) per element.
+// Complete trees are kept on a stack, from the deepest to the shallowest, and three trees
+// of the same depth are joined into a branch, like carrying in a base 3 counter, so that
+// the tree built is as full as one built by TreeList23.quickConstruct.
+// Joining two builders concatenates their trees, O(log n).
+//
+final class TreeBuilder<E> {
+    private final List<Node23<E>> stack = new ArrayList<>();
+
+    void add(final E element) {
+        Node23<E> node = new Leaf<>(element);
+        int top = stack.size() - 1;
+        while(top >= 1 && stack.get(top - 1).getDepth() == node.getDepth()) {
+            final Node23<E> b1 = stack.remove(top--);
+            node = new Branch<>(stack.remove(top--), b1, node);
+        }
+        stack.add(node);
+    }
+
+    // Appends the elements of other to this builder, leaving other unusable.
+    TreeBuilder<E> addAll(final TreeBuilder<E> other) {
+        final Node23<E> rhs = other.root();
+        final Node23<E> lhs = root();
+        stack.clear();
+        if (lhs != null || rhs != null) {
+            stack.add(lhs == null ? rhs : rhs == null ? lhs : TreeList23.concat(lhs, rhs));
+        }
+        return this;
+    }
+
+    TreeList23<E> build() {
+        final Node23<E> root = root();
+        return root == null ? TreeList23.empty() : new TreeList23<>(root);
+    }
+
+    private Node23<E> root() {
+        Node23<E> node = null;
+        for(int i = stack.size() - 1; i >= 0; i--) {
+            node = node == null ? stack.get(i) : TreeList23.concat(stack.get(i), node);
+        }
+        return node;
+    }
+}
@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -37,18 +39,39 @@ import org.granitesoft.requirement.Requirements;
  * @param <E> The type of the elements.
  */
 final class TreeList23<E> implements ImmList<E> {
+	// The levels of branches above the leaves sampled by estimateFill.
+	private static final int FILL_LEVELS = 3;
+	private static final TreeList23<?> EMPTY = new TreeList23<>(null);
+
     /**
-     * The root of the tree.
+     * The root of the tree, null when empty, and an {@link ArrayNode23} of the elements
+     * when there are 2 to {@link ArrayNode23#MAX} of them, or a {@link FrozenNode23} of them once frozen.
      */
 	final Node23<E> root;
+
+	// The edits made to the tree since it was built, split off or compacted, which the compaction policy
+	// spreads the O(n) of compacting over.
+	private final int edits;
+
+	// The monoid whose summaries every branch of the tree keeps, null if none is bound.
+	final ImmMonoid<? super E, ?> monoid;
 	
 	TreeList23(final Node23<E> root) {
+	    this(root, 0, null);
+	}
+
+	private TreeList23(final Node23<E> root, final int edits, final ImmMonoid<? super E, ?> monoid) {
 	    assert root == null || root.isValid(root.getDepth());
-		this.root = root;
+	    final Node23<E> r = monoid == null || root == null ? root : bind(root, monoid);
+		this.root = r instanceof Branch && r.size() <= ArrayNode23.MAX ? ArrayNode23.of(r) : r;
+		this.edits = edits;
+		this.monoid = monoid;
 	}
 
     static <E> TreeList23<E> empty() {
-        return new TreeList23<>(null);
+        @SuppressWarnings("unchecked")
+        final TreeList23<E> empty = (TreeList23<E>)EMPTY;
+        return empty;
     }
 
     static <E> TreeList23<E> singleton(final E element) {
@@ -75,12 +98,12 @@ final class TreeList23<E> implements ImmList<E> {
         return quickConstruct(new LeafIterator<>(elements));
 	}
 
-	static <E> TreeList23<E> ofFiltered(final Predicate<E> filter, final Iterable<? extends E> elements) {
-        return quickConstruct(new FilteredIterator<>(new LeafIterator<>(elements), filter));
-    }
-
     static <E> TreeList23<E> ofSortedUnique(final Comparator<? super E> comparator,final Iterable<? extends E> elements) {
-        return quickConstruct(new RemoveDupsIterator<>(sortLeaves(comparator, new LeafIterator<>(elements)), comparator));
+        final Object event = CollectionEvents.begin("TreeList23.ofSortedUnique");
+        final Comparator<? super E> cmp = CollectionEvents.counting(event, comparator);
+        final TreeList23<E> result = quickConstruct(new RemoveDupsIterator<>(sortLeaves(cmp, new LeafIterator<>(elements)), cmp));
+        CollectionEvents.end(event, CollectionEvents.sizeOf(elements), -1, result.size());
+        return result;
     }
 
     @Override
@@ -103,25 +126,67 @@ final class TreeList23<E> implements ImmList<E> {
 		return root.get(validateIndex(index));
 	}
 
+    // Checked by hand rather than with Requirements, so that reads allocate nothing.
     private int validateIndex(final int index) {
-        return Requirements.require(index,  Requirements.and(Requirements.ge(0), Requirements.lt(size())), (i, p) -> new IndexOutOfBoundsException("index: " + p));
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+        return index;
     }
 	
     @Override
     public TreeList23<E> filter(final Predicate<E> filter) {
-        return TreeList23.ofFiltered(Requirements.require(filter, Requirements.notNull(), () -> "filter"), this);
+        Requirements.require(filter, Requirements.notNull(), () -> "filter");
+        final Object event = CollectionEvents.begin("TreeList23.filter");
+        final TreeList23<E> result = filtered(filter);
+        CollectionEvents.end(event, size(), -1, result.size());
+        return result;
+    }
+
+    // The elements that pass filter, unreported, for the operations made of a filter that report themselves.
+    TreeList23<E> filtered(final Predicate<E> filter) {
+        return bound(quickConstruct(new FilteredIterator<>(new LeafIterator<>(this), filter)));
+    }
+
+    @Override
+    public TreeList23<E> parallelFilter(final Predicate<E> filter) {
+        Requirements.require(filter, Requirements.notNull(), () -> "filter");
+        if (root == null) {
+            return this;
+        }
+        final Node23<E> tree = ArrayNode23.expand(root);
+        final Node23<E> filtered = ParallelNode23.filter(tree, filter);
+        return filtered == tree ? this : bound(new TreeList23<>(filtered));
+    }
+
+    @Override
+    public <F> TreeList23<F> parallelMap(final Function<E, F> function) {
+        Requirements.require(function, Requirements.notNull(), () -> "function");
+        return root == null ? empty() : new TreeList23<>(ParallelNode23.map(ArrayNode23.expand(root), function));
+    }
+
+    @Override
+    public E parallelReduce(final E identity, final BinaryOperator<E> op) {
+        Requirements.require(op, Requirements.notNull(), () -> "op");
+        return root == null ? identity : ParallelNode23.reduce(ArrayNode23.expand(root), identity, op);
     }
 
     @Override
     public TreeList23<E> retain(final Iterable<? extends E> other) {
+        final Object event = CollectionEvents.begin("TreeList23.retain");
         final ImmSet<E> hs = ImmCollections.asSet(Requirements.require(other, Requirements.notNull(), () -> "other"));
-        return filter(hs::contains);
+        final TreeList23<E> result = filtered(hs::contains);
+        CollectionEvents.end(event, size(), hs.size(), result.size());
+        return result;
     }
     
     @Override
     public TreeList23<E> removeAllIn(final Iterable<? extends E> other) {
+        final Object event = CollectionEvents.begin("TreeList23.removeAllIn");
         final ImmSet<E> hs = ImmCollections.asSet(Requirements.require(other, Requirements.notNull(), () -> "other"));
-        return filter(e -> !hs.contains(e));
+        final TreeList23<E> result = filtered(e -> !hs.contains(e));
+        CollectionEvents.end(event, size(), hs.size(), result.size());
+        return result;
     }
     
     @Override
@@ -131,9 +196,30 @@ final class TreeList23<E> implements ImmList<E> {
 	
     @Override
 	public TreeList23<E> setAt(final int index, final E element) {
-        validateIndex(index);
-	    return replaceRangeInt(index, index + 1, TreeList23.singleton(element));
+        final int i = validateIndex(index);
+        if (root instanceof ArrayNode23) {
+            return edited(((ArrayNode23<E>)root).set(i, element));
+        }
+	    return edited(setAt(ArrayNode23.expand(root), i, element));
 	}
+
+    // Copies the branches on the path to the leaf at index, which becomes element.
+    private static <E> Node23<E> setAt(final Node23<E> node, final int index, final E element) {
+        if (node.isLeaf()) {
+            return new Leaf<>(element);
+        }
+        int pos = 0;
+        int j = 0;
+        while(j < node.numBranches() - 1 && index >= pos + node.getBranch(j).size()) {
+            pos += node.getBranch(j++).size();
+        }
+        final Node23<E> b0 = j == 0 ? setAt(node.getBranch(0), index - pos, element) : node.getBranch(0);
+        final Node23<E> b1 = j == 1 ? setAt(node.getBranch(1), index - pos, element) : node.getBranch(1);
+        if (node.numBranches() == 2) {
+            return new Branch<>(b0, b1);
+        }
+        return new Branch<>(b0, b1, j == 2 ? setAt(node.getBranch(2), index - pos, element) : node.getBranch(2));
+    }
 	
     @Override
 	public TreeList23<E> insertAt(final int index, final E element) {
@@ -166,9 +252,48 @@ final class TreeList23<E> implements ImmList<E> {
     }
 
     private TreeList23<E> replaceRangeInt(final int l, final int h, final ImmList<E> other) {
-        return l == h && other.size() == 0 ?
-            this:
-            headAt(l).appendList(other).appendList(tailAt(h));
+        if (l == h && other.size() == 0) {
+            return this;
+        }
+        final Node23<E> o = TreeList23.of(other).root;
+        if (size() - (h - l) + other.size() <= ArrayNode23.MAX && ArrayNode23.isFlat(root) && ArrayNode23.isFlat(o)) {
+            return edited(ArrayNode23.splice(root, l, h, o));
+        }
+        return edited(join(join(head(l), o), tail(h)));
+    }
+
+    // The list with the root of an edit of this one, compacted if the compaction policy says it is due.
+    // Splits are not edits, they are never compacted and start counting edits afresh.
+    // Intermediate roots stay trees, only the result is flattened when small.
+    private TreeList23<E> edited(final Node23<E> result) {
+        if (result == root) {
+            return this;
+        }
+        if (result == null) {
+            return emptied();
+        }
+        final int e = edits < Integer.MAX_VALUE ? edits + 1 : edits;
+        return ImmCompaction.isDue(result, e) ? new TreeList23<>(compact(result), 0, monoid) : new TreeList23<>(result, e, monoid);
+    }
+
+    // The list with a root split off this one, never compacted.
+    private TreeList23<E> split(final Node23<E> result) {
+        return result == root ? this : result == null ? emptied() : new TreeList23<>(result, 0, monoid);
+    }
+
+    // A list made from this one, with the monoid of this one bound to it.
+    private TreeList23<E> bound(final TreeList23<E> list) {
+        return monoid == null || list.monoid == monoid ? list : new TreeList23<>(list.root, 0, monoid);
+    }
+
+    // The empty list, with the monoid of this one bound to it.
+    private TreeList23<E> emptied() {
+        return monoid == null ? empty() : new TreeList23<>(null, 0, monoid);
+    }
+
+    // The concatenation of two roots, either of which may be null.
+    private static <E> Node23<E> join(final Node23<E> lhs, final Node23<E> rhs) {
+        return lhs == null ? rhs : rhs == null ? lhs : concat(lhs, rhs);
     }
     
     @Override
@@ -180,32 +305,117 @@ final class TreeList23<E> implements ImmList<E> {
     @Override
 	public TreeList23<E> appendList(final ImmList<E> other) {
         final TreeList23<E> tother = TreeList23.of(Requirements.require(other, Requirements.notNull(), () -> "other"));
-        return tother.root == null ? this:
-            root == null ? tother:
-            new TreeList23<>(concat(root, tother.root));
+        return root == null ? bound(tother) : edited(join(root, tother.root));
 	}
 	
     @Override
 	public TreeList23<E> tailAt(final int index) {
         Requirements.require(index,  Requirements.and(Requirements.ge(0), Requirements.le(size())), (i, p) -> new IndexOutOfBoundsException("index: " + p));
-	    return index == 0 ? this :
-	           index == size() ? empty() :
-	               new TreeList23<>(root.tail(index));
+        return split(tail(index));
+	}
+
+    // The root of the elements from index on, null if there are none.
+    private Node23<E> tail(final int index) {
+	    if (index == 0) {
+	        return root;
+	    }
+	    if (index == size()) {
+	        return null;
+	    }
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.SPLITS);
+        }
+        return root.tail(index);
 	}
 	
     @Override
 	public TreeList23<E> headAt(final int index) {
         Requirements.require(index,  Requirements.and(Requirements.ge(0), Requirements.le(size())), (i, p) -> new IndexOutOfBoundsException("index: " + p));
-		return index == size() ?  this : index == 0 ? empty(): new TreeList23<>(root.head(index));
+        return split(head(index));
+	}
+
+    // The root of the elements before index, null if there are none.
+    private Node23<E> head(final int index) {
+		if (index == size()) {
+		    return root;
+		}
+		if (index == 0) {
+		    return null;
+		}
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.SPLITS);
+        }
+        return root.head(index);
 	}
 	
     @Override
 	public TreeList23<E> getRange(final int low, final int high) {
         validateRangeHigh(high);
         validateRangeLow(low, high);
-		return tailAt(low).headAt(high - low);
+        if (low == high) {
+            return emptied();
+        }
+        if (root instanceof FrozenNode23) {
+            // One copy of the range, rather than one of the tail and another of its head.
+            return split(((FrozenNode23<E>)root).range(low, high));
+        }
+        final Node23<E> tail = tail(low);
+        if (high - low == tail.size()) {
+            return split(tail);
+        }
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.SPLITS);
+        }
+		return split(tail.head(high - low));
 	}
 	
+    @Override
+    public <S> S aggregate(final int low, final int high, final ImmMonoid<? super E, S> monoid) {
+        validateRangeHigh(high);
+        validateRangeLow(low, high);
+        Requirements.require(monoid, Requirements.notNull(), () -> "monoid");
+        if (monoid == COUNT) {
+            // Every branch knows its size.
+            @SuppressWarnings("unchecked")
+            final S count = (S)Long.valueOf(high - low);
+            return count;
+        }
+        return low == high ? monoid.identity() : root.summary(low, high, monoid);
+    }
+
+    @Override
+    public TreeList23<E> augment(final ImmMonoid<? super E, ?> monoid) {
+        Requirements.require(monoid, Requirements.notNull(), () -> "monoid");
+        return monoid == this.monoid ? this : new TreeList23<>(root, edits, monoid);
+    }
+
+    // The tree of node, with monoid bound to every branch.   The branches already bound to it are kept,
+    // so after an edit only the branches the edit made are visited, O(log n).   The branches bound to another
+    // monoid are copied, as are views, which become branches.
+    static <E, S> Node23<E> bind(final Node23<E> node, final ImmMonoid<? super E, S> monoid) {
+        if (node.isLeaf() || node instanceof ArrayNode23 || node instanceof Branch && ((Branch<E>)node).isBound(monoid)) {
+            return node;
+        }
+        if (!(node instanceof Branch)) {
+            return bind(compact(node), monoid);
+        }
+        final int n = node.numBranches();
+        final Node23<E> b0 = bind(node.getBranch(0), monoid);
+        final Node23<E> b1 = bind(node.getBranch(1), monoid);
+        final Node23<E> b2 = n == 3 ? bind(node.getBranch(2), monoid) : null;
+        S value = monoid.combine(b0.summary(monoid), b1.summary(monoid));
+        if (b2 != null) {
+            value = monoid.combine(value, b2.summary(monoid));
+        }
+        final boolean same = b0 == node.getBranch(0) && b1 == node.getBranch(1) && (b2 == null || b2 == node.getBranch(2));
+        if (same && ((Branch<E>)node).bind(monoid, value)) {
+            return node;
+        }
+        final Branch<E> copy = b2 == null ? new Branch<>(b0, b1) : new Branch<>(b0, b1, b2);
+        copy.bind(monoid, value);
+        return copy;
+    }
+
     @Override
 	public TreeList23<E> reversed() {
 	    if (size() < 2) {
@@ -215,6 +425,100 @@ final class TreeList23<E> implements ImmList<E> {
 		return new TreeList23<E>(root.reverse());
 	}
 
+    @Override
+    public TreeList23<E> compact() {
+        return size() < 2 || root instanceof ArrayNode23 || root instanceof FrozenNode23 ? this : new TreeList23<>(compact(root), 0, monoid);
+    }
+
+    @Override
+    public TreeList23<E> freeze() {
+        return size() <= ArrayNode23.MAX || root instanceof FrozenNode23 ? this : new TreeList23<>(FrozenNode23.of(root));
+    }
+
+    // An iterator of the elements of a tree in [low, high).
+    static <E> ListIterator<E> iterator(final Node23<E> root, final int low, final int high) {
+        return root instanceof ArrayNode23 ? ((ArrayNode23<E>)root).iterator(low, high) :
+            root instanceof FrozenNode23 ? ((FrozenNode23<E>)root).iterator(low, high) :
+            new RangeIterator<>(root, low, high);
+    }
+
+    // Rebuilds a tree from its leaves, three to a branch wherever possible, O(n).
+    // The leaves are kept, unless they belong to a view, which is copied.
+    static <E> Node23<E> compact(final Node23<E> root) {
+        @SuppressWarnings("rawtypes")
+        final Node23[] n = new Node23[root.size()];
+        @SuppressWarnings("unchecked")
+        final Node23<E>[] leaves = n;
+        leaves(root, leaves, 0);
+        return build(leaves);
+    }
+
+    // Builds a tree of leaves, three to a branch wherever possible, reusing the array.
+    static <E> Node23<E> build(final Node23<E>[] level) {
+        int count = level.length;
+        while(count > 1) {
+            int m = 0;
+            int i = 0;
+            while(i < count) {
+                // Two pairs rather than a triple and a single at the end.
+                if (count - i == 2 || count - i == 4) {
+                    level[m++] = new Branch<>(level[i], level[i + 1]);
+                    i += 2;
+                } else {
+                    level[m++] = new Branch<>(level[i], level[i + 1], level[i + 2]);
+                    i += 3;
+                }
+            }
+            count = m;
+        }
+        return level[0];
+    }
+
+    private static <E> int leaves(final Node23<E> node, final Node23<E>[] leaves, int pos) {
+        if (node instanceof Leaf) {
+            leaves[pos++] = node;
+        } else if (node instanceof Branch) {
+            for(int i = 0; i < node.numBranches(); i++) {
+                pos = leaves(node.getBranch(i), leaves, pos);
+            }
+        } else {
+            final Iterator<E> it = node.iterator();
+            while(it.hasNext()) {
+                leaves[pos++] = new Leaf<>(it.next());
+            }
+        }
+        return pos;
+    }
+
+    // Estimates how full the branches of a tree are, from 2/3 to 1, by the lowest branches on the paths
+    // to the elements at a quarter, half and three quarters of it, O(log n).   The lowest three levels
+    // hold nearly every branch, and the few branches above them take the odd sizes of each level.
+    static double estimateFill(final Node23<?> root) {
+        if (root == null || root.isLeaf() || root instanceof ArrayNode23 || root instanceof FrozenNode23) {
+            return 1;
+        }
+        int branches = 0;
+        int nodes = 0;
+        final int size = root.size();
+        final int depth = root.getDepth();
+        for(int k = 1; k <= 3; k++) {
+            Node23<?> node = root;
+            int pos = (int)(k * (long)size / 4);
+            for(int level = depth; level > 1; level--) {
+                if (level <= FILL_LEVELS + 1) {
+                    branches += node.numBranches();
+                    nodes++;
+                }
+                int j = 0;
+                while(pos >= node.getBranch(j).size()) {
+                    pos -= node.getBranch(j++).size();
+                }
+                node = node.getBranch(j);
+            }
+        }
+        return branches / (3.0 * nodes);
+    }
+
 	@Override
     public int hashCode() {
     	return asCollection().hashCode();
@@ -226,6 +530,9 @@ final class TreeList23<E> implements ImmList<E> {
     		return false;
     	}
     	final TreeList23<?> other = (TreeList23<?>)otherObject;
+    	if (root == other.root) {
+    		return true;
+    	}
     	return asCollection().equals(other.asCollection());
     }
 
@@ -236,7 +543,7 @@ final class TreeList23<E> implements ImmList<E> {
 
     @Override
     public ListIterator<E> iterator() {
-        return root == null ? Collections.emptyListIterator() : root.iterator();
+        return root == null ? Collections.emptyListIterator() : iterator(root, 0, root.size());
     }
     
     @Override
@@ -249,6 +556,24 @@ final class TreeList23<E> implements ImmList<E> {
         return StreamSupport.stream(spliterator(), false);
     }
 
+    // The comparator used by sorted collections when none is given.
+    private static final Comparator<Object> NATURAL_ORDER = TreeList23::naturalCompare;
+
+    // The monoid counting elements, one instance so that aggregates recognize it and answer from the sizes of the branches.
+    private static final ImmMonoid<Object, Long> COUNT = ImmMonoid.of(0L, e -> 1L, Long::sum);
+
+    static <E> ImmMonoid<E, Long> count() {
+        @SuppressWarnings("unchecked")
+        final ImmMonoid<E, Long> count = (ImmMonoid<E, Long>)(ImmMonoid<?, Long>)COUNT;
+        return count;
+    }
+
+    static <E> Comparator<E> naturalOrder() {
+        @SuppressWarnings("unchecked")
+        final Comparator<E> comparator = (Comparator<E>)(Comparator<?>)NATURAL_ORDER;
+        return comparator;
+    }
+
     /// Compares two elements, allowing for null.
 	static <E> int naturalCompare(final E a, final E b) {
         if (a == null) {
@@ -264,7 +589,7 @@ final class TreeList23<E> implements ImmList<E> {
 	}
 
 	// Quickly constructs a list from a collection of nodes.
-	// O(n log n)
+	// O(n), each level has a third as many nodes as the one below it.
 	static <E> TreeList23<E> quickConstruct(final Iterator<? extends Node23<E>> nodes) {
 	    if (!nodes.hasNext()) {
 	        return TreeList23.empty();
@@ -279,9 +604,18 @@ final class TreeList23<E> implements ImmList<E> {
 	// Returns the concatenation of lhs and rhs.
     // The returned node will never be degenerate.
 	// O(log max(m,n))
-	static <E> Node23<E> concat(final Node23<E> lhs, final Node23<E> rhs) {
-	    assert lhs != null;
-        assert rhs != null;
+	static <E> Node23<E> concat(final Node23<E> l, final Node23<E> r) {
+	    assert l != null;
+        assert r != null;
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.CONCATS);
+        }
+        // Arrays are only ever roots, so two leaves are joined as a branch, keeping the leaves of the trees split by head and tail.
+        if ((l instanceof ArrayNode23 || r instanceof ArrayNode23) && l.size() + r.size() <= ArrayNode23.MAX && ArrayNode23.isFlat(l) && ArrayNode23.isFlat(r)) {
+            return ArrayNode23.splice(l, l.size(), l.size(), r);
+        }
+        final Node23<E> lhs = ArrayNode23.expand(l);
+        final Node23<E> rhs = ArrayNode23.expand(r);
         final int depthDelta = lhs.getDepth() - rhs.getDepth();
         if (depthDelta == 0) {
             return new Branch<>(lhs, rhs);
@@ -299,6 +633,50 @@ final class TreeList23<E> implements ImmList<E> {
 	    return nodelen == 1 ? nodes2[0] : new Branch<>(nodes2[0], nodes2[1]);
     }
 
+	// Returns the sorted union of the sorted lists lhs and rhs, with merge combining equal elements.
+	// Splits the larger list around its middle element, splits the smaller list at the same
+	// place, and joins the unions of the halves.   Lists that do not overlap are simply concatenated,
+	// so O(log n) when they don't overlap, and O(m log(n/m + 1)) in general.
+	// The union is one edit of lhs, the splits and joins it is made of are not.
+	static <E> TreeList23<E> union(final Comparator<? super E> comparator, final BinaryOperator<E> merge, final TreeList23<E> lhs, final TreeList23<E> rhs) {
+	    final Object event = CollectionEvents.begin("TreeList23.union");
+	    final TreeList23<E> result = lhs.edited(unionOf(CollectionEvents.counting(event, comparator), merge, lhs, rhs).root);
+	    CollectionEvents.end(event, lhs.size(), rhs.size(), result.size());
+	    return result;
+	}
+
+	private static <E> TreeList23<E> unionOf(final Comparator<? super E> comparator, final BinaryOperator<E> merge, final TreeList23<E> lhs, final TreeList23<E> rhs) {
+	    if (lhs.root == null || rhs.root == null) {
+	        return lhs.root == null ? rhs : lhs;
+	    }
+	    if (compare(comparator, lhs.root.last(), rhs.root.first()) < 0) {
+	        return new TreeList23<>(concat(lhs.root, rhs.root));
+	    }
+	    if (compare(comparator, rhs.root.last(), lhs.root.first()) < 0) {
+	        return new TreeList23<>(concat(rhs.root, lhs.root));
+	    }
+	    final boolean pivotLeft = lhs.size() >= rhs.size();
+	    final TreeList23<E> large = pivotLeft ? lhs : rhs;
+	    final TreeList23<E> small = pivotLeft ? rhs : lhs;
+	    final int mid = large.size() / 2;
+	    final E pivot = large.getAt(mid);
+	    final int index = small.naturalPosition(e -> compare(comparator, pivot, e));
+	    final boolean found = index < small.size() && compare(comparator, pivot, small.getAt(index)) == 0;
+	    final E value = !found ? pivot : pivotLeft ? merge.apply(pivot, small.getAt(index)) : merge.apply(small.getAt(index), pivot);
+	    final TreeList23<E> low = pivotLeft ?
+	            unionOf(comparator, merge, part(large.head(mid)), part(small.head(index))) :
+	            unionOf(comparator, merge, part(small.head(index)), part(large.head(mid)));
+	    final TreeList23<E> high = pivotLeft ?
+	            unionOf(comparator, merge, part(large.tail(mid + 1)), part(small.tail(found ? index + 1 : index))) :
+	            unionOf(comparator, merge, part(small.tail(found ? index + 1 : index)), part(large.tail(mid + 1)));
+	    return new TreeList23<>(join(join(low.root, new Leaf<>(value)), high.root));
+	}
+
+	// A part of a union, neither compacted nor bound to a monoid until the union is done.
+	private static <E> TreeList23<E> part(final Node23<E> root) {
+	    return root == null ? empty() : new TreeList23<>(root);
+	}
+
 	// Combines 2-4 nodes into a list of one or 2 nodes.
     private static <E> int combine(final Node23<E>[] arr, final int arrlen, final Node23<E>[] nodes, final int pos) {
         switch(arrlen) {
@@ -364,22 +742,194 @@ final class TreeList23<E> implements ImmList<E> {
         return combine(arr2, arrlen, result, pos);            
 	}
 
-    // Warning, all elements in this list must follow order governed by this comparator
-    int getIndexOf(final Function<? super E, Integer> comparator) {
-        return root == null ? -1 : root.binarySearch(comparator, (leaf, i) -> comparator.apply(leaf) == 0 ? i : -1);
-    }
-    
     // Returns the position where the element belongs
     // Warning, all elements in this list must follow order governed by this comparator
     int naturalPosition(final Function<? super E, Integer> comparator) {
         return root == null ? 0 : root.binarySearch(comparator, (leaf, i) -> comparator.apply(leaf) > 0 ? (i + 1) : i);
     }
 
+    // Index of the first element whose key is >= key, or > key when strict, or size() if there is none.
+    // A single descent that allocates nothing.
+    // Warning, all elements in this list must follow order governed by this comparator
+    <K> int position(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        if (root == null) {
+            return 0;
+        }
+        if (root instanceof ArrayNode23) {
+            return ((ArrayNode23<E>)root).position(keyOf, comparator, key, strict);
+        }
+        if (root instanceof FrozenNode23) {
+            return ((FrozenNode23<E>)root).position(keyOf, comparator, key, strict);
+        }
+        Node23<E> node = root;
+        int index = 0;
+        while(!node.isLeaf()) {
+            final int n = node.numBranches();
+            int i = 0;
+            Node23<E> branch = node.getBranch(0);
+            while(i < n - 1 && before(compare(comparator, keyOf.apply(branch.last()), key), strict)) {
+                index += branch.size();
+                branch = node.getBranch(++i);
+            }
+            node = branch;
+        }
+        return before(compare(comparator, keyOf.apply(node.leafValue()), key), strict) ? index + 1 : index;
+    }
+
+    // Index of the element whose key equals key, or -1 if there is none.
+    // A single descent that allocates nothing.
+    // Warning, all elements in this list must follow order governed by this comparator
+    <K> int indexOf(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key) {
+        if (root == null) {
+            return -1;
+        }
+        if (root instanceof ArrayNode23) {
+            return ((ArrayNode23<E>)root).indexOf(keyOf, comparator, key);
+        }
+        if (root instanceof FrozenNode23) {
+            return ((FrozenNode23<E>)root).indexOf(keyOf, comparator, key);
+        }
+        Node23<E> node = root;
+        int index = 0;
+        while(!node.isLeaf()) {
+            final int n = node.numBranches();
+            int i = 0;
+            Node23<E> branch = node.getBranch(0);
+            while(i < n - 1 && compare(comparator, keyOf.apply(branch.last()), key) < 0) {
+                index += branch.size();
+                branch = node.getBranch(++i);
+            }
+            node = branch;
+        }
+        return compare(comparator, keyOf.apply(node.leafValue()), key) == 0 ? index : -1;
+    }
+
+    // The least element whose key is >= key, or > key when strict, or null if there is none.
+    // A single descent that allocates nothing.
+    // Warning, all elements in this list must follow order governed by this comparator
+    <K> E ceiling(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        if (root == null) {
+            return null;
+        }
+        if (root instanceof ArrayNode23) {
+            return ((ArrayNode23<E>)root).ceiling(keyOf, comparator, key, strict);
+        }
+        if (root instanceof FrozenNode23) {
+            return ((FrozenNode23<E>)root).ceiling(keyOf, comparator, key, strict);
+        }
+        Node23<E> node = root;
+        // The subtree holding the elements that follow the path taken.
+        Node23<E> next = null;
+        while(!node.isLeaf()) {
+            final int n = node.numBranches();
+            int i = 0;
+            while(i < n - 1 && before(compare(comparator, keyOf.apply(node.getBranch(i).last()), key), strict)) {
+                i++;
+            }
+            if (i < n - 1) {
+                next = node.getBranch(i + 1);
+            }
+            node = node.getBranch(i);
+        }
+        return !before(compare(comparator, keyOf.apply(node.leafValue()), key), strict) ? node.leafValue() : next == null ? null : next.first();
+    }
+
+    // The greatest element whose key is <= key, or < key when strict, or null if there is none.
+    // A single descent that allocates nothing.
+    // Warning, all elements in this list must follow order governed by this comparator
+    <K> E floor(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final K key, final boolean strict) {
+        if (root == null) {
+            return null;
+        }
+        if (root instanceof ArrayNode23) {
+            return ((ArrayNode23<E>)root).floor(keyOf, comparator, key, strict);
+        }
+        if (root instanceof FrozenNode23) {
+            return ((FrozenNode23<E>)root).floor(keyOf, comparator, key, strict);
+        }
+        Node23<E> node = root;
+        // The subtree holding the elements that precede the path taken.
+        Node23<E> previous = null;
+        while(!node.isLeaf()) {
+            int i = node.numBranches() - 1;
+            while(i > 0 && !before(compare(comparator, keyOf.apply(node.getBranch(i).first()), key), !strict)) {
+                i--;
+            }
+            if (i > 0) {
+                previous = node.getBranch(i - 1);
+            }
+            node = node.getBranch(i);
+        }
+        return before(compare(comparator, keyOf.apply(node.leafValue()), key), !strict) ? node.leafValue() : previous == null ? null : previous.last();
+    }
+
+    // Passes each element whose key is among the sorted keys to found, in order.
+    // The keys are split among the branches on the way down, so the descents for k keys share
+    // their upper levels and cost O(k log(n/k)) rather than O(k log n).
+    // Warning, all elements in this list must follow order governed by this comparator
+    <K> void findAll(final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator, final List<? extends K> keys, final Consumer<? super E> found) {
+        if (root instanceof FrozenNode23) {
+            ((FrozenNode23<E>)root).findAll(keyOf, comparator, keys, found);
+        } else if (root instanceof ArrayNode23) {
+            ((ArrayNode23<E>)root).findAll(keyOf, comparator, keys, found);
+        } else if (root != null && !keys.isEmpty()) {
+            findAll(root, keyOf, comparator, keys, 0, keys.size(), found);
+        }
+    }
+
+    private static <E, K> void findAll(final Node23<E> node, final Function<? super E, ? extends K> keyOf, final Comparator<? super K> comparator,
+            final List<? extends K> keys, int low, final int high, final Consumer<? super E> found) {
+        if (node.isLeaf()) {
+            final K key = keyOf.apply(node.leafValue());
+            final int i = upper(comparator, keys, low, high, key);
+            if (i > low && compare(comparator, keys.get(i - 1), key) == 0) {
+                found.accept(node.leafValue());
+            }
+            return;
+        }
+        final int n = node.numBranches();
+        for(int i = 0; i < n && low < high; i++) {
+            final Node23<E> branch = node.getBranch(i);
+            // Keys past the last element of the list go down the last branch, and are not found.
+            final int mid = i == n - 1 ? high : upper(comparator, keys, low, high, keyOf.apply(branch.last()));
+            if (mid > low) {
+                findAll(branch, keyOf, comparator, keys, low, mid, found);
+            }
+            low = mid;
+        }
+    }
+
+    // Index of the first of keys[low, high) that is > key, or high if there is none.
+    private static <K> int upper(final Comparator<? super K> comparator, final List<? extends K> keys, int low, int high, final K key) {
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(comparator, keys.get(mid), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Calls the comparator, counting the call when metrics are on.
+    static <T> int compare(final Comparator<? super T> comparator, final T a, final T b) {
+        if (ImmMetrics.enabled) {
+            ImmMetrics.count(ImmMetrics.Counter.COMPARISONS);
+        }
+        return comparator.compare(a, b);
+    }
+
+    // Whether an element comparing cmp to a key comes before the first element >= the key, or > the key when strict.
+    private static boolean before(final int cmp, final boolean strict) {
+        return strict ? cmp <= 0 : cmp < 0;
+    }
+
     static <E> Iterator<Leaf<E>> sortLeaves(final Comparator<? super E> comparator,
             final Iterator<Leaf<E>> elements) {
         final List<Leaf<E>> nodes = new ArrayList<>();
         elements.forEachRemaining(nodes::add);
-        Collections.sort(nodes, (i,j) -> comparator.compare(i.leafValue(),j.leafValue()));
+        Collections.sort(nodes, (i,j) -> compare(comparator, i.leafValue(),j.leafValue()));
         return nodes.iterator();
     }
 }
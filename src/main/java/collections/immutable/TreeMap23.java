@@ -1,7 +1,10 @@
 package collections.immutable;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,6 +29,9 @@ import org.granitesoft.requirement.Requirements;
  * @param <V> The value type
  */
 final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
+    // The empty map in natural order.
+    private static final TreeMap23<?, ?> EMPTY = new TreeMap23<>(TreeList23.naturalOrder(), TreeList23.empty());
+
     final Comparator<? super K> keyComparator;
 	final TreeList23<Entry<K, V>> entries;
 
@@ -41,11 +47,13 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
     }
 
     static <K,V> TreeMap23<K,V> empty() {
-        return empty(TreeList23::naturalCompare);
+        @SuppressWarnings("unchecked")
+        final TreeMap23<K, V> empty = (TreeMap23<K, V>)EMPTY;
+        return empty;
     }
    
     static <K,V> TreeMap23<K,V> singleton(final K key, final V value) {
-        return new TreeMap23<K, V>(TreeList23::naturalCompare, TreeList23.singleton(new AbstractMap.SimpleImmutableEntry<>(key, value)));
+        return new TreeMap23<K, V>(TreeList23.naturalOrder(), TreeList23.singleton(new AbstractMap.SimpleImmutableEntry<>(key, value)));
     }
 
     static <K,V> TreeMap23<K,V> of(final Map<K, V> map) {
@@ -54,7 +62,7 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
             final SortedMap<K, V> sortedMap = (SortedMap<K, V>)map;
             return of(getComparator(sortedMap), sortedMap.entrySet());
         }
-        return of(TreeList23::naturalCompare, map.entrySet());
+        return of(TreeList23.naturalOrder(), map.entrySet());
     }
 
     static <K,V> TreeMap23<K,V> of(final Comparator<? super K> keyComparator, final Map<K, V> map) {
@@ -66,7 +74,7 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
 	}
 	
 	static <K,V> TreeMap23<K,V> of(final Iterable<? extends Entry<K, V>> entries) {
-        return of(TreeList23::naturalCompare, entries);
+        return of(TreeList23.naturalOrder(), entries);
     }
 	
     @Override
@@ -77,11 +85,14 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
     @Override
     public TreeMap23<K, V> addAll(final Iterable<? extends Entry<K ,V>> entries) {
         Requirements.require(entries, Requirements.notNull(), () -> "entries");
-        TreeMap23<K, V> m = this;
+        final List<Entry<K, V>> batch = new ArrayList<>();
         for(Entry<K,V> e: entries) {
-            m = m.put(e.getKey(), e.getValue());
+            batch.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
         }
-        return m;
+        // ofSortedUnique keeps the first of equal keys, so reverse the batch to keep the last.
+        Collections.reverse(batch);
+        final Comparator<Entry<K, V>> comparator = (a, b) -> keyComparator.compare(a.getKey(), b.getKey());
+        return new TreeMap23<>(keyComparator, TreeList23.union(comparator, (a, b) -> b, this.entries, TreeList23.ofSortedUnique(comparator, batch)));
     }
 
     @Override
@@ -90,21 +101,33 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
         return addAll(map.entrySet());
     }
 
+    @Override
+    public TreeMap23<K, V> compact() {
+        return new TreeMap23<>(keyComparator, entries.compact());
+    }
+
+    @Override
+    public TreeMap23<K, V> freeze() {
+        final TreeList23<Entry<K, V>> frozen = entries.freeze();
+        return frozen == entries ? this : new TreeMap23<>(keyComparator, frozen);
+    }
+
     @Override
 	public TreeMap23<K, V> put(final K key, final V value) {
-        final TreeMap23<K, V> m = removeKey(key);
-        final int index = m.keys().asList().naturalPosition(e -> keyComparator.compare(key, e));
-        return new TreeMap23<>(keyComparator, m.entries.insertAt(index, new AbstractMap.SimpleImmutableEntry<>(key, value)));
+        final Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>(key, value);
+        final int index = indexOfKey(key);
+        // Replacing an entry copies only its path; inserting one splits and joins the tree.
+        return new TreeMap23<>(keyComparator, index >= 0 ? entries.setAt(index, entry) : entries.insertAt(rank(key), entry));
 	}
 	
     @Override
     public TreeMap23<K, V> ge(final K key) {
-        return new TreeMap23<>(keyComparator, entries.tailAt(keys().asList().naturalPosition(e -> keyComparator.compare(key, e))));
+        return new TreeMap23<>(keyComparator, entries.tailAt(rank(key)));
     }
 
     @Override
     public TreeMap23<K, V> lt(final K key) {
-        return new TreeMap23<>(keyComparator, entries.headAt(keys().asList().naturalPosition(e -> keyComparator.compare(key, e))));
+        return new TreeMap23<>(keyComparator, entries.headAt(rank(key)));
     }
 
     @Override
@@ -116,10 +139,7 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
         if (cmp == 0) {
             return this;
         }
-        final TreeSet23<K> keys = keys();
-        return new TreeMap23<>(keyComparator, entries.removeRange(
-                keys.asList().naturalPosition(e -> keyComparator.compare(lowKey, e)),
-                keys.asList().naturalPosition(e -> keyComparator.compare(highKey, e))));
+        return new TreeMap23<>(keyComparator, entries.removeRange(rank(lowKey), rank(highKey)));
     }
 
     @Override
@@ -129,12 +149,23 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
             throw new IllegalArgumentException("low must be <= high");
         }
         if (cmp == 0) {
-            return new TreeMap23<>(keyComparator, TreeList23.empty());
+            return new TreeMap23<>(keyComparator, entries.headAt(0));
         }
-        final TreeSet23<K> keys = keys();
-        return new TreeMap23<>(keyComparator, entries.getRange(
-                keys.asList().naturalPosition(e -> keyComparator.compare(lowKey, e)),
-                keys.asList().naturalPosition(e -> keyComparator.compare(highKey, e))));
+        return new TreeMap23<>(keyComparator, entries.getRange(rank(lowKey), rank(highKey)));
+    }
+
+    @Override
+    public <S> S aggregate(final K lowKey, final K highKey, final ImmMonoid<? super Entry<K, V>, S> monoid) {
+        Requirements.require(monoid, Requirements.notNull(), () -> "monoid");
+        final int low = rank(lowKey);
+        final int high = rank(highKey);
+        return low >= high ? monoid.identity() : entries.aggregate(low, high, monoid);
+    }
+
+    @Override
+    public TreeMap23<K, V> augment(final ImmMonoid<? super Entry<K, V>, ?> monoid) {
+        final TreeList23<Entry<K, V>> augmented = entries.augment(monoid);
+        return augmented == entries ? this : new TreeMap23<>(keyComparator, augmented);
     }
 
     @Override
@@ -144,12 +175,12 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
 	
     @Override
     public int indexOfKey(final K key) {
-        return keys().indexOf(key);
+        return entries.indexOf(Entry::getKey, keyComparator, key);
     }
     
     @Override
     public boolean containsKey(final K key) {
-        return keys().contains(key);
+        return indexOfKey(key) >= 0;
     }
 
     @Override
@@ -180,9 +211,21 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
         return filter((k, v) -> keyFilter.test(k));
     }
 
+    @Override
+    public TreeMap23<K, V> getAll(final Iterable<? extends K> keys) {
+        Requirements.require(keys, Requirements.notNull(), () -> "keys");
+        final List<K> probes = new ArrayList<>();
+        keys.forEach(probes::add);
+        probes.sort(keyComparator);
+        final TreeBuilder<Entry<K, V>> found = new TreeBuilder<>();
+        entries.findAll(Entry::getKey, keyComparator, probes, found::add);
+        return new TreeMap23<>(keyComparator, found.build());
+    }
+
     @Override
     public V get(final K key) {
-        return getOrDefault(key, () -> null);
+        final int index = indexOfKey(key);
+        return index < 0 ? null : entries.getAt(index).getValue();
     }
 
     @Override
@@ -192,6 +235,63 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
         return index < 0 ? defaultSupplier.get() : entries.getAt(index).getValue();
     }
     
+    @Override
+    public Entry<K, V> firstEntry() {
+        return entries.root == null ? null : entries.root.first();
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return entries.root == null ? null : entries.root.last();
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(final K key) {
+        return entries.floor(Entry::getKey, keyComparator, key, false);
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(final K key) {
+        return entries.ceiling(Entry::getKey, keyComparator, key, false);
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(final K key) {
+        return entries.floor(Entry::getKey, keyComparator, key, true);
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(final K key) {
+        return entries.ceiling(Entry::getKey, keyComparator, key, true);
+    }
+
+    @Override
+    public int countRange(final K lowKey, final K highKey) {
+        return Math.max(0, rank(highKey) - rank(lowKey));
+    }
+
+    @Override
+    public int rank(final K key) {
+        return entries.position(Entry::getKey, keyComparator, key, false);
+    }
+
+    @Override
+    public Entry<K, V> select(final int rank) {
+        return entries.getAt(rank);
+    }
+
+    // Index of the first entry whose key is >= key, or > key when strict, or size() if there is none.
+    int position(final K key, final boolean strict) {
+        return entries.position(Entry::getKey, keyComparator, key, strict);
+    }
+
+    // The entries with keys between the bounds that are present, each inclusive or not.
+    TreeMap23<K, V> range(final boolean hasLow, final K low, final boolean lowInclusive, final boolean hasHigh, final K high, final boolean highInclusive) {
+        final int l = hasLow ? position(low, !lowInclusive) : 0;
+        final int h = hasHigh ? position(high, highInclusive) : entries.size();
+        return new TreeMap23<>(keyComparator, l >= h ? entries.headAt(0) : entries.getRange(l, h));
+    }
+
     @Override
 	public SortedMap23Map<K, V> asMap() {
 		return new SortedMap23Map<>(this);
@@ -224,6 +324,9 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
 			return false;
 		}
 		final ImmMap<?, ?> other = (ImmMap<?, ?>)otherObject;
+		if (other instanceof TreeMap23 && (Object)entries.root == ((TreeMap23<?, ?>)other).entries.root) {
+			return true;
+		}
 		return asMap().equals(other.asMap());
 	}
 	
@@ -274,6 +377,6 @@ final class TreeMap23<K, V> implements ImmSortedMap<K, V> {
 
     static <K, V> Comparator<? super K> getComparator(final SortedMap<K, V> items) {
         final Comparator<? super K> comparator = items.comparator();
-        return comparator == null ? TreeList23::naturalCompare : comparator;
+        return comparator == null ? TreeList23.naturalOrder() : comparator;
     }
 }
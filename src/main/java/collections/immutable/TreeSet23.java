@@ -2,8 +2,10 @@ package collections.immutable;
 
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.Spliterator;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -26,6 +28,9 @@ import org.granitesoft.requirement.Requirements;
  * @param <E> The type of the elements.
  */
 final class TreeSet23<E> implements ImmSortedSet<E> {
+    // The empty set in natural order.
+    private static final TreeSet23<?> EMPTY = new TreeSet23<>(TreeList23.naturalOrder(), TreeList23.empty());
+
 	final Comparator<? super E> comparator;
 	final TreeList23<E> elements;
 
@@ -37,7 +42,7 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
 	}
 	
     static <E> TreeSet23<E> singleton(final E element) {
-        return new TreeSet23<E>(TreeList23::naturalCompare, TreeList23.singleton(element));
+        return new TreeSet23<E>(TreeList23.naturalOrder(), TreeList23.singleton(element));
     }
 
     static <E> TreeSet23<E> empty(Comparator<? super E> comparator) {
@@ -45,7 +50,9 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
     }
 
     static <E> TreeSet23<E> empty() {
-        return empty(TreeList23::naturalCompare);
+        @SuppressWarnings("unchecked")
+        final TreeSet23<E> empty = (TreeSet23<E>)EMPTY;
+        return empty;
     }
 
     static <E> TreeSet23<E> of(final Iterable<? extends E> elements) {
@@ -59,7 +66,7 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
             final TreeSet23<E> elements2 = (TreeSet23<E>)elements;
             return elements2;
         }
-    	return of(TreeList23::naturalCompare, elements);
+    	return of(TreeList23.naturalOrder(), elements);
     }
     
     static <E> TreeSet23<E> of(final Comparator<? super E> comparator, final Iterable<? extends E> elements) {
@@ -78,17 +85,68 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
 
     @Override
     public int indexOf(final E element) {
-        return elements.getIndexOf(e -> comparator.compare(element, e));
+        return elements.indexOf(Function.identity(), comparator, element);
     }
     
+    @Override
+    public E first() {
+        if (elements.root == null) {
+            throw new NoSuchElementException();
+        }
+        return elements.root.first();
+    }
+
+    @Override
+    public E last() {
+        if (elements.root == null) {
+            throw new NoSuchElementException();
+        }
+        return elements.root.last();
+    }
+
+    @Override
+    public E floor(final E element) {
+        return elements.floor(Function.identity(), comparator, element, false);
+    }
+
+    @Override
+    public E ceiling(final E element) {
+        return elements.ceiling(Function.identity(), comparator, element, false);
+    }
+
+    @Override
+    public E lower(final E element) {
+        return elements.floor(Function.identity(), comparator, element, true);
+    }
+
+    @Override
+    public E higher(final E element) {
+        return elements.ceiling(Function.identity(), comparator, element, true);
+    }
+
+    @Override
+    public int countRange(final E low, final E high) {
+        return Math.max(0, rank(high) - rank(low));
+    }
+
+    @Override
+    public int rank(final E element) {
+        return elements.position(Function.identity(), comparator, element, false);
+    }
+
+    @Override
+    public E select(final int rank) {
+        return elements.getAt(rank);
+    }
+
     @Override
 	public TreeSet23<E> ge(final E element) {
-		return new TreeSet23<E>(comparator, elements.tailAt(elements.naturalPosition(e -> comparator.compare(element, e))));
+		return new TreeSet23<E>(comparator, elements.tailAt(rank(element)));
 	}
 
     @Override
 	public TreeSet23<E> lt(final E element) {
-		return new TreeSet23<E>(comparator, elements.headAt(elements.naturalPosition(e -> comparator.compare(element, e))));
+		return new TreeSet23<E>(comparator, elements.headAt(rank(element)));
 	}
 
     @Override
@@ -100,9 +158,7 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
         if (cmp == 0) {
             return this;
         }
-        return new TreeSet23<E>(comparator, elements.removeRange(
-                elements.naturalPosition(e -> comparator.compare(low, e)),
-                elements.naturalPosition(e -> comparator.compare(high, e))));
+        return new TreeSet23<E>(comparator, elements.removeRange(rank(low), rank(high)));
     }
 
     @Override
@@ -112,28 +168,39 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
             throw new IllegalArgumentException("low must be <= high");
         }
         if (cmp == 0) {
-            return new TreeSet23<E>(comparator, TreeList23.empty());
+            return new TreeSet23<E>(comparator, elements.headAt(0));
         }
-		return new TreeSet23<E>(comparator, elements.getRange(
-		        elements.naturalPosition(e -> comparator.compare(low, e)),
-		        elements.naturalPosition(e -> comparator.compare(high, e))));
+		return new TreeSet23<E>(comparator, elements.getRange(rank(low), rank(high)));
 	}
 
+    @Override
+    public TreeSet23<E> compact() {
+        return new TreeSet23<>(comparator, elements.compact());
+    }
+
+    @Override
+    public TreeSet23<E> freeze() {
+        final TreeList23<E> frozen = elements.freeze();
+        return frozen == elements ? this : new TreeSet23<>(comparator, frozen);
+    }
+
     @Override
 	public TreeSet23<E> add(final E element) {
         return contains(element) ?
                 this :
-                new TreeSet23<>(comparator, elements.insertAt(elements.naturalPosition(e -> comparator.compare(element, e)), element));
+                new TreeSet23<>(comparator, elements.insertAt(rank(element), element));
 	}
 	
     @Override
 	public TreeSet23<E> union(final ImmSet<E> other) {
         Requirements.require(other, Requirements.notNull(), () -> "other");
-        TreeSet23<E> s = this;
+        final Object event = CollectionEvents.begin("TreeSet23.union");
+        TreeSet23<E> s = new TreeSet23<>(CollectionEvents.counting(event, comparator), elements);
 	    for(E e: other) {
 	        s = s.add(e);
 	    }
-	    return s;
+	    CollectionEvents.end(event, size(), other.size(), s.size());
+	    return s.elements == elements ? this : new TreeSet23<>(comparator, s.elements);
 	}
 
     @Override
@@ -155,18 +222,23 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
 	
     @Override
     public TreeSet23<E> retain(final Iterable<? extends E> other) {
+        final Object event = CollectionEvents.begin("TreeSet23.retain");
         final HashSet23<E> hs = HashSet23.of(Requirements.require(other, Requirements.notNull(), () -> "other"));
-        return filter(hs::contains);
+        final TreeSet23<E> result = new TreeSet23<>(comparator, elements.filtered(hs::contains));
+        CollectionEvents.end(event, size(), hs.size(), result.size());
+        return result;
     }
 
     @Override
     public TreeSet23<E> removeAllIn(final Iterable<? extends E> other) {
         Requirements.require(other, Requirements.notNull(), () -> "other");
-        TreeSet23<E> m = this;
+        final Object event = CollectionEvents.begin("TreeSet23.removeAllIn");
+        TreeSet23<E> m = new TreeSet23<>(CollectionEvents.counting(event, comparator), elements);
         for(E e: other) {
             m = m.remove(e);
         }
-        return m;
+        CollectionEvents.end(event, size(), CollectionEvents.sizeOf(other), m.size());
+        return m.elements == elements ? this : new TreeSet23<>(comparator, m.elements);
     }
   
     @Override
@@ -190,6 +262,9 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
 			return false;
 		}
 		final ImmSet<?> other = (ImmSet<?>)otherObject;
+		if (other instanceof TreeSet23 && elements.root == ((TreeSet23<?>)other).elements.root) {
+			return true;
+		}
 		return asCollection().equals(other.asCollection());
 	}
 	
@@ -220,6 +295,6 @@ final class TreeSet23<E> implements ImmSortedSet<E> {
 
     static <E> Comparator<? super E> getComparator(final SortedSet<E> sortedSet) {
         final Comparator<? super E> comparator = sortedSet.comparator();
-        return comparator == null ? TreeList23::naturalCompare : comparator;
+        return comparator == null ? TreeList23.naturalOrder() : comparator;
     }
 }
@@ -0,0 +1,41 @@
+package collections.immutable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+//Reads and writes unsigned ints using 7 bits per byte, small values take a single byte.
+final class VarInts {
+    private VarInts() {
+    }
+
+    static void write(final DataOutput out, final int value) throws IOException {
+        int v = value;
+        while((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int read(final DataInput in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    // Reads a size or a count, which a corrupt or hostile stream could make negative.
+    static int readSize(final DataInput in) throws IOException {
+        final int size = read(in);
+        if (size < 0) {
+            throw new IOException("negative size: " + size);
+        }
+        return size;
+    }
+}
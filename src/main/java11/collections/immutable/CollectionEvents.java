@@ -0,0 +1,69 @@
+package collections.immutable;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+//Reports expensive bulk operations to Java Flight Recorder.
+//This is the Java 11 version, packaged in META-INF/versions/11 of the multi-release jar, in place of
+//the Java 8 version in src/main/java, which reports nothing.   The two must keep the same methods.
+//
+//When no recording has the event enabled, begin returns null and the rest does nothing.
+final class CollectionEvents {
+    private CollectionEvents() {
+    }
+
+    // Starts timing an operation, returning the event to end, or null if it is not being recorded.
+    static Object begin(final String operation) {
+        final CollectionOperationEvent event = new CollectionOperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation;
+        event.comparisons = -1;
+        event.begin();
+        return event;
+    }
+
+    // Returns a comparator that counts its calls into the event, or comparator itself if there is no event.
+    static <E> Comparator<E> counting(final Object event, final Comparator<E> comparator) {
+        if (event == null) {
+            return comparator;
+        }
+        final CollectionOperationEvent e = (CollectionOperationEvent)event;
+        e.comparisons = Math.max(0, e.comparisons);
+        return (a, b) -> {
+            e.comparisons++;
+            return comparator.compare(a, b);
+        };
+    }
+
+    // Ends an operation, recording it if any size reaches the threshold.   A size of -1 is unknown or not applicable.
+    static void end(final Object event, final long inputSize, final long otherInputSize, final long outputSize) {
+        if (event == null) {
+            return;
+        }
+        final CollectionOperationEvent e = (CollectionOperationEvent)event;
+        e.end();
+        final long largest = Math.max(inputSize, Math.max(otherInputSize, outputSize));
+        if (largest >= ImmMetrics.getEventThreshold() && e.shouldCommit()) {
+            e.inputSize = inputSize;
+            e.otherInputSize = otherInputSize;
+            e.outputSize = outputSize;
+            e.commit();
+        }
+    }
+
+    // The size of an iterable, if it can be had without iterating it, or -1.
+    static long sizeOf(final Iterable<?> elements) {
+        if (elements instanceof Collection) {
+            return ((Collection<?>)elements).size();
+        }
+        if (elements instanceof ImmCollection) {
+            return ((ImmCollection<?>)elements).size();
+        }
+        if (elements instanceof ImmMap) {
+            return ((ImmMap<?, ?>)elements).size();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,35 @@
+package collections.immutable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//The flight recorder event of one expensive bulk operation; its duration is the elapsed time.
+@Name("collections.immutable.Operation")
+@Label("Collection Operation")
+@Category({"Java Application", "Collections"})
+@Description("A bulk operation on an immutable collection whose inputs or output reach the event threshold")
+@StackTrace(true)
+final class CollectionOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    @Description("The class and method, such as TreeList23.union")
+    String operation;
+
+    @Label("Input Size")
+    @Description("The number of elements in the first input, -1 if unknown")
+    long inputSize;
+
+    @Label("Other Input Size")
+    @Description("The number of elements in the second input, -1 if there is none")
+    long otherInputSize;
+
+    @Label("Output Size")
+    @Description("The number of elements in the result")
+    long outputSize;
+
+    @Label("Comparisons")
+    @Description("The comparator calls made through the operation's comparator, -1 if it has none")
+    long comparisons;
+}
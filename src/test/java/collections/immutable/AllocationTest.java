@@ -0,0 +1,199 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class AllocationTest {
+    private static final int SIZE = 1000;
+    private static final int OPS = 10000;
+    private static final Integer[] KEYS = new Integer[SIZE * 2];
+    static {
+        for(int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = i;
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads = threads();
+    private TreeList23<Integer> list = TreeList23.empty();
+    private TreeSet23<Integer> sortedSet = TreeSet23.empty(Integer::compare);
+    private HashSet23<Integer> set = HashSet23.empty();
+    private final TreeMap23<Integer, Integer> sortedMap;
+    private final HashMap23<Integer, Integer> map;
+
+    public AllocationTest() {
+        final Map<Integer, Integer> m = new HashMap<>();
+        // The even keys are present, the odd ones are not.
+        for(int i = 0; i < SIZE; i++) {
+            list = list.add(KEYS[i * 2]);
+            sortedSet = sortedSet.add(KEYS[i * 2]);
+            set = set.add(KEYS[i * 2]);
+            m.put(KEYS[i * 2], KEYS[i]);
+        }
+        sortedMap = TreeMap23.of(Integer::compare, new TreeMap<>(m).entrySet());
+        map = HashMap23.of(m.entrySet());
+    }
+
+    // The allocation counter, skipping the test on a JVM that does not have one.
+    private static com.sun.management.ThreadMXBean threads() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    // The bytes allocated by running op OPS times, after warming it up.
+    private long allocated(final Runnable op) {
+        for(int i = 0; i < OPS; i++) {
+            op.run();
+        }
+        final long id = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(id);
+        for(int i = 0; i < OPS; i++) {
+            op.run();
+        }
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+
+    // Asserts that op allocates at most budget bytes per call.
+    private void assertBudget(final String name, final long budget, final Runnable op) {
+        final long bytes = allocated(op);
+        // Slack for the measurement itself.
+        final long limit = budget * OPS + 1024;
+        assertTrue(name + " allocated " + bytes + " bytes, budget " + limit, bytes <= limit);
+    }
+
+    // An operation that rotates through the keys, so each run probes a different one.
+    private abstract static class Probe implements Runnable {
+        int i;
+        Object sink;
+
+        @Override
+        public void run() {
+            sink = probe(KEYS[i]);
+            i = (i + 1) % KEYS.length;
+        }
+
+        abstract Object probe(Integer key);
+    }
+
+    @Test
+    public void testReadsAllocateNothing() {
+        assertBudget("getAt", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return list.getAt(key >> 1);
+            }
+        });
+        assertBudget("TreeSet23.contains", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return sortedSet.contains(key) ? key : null;
+            }
+        });
+        assertBudget("TreeSet23.indexOf", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return sortedSet.indexOf(key) >= 0 ? key : null;
+            }
+        });
+        assertBudget("HashSet23.contains", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return set.contains(key) ? key : null;
+            }
+        });
+        assertBudget("TreeMap23.get", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return sortedMap.get(key);
+            }
+        });
+        assertBudget("TreeMap23.containsKey", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return sortedMap.containsKey(key) ? key : null;
+            }
+        });
+        assertBudget("HashMap23.get", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return map.get(key);
+            }
+        });
+        assertBudget("HashMap23.containsKey", 0, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return map.containsKey(key) ? key : null;
+            }
+        });
+    }
+
+    @Test
+    public void testIterationAllocatesOnlyItsPath() {
+        // An iterator holds the path to its leaf, which is O(log n), whatever the number of elements.
+        final long budget = 64 + 16 * list.root.getDepth();
+        assertBudget("TreeList23.iterator", budget, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                int n = 0;
+                for(Integer e: list) {
+                    n += e;
+                }
+                return n == 0 ? null : key;
+            }
+        });
+        assertBudget("TreeSet23.iterator", budget, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                int n = 0;
+                for(Integer e: sortedSet) {
+                    n += e;
+                }
+                return n == 0 ? null : key;
+            }
+        });
+        assertBudget("HashMap23.iterator", budget, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                int n = 0;
+                for(Map.Entry<Integer, Integer> e: map) {
+                    n += e.getValue();
+                }
+                return n == 0 ? null : key;
+            }
+        });
+    }
+
+    @Test
+    public void testEditsAllocateOnlyTheirPath() {
+        // A replacement copies the nodes on one path, and an insertion splits and joins the tree along one path,
+        // so the budgets grow with the depth, not the size.
+        final int depth = list.root.getDepth();
+        assertBudget("TreeList23.setAt", 64 * depth, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return list.setAt(key >> 1, key);
+            }
+        });
+        assertBudget("TreeSet23.add", 256 * depth, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return sortedSet.add(key);
+            }
+        });
+        assertBudget("TreeMap23.put", 256 * depth, new Probe() {
+            @Override
+            Object probe(Integer key) {
+                return sortedMap.put(key, key);
+            }
+        });
+    }
+}
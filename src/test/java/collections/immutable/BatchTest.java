@@ -0,0 +1,115 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class BatchTest {
+    private static <K, V> Map<K, V> expectedGetAll(Map<K, V> map, List<K> keys) {
+        final Map<K, V> expected = new HashMap<>();
+        for(K k: keys) {
+            if (map.containsKey(k)) {
+                expected.put(k, map.get(k));
+            }
+        }
+        return expected;
+    }
+
+    private static void leaves(Node23<?> node, Set<Object> leaves) {
+        if (node.isLeaf()) {
+            leaves.add(node);
+        } else {
+            for(int i = 0; i < node.numBranches(); i++) {
+                leaves(node.getBranch(i), leaves);
+            }
+        }
+    }
+
+    @Test
+    public void testGetAll() {
+        final Random random = new Random(43);
+        for(int size: new int[] {0, 1, 2, 10, 1000}) {
+            final Map<Integer, String> expected = new TreeMap<>();
+            for(int i = 0; i < size; i++) {
+                final int k = random.nextInt(size * 3);
+                expected.put(k, "v" + k);
+            }
+            final ImmSortedMap<Integer, String> sorted = ImmCollections.<Integer, String>emptySortedMap().addAll(expected);
+            final ImmMap<Integer, String> hashed = ImmCollections.<Integer, String>emptyMap().addAll(expected);
+            for(int probes: new int[] {0, 1, 5, 100, 2000}) {
+                final List<Integer> keys = new ArrayList<>();
+                for(int i = 0; i < probes; i++) {
+                    keys.add(random.nextInt(size * 3 + 2) - 1);
+                }
+                final Map<Integer, String> found = expectedGetAll(expected, keys);
+                assertEquals(sorted.getAll(keys).asMap(), found);
+                assertEquals(hashed.getAll(keys).asMap(), found);
+                assertEquals(sorted.reversed().getAll(keys).asMap(), found);
+                assertEquals(new ArrayList<>(sorted.reversed().getAll(keys).keys().asCollection()),
+                        new ArrayList<>(sorted.getAll(keys).reversed().keys().asCollection()));
+            }
+        }
+        assertEquals(ImmCollections.asMap(1,2,  3,4,  5,6).getAll(Arrays.asList(5, 1, 7)), ImmCollections.asMap(1,2,  5,6));
+    }
+
+    @Test
+    public void testAddAll() {
+        final Random random = new Random(47);
+        ImmSortedMap<Integer, Integer> sorted = ImmCollections.emptySortedMap();
+        ImmMap<Integer, Integer> hashed = ImmCollections.emptyMap();
+        final Map<Integer, Integer> expected = new TreeMap<>();
+        for(int i = 0; i < 50; i++) {
+            final List<Entry<Integer, Integer>> batch = new ArrayList<>();
+            final int n = random.nextInt(200);
+            for(int j = 0; j < n; j++) {
+                // Duplicate keys in a batch, the last one wins.
+                final int k = random.nextInt(3000);
+                batch.add(new AbstractMap.SimpleEntry<>(k, i * 1000 + j));
+                expected.put(k, i * 1000 + j);
+            }
+            sorted = sorted.addAll(batch);
+            hashed = hashed.addAll(batch);
+            assertEquals(sorted.asMap(), expected);
+            assertEquals(hashed.asMap(), expected);
+        }
+        // Entries are copied, so changing them later does not change the map.
+        final Entry<Integer, Integer> e = new AbstractMap.SimpleEntry<>(-1, 1);
+        final ImmSortedMap<Integer, Integer> m = sorted.addAll(Collections.singletonList(e));
+        e.setValue(2);
+        assertEquals(m.get(-1), Integer.valueOf(1));
+        assertEquals(sorted.reversed().addAll(Collections.singletonList(e)).asMap(), sorted.put(-1, 2).reversed().asMap());
+    }
+
+    // A small batch copies only the paths it changes.
+    @Test
+    public void testShared() {
+        final Map<Integer, Integer> contents = new HashMap<>();
+        for(int i = 0; i < 10000; i++) {
+            contents.put(i * 2, i);
+        }
+        final ImmSortedMap<Integer, Integer> map = ImmCollections.<Integer, Integer>emptySortedMap().addAll(contents);
+        final ImmSortedMap<Integer, Integer> updated = map.addAll(Arrays.asList(
+                new AbstractMap.SimpleImmutableEntry<>(101, 0), new AbstractMap.SimpleImmutableEntry<>(9001, 0)));
+        final Set<Object> before = Collections.newSetFromMap(new IdentityHashMap<>());
+        leaves(((TreeMap23<Integer, Integer>)map).entries.root, before);
+        final Set<Object> after = Collections.newSetFromMap(new IdentityHashMap<>());
+        leaves(((TreeMap23<Integer, Integer>)updated).entries.root, after);
+        after.retainAll(before);
+        assertEquals(updated.size(), 10002);
+        assertTrue(after.size() >= 10000 - 100);
+    }
+}
@@ -0,0 +1,148 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class ConcurrentImmMapTest {
+    private static void assertSameNavigation(NavigableMap<Integer, Integer> expected, NavigableMap<Integer, Integer> actual) {
+        assertEquals(actual, expected);
+        assertEquals(actual.size(), expected.size());
+        assertEquals(new ArrayList<>(actual.keySet()), new ArrayList<>(expected.keySet()));
+        assertEquals(actual.firstEntry(), expected.firstEntry());
+        assertEquals(actual.lastEntry(), expected.lastEntry());
+        for(int k = -2; k < 42; k++) {
+            assertEquals(actual.get(k), expected.get(k));
+            assertEquals(actual.floorEntry(k), expected.floorEntry(k));
+            assertEquals(actual.ceilingEntry(k), expected.ceilingEntry(k));
+            assertEquals(actual.lowerEntry(k), expected.lowerEntry(k));
+            assertEquals(actual.higherEntry(k), expected.higherEntry(k));
+        }
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        final Random random = new Random(7);
+        final TreeMap<Integer, Integer> expected = new TreeMap<>();
+        final ConcurrentImmMap<Integer, Integer> actual = ConcurrentImmMap.create();
+        for(int i = 0; i < 300; i++) {
+            final int k = random.nextInt(40);
+            final int v = random.nextInt(5);
+            switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                assertEquals(actual.put(k, v), expected.put(k, v));
+                break;
+            case 2:
+                assertEquals(actual.remove(k), expected.remove(k));
+                break;
+            case 3:
+                assertEquals(actual.putIfAbsent(k, v), expected.putIfAbsent(k, v));
+                break;
+            case 4:
+                assertEquals(actual.remove(k, v), expected.remove(k, v));
+                break;
+            default:
+                assertEquals(actual.replace(k, v, v + 1), expected.replace(k, v, v + 1));
+                break;
+            }
+        }
+        assertSameNavigation(expected, actual);
+        assertSameNavigation(expected.descendingMap(), actual.descendingMap());
+        assertSameNavigation(expected.subMap(5, true, 30, false), actual.subMap(5, true, 30, false));
+        assertSameNavigation(expected.subMap(5, false, 30, true).descendingMap(), actual.subMap(5, false, 30, true).descendingMap());
+        assertSameNavigation(expected.headMap(20, true), actual.headMap(20, true));
+        assertSameNavigation(expected.tailMap(20, false), actual.tailMap(20, false));
+        assertSameNavigation(expected.subMap(10, false, 10, true), actual.subMap(10, false, 10, true));
+        assertSameNavigation(expected.subMap(-5, true, 50, true).descendingMap(), actual.subMap(-5, true, 50, true).descendingMap());
+        assertSameNavigation(expected.descendingMap().headMap(20, false), actual.descendingMap().headMap(20, false));
+        assertSameNavigation(expected.descendingMap().subMap(30, true, 10, false), actual.descendingMap().subMap(30, 10));
+        assertEquals(new ArrayList<>(actual.descendingKeySet().headSet(25)), new ArrayList<>(expected.descendingKeySet().headSet(25)));
+        assertEquals(new ArrayList<>(actual.values()), new ArrayList<>(expected.values()));
+    }
+
+    @Test
+    public void testViews() {
+        final ConcurrentImmMap<Integer, String> map = ConcurrentImmMap.create();
+        for(int i = 0; i < 10; i++) {
+            map.put(i, String.valueOf(i));
+        }
+        final NavigableMap<Integer, String> sub = map.subMap(2, 6);
+        assertEquals(sub.size(), 4);
+        assertThrows(IllegalArgumentException.class, () -> sub.put(7, "7"));
+        assertThrows(IllegalArgumentException.class, () -> sub.subMap(1, 4));
+        assertThrows(IllegalArgumentException.class, () -> map.subMap(6, 2));
+        assertNull(sub.get(7));
+        sub.put(3, "three");
+        assertEquals(map.get(3), "three");
+        map.remove(4);
+        assertEquals(sub.keySet(), new TreeSet<>(Arrays.asList(2, 3, 5)));
+        assertEquals(sub.pollFirstEntry().getKey(), Integer.valueOf(2));
+        assertEquals(sub.descendingMap().pollFirstEntry().getKey(), Integer.valueOf(5));
+        sub.clear();
+        assertTrue(sub.isEmpty());
+        assertEquals(map.keySet(), new TreeSet<>(Arrays.asList(0, 1, 6, 7, 8, 9)));
+        map.keySet().remove(0);
+        assertEquals(map.firstKey(), Integer.valueOf(1));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.pollLastEntry());
+    }
+
+    // Iterators walk the snapshot taken when they were created.
+    @Test
+    public void testIteration() {
+        final ConcurrentImmMap<Integer, String> map = ConcurrentImmMap.of(ImmCollections.asSortedMap(1, "1", 2, "2", 3, "3"));
+        final ImmSortedMap<Integer, String> snapshot = map.snapshot();
+        final Iterator<Map.Entry<Integer, String>> it = map.entrySet().iterator();
+        map.put(0, "0");
+        map.put(4, "4");
+        final List<Integer> keys = new ArrayList<>();
+        while(it.hasNext()) {
+            final int k = it.next().getKey();
+            keys.add(k);
+            if (k == 2) {
+                it.remove();
+            }
+        }
+        assertEquals(keys, Arrays.asList(1, 2, 3));
+        assertFalse(map.containsKey(2));
+        assertEquals(map.size(), 4);
+        assertEquals(snapshot.size(), 3);
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final ConcurrentImmMap<Integer, Integer> map = ConcurrentImmMap.create();
+        final List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for(int t = 0; t < 8; t++) {
+            final int base = t * 1000;
+            writers.add(CompletableFuture.runAsync(() -> {
+                for(int i = 0; i < 200; i++) {
+                    map.put(base + i, i);
+                    map.merge(-1, 1, Integer::sum);
+                }
+            }));
+        }
+        for(CompletableFuture<Void> w: writers) {
+            w.get();
+        }
+        assertEquals(map.size(), 1601);
+        assertEquals(map.get(-1), Integer.valueOf(1600));
+    }
+}
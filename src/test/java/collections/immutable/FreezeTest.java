@@ -0,0 +1,189 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class FreezeTest {
+    private static <E> FrozenNode23<E> frozen(ImmList<E> l) {
+        return (FrozenNode23<E>)((TreeList23<E>)l).root;
+    }
+
+    @Test
+    public void testEverySize() {
+        for(int n = 9; n < 200; n++) {
+            final ImmList<Integer> l = ImmCollections.asList(range(0, n)).freeze();
+            final FrozenNode23<Integer> root = frozen(l);
+            assertTrue(root.isValid(root.getDepth()));
+            final int depth = root.getDepth();
+            final int numBranches = root.numBranches();
+            // The shape is known without building the tree, and is the shape of the tree.
+            assertEquals(depth, root.tree().getDepth());
+            assertEquals(numBranches, root.tree().numBranches());
+            assertTrue(root.tree().isValid(depth));
+        }
+    }
+
+    @Test
+    public void testList() {
+        final List<Integer> expected = range(0, 1000);
+        final ImmList<Integer> tree = ImmCollections.asList(expected);
+        final ImmList<Integer> l = tree.freeze();
+        assertSame(l, l.freeze());
+        assertSame(l, l.compact());
+        assertEquals(tree, l);
+        assertEquals(l, tree);
+        assertEquals(tree.hashCode(), l.hashCode());
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(i, (int)l.getAt(i));
+        }
+        assertEquals(expected, l.asCollection());
+        final ListIterator<Integer> it = l.iterator();
+        while(it.hasNext()) {
+            it.next();
+        }
+        for(int i = 999; i >= 0; i--) {
+            assertEquals(i, (int)it.previous());
+        }
+        assertEquals(Integer.valueOf(0), l.getAt(0));
+        assertEquals(Integer.valueOf(999), l.reversed().getAt(0));
+        assertEquals(Integer.valueOf(10), l.map(i -> i * 10).getAt(1));
+
+        final ImmList<Integer> edited = l.setAt(5, -1).insertAt(0, -2).removeAt(999);
+        assertTrue(((TreeList23<Integer>)edited).root instanceof Branch);
+        final List<Integer> e = new ArrayList<>(expected);
+        e.set(5, -1);
+        e.add(0, -2);
+        e.remove(999);
+        assertEquals(e, edited.asCollection());
+        assertEquals(expected.subList(100, 200), l.getRange(100, 200).asCollection());
+        assertEquals(range(0, 1010), l.appendList(ImmCollections.asList(range(1000, 1010))).asCollection());
+        assertEquals(range(0, 2000), l.appendList(ImmCollections.asList(range(1000, 2000)).freeze()).asCollection());
+        assertEquals(expected, l.asCollection());
+    }
+
+    @Test
+    public void testSmallListsStayAsTheyAre() {
+        for(int n = 0; n <= ArrayNode23.MAX; n++) {
+            final ImmList<Integer> l = ImmCollections.asList(range(0, n));
+            assertSame(l, l.freeze());
+        }
+        final ImmList<Integer> l = ImmCollections.asList(range(0, 20)).freeze();
+        assertTrue(((TreeList23<Integer>)l.headAt(5)).root instanceof ArrayNode23);
+    }
+
+    @Test
+    public void testSortedSet() {
+        final TreeSet<Integer> expected = new TreeSet<>();
+        for(int i = 0; i < 500; i++) {
+            expected.add(i * 3);
+        }
+        final ImmSortedSet<Integer> s = ImmCollections.asSortedSet(expected).freeze();
+        assertSame(s, s.freeze());
+        assertEquals(ImmCollections.asSortedSet(expected), s);
+        for(int i = -2; i < 1502; i++) {
+            assertEquals(expected.contains(i), s.contains(i));
+            assertEquals(expected.ceiling(i), s.ceiling(i));
+            assertEquals(expected.floor(i), s.floor(i));
+            assertEquals(expected.higher(i), s.higher(i));
+            assertEquals(expected.lower(i), s.lower(i));
+            assertEquals(expected.headSet(i).size(), s.rank(i));
+        }
+        assertEquals(Integer.valueOf(30), s.select(10));
+        assertTrue(((TreeSet23<Integer>)s.subSet(30, 900)).elements.root instanceof FrozenNode23);
+
+        final ImmSortedSet<Integer> s2 = s.add(1).remove(0);
+        assertTrue(s2.contains(1));
+        assertFalse(s2.contains(0));
+        assertEquals(500, s2.size());
+        assertEquals(expected.subSet(30, 60), s.subSet(30, 60).asCollection());
+    }
+
+    @Test
+    public void testSortedMap() {
+        final Map<Integer, String> expected = new TreeMap<>();
+        for(int i = 0; i < 500; i++) {
+            expected.put(i * 2, String.valueOf(i));
+        }
+        final ImmSortedMap<Integer, String> m = ImmCollections.asSortedMap(Integer::compare, expected).freeze();
+        assertSame(m, m.freeze());
+        assertEquals(expected, m.asMap());
+        for(int i = -1; i < 1001; i++) {
+            assertEquals(expected.get(i), m.get(i));
+            assertEquals(expected.containsKey(i), m.containsKey(i));
+        }
+        assertEquals(Integer.valueOf(10), m.floorEntry(11).getKey());
+        assertEquals(Integer.valueOf(12), m.ceilingEntry(11).getKey());
+        assertEquals(Integer.valueOf(8), m.lowerEntry(10).getKey());
+        assertEquals(Integer.valueOf(12), m.higherEntry(10).getKey());
+        assertEquals(Integer.valueOf(998), m.lastEntry().getKey());
+        assertEquals(Integer.valueOf(40), m.select(20).getKey());
+        assertEquals(3, m.getAll(Arrays.asList(4, 5, 6, 6, 2000, 8)).size());
+        assertEquals(Collections.singletonMap(6, "3"), m.getAll(Arrays.asList(7, 6, 6)).asMap());
+        assertTrue(frozen(m.asList()) instanceof FrozenNode23);
+
+        final ImmSortedMap<Integer, String> m2 = m.put(3, "x").removeKey(4);
+        assertEquals("x", m2.get(3));
+        assertNull(m2.get(4));
+        assertEquals(500, m2.size());
+        assertEquals(expected, m.asMap());
+        assertEquals(5, m.subSet(10, 20).size());
+    }
+
+    @Test
+    public void testMemory() {
+        final ImmList<Integer> tree = ImmCollections.asList(range(0, 1000));
+        final ImmList<Integer> l = tree.freeze();
+        final MemoryFootprint f = MemoryFootprint.of(l);
+        assertEquals(0, f.getLeaves());
+        assertEquals(1, f.getBranches());
+        assertTrue(f.getTotalBytes() * 4 < MemoryFootprint.of(tree).getTotalBytes());
+        // The tree built for an edit is not kept.
+        l.setAt(0, 1);
+        assertEquals(f.getTotalBytes(), MemoryFootprint.of(l).getTotalBytes());
+    }
+
+    // Splits copy their part of the array, and summaries fold it, so neither builds the tree.
+    @Test
+    public void testSplitsAndSummaries() {
+        final ImmList<Integer> l = ImmCollections.asList(range(0, 1000)).freeze();
+        final ImmMonoid<Integer, Long> sum = ImmMonoid.sum(i -> i);
+        ImmMetrics.enable();
+        try {
+            ImmMetrics.reset();
+            assertEquals(Long.valueOf(499500), l.aggregate(0, 1000, sum));
+            assertEquals(Long.valueOf(14950), l.aggregate(100, 200, sum));
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.NODE_ALLOCATIONS));
+            final ImmList<Integer> head = l.headAt(500);
+            final ImmList<Integer> tail = l.tailAt(500);
+            final ImmList<Integer> range = l.getRange(100, 200);
+            assertEquals(3, ImmMetrics.get(ImmMetrics.Counter.NODE_ALLOCATIONS));
+            assertTrue(frozen(head) instanceof FrozenNode23);
+            assertTrue(frozen(tail) instanceof FrozenNode23);
+            assertTrue(frozen(range) instanceof FrozenNode23);
+            assertEquals(range(0, 500), head.asCollection());
+            assertEquals(range(500, 1000), tail.asCollection());
+            assertEquals(range(100, 200), range.asCollection());
+        } finally {
+            ImmMetrics.disable();
+        }
+        assertSame(l, l.getRange(0, 1000));
+        assertTrue(((TreeList23<Integer>)l.getRange(10, 15)).root instanceof ArrayNode23);
+        assertEquals(range(10, 15), l.getRange(10, 15).asCollection());
+        assertEquals(range(995, 1000), l.tailAt(995).asCollection());
+    }
+}
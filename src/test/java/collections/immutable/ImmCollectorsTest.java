@@ -0,0 +1,105 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class ImmCollectorsTest {
+    private static List<Integer> randomInts(int n, int bound) {
+        final Random random = new Random(n);
+        final List<Integer> result = new ArrayList<>();
+        for(int i = 0; i < n; i++) {
+            result.add(random.nextInt(bound));
+        }
+        return result;
+    }
+
+    @Test
+    public void testList() {
+        for(int n: new int[] {0, 1, 2, 3, 7, 100, 5000}) {
+            final List<Integer> expected = randomInts(n, 1000);
+            assertEquals(expected.stream().collect(ImmCollectors.toImmList()).asCollection(), expected);
+            assertEquals(expected.parallelStream().collect(ImmCollectors.toImmList()).asCollection(), expected);
+        }
+    }
+
+    @Test
+    public void testUnion() {
+        for(int n: new int[] {0, 1, 10, 500}) {
+            final List<Integer> a = randomInts(n, 2 * n + 1);
+            final List<Integer> b = randomInts(n + 3, 2 * n + 1);
+            final TreeSet<Integer> expected = new TreeSet<>(a);
+            expected.addAll(b);
+            final TreeList23<Integer> u = TreeList23.union(TreeList23.naturalOrder(), (x, y) -> x,
+                    TreeList23.ofSortedUnique(TreeList23.naturalOrder(), a), TreeList23.ofSortedUnique(TreeList23.naturalOrder(), b));
+            assertEquals(u.asCollection(), new ArrayList<>(expected));
+        }
+    }
+
+    @Test
+    public void testSets() {
+        final List<Integer> ints = randomInts(5000, 700);
+        assertEquals(ints.parallelStream().collect(ImmCollectors.toImmSortedSet()), ImmCollections.asSortedSet(ints));
+        assertEquals(ints.parallelStream().collect(ImmCollectors.toImmSortedSet(Comparator.<Integer>reverseOrder())),
+                ImmCollections.asSortedSet(Comparator.<Integer>reverseOrder(), ints));
+        assertEquals(ints.parallelStream().collect(ImmCollectors.toImmSet()), ImmCollections.asSet(ints));
+        assertEquals(IntStream.range(0, 3000).parallel().boxed().collect(ImmCollectors.toImmSortedSet()).size(), 3000);
+    }
+
+    // The collectors are ordered, so the first of equal elements is kept even by parallel streams.
+    @Test
+    public void testFirstOfEqualKept() {
+        final List<String> strings = IntStream.range(0, 5000).mapToObj(String::valueOf).collect(Collectors.toList());
+        final Comparator<String> lastDigit = Comparator.comparing(s -> s.charAt(s.length() - 1));
+        final ImmSortedSet<String> firsts = strings.parallelStream().collect(ImmCollectors.toImmSortedSet(lastDigit));
+        assertEquals(firsts.asList().asCollection(), IntStream.range(0, 10).mapToObj(String::valueOf).collect(Collectors.toList()));
+
+        final List<String> copies = new ArrayList<>();
+        for(int i = 0; i < 5000; i++) {
+            copies.add(new String(strings.get(i % 100)));
+        }
+        final ImmSet<String> set = copies.parallelStream().collect(ImmCollectors.toImmSet());
+        assertEquals(set.size(), 100);
+        for(int i = 0; i < 100; i++) {
+            final String first = copies.get(i);
+            assertSame(first, set.stream().filter(first::equals).findFirst().get());
+        }
+    }
+
+    @Test
+    public void testMaps() {
+        final List<Integer> ints = randomInts(5000, 700);
+        // The merge is associative but not commutative, so encounter order must be kept.
+        final Map<Integer, String> expected = ints.stream().collect(Collectors.toMap(i -> i % 100, String::valueOf, (a, b) -> a + "," + b, TreeMap::new));
+        assertEquals(ints.parallelStream().collect(ImmCollectors.toImmSortedMap(i -> i % 100, String::valueOf, (a, b) -> a + "," + b)).asMap(), expected);
+        assertEquals(ints.parallelStream().collect(ImmCollectors.toImmMap(i -> i % 100, String::valueOf, (a, b) -> a + "," + b)).asMap(), expected);
+        assertEquals(IntStream.range(0, 3000).parallel().boxed().collect(ImmCollectors.toImmSortedMap(i -> i, i -> -i)).get(2999), Integer.valueOf(-2999));
+        assertThrows(IllegalStateException.class, () -> ints.stream().collect(ImmCollectors.toImmSortedMap(i -> i % 100, Function.identity())));
+    }
+
+    @Test
+    public void testGroupingBy() {
+        final List<Integer> ints = randomInts(5000, 700);
+        final Map<Integer, List<Integer>> expected = ints.stream().collect(Collectors.groupingBy(i -> i % 7));
+        final ImmSortedMap<Integer, ImmList<Integer>> actual = ints.parallelStream().collect(ImmCollectors.groupingBy(i -> i % 7));
+        assertEquals(actual.size(), expected.size());
+        for(Map.Entry<Integer, List<Integer>> e: expected.entrySet()) {
+            assertEquals(actual.get(e.getKey()).asCollection(), e.getValue());
+        }
+        final ImmSortedMap<Integer, ImmSet<Integer>> sets = ints.parallelStream().collect(ImmCollectors.groupingByToSet(i -> i % 7));
+        assertEquals(sets.get(3), ImmCollections.asSet(expected.get(3)));
+    }
+}
@@ -0,0 +1,214 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.depth;
+import static collections.immutable.TestFixtures.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ImmCompactionTest {
+    // The depth of a tree of n leaves with 3 branches to a branch.
+    private static int minimalDepth(int n) {
+        int depth = 1;
+        for(long full = 1; full < n; full *= 3) {
+            depth++;
+        }
+        return depth;
+    }
+
+    @Test
+    public void testCompactList() {
+        final Random r = new Random(7);
+        final List<Integer> expected = new ArrayList<>(range(0, 1000));
+        ImmList<Integer> l = ImmCollections.asList(expected);
+        for(int i = 0; i < 5000; i++) {
+            if (r.nextBoolean() && expected.size() > 0) {
+                final int index = r.nextInt(expected.size());
+                expected.remove(index);
+                l = l.removeAt(index);
+            } else {
+                final int index = r.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                l = l.insertAt(index, i);
+            }
+        }
+        final ImmList<Integer> c = l.compact();
+        assertEquals(expected, c.asCollection());
+        assertEquals(expected.size(), c.size());
+        assertEquals(minimalDepth(c.size()), depth(c));
+        assertTrue(depth(c) < depth(l));
+        assertTrue(ImmCompaction.fillOf(c) > 0.95);
+        assertTrue(ImmMetrics.shapeOf(c).getNodes() < ImmMetrics.shapeOf(l).getNodes());
+        for(int i = 0; i < c.size(); i++) {
+            assertEquals(expected.get(i), c.getAt(i));
+        }
+        assertEquals(expected.subList(10, 500), c.getRange(10, 500).asCollection());
+        assertEquals(ImmCollections.emptyList(), ImmCollections.emptyList().compact());
+        assertEquals(ImmCollections.asList(1), ImmCollections.asList(1).compact());
+    }
+
+    @Test
+    public void testEverySize() {
+        for(int n = 0; n < 100; n++) {
+            final ImmList<Integer> c = ImmCollections.asList(range(0, n)).compact();
+            assertEquals(range(0, n), c.asCollection());
+            if (n > 0) {
+                assertEquals(minimalDepth(n), depth(c));
+            }
+        }
+    }
+
+    @Test
+    public void testCompactViews() {
+        final ImmList<Integer> l = ImmCollections.asList(range(0, 100));
+        final ImmList<Integer> m = l.map(i -> i * 2).reversed().compact();
+        assertTrue(((TreeList23<Integer>)m).root instanceof Branch);
+        assertEquals(198, (int)m.getAt(0));
+        assertEquals(0, (int)m.getAt(99));
+    }
+
+    @Test
+    public void testCompactSetsAndMaps() {
+        final ImmSortedSet<Integer> s = ImmCollections.asSortedSet(range(0, 1000)).remove(5).add(5000).compact();
+        assertEquals(1000, s.size());
+        assertTrue(s.contains(5000));
+        assertTrue(!s.contains(5));
+        assertEquals(4, s.indexOf(4));
+        assertEquals(5, s.indexOf(6));
+        assertTrue(ImmCompaction.fillOf(s) > 0.95);
+
+        final ImmSet<Integer> h = ImmCollections.asSet(range(0, 1000)).compact();
+        assertEquals(ImmCollections.asSet(range(0, 1000)), h);
+        assertTrue(h.contains(999));
+
+        final Map<Integer, String> map = new HashMap<>();
+        for(int i = 0; i < 1000; i++) {
+            map.put(i, String.valueOf(i));
+        }
+        final ImmMap<Integer, String> hm = ImmCollections.asMap(map).compact();
+        assertEquals(map, hm.asMap());
+        assertEquals("7", hm.get(7));
+        final ImmSortedMap<Integer, String> tm = ImmCollections.asSortedMap(Integer::compare, map).compact();
+        assertEquals(map, tm.asMap());
+        final ImmSortedMap<Integer, String> tm2 = tm.put(7, "x").compact().put(8, "y");
+        assertEquals("x", tm2.get(7));
+        assertEquals("y", tm2.get(8));
+        assertEquals(1000, tm2.size());
+        assertTrue(ImmCompaction.fillOf(tm) > 0.95);
+
+        final ImmWeightedList<Integer> w = ImmWeightedList.of(i -> i, range(0, 100)).compact();
+        assertEquals(4950.0, w.totalWeight(), 0);
+    }
+
+    // A list edited by random inserts and removes until its tree is sparse, with the policy off.
+    private static ImmList<Integer> sparse(ImmList<Integer> l, final int edits) {
+        final Random r = new Random(11);
+        for(int i = 0; i < edits; i++) {
+            l = r.nextInt(3) == 0 ? l.removeAt(r.nextInt(l.size())) : l.insertAt(r.nextInt(l.size() + 1), -i);
+        }
+        return l;
+    }
+
+    @Test
+    public void testPolicy() {
+        final ImmList<Integer> l = ImmCollections.asList(range(0, 1000));
+        assertEquals(0, ImmCompaction.getThreshold(), 0);
+        // Built trees are as full as compacted ones.
+        assertTrue(ImmCompaction.fillOf(l) > 0.95);
+        assertTrue(ImmCompaction.fillOf(ImmCollections.asSortedSet(range(0, 1000))) > 0.95);
+        // Random edits leave trees about 0.8 full.
+        final ImmList<Integer> sparse = sparse(l, 3000);
+        assertTrue(ImmCompaction.fillOf(sparse) < 0.9);
+        ImmSortedSet<Integer> sparseSet = ImmCollections.asSortedSet(range(0, 1000));
+        for(int i = 0; i < 1000; i++) {
+            sparseSet = sparseSet.add(1000 + i * 7 % 1000 * 2 + 1).remove(i * 3 % 1000);
+        }
+        assertTrue(ImmCompaction.fillOf(sparseSet) < 0.9);
+        ImmCompaction.setThreshold(0.9);
+        ImmMetrics.enable();
+        try {
+            ImmMetrics.reset();
+            // A built tree is not compacted by its first edits.
+            assertEquals(range(0, 1001), l.add(1000).asCollection());
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            // A sparse tree edited enough is.
+            final ImmList<Integer> l2 = sparse.add(1000);
+            assertEquals(1, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            assertEquals(sparse.add(1000).asCollection(), l2.asCollection());
+            assertTrue(ImmCompaction.fillOf(l2) > 0.95);
+            // A compacted tree is not compacted again by the next edit.
+            ImmMetrics.reset();
+            final ImmList<Integer> l3 = l2.removeAt(0);
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            assertEquals(l2.size() - 1, l3.size());
+            // Nor is a small tree, an unchanged one, or a split off one.
+            ImmCollections.asList(range(0, 10)).add(1);
+            assertSame(sparse, sparse.headAt(sparse.size()));
+            assertEquals(sparse.asCollection().subList(0, 500), sparse.headAt(500).asCollection());
+            assertEquals(sparse.asCollection().subList(500, sparse.size()), sparse.tailAt(500).asCollection());
+            assertEquals(sparse.asCollection().subList(10, 900), sparse.getRange(10, 900).asCollection());
+            sparseSet.lt(500);
+            sparseSet.ge(500);
+            sparseSet.subSet(100, 1500);
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            // Setting an element is an edit.
+            assertEquals(-1, (int)sparse.setAt(0, -1).getAt(0));
+            assertEquals(1, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            // Sets and maps are compacted through their lists.
+            ImmMetrics.reset();
+            final ImmSortedSet<Integer> s = sparseSet.add(-1);
+            assertEquals(1, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            assertTrue(s.contains(-1));
+            assertEquals(sparseSet.size() + 1, s.size());
+        } finally {
+            ImmMetrics.disable();
+            ImmCompaction.setThreshold(0);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ImmCompaction.setThreshold(1.5));
+        assertThrows(IllegalArgumentException.class, () -> ImmCompaction.setThreshold(Double.NaN));
+    }
+
+    @Test
+    public void testAmortized() {
+        final ImmSortedSet<Integer> built = ImmCollections.asSortedSet(range(0, 10000));
+        // Even a threshold every tree but a full one falls below compacts at most once per size / 8 edits.
+        ImmCompaction.setThreshold(1);
+        ImmMetrics.enable();
+        try {
+            ImmMetrics.reset();
+            ImmSortedSet<Integer> s = built;
+            for(int i = 0; i < 200; i++) {
+                s = s.add(10000 + i * 2);
+            }
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+            for(int i = 0; i < 600; i++) {
+                s.subSet(i * 10, i * 10 + 5000).lt(i * 10 + 100);
+                s.ge(i);
+            }
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS));
+
+            final Random r = new Random(3);
+            ImmList<Integer> l = ImmCollections.asList(range(0, 1000));
+            final int edits = 4000;
+            for(int i = 0; i < edits; i++) {
+                l = l.insertAt(r.nextInt(l.size() + 1), i);
+            }
+            final long compactions = ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS);
+            assertTrue(compactions > 0);
+            // The list never has fewer than 1000 elements, so each compaction takes 1000 / 8 edits or more.
+            assertTrue(compactions <= edits / (1000 / ImmCompaction.EDITS_PER_COMPACTION));
+        } finally {
+            ImmMetrics.disable();
+            ImmCompaction.setThreshold(0);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.Test;
+
+public class ImmIOTest {
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static DataInput bytes(Writer writer) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bos);
+        writer.write(out);
+        out.flush();
+        return new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    @Test
+    public void testList() throws IOException {
+        final ImmList<String> list = ImmCollections.asList("b", "a", "c", "a");
+        assertEquals(ImmIO.readList(bytes(out -> ImmIO.write(out, list, ImmCodec.ofString())), ImmCodec.ofString()), list);
+        assertEquals(ImmIO.readList(bytes(out -> ImmIO.write(Channels.newChannel(out), list, ImmCodec.ofString())), ImmCodec.ofString()), list);
+        final ImmList<String> empty = ImmCollections.emptyList();
+        assertEquals(ImmIO.readList(bytes(out -> ImmIO.write(out, empty, ImmCodec.ofString())), ImmCodec.ofString()), empty);
+        final ImmList<String> nulls = ImmCollections.asList("a", null, "c");
+        assertEquals(ImmIO.readList(bytes(out -> ImmIO.write(out, nulls, ImmCodec.nullable(ImmCodec.ofString()))), ImmCodec.nullable(ImmCodec.ofString())), nulls);
+    }
+
+    @Test
+    public void testSet() throws IOException {
+        final ImmSet<Integer> set = ImmCollections.asSet(5, 1, 3, 100, -7);
+        final ImmSet<Integer> read = ImmIO.readSet(bytes(out -> ImmIO.write(out, set, ImmCodec.ofInteger())), ImmCodec.ofInteger());
+        assertEquals(read, set);
+        assertTrue(read.contains(100));
+        assertEquals(read.add(2), set.add(2));
+    }
+
+    @Test
+    public void testSortedSet() throws IOException {
+        final ImmSortedSet<Integer> set = ImmCollections.asSortedSet(5, 1, 3, 100, -7);
+        assertEquals(ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, set, ImmCodec.ofInteger())), ImmCodec.ofInteger()), set);
+        final ImmSortedSet<Integer> reversed = ImmCollections.asSortedSet(Comparator.<Integer>naturalOrder().reversed(), Arrays.asList(5, 1, 3));
+        final ImmSortedSet<Integer> read = ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, reversed, ImmCodec.ofInteger())),
+                Comparator.<Integer>naturalOrder().reversed(), ImmCodec.ofInteger());
+        assertEquals(read.asList(), ImmCollections.asList(5, 3, 1));
+    }
+
+    @Test
+    public void testNamedComparator() throws IOException {
+        final Comparator<String> byLength = ImmIO.namedComparator("length", Comparator.comparing(String::length));
+        final ImmSortedSet<String> set = ImmCollections.asSortedSet(byLength, Arrays.asList("ccc", "a", "bb"));
+        final ImmSortedSet<String> read = ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, set, ImmCodec.ofString())), byLength, ImmCodec.ofString());
+        assertEquals(read.asList(), ImmCollections.asList("a", "bb", "ccc"));
+        assertEquals(read.add("dddd").asList(), ImmCollections.asList("a", "bb", "ccc", "dddd"));
+        assertThrows(IOException.class, () -> ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, set, ImmCodec.ofString())), ImmCodec.ofString()));
+        assertThrows(IOException.class, () -> ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, set, ImmCodec.ofString())),
+                byLength.reversed(), ImmCodec.ofString()));
+        assertThrows(IllegalArgumentException.class, () -> ImmIO.namedComparator("", Comparator.<String>naturalOrder()));
+    }
+
+    // Collections ordered by comparators without a name are checked, and sorted if needed.
+    @Test
+    public void testUnnamedComparator() throws IOException {
+        final ImmSortedSet<String> byLength = ImmCollections.asSortedSet(Comparator.comparing(String::length), Arrays.asList("ccc", "a", "bb"));
+        final ImmSortedSet<String> read = ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, byLength, ImmCodec.ofString())), ImmCodec.ofString());
+        assertEquals(read.asList(), ImmCollections.asList("a", "bb", "ccc"));
+        final ImmSortedSet<String> natural = ImmCollections.asSortedSet("c", "a", "b");
+        final ImmSortedSet<String> sorted = ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, natural, ImmCodec.ofString())),
+                Comparator.comparing((String s) -> s).reversed(), ImmCodec.ofString());
+        assertEquals(sorted.asList(), ImmCollections.asList("c", "b", "a"));
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        final ImmMap<String, Integer> map = ImmCollections.<String, Integer>emptyMap().put("a", 1).put("b", 2).put("c", 3);
+        final ImmMap<String, Integer> read = ImmIO.readMap(bytes(out -> ImmIO.write(out, map, ImmCodec.ofString(), ImmCodec.ofInteger())),
+                ImmCodec.ofString(), ImmCodec.ofInteger());
+        assertEquals(read, map);
+        assertEquals(read.get("b"), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testSortedMap() throws IOException {
+        final ImmSortedMap<Integer, String> map = map(0, 10000);
+        final ImmSortedMap<Integer, String> read = ImmIO.readSortedMap(bytes(out -> ImmIO.write(out, map, ImmCodec.ofInteger(), ImmCodec.ofString())),
+                ImmCodec.ofInteger(), ImmCodec.ofString());
+        assertEquals(read, map);
+        assertEquals(read.get(5000), "5000");
+        assertEquals(read.put(-1, "x"), map.put(-1, "x"));
+        final ImmSortedMap<Integer, String> channel = ImmIO.readSortedMap(bytes(out -> ImmIO.write(Channels.newChannel(out), map, ImmCodec.ofInteger(), ImmCodec.ofString())),
+                ImmCodec.ofInteger(), ImmCodec.ofString());
+        assertEquals(channel, map);
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        final Path path = Files.createTempFile("ImmIOTest", ".map");
+        try {
+            final ImmSortedMap<Integer, String> map = map(0, 100000);
+            ImmIO.writeMapped(path, map, ImmCodec.ofInteger(), ImmCodec.ofString());
+            final ImmSortedMap<Integer, String> mapped = ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString());
+            assertEquals(mapped.size(), 100000);
+            assertEquals(mapped.get(12345), "12345");
+            assertEquals(mapped.get(-1), null);
+            assertEquals(mapped.ge(99998), map(99998, 100000));
+            assertEquals(mapped.subSet(500, 510), map(500, 510));
+            assertEquals(mapped.asList().getAt(777).getKey(), Integer.valueOf(777));
+            assertEquals(mapped, map);
+
+            // Updates are made on the heap, the file is untouched.
+            final ImmSortedMap<Integer, String> updated = mapped.put(50000, "x").removeKey(3).put(200000, "y");
+            assertEquals(updated, map.put(50000, "x").removeKey(3).put(200000, "y"));
+            assertEquals(mapped.get(50000), "50000");
+            assertEquals(ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString()), map);
+
+            ImmIO.writeMapped(path, ImmCollections.emptySortedMap(), ImmCodec.ofInteger(), ImmCodec.ofString());
+            assertEquals(ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString()), ImmCollections.emptySortedMap());
+            ImmIO.writeMapped(path, map(7, 8), ImmCodec.ofInteger(), ImmCodec.ofString());
+            assertEquals(ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString()), map(7, 8));
+
+            assertThrows(IOException.class, () -> ImmIO.mapSortedMap(path, Comparator.<Integer>naturalOrder().reversed(), ImmCodec.ofInteger(), ImmCodec.ofString()));
+            // The keys of a mapped map are never checked, so unnamed comparators are refused.
+            assertThrows(IOException.class, () -> ImmIO.mapSortedMap(path, (a, b) -> Integer.compare(a, b), ImmCodec.ofInteger(), ImmCodec.ofString()));
+            final Comparator<Integer> byValue = (a, b) -> Integer.compare(a, b);
+            ImmIO.writeMapped(path, ImmCollections.asSortedMap(byValue, map(0, 10).asMap()), ImmCodec.ofInteger(), ImmCodec.ofString());
+            assertThrows(IOException.class, () -> ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString()));
+            assertThrows(IOException.class, () -> ImmIO.mapSortedMap(path, byValue, ImmCodec.ofInteger(), ImmCodec.ofString()));
+            Files.write(path, new byte[] {1, 2, 3});
+            assertThrows(IOException.class, () -> ImmIO.mapSortedMap(path, ImmCodec.ofInteger(), ImmCodec.ofString()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testBadStream() {
+        final ImmList<Integer> list = ImmCollections.asList(1, 2, 3);
+        assertThrows(IOException.class, () -> ImmIO.readSortedSet(bytes(out -> ImmIO.write(out, list, ImmCodec.ofInteger())), ImmCodec.ofInteger()));
+        assertThrows(IOException.class, () -> ImmIO.readList(bytes(out -> out.writeInt(42)), ImmCodec.ofInteger()));
+        assertThrows(IOException.class, () -> ImmIO.readList(new DataInputStream(new ByteArrayInputStream(new byte[] {0x32, 0x33, 0x43, 0x30, 9})),
+                ImmCodec.ofInteger()));
+        // The size comes from the stream: a negative one is rejected, and a huge one fails when the elements run out,
+        // having made no room for them.
+        final byte[] negative = {0x32, 0x33, 0x43, 0x30, 1, 2, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F};
+        assertThrows(IOException.class, () -> ImmIO.readSet(new DataInputStream(new ByteArrayInputStream(negative)), ImmCodec.ofInteger()));
+        final byte[] huge = {0x32, 0x33, 0x43, 0x30, 1, 2, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07, 0, 0, 0, 1};
+        assertThrows(IOException.class, () -> ImmIO.readSet(new DataInputStream(new ByteArrayInputStream(huge)), ImmCodec.ofInteger()));
+    }
+}
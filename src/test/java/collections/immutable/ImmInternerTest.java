@@ -0,0 +1,146 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ImmInternerTest {
+    private static Node23<?> root(ImmSortedSet<?> s) {
+        return ((TreeSet23<?>)s).elements.root;
+    }
+
+    @Test
+    public void testEqualSetsShareTheirTree() {
+        final ImmInterner pool = ImmInterner.create();
+        final ImmSortedSet<Integer> a = ImmCollections.asSortedSet(range(0, 1000));
+        final ImmSortedSet<Integer> b = ImmCollections.asSortedSet(range(0, 1000));
+        assertNotSame(root(a), root(b));
+        final ImmSortedSet<Integer> ia = pool.intern(a);
+        final ImmSortedSet<Integer> ib = pool.intern(b);
+        assertEquals(a, ia);
+        assertEquals(b, ib);
+        assertSame(root(ia), root(ib));
+        assertTrue(ia.equals(ib));
+        assertEquals(MemoryFootprint.of(ia).getNodes(), MemoryFootprint.of(ia, ib).getNodes());
+        // Interning an interned set does nothing.
+        assertSame(ia, pool.intern(ia));
+        assertSame(ia, pool.intern((ImmSet<Integer>)ia));
+    }
+
+    @Test
+    public void testOverlappingSetsShareSubtrees() {
+        final ImmInterner pool = ImmInterner.create();
+        final ImmSortedSet<Integer> a = pool.intern(ImmCollections.asSortedSet(range(0, 1000)));
+        final ImmSortedSet<Integer> b = pool.intern(a.add(5000));
+        assertEquals(1001, b.size());
+        assertTrue(b.contains(5000));
+        final MemoryFootprint both = MemoryFootprint.of(a, b);
+        assertTrue(both.getNodes() < MemoryFootprint.of(a).getNodes() + 2 * ((TreeSet23<Integer>)b).elements.root.getDepth());
+        final int size = pool.size();
+        assertTrue(size >= MemoryFootprint.of(a).getNodes());
+        assertTrue(size <= both.getNodes());
+    }
+
+    @Test
+    public void testEveryKind() {
+        final ImmInterner pool = ImmInterner.create();
+        final Map<Integer, String> m = new HashMap<>();
+        for(int i = 0; i < 100; i++) {
+            m.put(i, String.valueOf(i));
+        }
+        final ImmMap<Integer, String> m1 = pool.intern(ImmCollections.asMap(m));
+        final ImmMap<Integer, String> m2 = pool.intern(ImmCollections.asMap(m));
+        assertEquals(ImmCollections.asMap(m), m1);
+        assertSame(((HashMap23<Integer, String>)m1).entries.root, ((HashMap23<Integer, String>)m2).entries.root);
+
+        final ImmSortedMap<Integer, String> s1 = pool.intern(ImmCollections.asSortedMap(Integer::compare, m));
+        final ImmSortedMap<Integer, String> s2 = pool.intern(ImmCollections.asSortedMap(Integer::compare, m));
+        assertEquals(m, s1.asMap());
+        assertSame(((TreeMap23<Integer, String>)s1).entries.root, ((TreeMap23<Integer, String>)s2).entries.root);
+        // The entries of both maps are the same objects.
+        assertEquals(100, MemoryFootprint.of(m1, s1).getEntries());
+
+        final ImmSet<Integer> h1 = pool.intern(ImmCollections.asSet(range(0, 100)));
+        final ImmSet<Integer> h2 = pool.intern(ImmCollections.asSet(range(0, 100)));
+        assertEquals(h1, h2);
+        assertSame(((HashSet23<Integer>)h1).elements.root, ((HashSet23<Integer>)h2).elements.root);
+
+        final ImmList<Integer> l1 = pool.intern(ImmCollections.asList(range(0, 100)));
+        final ImmList<Integer> l2 = pool.intern(ImmCollections.asList(range(0, 100)));
+        assertSame(((TreeList23<Integer>)l1).root, ((TreeList23<Integer>)l2).root);
+        assertEquals(range(0, 100), l1.asCollection());
+
+        // Views are left as they are.
+        final ImmList<Integer> r = l1.reversed();
+        assertSame(r, pool.intern(r));
+        final ImmList<Integer> empty = ImmCollections.emptyList();
+        assertSame(empty, pool.intern(empty));
+    }
+
+    // A key whose hash is the same for every value, and which has no natural order.
+    private static final class Colliding {
+        final int value;
+
+        Colliding(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Colliding && ((Colliding)obj).value == value;
+        }
+    }
+
+    @Test
+    public void testCollidingHashes() {
+        // "Aa" and "BB" have the same hash.
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        for(int i = 0; i < 200; i++) {
+            final ImmInterner pool = ImmInterner.create();
+            final ImmSet<String> a = pool.intern(ImmCollections.asSet(new String("Aa"), new String("BB"), "x"));
+            final ImmSet<String> b = pool.intern(ImmCollections.asSet(new String("BB"), new String("Aa"), "y"));
+            assertTrue(b.contains("Aa"));
+            assertTrue(b.contains("BB"));
+            assertTrue(a.contains("Aa"));
+            assertEquals(b, ImmCollections.asSet("Aa", "BB", "y"));
+
+            final Map<String, Integer> m = new HashMap<>();
+            m.put(new String("Aa"), 1);
+            m.put(new String("BB"), 2);
+            pool.intern(ImmCollections.asMap(m));
+            final Map<String, Integer> m2 = new HashMap<>();
+            m2.put(new String("BB"), 2);
+            m2.put(new String("Aa"), 1);
+            final ImmMap<String, Integer> im = pool.intern(ImmCollections.asMap(m2));
+            assertEquals(Integer.valueOf(1), im.get("Aa"));
+            assertEquals(Integer.valueOf(2), im.get("BB"));
+
+            final Colliding c1 = new Colliding(1);
+            final Colliding c2 = new Colliding(2);
+            pool.intern(ImmCollections.asSet(new Colliding(1), new Colliding(2)));
+            final ImmSet<Colliding> c = pool.intern(ImmCollections.asSet(c2, c1));
+            assertTrue(c.contains(c1));
+            assertTrue(c.contains(c2));
+        }
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(ImmCollections.interned(), ImmCollections.interned());
+        final ImmSortedSet<String> a = ImmCollections.interned().intern(ImmCollections.asSortedSet("read", "write"));
+        final ImmSortedSet<String> b = ImmCollections.interned().intern(ImmCollections.asSortedSet("write", "read"));
+        assertSame(root(a), root(b));
+    }
+}
@@ -0,0 +1,167 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.depth;
+import static collections.immutable.TestFixtures.list;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class ImmMetricsTest {
+    @Test
+    public void testDisabledCountsNothing() {
+        ImmMetrics.disable();
+        ImmMetrics.reset();
+        ImmSortedSet<Integer> s = ImmCollections.asSortedSet(list(100));
+        for(Integer i: s.add(1000).remove(5)) {
+            assertTrue(i >= 0);
+        }
+        for(ImmMetrics.Counter c: ImmMetrics.Counter.values()) {
+            assertEquals(c.toString(), 0, ImmMetrics.get(c));
+        }
+        assertFalse(ImmMetrics.isEnabled());
+    }
+
+    @Test
+    public void testCounts() {
+        final ImmList<Integer> l = list(1000);
+        final ImmSortedSet<Integer> s = ImmCollections.asSortedSet(l);
+        ImmMetrics.enable();
+        try {
+            ImmMetrics.reset();
+            assertTrue(s.contains(500));
+            final long comparisons = ImmMetrics.get(ImmMetrics.Counter.COMPARISONS);
+            // One descent, a few comparisons on each level.
+            assertTrue(comparisons > 0 && comparisons <= 3 * 11);
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.NODE_ALLOCATIONS));
+
+            ImmMetrics.reset();
+            l.insertAt(500, -1);
+            assertEquals(2, ImmMetrics.get(ImmMetrics.Counter.SPLITS));
+            assertTrue(ImmMetrics.get(ImmMetrics.Counter.CONCATS) >= 2);
+            assertTrue(ImmMetrics.get(ImmMetrics.Counter.NODE_ALLOCATIONS) > 0);
+
+            ImmMetrics.reset();
+            l.setAt(500, -1);
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.SPLITS));
+            assertEquals(depth(l), ImmMetrics.get(ImmMetrics.Counter.NODE_ALLOCATIONS));
+
+            ImmMetrics.reset();
+            for(Integer i: s) {
+                assertTrue(i >= 0);
+            }
+            assertEquals(1, ImmMetrics.get(ImmMetrics.Counter.ITERATORS));
+
+            final Map<ImmMetrics.Counter, Long> snapshot = ImmMetrics.snapshot();
+            assertEquals(ImmMetrics.Counter.values().length, snapshot.size());
+            assertEquals(Long.valueOf(1), snapshot.get(ImmMetrics.Counter.ITERATORS));
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.put(ImmMetrics.Counter.ITERATORS, 0L));
+
+            ImmMetrics.reset();
+            assertEquals(0, ImmMetrics.get(ImmMetrics.Counter.ITERATORS));
+        } finally {
+            ImmMetrics.disable();
+            ImmMetrics.reset();
+        }
+    }
+
+    @Test
+    public void testShape() {
+        final ImmMetrics.Shape empty = ImmMetrics.shapeOf(ImmCollections.emptyList());
+        assertEquals(0, empty.getSize());
+        assertEquals(0, empty.getDepth());
+        assertEquals(0, empty.getNodes());
+
+        final ImmMetrics.Shape one = ImmMetrics.shapeOf(ImmCollections.asList(1));
+        assertEquals(1, one.getDepth());
+        assertEquals(1, one.getNodes());
+        assertEquals(1.0, one.getLeafFill(), 0);
+
+        for(int n: new int[] {2, 3, 10, 100, 1000}) {
+            final ImmList<Integer> l = list(n);
+            final ImmMetrics.Shape shape = ImmMetrics.shapeOf(l);
+            assertEquals(n, shape.getSize());
+            assertEquals(depth(l), shape.getDepth());
+            assertEquals(0, shape.getSharedNodes());
+            assertTrue(shape.getLeafFill() >= 2.0 / 3 && shape.getLeafFill() <= 1);
+            // Every branch but the root hangs from another branch, and every leaf from a branch.
+            assertTrue(2 * shape.getTwoNodes() + 3 * shape.getThreeNodes() == shape.getNodes() - 1);
+        }
+    }
+
+    @Test
+    public void testSharedNodes() {
+        final ImmList<Integer> l1 = list(1000);
+        final ImmList<Integer> l2 = l1.setAt(0, -1);
+        final ImmMetrics.Shape shape = ImmMetrics.shapeOf(l2, l1);
+        // Only the path to the replaced leaf is new.
+        assertEquals(shape.getNodes() - depth(l2), shape.getSharedNodes());
+        assertEquals(shape.getNodes(), ImmMetrics.shapeOf(l1, l1).getSharedNodes());
+
+        final Map<Integer, Integer> hm = new HashMap<>();
+        // Past the size of the flat arrays of small maps, which share nothing.
+        for(int i = 1; i <= 20; i++) {
+            hm.put(i, i);
+        }
+        final ImmMap<Integer, Integer> m1 = ImmCollections.asSortedMap(Integer::compare, hm);
+        final ImmMap<Integer, Integer> m2 = m1.put(3, 33);
+        final ImmMetrics.Shape mapShape = ImmMetrics.shapeOf(m2, m1);
+        assertEquals(20, mapShape.getSize());
+        assertTrue(mapShape.getSharedNodes() > 0 && mapShape.getSharedNodes() < mapShape.getNodes());
+        assertEquals(0, ImmMetrics.shapeOf(ImmCollections.asSet(1, 2, 3)).getSharedNodes());
+    }
+
+    @Test
+    public void testEventThreshold() {
+        final long threshold = ImmMetrics.getEventThreshold();
+        try {
+            ImmMetrics.setEventThreshold(0);
+            assertEquals(0, ImmMetrics.getEventThreshold());
+            // Reporting leaves the results alone, whether or not a recording is on.
+            final ImmSortedSet<Integer> s = ImmCollections.asSortedSet(list(100));
+            assertEquals(ImmCollections.asSortedSet(list(10)), s.retain(list(10)));
+            assertEquals(ImmCollections.asSortedSet(list(150)), s.union(ImmCollections.asSortedSet(list(150))));
+            assertEquals(90, s.removeAllIn(list(10)).size());
+            assertThrows(IllegalArgumentException.class, () -> ImmMetrics.setEventThreshold(-1));
+        } finally {
+            ImmMetrics.setEventThreshold(threshold);
+        }
+        assertEquals(-1, CollectionEvents.sizeOf((Iterable<Integer>)Collections::emptyIterator));
+        assertEquals(3, CollectionEvents.sizeOf(ImmCollections.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        ImmMetrics.registerMBean();
+        ImmMetrics.registerMBean();
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(ImmMetrics.MBEAN_NAME);
+            assertTrue(server.isRegistered(name));
+            assertEquals(Boolean.FALSE, server.getAttribute(name, "Enabled"));
+            server.setAttribute(name, new javax.management.Attribute("Enabled", true));
+            assertTrue(ImmMetrics.isEnabled());
+            ImmMetrics.reset();
+            list(10).iterator();
+            assertEquals(1L, server.getAttribute(name, "Iterators"));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "Iterators"));
+            ImmMetrics.unregisterMBean();
+            assertFalse(server.isRegistered(name));
+        } finally {
+            ImmMetrics.disable();
+            ImmMetrics.reset();
+            ImmMetrics.unregisterMBean();
+        }
+    }
+}
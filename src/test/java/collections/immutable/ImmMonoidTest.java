@@ -0,0 +1,139 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class ImmMonoidTest {
+    // Not commutative, so the order of the elements matters.
+    private static final ImmMonoid<Integer, String> CONCAT = ImmMonoid.of("", String::valueOf, String::concat);
+    private static final ImmMonoid<Integer, Long> SUM = ImmMonoid.sum(i -> i);
+    private static final ImmMonoid<Integer, Integer> MIN = ImmMonoid.min(Comparator.<Integer>naturalOrder());
+    private static final ImmMonoid<Integer, Integer> MAX = ImmMonoid.max(Comparator.<Integer>naturalOrder());
+    private static final ImmMonoid<Map.Entry<Integer, Integer>, Long> SUM_VALUES = ImmMonoid.sum(Map.Entry::getValue);
+
+    private static String concat(ImmList<Integer> list, int low, int high) {
+        return list.asCollection().subList(low, high).stream().map(String::valueOf).collect(Collectors.joining());
+    }
+
+    @Test
+    public void testList() {
+        final Random random = new Random(3);
+        final ImmList<Integer> list = IntStream.range(0, 300).boxed().collect(ImmCollectors.toImmList());
+        for(ImmList<Integer> l: Arrays.<ImmList<Integer>>asList(list, list.reversed(), list.map(i -> i * 7 % 300), list.tailAt(17))) {
+            for(int i = 0; i < 200; i++) {
+                final int low = random.nextInt(l.size() + 1);
+                final int high = low + random.nextInt(l.size() - low + 1);
+                assertEquals(l.aggregate(low, high, CONCAT), concat(l, low, high));
+            }
+            assertEquals(l.aggregate(0, l.size(), ImmMonoid.count()), Long.valueOf(l.size()));
+        }
+        assertEquals(list.aggregate(10, 20, SUM), Long.valueOf(145));
+        assertEquals(list.aggregate(10, 20, MIN), Integer.valueOf(10));
+        assertEquals(list.aggregate(10, 20, MAX), Integer.valueOf(19));
+        assertNull(list.aggregate(10, 10, MAX));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.aggregate(10, 301, CONCAT));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.aggregate(10, 9, CONCAT));
+    }
+
+    @Test
+    public void testSortedMap() {
+        final ImmSortedMap<Integer, Integer> map = IntStream.range(0, 500).boxed().collect(ImmCollectors.toImmSortedMap(i -> i * 2, i -> i));
+        assertEquals(map.aggregate(10, 21, SUM_VALUES), Long.valueOf(5 + 6 + 7 + 8 + 9 + 10));
+        assertEquals(map.aggregate(-5, 3, SUM_VALUES), Long.valueOf(1));
+        assertEquals(map.aggregate(21, 10, SUM_VALUES), Long.valueOf(0));
+        assertEquals(map.aggregate(0, 1000, SUM_VALUES), Long.valueOf(499 * 500 / 2));
+        assertEquals(map.reversed().aggregate(21, 10, SUM_VALUES), Long.valueOf(10 + 9 + 8 + 7 + 6));
+    }
+
+    // A monoid counting the elements it summarizes.
+    private static ImmMonoid<Integer, Long> counting(final AtomicInteger calls) {
+        return ImmMonoid.of(0L, i -> {
+            calls.incrementAndGet();
+            return (long)i;
+        }, Long::sum);
+    }
+
+    // The summaries of a bound monoid are kept by the branches, and updated by edits.
+    @Test
+    public void testAugmented() {
+        final AtomicInteger calls = new AtomicInteger();
+        final ImmMonoid<Integer, Long> counting = counting(calls);
+        ImmList<Integer> list = IntStream.range(0, 20000).boxed().collect(ImmCollectors.toImmList()).augment(counting);
+        assertEquals(calls.get(), 20000);
+        assertSame(list, list.augment(counting));
+        calls.set(0);
+        assertEquals(list.aggregate(0, list.size(), counting), Long.valueOf(19999L * 20000 / 2));
+        assertEquals(calls.get(), 0);
+        for(int i = 0; i < 10; i++) {
+            list = list.setAt(i * 1000, 0).insertAt(i * 100, 1).removeAt(i * 7);
+            list.aggregate(5, list.size() - 5, counting);
+        }
+        list = list.appendList(list.getRange(100, 200)).tailAt(3).headAt(19000);
+        list.aggregate(5, list.size() - 5, counting);
+        assertTrue(calls.get() < 1000);
+        assertEquals(list.aggregate(0, list.size(), counting), Long.valueOf(list.stream().mapToLong(i -> i).sum()));
+        assertEquals(list.filter(i -> i % 2 == 0).aggregate(10, 5000, counting), Long.valueOf(list.filter(i -> i % 2 == 0).asCollection().subList(10, 5000).stream().mapToLong(i -> i).sum()));
+
+        // Other monoids do not evict the bound one.
+        final AtomicInteger others = new AtomicInteger();
+        for(int i = 0; i < 5; i++) {
+            list.aggregate(0, list.size(), counting(others));
+        }
+        calls.set(0);
+        assertEquals(list.aggregate(0, list.size(), counting), Long.valueOf(list.stream().mapToLong(i -> i).sum()));
+        assertEquals(calls.get(), 0);
+
+        // Views have no monoid bound, and fold their range.
+        calls.set(0);
+        list.reversed().aggregate(0, 100, counting);
+        assertEquals(calls.get(), 100);
+    }
+
+    // Edits of a map with a bound monoid keep it bound.
+    @Test
+    public void testAugmentedMap() {
+        final AtomicInteger calls = new AtomicInteger();
+        final ImmMonoid<Map.Entry<Integer, Integer>, Long> counting = ImmMonoid.of(0L, e -> {
+            calls.incrementAndGet();
+            return (long)e.getValue();
+        }, Long::sum);
+        ImmSortedMap<Integer, Integer> map = IntStream.range(0, 5000).boxed().collect(ImmCollectors.toImmSortedMap(i -> i, i -> i)).augment(counting);
+        calls.set(0);
+        for(int i = 0; i < 50; i++) {
+            map = map.put(i * 3, 0).removeKey(i * 7 + 1).put(-i - 1, 1);
+        }
+        map = map.addAll(ImmCollections.asSortedMap(10000, 1, 10001, 2).asMap()).subSet(-10, 10001);
+        map = map.subSet(0, 0).put(1, 1).addAll(map.asMap());
+        calls.set(0);
+        final ImmSortedMap<Integer, Integer> m = map;
+        assertEquals(m.aggregate(-100, 20000, counting), Long.valueOf(m.values().stream().mapToLong(i -> i).sum()));
+        assertEquals(calls.get(), 0);
+        // Only the leaves at the ends of a range are summarized.
+        assertEquals(m.aggregate(100, 4000, counting), Long.valueOf(m.subSet(100, 4000).values().stream().mapToLong(i -> i).sum()));
+        assertTrue(calls.get() < 20);
+    }
+
+    // count() is one instance, answered from the sizes of the branches.
+    @Test
+    public void testCount() {
+        assertSame(ImmMonoid.<Integer>count(), ImmMonoid.<String>count());
+        final ImmList<Integer> list = IntStream.range(0, 1000).boxed().collect(ImmCollectors.toImmList());
+        assertEquals(list.aggregate(0, 1000, ImmMonoid.count()), Long.valueOf(1000));
+        assertEquals(list.aggregate(3, 997, ImmMonoid.count()), Long.valueOf(994));
+        assertEquals(list.aggregate(3, 3, ImmMonoid.count()), Long.valueOf(0));
+        assertTrue(!((Branch<Integer>)((TreeList23<Integer>)list).root).hasSummary());
+    }
+}
@@ -0,0 +1,131 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class ImmMvccStoreTest {
+    @Test
+    public void testSnapshotIsolation() {
+        final ImmMvccStore<Integer, String> store = ImmMvccStore.of(ImmCollections.asSortedMap(1, "1", 2, "2"));
+        try (ImmMvccStore.Transaction<Integer, String> reader = store.begin()) {
+            final ImmMvccStore.Transaction<Integer, String> writer = store.begin();
+            writer.put(3, "3");
+            writer.removeKey(1);
+            assertEquals(writer.get(3), "3");
+            assertNull(writer.get(1));
+            assertNull(reader.get(3));
+            assertTrue(writer.commit());
+            assertEquals(store.version(), 1);
+            assertEquals(reader.version(), 0);
+            assertEquals(reader.get(1), "1");
+            assertEquals(reader.snapshot().size(), 2);
+            assertTrue(reader.commit());
+        }
+        assertEquals(store.get(), ImmCollections.asSortedMap(2, "2", 3, "3"));
+    }
+
+    @Test
+    public void testConflicts() {
+        final ImmMvccStore<Integer, String> store = ImmMvccStore.of(ImmCollections.asSortedMap(1, "1", 5, "5", 9, "9"));
+
+        // Write write conflict.
+        ImmMvccStore.Transaction<Integer, String> a = store.begin();
+        ImmMvccStore.Transaction<Integer, String> b = store.begin();
+        a.put(1, "a");
+        b.put(1, "b");
+        assertTrue(a.commit());
+        assertFalse(b.commit());
+        assertEquals(store.get().get(1), "a");
+
+        // Read write conflict.
+        a = store.begin();
+        b = store.begin();
+        b.get(5);
+        b.put(6, "6");
+        a.put(5, "a");
+        assertTrue(a.commit());
+        assertFalse(b.commit());
+
+        // A range read conflicts with a key inserted into the range.
+        a = store.begin();
+        b = store.begin();
+        assertEquals(b.subMap(2, 8).size(), 1);
+        b.put(0, "0");
+        a.put(7, "7");
+        assertTrue(a.commit());
+        assertFalse(b.commit());
+
+        // But not with keys outside the range.
+        a = store.begin();
+        b = store.begin();
+        b.subMap(2, 8);
+        b.put(0, "0");
+        a.put(8, "8");
+        assertTrue(a.commit());
+        assertTrue(b.commit());
+
+        // Nor does a transaction that only reads.
+        a = store.begin();
+        b = store.begin();
+        b.snapshot();
+        a.put(2, "2");
+        assertTrue(a.commit());
+        assertTrue(b.commit());
+
+        final ImmMvccStore.Transaction<Integer, String> closed = b;
+        assertThrows(IllegalStateException.class, () -> closed.get(1));
+        assertEquals(store.get().keys(), ImmCollections.asSortedSet(0, 1, 2, 5, 7, 8, 9));
+    }
+
+    @Test
+    public void testReclaim() {
+        final ImmMvccStore<Integer, Integer> store = ImmMvccStore.create();
+        final ImmMvccStore.Transaction<Integer, Integer> old = store.begin();
+        for(int i = 0; i < 10; i++) {
+            final ImmMvccStore.Transaction<Integer, Integer> tx = store.begin();
+            tx.put(i, i);
+            assertTrue(tx.commit());
+        }
+        assertEquals(store.retainedVersions(), 11);
+        assertEquals(old.snapshot().size(), 0);
+        old.close();
+        assertEquals(store.retainedVersions(), 1);
+        assertEquals(store.get().size(), 10);
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        final ImmMvccStore<String, Integer> store = ImmMvccStore.create();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for(int t = 0; t < 8; t++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for(int i = 0; i < 200; i++) {
+                    while(true) {
+                        try (ImmMvccStore.Transaction<String, Integer> tx = store.begin()) {
+                            final Integer n = tx.get("n");
+                            tx.put("n", n == null ? 1 : n + 1);
+                            if (tx.commit()) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        for(CompletableFuture<Void> f: futures) {
+            f.get();
+        }
+        assertEquals(store.get().get("n"), Integer.valueOf(1600));
+        assertEquals(store.version(), 1600);
+        assertEquals(store.retainedVersions(), 1);
+    }
+}
@@ -0,0 +1,127 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+public class ImmRefTest {
+    // Runs body on each of threads threads, each with its own index.
+    private static void concurrently(int threads, IntConsumer body) throws Exception {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            final int index = t;
+            futures.add(CompletableFuture.runAsync(() -> body.accept(index)));
+        }
+        for(CompletableFuture<Void> f: futures) {
+            f.get();
+        }
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        for(ImmRef<Integer> ref: Arrays.asList(ImmRef.of(0), ImmRef.combining(0))) {
+            concurrently(8, t -> {
+                for(int i = 0; i < 1000; i++) {
+                    ref.update(n -> n + 1);
+                }
+            });
+            assertEquals(ref.get(), Integer.valueOf(8000));
+            assertEquals(ref.update(n -> n * 2), Integer.valueOf(16000));
+            assertTrue(ref.compareAndSet(ref.get(), 1));
+            assertFalse(ref.compareAndSet(16000, 2));
+            assertEquals(ref.get(), Integer.valueOf(1));
+            ref.set(5);
+            assertEquals(ref.get(), Integer.valueOf(5));
+        }
+    }
+
+    // A failing update fails alone, the updates combined with it still apply.
+    @Test
+    public void testFailure() throws Exception {
+        final ImmRef<ImmList<Integer>> ref = ImmRef.combining(ImmCollections.emptyList());
+        concurrently(4, t -> {
+            for(int i = 0; i < 100; i++) {
+                final int n = i;
+                if (n % 10 == 0) {
+                    assertThrows(IllegalStateException.class, () -> ref.update(l -> {
+                        throw new IllegalStateException();
+                    }));
+                } else {
+                    ref.update(l -> l.add(n));
+                }
+            }
+        });
+        assertEquals(ref.get().size(), 360);
+    }
+
+    // An update that throws an Error fails alone too, and never leaves the batch combined with it waiting.
+    @Test
+    public void testError() throws Exception {
+        final ImmRef<ImmList<Integer>> ref = ImmRef.combining(ImmCollections.emptyList());
+        concurrently(4, t -> {
+            for(int i = 0; i < 100; i++) {
+                final int n = i;
+                if (n % 10 == 0) {
+                    assertThrows(StackOverflowError.class, () -> ref.update(l -> {
+                        throw new StackOverflowError();
+                    }));
+                } else {
+                    ref.update(l -> l.add(n));
+                }
+            }
+        });
+        assertEquals(ref.get().size(), 360);
+    }
+
+    // Runs of puts and removals applied in bulk keep the order of the updates.
+    @Test
+    public void testBulk() throws Exception {
+        final AtomicImmMap<Integer, Integer> map = AtomicImmMap.combining(ImmCollections.emptySortedMap());
+        concurrently(8, t -> {
+            for(int i = 0; i < 500; i++) {
+                final int key = t * 1000 + i % 50;
+                map.put(key, i);
+                if (i % 3 == 0) {
+                    map.removeKey(key);
+                }
+            }
+        });
+        for(int t = 0; t < 8; t++) {
+            for(int k = 0; k < 50; k++) {
+                final int last = 450 + k;
+                assertEquals(map.get(t * 1000 + k), last % 3 == 0 ? null : Integer.valueOf(last));
+            }
+        }
+    }
+
+    @Test
+    public void testMap() throws Exception {
+        for(AtomicImmMap<Integer, Integer> map: Arrays.asList(
+                AtomicImmMap.<Integer, Integer>of(ImmCollections.emptySortedMap()), AtomicImmMap.<Integer, Integer>combining(ImmCollections.emptyMap()))) {
+            concurrently(8, t -> {
+                for(int i = 0; i < 200; i++) {
+                    map.put(t * 1000 + i, i);
+                    map.compute(-1, (k, v) -> v == null ? 1 : v + 1);
+                }
+            });
+            final ImmMap<Integer, Integer> snapshot = map.snapshot();
+            assertEquals(snapshot.size(), 1601);
+            assertEquals(map.get(-1), Integer.valueOf(1600));
+            assertEquals(map.get(7199), Integer.valueOf(199));
+            assertNull(map.compute(-1, (k, v) -> null));
+            assertEquals(map.removeKey(0).size(), 1599);
+            assertEquals(map.update(m -> m.put(-2, 0)).size(), 1600);
+            assertEquals(snapshot.size(), 1601);
+        }
+    }
+}
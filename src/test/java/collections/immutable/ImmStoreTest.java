@@ -0,0 +1,190 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class ImmStoreTest {
+    private interface StoreTest {
+        void run(Path dir) throws Exception;
+    }
+
+    private static void withDirectory(StoreTest test) throws Exception {
+        final Path dir = Files.createTempDirectory("ImmStoreTest");
+        try {
+            test.run(dir);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for(Path p: files.collect(Collectors.toList())) {
+                    Files.delete(p);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static ImmStore<Integer, String> open(Path dir, long snapshotBytes) throws IOException {
+        return ImmStore.open(dir, Comparator.naturalOrder(), ImmCodec.ofInteger(), ImmCodec.ofString(), snapshotBytes);
+    }
+
+    private static List<String> files(Path dir, String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).filter(n -> n.startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        withDirectory(dir -> {
+            final ImmSortedMap<Integer, String> expected;
+            try (ImmStore<Integer, String> store = ImmStore.open(dir, ImmCodec.ofInteger(), ImmCodec.ofString())) {
+                assertEquals(store.get(), ImmCollections.emptySortedMap());
+                store.put(1, "one");
+                store.put(2, "two");
+                assertEquals(store.removeKey(1), ImmCollections.asSortedMap(2, "two"));
+                expected = store.batch().put(3, "three").put(4, "four").removeKey(2).commit();
+                assertEquals(store.batch().commit(), expected);
+                assertEquals(store.get(), expected);
+            }
+            try (ImmStore<Integer, String> store = ImmStore.open(dir, ImmCodec.ofInteger(), ImmCodec.ofString())) {
+                assertEquals(store.get(), expected);
+                store.put(5, "five");
+            }
+            final ImmStore<Integer, String> store = ImmStore.open(dir, ImmCodec.ofInteger(), ImmCodec.ofString());
+            assertEquals(store.get(), expected.put(5, "five"));
+            store.close();
+            assertThrows(IllegalStateException.class, () -> store.put(6, "six"));
+        });
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        withDirectory(dir -> {
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                for(int i = 0; i < 100; i++) {
+                    store.put(i, String.valueOf(i));
+                }
+                store.snapshot();
+                store.put(100, "100");
+                store.removeKey(0);
+            }
+            assertEquals(files(dir, "snapshot-").size(), 1);
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                assertEquals(store.get().size(), 100);
+                assertEquals(store.get().get(100), "100");
+                assertEquals(store.get().get(0), null);
+                store.snapshot();
+            }
+            // Only the latest snapshot and the logs after it are kept.
+            assertEquals(files(dir, "snapshot-").size(), 1);
+            assertEquals(files(dir, "log-").size(), 1);
+        });
+    }
+
+    @Test
+    public void testBackgroundSnapshot() throws Exception {
+        withDirectory(dir -> {
+            try (ImmStore<Integer, String> store = open(dir, 1000)) {
+                for(int i = 0; i < 1000; i++) {
+                    store.put(i, String.valueOf(i));
+                }
+            }
+            assertTrue(files(dir, "snapshot-").size() >= 1);
+            try (ImmStore<Integer, String> store = open(dir, 1000)) {
+                assertEquals(store.get().size(), 1000);
+                assertEquals(store.get().get(999), "999");
+            }
+        });
+    }
+
+    // A record torn by a crash is discarded, along with anything after it.
+    @Test
+    public void testTornLog() throws Exception {
+        withDirectory(dir -> {
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                store.put(1, "one");
+                store.put(2, "two");
+            }
+            final Path log = dir.resolve(files(dir, "log-").get(0));
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                assertEquals(store.get(), ImmCollections.asSortedMap(1, "one"));
+                store.put(3, "three");
+            }
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                assertEquals(store.get(), ImmCollections.asSortedMap(1, "one").put(3, "three"));
+            }
+        });
+    }
+
+    // A record whose length is past the end of the log is torn, and is not allocated.
+    @Test
+    public void testTornLength() throws Exception {
+        withDirectory(dir -> {
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                store.put(1, "one");
+            }
+            final Path log = dir.resolve(files(dir, "log-").get(0));
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                final ByteBuffer header = ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(0);
+                header.flip();
+                channel.write(header);
+            }
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                assertEquals(store.get(), ImmCollections.asSortedMap(1, "one"));
+                store.put(2, "two");
+            }
+            try (ImmStore<Integer, String> store = open(dir, Long.MAX_VALUE)) {
+                assertEquals(store.get(), ImmCollections.asSortedMap(1, "one").put(2, "two"));
+            }
+        });
+    }
+
+    // Concurrent writers share fsyncs, and every update survives.
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        withDirectory(dir -> {
+            try (ImmStore<Integer, String> store = open(dir, 10000)) {
+                final List<CompletableFuture<Void>> writers = new ArrayList<>();
+                for(int t = 0; t < 8; t++) {
+                    final int base = t * 1000;
+                    writers.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            for(int i = 0; i < 200; i++) {
+                                store.put(base + i, String.valueOf(base + i));
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                }
+                for(CompletableFuture<Void> w: writers) {
+                    w.get();
+                }
+                assertEquals(store.get().size(), 1600);
+            }
+            try (ImmStore<Integer, String> store = open(dir, 10000)) {
+                assertEquals(store.get().size(), 1600);
+                assertEquals(store.get().get(7199), "7199");
+            }
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class ImmSyncTest {
+    // Kept in constants, so that the digests cached by one exchange are used by the next.
+    private static final ImmCodec<Integer> INTS = ImmCodec.ofInteger();
+    private static final ImmCodec<String> STRINGS = ImmCodec.ofString();
+
+    private interface Server {
+        void serve(InputStream in, OutputStream out) throws IOException;
+    }
+
+    private interface Client<T> {
+        T pull(InputStream in, OutputStream out) throws IOException;
+    }
+
+    // Counts the bytes flowing from the replica to the source.
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+            out.write(b, off, len);
+        }
+    }
+
+    // Runs the source in another thread, connected to the replica by a pair of pipes.
+    private static <T> T exchange(Server server, Client<T> client, long[] bytes) throws Exception {
+        final PipedInputStream serverIn = new PipedInputStream(1 << 16);
+        final PipedInputStream clientIn = new PipedInputStream(1 << 16);
+        final CountingOutputStream clientOut = new CountingOutputStream(new PipedOutputStream(serverIn));
+        final CountingOutputStream serverOut = new CountingOutputStream(new PipedOutputStream(clientIn));
+        final CompletableFuture<Void> f = CompletableFuture.runAsync(() -> {
+            try {
+                server.serve(serverIn, serverOut);
+                serverOut.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        final T result = client.pull(clientIn, clientOut);
+        clientOut.close();
+        f.get();
+        bytes[0] = clientOut.count + serverOut.count;
+        return result;
+    }
+
+    private static <K, V> ImmSortedMap<K, V> sync(ImmSortedMap<K, V> source, ImmSortedMap<K, V> replica, ImmCodec<K> keyCodec, ImmCodec<V> valueCodec) throws Exception {
+        return exchange(
+                (in, out) -> ImmSync.serve(source, keyCodec, valueCodec, in, out),
+                (in, out) -> ImmSync.pull(replica, keyCodec, valueCodec, in, out),
+                new long[1]);
+    }
+
+    private static long bytesExchanged(ImmSortedMap<Integer, String> source, ImmSortedMap<Integer, String> replica) throws Exception {
+        final long[] bytes = new long[1];
+        exchange(
+                (in, out) -> ImmSync.serve(source, INTS, STRINGS, in, out),
+                (in, out) -> ImmSync.pull(replica, INTS, STRINGS, in, out),
+                bytes);
+        return bytes[0];
+    }
+
+    @Test
+    public void testDigest() {
+        assertEquals(ImmSync.digest(map(0, 100), INTS, STRINGS), ImmSync.digest(map(0, 100), INTS, STRINGS));
+        assertEquals(ImmSync.digest(map(0, 100), INTS, STRINGS), ImmSync.digest(map(50, 100).addAll(map(0, 50)), INTS, STRINGS));
+        assertEquals(ImmSync.digest(ImmCollections.asSortedSet(1, 2, 3), INTS), ImmSync.digest(ImmCollections.asSortedSet(3, 2, 1), INTS));
+        assertNotEquals(ImmSync.digest(map(0, 100), INTS, STRINGS), ImmSync.digest(map(0, 100).put(5, "x"), INTS, STRINGS));
+        assertNotEquals(ImmSync.digest(ImmCollections.asSortedSet(0, 1), INTS), ImmSync.digest(ImmCollections.asSortedSet(1), INTS));
+        assertEquals(ImmSync.digest(ImmCollections.emptySortedMap(), INTS, STRINGS), 0);
+        // Values of the same hash code have different digests.
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(ImmSync.digest(ImmCollections.asSortedMap(1, "Aa"), INTS, STRINGS), ImmSync.digest(ImmCollections.asSortedMap(1, "BB"), INTS, STRINGS));
+        // The same codecs give the same digests, new codecs too.
+        assertEquals(ImmSync.digest(map(0, 100), INTS, STRINGS), ImmSync.digest(map(0, 100), ImmCodec.ofInteger(), ImmCodec.ofString()));
+    }
+
+    @Test
+    public void testCollidingValues() throws Exception {
+        final ImmSortedMap<Integer, String> source = ImmCollections.asSortedMap(1, "Aa");
+        assertEquals(source, sync(source, ImmCollections.asSortedMap(1, "BB"), INTS, STRINGS));
+        final ImmSortedMap<Integer, String> big = map(0, 1000).put(500, "Aa");
+        assertEquals(big, sync(big, map(0, 1000).put(500, "BB"), INTS, STRINGS));
+    }
+
+    // The codecs are singletons, so the digests bound with codecs passed inline are found again.
+    @Test
+    public void testInlineCodecs() {
+        assertSame(ImmCodec.ofInteger(), ImmCodec.ofInteger());
+        assertSame(ImmCodec.ofLong(), ImmCodec.ofLong());
+        assertSame(ImmCodec.ofString(), ImmCodec.ofString());
+        final ImmSortedMap<Integer, String> map = ImmSync.withDigests(map(0, 100), ImmCodec.ofInteger(), ImmCodec.ofString());
+        assertSame(map, ImmSync.withDigests(map, ImmCodec.ofInteger(), ImmCodec.ofString()));
+    }
+
+    @Test
+    public void testSyncMap() throws Exception {
+        final ImmSortedMap<Integer, String> source = map(0, 1000).put(500, "changed").removeKey(7).put(2000, "new");
+        assertEquals(sync(source, map(0, 1000), INTS, STRINGS), source);
+        assertEquals(sync(source, ImmCollections.emptySortedMap(), INTS, STRINGS), source);
+        assertEquals(sync(ImmCollections.emptySortedMap(), source, INTS, STRINGS), ImmCollections.emptySortedMap());
+        assertEquals(sync(map(0, 5), map(3, 900), INTS, STRINGS), map(0, 5));
+    }
+
+    @Test
+    public void testSyncSameMapIsUnchanged() throws Exception {
+        final ImmSortedMap<Integer, String> replica = map(0, 1000);
+        assertTrue(sync(map(0, 1000), replica, INTS, STRINGS) == replica);
+    }
+
+    @Test
+    public void testSyncSet() throws Exception {
+        final ImmSortedSet<String> source = ImmCollections.asSortedSet("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l");
+        final ImmSortedSet<String> replica = source.remove("c").add("z").add("bb");
+        final ImmSortedSet<String> result = exchange(
+                (in, out) -> ImmSync.serve(source, STRINGS, in, out),
+                (in, out) -> ImmSync.pull(replica, STRINGS, in, out),
+                new long[1]);
+        assertEquals(result, source);
+    }
+
+    @Test
+    public void testBadStream() {
+        assertThrows(IOException.class, () -> ImmSync.pull(map(0, 5), INTS, STRINGS,
+                new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}), new ByteArrayOutputStream()));
+        // A count of items that is negative, or more than the source ever sends, is rejected before anything is read.
+        final byte[][] counts = {
+            {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F},
+            {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07},
+            {(byte)(ImmSync.LEAF_SIZE + 1)}};
+        for(byte[] count: counts) {
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            response.write(new byte[] {0x32, 0x33, 0x53, 0x59, 2, 4}, 0, 6);
+            response.write(count, 0, count.length);
+            assertThrows(IOException.class, () -> ImmSync.pull(map(0, 5), INTS, STRINGS,
+                    new ByteArrayInputStream(response.toByteArray()), new ByteArrayOutputStream()));
+        }
+    }
+
+    // Bytes exchanged for a single difference grow with log n, not with n.
+    @Test
+    public void testBytesExchanged() throws Exception {
+        final ImmSortedMap<Integer, String> small = map(0, 1000);
+        final ImmSortedMap<Integer, String> large = map(0, 100000);
+        final long smallBytes = bytesExchanged(small.put(123, "x"), small);
+        final long largeBytes = bytesExchanged(large.put(12345, "x"), large);
+        assertTrue(largeBytes < 2 * smallBytes);
+        assertTrue(largeBytes < 1000);
+        assertTrue(bytesExchanged(large, large) < 32);
+    }
+}
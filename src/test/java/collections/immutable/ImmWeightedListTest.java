@@ -0,0 +1,129 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ImmWeightedListTest {
+    // Linear prefix sum search, to check against.
+    private static int indexOfCumulative(List<Integer> weights, double x) {
+        double sum = 0;
+        for(int i = 0; i < weights.size(); i++) {
+            sum += weights.get(i);
+            if (x < sum) {
+                return i;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Test
+    public void testIndexOfCumulative() {
+        final Random random = new Random(11);
+        final List<Integer> expected = new ArrayList<>();
+        ImmWeightedList<Integer> list = ImmWeightedList.empty(i -> i);
+        for(int i = 0; i < 2000; i++) {
+            final int w = random.nextInt(4);
+            final int index = random.nextInt(expected.size() + 1);
+            switch(expected.isEmpty() ? 0 : random.nextInt(3)) {
+            case 0:
+                expected.add(index, w);
+                list = list.insertAt(index, w);
+                break;
+            case 1:
+                expected.set(index % expected.size(), w);
+                list = list.setAt(index % expected.size(), w);
+                break;
+            default:
+                final int at = index % expected.size();
+                expected.remove(at);
+                list = list.removeAt(at);
+                break;
+            }
+            final double total = expected.stream().mapToInt(n -> n).sum();
+            assertEquals(list.totalWeight(), total, 0);
+            if (total > 0) {
+                for(int j = 0; j < 5; j++) {
+                    final double x = random.nextDouble() * total;
+                    assertEquals(list.indexOfCumulative(x), indexOfCumulative(expected, x));
+                }
+            }
+        }
+        assertEquals(list.asList().asCollection(), expected);
+        final ImmWeightedList<Integer> l = list;
+        assertThrows(IllegalArgumentException.class, () -> l.indexOfCumulative(l.totalWeight()));
+        assertThrows(IllegalArgumentException.class, () -> l.indexOfCumulative(-1));
+        assertThrows(IllegalArgumentException.class, () -> l.add(-1));
+    }
+
+    @Test
+    public void testWeights() {
+        final ImmWeightedList<Integer> list = ImmWeightedList.of(i -> i, Arrays.asList(1, 0, 2, 5));
+        assertEquals(list.indexOfCumulative(0.5), 0);
+        assertEquals(list.indexOfCumulative(1.0), 2);
+        assertEquals(list.indexOfCumulative(7.5), 3);
+        assertEquals(list.weight(1, 3), 2.0, 0);
+        assertEquals(list.size(), 4);
+        assertEquals(list.getAt(3), Integer.valueOf(5));
+        assertEquals(list.add(3).totalWeight(), 11.0, 0);
+        assertEquals(list.totalWeight(), 8.0, 0);
+        assertThrows(IllegalStateException.class, () -> ImmWeightedList.of(i -> i, Arrays.asList(0, 0)).sample(new Random()));
+    }
+
+    @Test
+    public void testSample() {
+        final ImmWeightedList<Integer> list = ImmWeightedList.of(i -> i, Arrays.asList(1, 0, 3, 6));
+        final Random random = new Random(5);
+        final int[] counts = new int[7];
+        for(int i = 0; i < 100000; i++) {
+            counts[list.sample(random)]++;
+        }
+        assertEquals(counts[0], 0);
+        assertTrue(Math.abs(counts[1] - 10000) < 1000);
+        assertTrue(Math.abs(counts[3] - 30000) < 1500);
+        assertTrue(Math.abs(counts[6] - 60000) < 1500);
+    }
+
+    // The sums of the weights are kept through edits and compactions, and while other monoids summarize the elements,
+    // so sampling weighs only the leaves it reaches.
+    @Test
+    public void testSumsAreKept() {
+        final AtomicInteger weighed = new AtomicInteger();
+        final Random random = new Random(5);
+        ImmWeightedList<Integer> list = ImmWeightedList.of(i -> {
+            weighed.incrementAndGet();
+            return i;
+        }, range(1, 10001));
+        ImmCompaction.setThreshold(1);
+        ImmMetrics.enable();
+        try {
+            ImmMetrics.reset();
+            for(int i = 0; i < 5000; i++) {
+                list = list.insertAt(random.nextInt(list.size() + 1), 1 + random.nextInt(10));
+            }
+            assertTrue(ImmMetrics.get(ImmMetrics.Counter.COMPACTIONS) > 0);
+        } finally {
+            ImmMetrics.disable();
+            ImmCompaction.setThreshold(0);
+        }
+        list = list.compact();
+        final ImmList<Integer> elements = list.asList();
+        assertEquals(elements.stream().mapToLong(i -> i).sum(), (long)elements.augment(ImmMonoid.sum(i -> i)).aggregate(0, elements.size(), ImmMonoid.sum(i -> i)));
+        assertEquals(elements.size(), (long)elements.aggregate(0, elements.size(), ImmMonoid.count()));
+        weighed.set(0);
+        for(int i = 0; i < 100; i++) {
+            list.sample(random);
+        }
+        assertTrue(weighed.get() <= 100 * 3);
+        assertEquals(list.totalWeight(), elements.stream().mapToInt(i -> i).sum(), 0);
+    }
+}
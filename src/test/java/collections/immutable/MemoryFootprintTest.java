@@ -0,0 +1,120 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.list;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MemoryFootprintTest {
+    private static Map<Integer, Integer> squares(int n) {
+        final Map<Integer, Integer> m = new HashMap<>();
+        for(int i = 0; i < n; i++) {
+            m.put(i, i * i);
+        }
+        return m;
+    }
+
+    private static void assertConsistent(MemoryFootprint f) {
+        assertEquals(f.getLeafBytes() + f.getBranchBytes() + f.getEntryBytes() + f.getWrapperBytes(), f.getTotalBytes());
+        assertTrue(f.getNodes() >= f.getLeaves() + f.getBranches());
+        assertTrue(f.getNodes() <= f.getLeaves() + f.getBranches() + f.getWrappers());
+    }
+
+    @Test
+    public void testList() {
+        final MemoryFootprint f = MemoryFootprint.of(list(1000));
+        assertConsistent(f);
+        assertEquals(1000, f.getLeaves());
+        assertTrue(f.getBranches() >= 999 / 2 && f.getBranches() <= 999);
+        assertEquals(0, f.getEntries());
+        assertEquals(1, f.getWrappers());
+        assertEquals(f.getLeaves() + f.getBranches(), f.getNodes());
+        assertTrue(f.getLeafBytes() > 0 && f.getBranchBytes() > f.getLeafBytes());
+        assertTrue(f.toString().contains("leaves=1000"));
+    }
+
+    @Test
+    public void testEmpty() {
+        final MemoryFootprint f = MemoryFootprint.of(ImmCollections.emptyList(), ImmCollections.emptyMap());
+        assertConsistent(f);
+        assertEquals(0, f.getNodes());
+        assertEquals(0, f.getEntries());
+        assertTrue(f.getWrappers() >= 2);
+        assertEquals(0, MemoryFootprint.of().getTotalBytes());
+    }
+
+    @Test
+    public void testSharing() {
+        final ImmList<Integer> v1 = list(1000);
+        final ImmList<Integer> v2 = v1.setAt(500, -1);
+        final int depth = ((TreeList23<Integer>)v1).root.getDepth();
+        final MemoryFootprint f1 = MemoryFootprint.of(v1);
+        final MemoryFootprint f2 = MemoryFootprint.of(v2);
+        final MemoryFootprint both = MemoryFootprint.of(v1, v2);
+        assertConsistent(both);
+        // A set copies one path: a leaf and the branches above it.
+        assertEquals(f1.getNodes() + depth, both.getNodes());
+        assertEquals(f1.getLeaves() + 1, both.getLeaves());
+        assertTrue(both.getTotalBytes() < f1.getTotalBytes() + f2.getTotalBytes() / 10);
+        // The same root twice is counted once.
+        assertEquals(f1.getTotalBytes(), MemoryFootprint.of(v1, v1).getTotalBytes());
+        assertEquals(both.getTotalBytes(), MemoryFootprint.ofAll(Arrays.asList(v2, v1, v2)).getTotalBytes());
+    }
+
+    @Test
+    public void testMaps() {
+        final ImmMap<Integer, Integer> m = ImmCollections.asMap(squares(100));
+        final MemoryFootprint f = MemoryFootprint.of(m);
+        assertConsistent(f);
+        assertEquals(100, f.getLeaves());
+        assertEquals(100, f.getEntries());
+        assertTrue(f.getEntryBytes() > 0);
+
+        final ImmMap<Integer, Integer> m2 = m.put(5, 0);
+        final MemoryFootprint both = MemoryFootprint.of(m, m2);
+        assertEquals(101, both.getEntries());
+        assertEquals(101, both.getLeaves());
+
+        final ImmSortedMap<Integer, Integer> s = ImmCollections.asSortedMap(Integer::compare, squares(100));
+        final MemoryFootprint fs = MemoryFootprint.of(s);
+        assertEquals(100, fs.getEntries());
+        // The map and its list of entries.
+        assertEquals(2, fs.getWrappers());
+    }
+
+    @Test
+    public void testSets() {
+        final ImmSet<Integer> h = ImmCollections.asSet(list(100));
+        final ImmSortedSet<Integer> t = ImmCollections.asSortedSet(list(100));
+        final MemoryFootprint f = MemoryFootprint.of(h, t);
+        assertConsistent(f);
+        assertEquals(200, f.getLeaves());
+        assertEquals(0, f.getEntries());
+        assertEquals(4, f.getWrappers());
+    }
+
+    @Test
+    public void testViews() {
+        final ImmList<Integer> l = list(100);
+        final MemoryFootprint f = MemoryFootprint.of(l, l.reversed(), l.map(i -> i + 1));
+        assertConsistent(f);
+        // The views share the nodes of the list.
+        assertEquals(100, f.getLeaves());
+        assertEquals(MemoryFootprint.of(l).getBranches(), f.getBranches());
+        assertEquals(5, f.getWrappers());
+        assertEquals(f.getLeaves() + f.getBranches() + 2, f.getNodes());
+    }
+
+    @Test
+    public void testIllegal() {
+        assertThrows(IllegalArgumentException.class, () -> MemoryFootprint.of(new ArrayList<>()));
+        assertThrows(IllegalArgumentException.class, () -> MemoryFootprint.of(list(3).asCollection()));
+    }
+}
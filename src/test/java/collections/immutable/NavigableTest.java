@@ -0,0 +1,126 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class NavigableTest {
+    private static void assertSame(NavigableSet<Integer> actual, NavigableSet<Integer> expected, Random random) {
+        assertEquals(actual, expected);
+        assertEquals(actual.size(), expected.size());
+        if (!expected.isEmpty()) {
+            assertEquals(actual.first(), expected.first());
+            assertEquals(actual.last(), expected.last());
+        }
+        for(int i = 0; i < 50; i++) {
+            final int e = random.nextInt(220) - 10;
+            assertEquals(actual.floor(e), expected.floor(e));
+            assertEquals(actual.ceiling(e), expected.ceiling(e));
+            assertEquals(actual.lower(e), expected.lower(e));
+            assertEquals(actual.higher(e), expected.higher(e));
+        }
+    }
+
+    private static void assertSame(NavigableMap<Integer, String> actual, NavigableMap<Integer, String> expected, Random random) {
+        assertEquals(actual, expected);
+        assertEquals(actual.firstEntry(), expected.firstEntry());
+        assertEquals(actual.lastEntry(), expected.lastEntry());
+        for(int i = 0; i < 50; i++) {
+            final int k = random.nextInt(220) - 10;
+            assertEquals(actual.floorEntry(k), expected.floorEntry(k));
+            assertEquals(actual.ceilingEntry(k), expected.ceilingEntry(k));
+            assertEquals(actual.lowerEntry(k), expected.lowerEntry(k));
+            assertEquals(actual.higherEntry(k), expected.higherEntry(k));
+            assertEquals(actual.floorKey(k), expected.floorKey(k));
+            assertEquals(actual.higherKey(k), expected.higherKey(k));
+        }
+    }
+
+    @Test
+    public void testSet() {
+        final Random random = new Random(17);
+        for(int size: new int[] {0, 1, 2, 3, 10, 100}) {
+            final TreeSet<Integer> expected = new TreeSet<>();
+            ImmSortedSet<Integer> set = ImmCollections.emptySortedSet();
+            while(expected.size() < size) {
+                final int e = random.nextInt(200);
+                expected.add(e);
+                set = set.add(e);
+            }
+            assertSame(set.asCollection(), expected, random);
+            assertSame(set.reversed().asCollection(), expected.descendingSet(), random);
+            assertSame(set.asCollection().descendingSet(), expected.descendingSet(), random);
+            for(int i = 0; i < 20; i++) {
+                final int low = random.nextInt(220) - 10;
+                final int high = low + random.nextInt(100);
+                final boolean lowInclusive = random.nextBoolean();
+                final boolean highInclusive = random.nextBoolean();
+                assertSame(set.asCollection().subSet(low, lowInclusive, high, highInclusive), expected.subSet(low, lowInclusive, high, highInclusive), random);
+                assertSame(set.asCollection().headSet(high, highInclusive), expected.headSet(high, highInclusive), random);
+                assertSame(set.asCollection().tailSet(low, lowInclusive), expected.tailSet(low, lowInclusive), random);
+            }
+        }
+    }
+
+    @Test
+    public void testMap() {
+        final Random random = new Random(19);
+        for(int size: new int[] {0, 1, 2, 3, 10, 100}) {
+            final TreeMap<Integer, String> expected = new TreeMap<>();
+            ImmSortedMap<Integer, String> map = ImmCollections.emptySortedMap();
+            while(expected.size() < size) {
+                final int k = random.nextInt(200);
+                expected.put(k, "v" + k);
+                map = map.put(k, "v" + k);
+            }
+            assertSame(map.asMap(), expected, random);
+            assertSame(map.reversed().asMap(), expected.descendingMap(), random);
+            assertEquals(map.asMap().navigableKeySet(), expected.navigableKeySet());
+            assertEquals(map.asMap().descendingKeySet(), expected.descendingKeySet());
+            for(int i = 0; i < 20; i++) {
+                final int low = random.nextInt(220) - 10;
+                final int high = low + random.nextInt(100);
+                final boolean lowInclusive = random.nextBoolean();
+                final boolean highInclusive = random.nextBoolean();
+                assertSame(map.asMap().subMap(low, lowInclusive, high, highInclusive), expected.subMap(low, lowInclusive, high, highInclusive), random);
+                assertSame(map.asMap().headMap(high, highInclusive), expected.headMap(high, highInclusive), random);
+                assertSame(map.asMap().tailMap(low, lowInclusive), expected.tailMap(low, lowInclusive), random);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        final ImmSortedSet<Integer> set = ImmCollections.emptySortedSet();
+        assertThrows(NoSuchElementException.class, () -> set.first());
+        assertThrows(NoSuchElementException.class, () -> set.last());
+        assertNull(set.floor(1));
+        assertNull(set.higher(1));
+        final ImmSortedMap<Integer, String> map = ImmCollections.emptySortedMap();
+        assertNull(map.firstEntry());
+        assertNull(map.ceilingEntry(1));
+        assertThrows(NoSuchElementException.class, () -> map.asMap().firstKey());
+        assertThrows(IllegalArgumentException.class, () -> set.asCollection().subSet(2, 1));
+        assertThrows(UnsupportedOperationException.class, () -> map.asMap().pollFirstEntry());
+    }
+
+    @Test
+    public void testMapped() {
+        final ImmSortedMap<Integer, String> map = ImmCollections.<Integer, String>emptySortedMap().put(1, "a").put(3, "b").put(5, "c");
+        final Entry<Integer, String> e = map.floorEntry(4);
+        assertEquals(e.getKey(), Integer.valueOf(3));
+        assertEquals(map.keys().ceiling(4), Integer.valueOf(5));
+        assertEquals(map.keys().lower(1), null);
+        assertEquals(map.reversed().higherEntry(3).getKey(), Integer.valueOf(1));
+    }
+}
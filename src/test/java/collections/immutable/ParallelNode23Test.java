@@ -0,0 +1,69 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class ParallelNode23Test {
+    @Test
+    public void testFilter() {
+        for(int n: new int[] {0, 1, 2, 100, 50000}) {
+            final ImmList<Integer> list = IntStream.range(0, n).boxed().collect(ImmCollectors.toImmList());
+            for(int m: new int[] {1, 2, 7, 1000}) {
+                final List<Integer> expected = list.stream().filter(i -> i % m != 0).collect(Collectors.toList());
+                assertEquals(list.parallelFilter(i -> i % m != 0).asCollection(), expected);
+                assertEquals(list.reversed().parallelFilter(i -> i % m != 0).reversed().asCollection(), expected);
+            }
+            assertEquals(list.parallelFilter(i -> false).size(), 0);
+        }
+    }
+
+    // Subtrees that pass completely are reused.
+    @Test
+    public void testReuse() {
+        final TreeList23<Integer> list = (TreeList23<Integer>)IntStream.range(0, 50000).boxed().collect(ImmCollectors.toImmList());
+        assertSame(list.parallelFilter(i -> true), list);
+        final TreeList23<Integer> filtered = list.parallelFilter(i -> i != 49999);
+        final Set<Node23<Integer>> original = Collections.newSetFromMap(new IdentityHashMap<>());
+        collect(list.root, original);
+        assertTrue(largestShared(filtered.root, original) >= 10000);
+    }
+
+    private static void collect(Node23<Integer> node, Set<Node23<Integer>> into) {
+        into.add(node);
+        for(int i = 0; i < node.numBranches(); i++) {
+            collect(node.getBranch(i), into);
+        }
+    }
+
+    private static int largestShared(Node23<Integer> node, Set<Node23<Integer>> original) {
+        if (original.contains(node)) {
+            return node.size();
+        }
+        int largest = 0;
+        for(int i = 0; i < node.numBranches(); i++) {
+            largest = Math.max(largest, largestShared(node.getBranch(i), original));
+        }
+        return largest;
+    }
+
+    @Test
+    public void testMapAndReduce() {
+        for(int n: new int[] {0, 1, 3, 50000}) {
+            final ImmList<Integer> list = IntStream.range(0, n).boxed().collect(ImmCollectors.toImmList());
+            assertEquals(list.parallelMap(i -> i * 2L).asCollection(), list.stream().map(i -> i * 2L).collect(Collectors.toList()));
+            assertEquals(list.parallelReduce(0, Integer::sum), list.stream().reduce(0, Integer::sum));
+            assertEquals(list.parallelMap(String::valueOf).parallelReduce("", String::concat),
+                    list.stream().map(String::valueOf).collect(Collectors.joining()));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class RangeViewTest {
+    @Test
+    public void testRangeIterator() {
+        final ImmList<Integer> list = IntStream.range(0, 1000).boxed().collect(ImmCollectors.toImmList());
+        final Random random = new Random(31);
+        for(ImmList<Integer> l: Arrays.<ImmList<Integer>>asList(list, list.reversed(), list.map(i -> -i), list.headAt(1), list.headAt(2))) {
+            for(int i = 0; i < 100; i++) {
+                final int low = random.nextInt(l.size() + 1);
+                final int high = low + random.nextInt(l.size() - low + 1);
+                if (low == high) {
+                    continue;
+                }
+                final List<Integer> actual = new ArrayList<>();
+                final Iterator<Integer> it = new RangeIterator<>(((TreeList23<Integer>)l).root, low, high);
+                it.forEachRemaining(actual::add);
+                assertEquals(actual, l.asCollection().subList(low, high));
+                assertFalse(it.hasNext());
+                try {
+                    it.next();
+                    throw new AssertionError();
+                } catch(NoSuchElementException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNestedSetViews() {
+        final Random random = new Random(37);
+        final TreeSet<Integer> expected = new TreeSet<>();
+        ImmSortedSet<Integer> set = ImmCollections.emptySortedSet();
+        while(expected.size() < 500) {
+            final int e = random.nextInt(2000);
+            expected.add(e);
+            set = set.add(e);
+        }
+        for(int i = 0; i < 100; i++) {
+            NavigableSet<Integer> actual = set.asCollection();
+            NavigableSet<Integer> view = expected;
+            for(int j = 0; j < 4; j++) {
+                // java.util views reject bounds outside of themselves, where ours just narrow to nothing.
+                view = new TreeSet<>(view);
+                final int low = view.isEmpty() ? 0 : random.nextInt(2000);
+                final int high = low + random.nextInt(800);
+                switch(random.nextInt(4)) {
+                case 0:
+                    final boolean descending = actual.comparator().compare(low, high) > 0;
+                    actual = descending ? actual.subSet(high, true, low, false) : actual.subSet(low, true, high, false);
+                    view = descending ? view.subSet(high, true, low, false) : view.subSet(low, true, high, false);
+                    break;
+                case 1:
+                    actual = actual.headSet(high, true);
+                    view = view.headSet(high, true);
+                    break;
+                case 2:
+                    actual = actual.tailSet(low, false);
+                    view = view.tailSet(low, false);
+                    break;
+                default:
+                    actual = actual.descendingSet();
+                    view = view.descendingSet();
+                    break;
+                }
+                assertEquals(actual.size(), view.size());
+                assertEquals(new ArrayList<>(actual), new ArrayList<>(view));
+                assertEquals(new ArrayList<>(actual.descendingSet()), new ArrayList<>(view.descendingSet()));
+                final int probe = random.nextInt(2000);
+                assertEquals(actual.contains(probe), view.contains(probe));
+                assertEquals(actual.floor(probe), view.floor(probe));
+                assertEquals(actual.higher(probe), view.higher(probe));
+                if (!view.isEmpty()) {
+                    assertEquals(actual.first(), view.first());
+                    assertEquals(actual.last(), view.last());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNestedMapViews() {
+        final Random random = new Random(41);
+        final TreeMap<Integer, String> expected = new TreeMap<>();
+        ImmSortedMap<Integer, String> map = ImmCollections.emptySortedMap();
+        while(expected.size() < 500) {
+            final int k = random.nextInt(2000);
+            expected.put(k, "v" + k);
+            map = map.put(k, "v" + k);
+        }
+        for(int i = 0; i < 100; i++) {
+            final int low = random.nextInt(2000);
+            final int high = low + random.nextInt(800);
+            final NavigableMap<Integer, String> actual = map.asMap().subMap(low, false, high, true).descendingMap().headMap(low + 100, true);
+            final NavigableMap<Integer, String> view = new TreeMap<>(expected.subMap(low, false, high, true).descendingMap()).headMap(low + 100, true);
+            assertEquals(actual, view);
+            assertEquals(new ArrayList<>(actual.entrySet()), new ArrayList<>(view.entrySet()));
+            assertEquals(new ArrayList<>(actual.keySet()), new ArrayList<>(view.keySet()));
+            final int probe = random.nextInt(2000);
+            assertEquals(actual.get(probe), view.get(probe));
+            assertEquals(actual.containsKey(probe), view.containsKey(probe));
+            assertEquals(actual.ceilingEntry(probe), view.ceilingEntry(probe));
+            assertEquals(actual.lowerKey(probe), view.lowerKey(probe));
+            assertEquals(actual.firstEntry(), view.firstEntry());
+            assertEquals(actual.lastEntry(), view.lastEntry());
+        }
+    }
+
+    // Views share the tree of the set they were taken from.
+    @Test
+    public void testShared() {
+        final ImmSortedSet<Integer> set = IntStream.range(0, 1000).boxed().collect(ImmCollectors.toImmSortedSet());
+        final SortedSet23Set<Integer> view = (SortedSet23Set<Integer>)set.asCollection().subSet(100, true, 900, false).tailSet(500, true);
+        assertSame(view.set, set);
+        assertEquals(view.low, 500);
+        assertEquals(view.high, 900);
+        assertFalse(view.subSet(0, 2000).isEmpty());
+        assertEquals(view.subSet(0, 2000).size(), 400);
+        assertTrue(view.headSet(300).isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package collections.immutable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class RankTest {
+    @Test
+    public void testSet() {
+        final Random random = new Random(23);
+        for(int size: new int[] {0, 1, 2, 3, 10, 1000}) {
+            final TreeSet<Integer> expected = new TreeSet<>();
+            ImmSortedSet<Integer> set = ImmCollections.emptySortedSet();
+            while(expected.size() < size) {
+                final int e = random.nextInt(size * 4);
+                expected.add(e);
+                set = set.add(e);
+            }
+            for(int i = 0; i < 200; i++) {
+                final int low = random.nextInt(size * 4 + 2) - 1;
+                final int high = random.nextInt(size * 4 + 2) - 1;
+                assertEquals(set.rank(low), expected.headSet(low).size());
+                assertEquals(set.countRange(low, high), low > high ? 0 : expected.subSet(low, high).size());
+                assertEquals(set.countRange(low, high), low > high ? 0 : set.subSet(low, high).size());
+            }
+            int rank = 0;
+            for(Integer e: expected) {
+                assertEquals(set.select(rank), e);
+                assertEquals(set.rank(e), rank);
+                rank++;
+            }
+            final ImmSortedSet<Integer> s = set;
+            assertThrows(IndexOutOfBoundsException.class, () -> s.select(size));
+            assertThrows(IndexOutOfBoundsException.class, () -> s.select(-1));
+        }
+    }
+
+    @Test
+    public void testReversed() {
+        final ImmSortedSet<Integer> set = ImmCollections.asSortedSet(1, 3, 5, 7).reversed();
+        assertEquals(set.rank(6), 1);
+        assertEquals(set.rank(7), 0);
+        assertEquals(set.countRange(6, 2), 2);
+        assertEquals(set.countRange(2, 6), 0);
+        assertEquals(set.select(0), Integer.valueOf(7));
+    }
+
+    @Test
+    public void testMap() {
+        final Random random = new Random(29);
+        ImmSortedMap<Integer, String> map = ImmCollections.emptySortedMap();
+        final TreeSet<Integer> expected = new TreeSet<>();
+        for(int i = 0; i < 500; i++) {
+            final int k = random.nextInt(2000);
+            expected.add(k);
+            map = map.put(k, "v" + k);
+        }
+        for(int i = 0; i < 200; i++) {
+            final int low = random.nextInt(2002) - 1;
+            final int high = random.nextInt(2002) - 1;
+            assertEquals(map.rank(low), expected.headSet(low).size());
+            assertEquals(map.countRange(low, high), low > high ? 0 : expected.subSet(low, high).size());
+        }
+        int rank = 0;
+        for(Integer k: expected) {
+            assertEquals(map.select(rank++).getKey(), k);
+        }
+        assertEquals(map.keys().countRange(0, 2000), map.size());
+        assertEquals(map.reversed().select(0).getKey(), expected.last());
+    }
+}
@@ -0,0 +1,190 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class SmallCollectionsTest {
+    private static Node23<?> root(ImmList<?> l) {
+        return ((TreeList23<?>)l).root;
+    }
+
+    // Whether a collection of n elements has the representation of its size.
+    private static void assertShape(int n, Node23<?> root) {
+        if (n == 0) {
+            assertNull(root);
+        } else if (n == 1) {
+            assertTrue(root instanceof Leaf);
+        } else if (n <= ArrayNode23.MAX) {
+            assertTrue(root instanceof ArrayNode23);
+        } else {
+            assertTrue(root instanceof Branch);
+        }
+        if (root != null) {
+            assertTrue(root.isValid(root.getDepth()));
+        }
+    }
+
+    @Test
+    public void testEmptySingletons() {
+        assertSame(ImmCollections.emptyList(), ImmCollections.emptyList());
+        assertSame(ImmCollections.emptySet(), ImmCollections.emptySet());
+        assertSame(ImmCollections.emptySortedSet(), ImmCollections.emptySortedSet());
+        assertSame(ImmCollections.emptyMap(), ImmCollections.emptyMap());
+        assertSame(ImmCollections.emptySortedMap(), ImmCollections.emptySortedMap());
+        assertSame(ImmCollections.emptyList(), ImmCollections.asList(1).removeAt(0));
+        assertSame(ImmCollections.emptyList(), ImmCollections.asList(1, 2, 3).getRange(1, 1));
+    }
+
+    @Test
+    public void testListGrowsAndShrinks() {
+        ImmList<Integer> l = ImmCollections.emptyList();
+        for(int n = 1; n <= 20; n++) {
+            l = l.insertAt(n / 2, n);
+            assertShape(n, root(l));
+        }
+        final List<Integer> expected = new ArrayList<>(l.asCollection());
+        while(l.size() > 0) {
+            final int index = l.size() / 3;
+            expected.remove(index);
+            l = l.removeAt(index);
+            assertShape(l.size(), root(l));
+            assertEquals(expected, l.asCollection());
+        }
+    }
+
+    @Test
+    public void testListOperations() {
+        for(int n = 0; n <= 10; n++) {
+            final List<Integer> expected = range(0, n);
+            final ImmList<Integer> l = ImmCollections.asList(expected);
+            assertShape(n, root(l));
+            assertEquals(expected, l.asCollection());
+            assertEquals(TreeList23.of(expected), l);
+            assertEquals(expected.hashCode(), l.hashCode());
+            for(int i = 0; i < n; i++) {
+                assertEquals(i, (int)l.getAt(i));
+                assertEquals(Integer.valueOf(-1), l.setAt(i, -1).getAt(i));
+                for(int j = i; j <= n; j++) {
+                    assertEquals(expected.subList(i, j), l.getRange(i, j).asCollection());
+                }
+            }
+            final List<Integer> reversed = new ArrayList<>(expected);
+            Collections.reverse(reversed);
+            assertEquals(reversed, l.reversed().asCollection());
+            assertEquals(range(0, 2 * n), l.appendList(ImmCollections.asList(range(n, 2 * n))).asCollection());
+            final ListIterator<Integer> it = l.iterator();
+            while(it.hasNext()) {
+                it.next();
+            }
+            for(int i = n - 1; i >= 0; i--) {
+                assertEquals(i, (int)it.previous());
+            }
+        }
+    }
+
+    @Test
+    public void testSets() {
+        ImmSortedSet<Integer> s = ImmCollections.emptySortedSet();
+        ImmSet<Integer> h = ImmCollections.emptySet();
+        final TreeSet<Integer> expected = new TreeSet<>();
+        for(int i = 0; i < 12; i++) {
+            final int e = (i * 5) % 12;
+            expected.add(e);
+            s = s.add(e);
+            h = h.add(e);
+            assertShape(expected.size(), root(s.asList()));
+            assertEquals(expected, s.asCollection());
+            assertEquals(expected, h.asCollection());
+            assertEquals(ImmCollections.asSortedSet(expected), s);
+            assertEquals(ImmCollections.asSet(expected), h);
+            for(int j = -1; j <= 12; j++) {
+                assertEquals(expected.contains(j), s.contains(j));
+                assertEquals(expected.contains(j), h.contains(j));
+                assertEquals(expected.ceiling(j), s.ceiling(j));
+                assertEquals(expected.floor(j), s.floor(j));
+                assertEquals(expected.higher(j), s.higher(j));
+                assertEquals(expected.lower(j), s.lower(j));
+                assertEquals(expected.headSet(j).size(), s.rank(j));
+            }
+        }
+        final ImmSortedSet<Integer> small = ImmCollections.asSortedSet(5, 1, 3, 4);
+        assertEquals(range(1, 2), small.subSet(0, 3).asList().asCollection());
+        assertEquals(ImmCollections.asList(5, 4, 3, 1), small.reversed().asList());
+        assertEquals(1, small.indexOf(3));
+        assertEquals(2, small.remove(3).indexOf(5));
+        assertFalse(small.remove(1).remove(3).contains(1));
+    }
+
+    @Test
+    public void testMaps() {
+        ImmSortedMap<Integer, String> s = ImmCollections.emptySortedMap();
+        ImmMap<Integer, String> h = ImmCollections.emptyMap();
+        final Map<Integer, String> expected = new TreeMap<>();
+        for(int i = 0; i < 12; i++) {
+            expected.put(i, String.valueOf(i));
+            s = s.put(i, String.valueOf(i));
+            h = h.put(i, String.valueOf(i));
+            assertShape(expected.size(), root(s.asList()));
+            assertEquals(expected, s.asMap());
+            assertEquals(expected, h.asMap());
+            assertEquals(ImmCollections.asMap(new HashMap<>(expected)), h);
+            for(int j = -1; j <= 12; j++) {
+                assertEquals(expected.get(j), s.get(j));
+                assertEquals(expected.get(j), h.get(j));
+            }
+        }
+        final ImmSortedMap<Integer, String> small = s.subSet(2, 6);
+        assertShape(4, root(small.asList()));
+        assertEquals("x", small.put(3, "x").get(3));
+        assertEquals(4, small.put(3, "x").size());
+        assertEquals(Integer.valueOf(5), small.lastEntry().getKey());
+        assertEquals(Integer.valueOf(4), small.floorEntry(4).getKey());
+        assertEquals(3, small.removeKey(2).size());
+    }
+
+    // Batch lookups in an array are one scan, finding each key once.
+    @Test
+    public void testFindAll() {
+        final Map<Integer, String> m = new TreeMap<>();
+        for(int i = 0; i < 8; i++) {
+            m.put(i * 2, String.valueOf(i));
+        }
+        final ImmSortedMap<Integer, String> small = ImmCollections.asSortedMap(m.entrySet());
+        assertShape(8, root(small.asList()));
+        final Map<Integer, String> expected = new HashMap<>();
+        expected.put(0, "0");
+        expected.put(6, "3");
+        expected.put(14, "7");
+        assertEquals(expected, small.getAll(Arrays.asList(-1, 0, 0, 5, 6, 6, 14, 15)).asMap());
+        assertEquals(expected, small.getAll(Arrays.asList(14, 6, 0)).asMap());
+        assertEquals(Collections.emptyMap(), small.getAll(Arrays.asList(-1, 1, 16)).asMap());
+        assertEquals(Collections.emptyMap(), small.getAll(Collections.emptyList()).asMap());
+    }
+
+    @Test
+    public void testMemory() {
+        final ImmList<Integer> flat = ImmCollections.asList(range(0, 8));
+        // Trees that small are flattened however they are made.
+        assertTrue(root(new TreeList23<>(new Branch<>(new Leaf<>(0), new Leaf<>(1)))) instanceof ArrayNode23);
+        final MemoryFootprint f = MemoryFootprint.of(flat);
+        assertEquals(0, f.getLeaves());
+        assertEquals(1, f.getBranches());
+        assertTrue(f.getTotalBytes() * 2 < MemoryFootprint.of(ImmCollections.asList(range(0, 9))).getTotalBytes());
+    }
+}
@@ -0,0 +1,40 @@
+package collections.immutable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Fixtures shared by the tests.
+final class TestFixtures {
+    private TestFixtures() {
+    }
+
+    // The integers in [low, high), in order.
+    static List<Integer> range(int low, int high) {
+        final List<Integer> l = new ArrayList<>();
+        for(int i = low; i < high; i++) {
+            l.add(i);
+        }
+        return l;
+    }
+
+    // The list of the integers in [0, n).
+    static ImmList<Integer> list(int n) {
+        return ImmCollections.asList(range(0, n));
+    }
+
+    // The sorted map of each integer in [from, to) to its string.
+    static ImmSortedMap<Integer, String> map(int from, int to) {
+        final Map<Integer, String> m = new TreeMap<>();
+        for(int i = from; i < to; i++) {
+            m.put(i, String.valueOf(i));
+        }
+        return ImmCollections.asSortedMap(m.entrySet());
+    }
+
+    // The depth of the tree of a list.
+    static int depth(ImmList<?> l) {
+        return ((TreeList23<?>)l).root.getDepth();
+    }
+}
@@ -0,0 +1,100 @@
+package collections.immutable;
+
+import static collections.immutable.TestFixtures.list;
+import static collections.immutable.TestFixtures.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+// Runs by the failsafe plugin against the multi-release jar, so that the Java 11 layer of CollectionEvents is loaded.
+public class CollectionEventsIT {
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    // The operation events recorded while running action, in the order they ended, reporting operations of 100 elements or more.
+    private static List<RecordedEvent> record(Action action) throws Exception {
+        final long threshold = ImmMetrics.getEventThreshold();
+        final Path file = Files.createTempFile("collections", ".jfr");
+        ImmMetrics.setEventThreshold(100);
+        try(Recording recording = new Recording()) {
+            recording.enable("collections.immutable.Operation").withThreshold(Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("collections.immutable.Operation"))
+                    .sorted(Comparator.comparing(RecordedEvent::getEndTime))
+                    .collect(Collectors.toList());
+        } finally {
+            ImmMetrics.setEventThreshold(threshold);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertEvent(RecordedEvent event, String operation, long inputSize, long otherInputSize, long outputSize) {
+        assertEquals(operation, event.getString("operation"));
+        assertEquals(inputSize, event.getLong("inputSize"));
+        assertEquals(otherInputSize, event.getLong("otherInputSize"));
+        assertEquals(outputSize, event.getLong("outputSize"));
+    }
+
+    private static List<String> operations(List<RecordedEvent> events) {
+        return events.stream().map(e -> e.getString("operation")).collect(Collectors.toList());
+    }
+
+    // An operation made of a filter is reported once, as itself.
+    @Test
+    public void testFilters() throws Exception {
+        final ImmList<Integer> l = list(1000);
+        final ImmSet<Integer> other = ImmCollections.asSet(range(0, 300));
+        List<RecordedEvent> events = record(() -> l.filter(i -> i % 4 == 0));
+        assertEquals(Arrays.asList("TreeList23.filter"), operations(events));
+        assertEvent(events.get(0), "TreeList23.filter", 1000, -1, 250);
+        assertEquals(-1, events.get(0).getLong("comparisons"));
+
+        events = record(() -> l.retain(other));
+        assertEquals(Arrays.asList("TreeList23.retain"), operations(events));
+        assertEvent(events.get(0), "TreeList23.retain", 1000, 300, 300);
+
+        events = record(() -> l.removeAllIn(other));
+        assertEquals(Arrays.asList("TreeList23.removeAllIn"), operations(events));
+        assertEvent(events.get(0), "TreeList23.removeAllIn", 1000, 300, 700);
+
+        // Sorting the other elements into a set is a step of its own.
+        final ImmSortedSet<Integer> s = ImmCollections.asSortedSet(range(0, 1000));
+        events = record(() -> s.retain(range(500, 2000)));
+        assertEquals(Arrays.asList("TreeList23.ofSortedUnique", "TreeSet23.retain"), operations(events));
+        assertEvent(events.get(0), "TreeList23.ofSortedUnique", 1500, -1, 1500);
+        assertEvent(events.get(1), "TreeSet23.retain", 1000, 1500, 500);
+    }
+
+    // The comparisons of an operation with a comparator are counted, and small operations are not reported.
+    @Test
+    public void testUnion() throws Exception {
+        final ImmSortedSet<Integer> s = ImmCollections.asSortedSet(range(0, 1000));
+        final ImmSortedSet<Integer> other = ImmCollections.asSortedSet(range(500, 600));
+        List<RecordedEvent> events = record(() -> s.union(other));
+        assertEquals(Arrays.asList("TreeSet23.union"), operations(events));
+        assertEvent(events.get(0), "TreeSet23.union", 1000, 100, 1000);
+        assertTrue(events.get(0).getLong("comparisons") > 0);
+
+        final ImmSortedSet<Integer> small = ImmCollections.asSortedSet(range(0, 10));
+        final ImmSortedSet<Integer> otherSmall = ImmCollections.asSortedSet(range(5, 20));
+        assertEquals(0, record(() -> small.union(otherSmall)).size());
+    }
+}